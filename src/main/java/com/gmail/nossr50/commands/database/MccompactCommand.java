@@ -0,0 +1,80 @@
+package com.gmail.nossr50.commands.database;
+
+import com.gmail.nossr50.locale.LocaleLoader;
+import com.gmail.nossr50.mcMMO;
+import com.gmail.nossr50.runnables.RegionCompactionTask;
+import com.gmail.nossr50.util.blockmeta.RegionCodec;
+import com.google.common.collect.ImmutableList;
+import org.bukkit.World;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabExecutor;
+import org.bukkit.util.StringUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+public class MccompactCommand implements TabExecutor {
+    private static final String ALL_WORLDS = "*";
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, String[] args) {
+        if (args.length != 1 && args.length != 2) {
+            return false;
+        }
+
+        List<World> worlds;
+        if (args[0].equals(ALL_WORLDS)) {
+            worlds = new ArrayList<>(mcMMO.p.getServer().getWorlds());
+        } else {
+            World world = mcMMO.p.getServer().getWorld(args[0]);
+
+            if (world == null) {
+                sender.sendMessage(LocaleLoader.getString("Commands.mccompact.InvalidWorld", args[0]));
+                return true;
+            }
+
+            worlds = ImmutableList.of(world);
+        }
+
+        RegionCodec codec = null;
+        if (args.length == 2) {
+            codec = RegionCodec.fromName(args[1]);
+
+            if (codec == null) {
+                sender.sendMessage(LocaleLoader.getString("Commands.mccompact.InvalidCodec", args[1], Arrays.toString(RegionCodec.values())));
+                return true;
+            }
+        }
+
+        if (!RegionCompactionTask.tryStart()) {
+            sender.sendMessage(LocaleLoader.getString("Commands.mccompact.Running"));
+            return true;
+        }
+
+        sender.sendMessage(LocaleLoader.getString("Commands.mccompact.Start"));
+        mcMMO.p.getFoliaLib().getImpl().runAsync(new RegionCompactionTask(worlds, sender, codec));
+        return true;
+    }
+
+    @Override
+    public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String alias, String[] args) {
+        List<String> options = new ArrayList<>();
+
+        if (args.length == 1) {
+            options.add(ALL_WORLDS);
+            for (World world : mcMMO.p.getServer().getWorlds())
+                options.add(world.getName());
+        } else if (args.length == 2) {
+            for (RegionCodec codec : RegionCodec.values())
+                options.add(codec.name().toLowerCase(Locale.ENGLISH));
+        } else {
+            return ImmutableList.of();
+        }
+
+        return StringUtil.copyPartialMatches(args[args.length - 1], options, new ArrayList<>(options.size()));
+    }
+}
@@ -14,11 +14,7 @@ public class McpurgeCommand implements TabExecutor {
     @Override
     public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, String[] args) {
         if (args.length == 0) {
-            mcMMO.getDatabaseManager().purgePowerlessUsers();
-
-            if (mcMMO.p.getGeneralConfig().getOldUsersCutoff() != -1) {
-                mcMMO.getDatabaseManager().purgeOldUsers();
-            }
+            mcMMO.getDatabaseManager().purgeUsers(mcMMO.p.getGeneralConfig().getOldUsersCutoff() != -1);
 
             sender.sendMessage(LocaleLoader.getString("Commands.mcpurge.Success"));
             return true;
@@ -2,7 +2,6 @@ package com.gmail.nossr50.commands.database;
 
 import com.gmail.nossr50.database.DatabaseManagerFactory;
 import com.gmail.nossr50.locale.LocaleLoader;
-import com.gmail.nossr50.mcMMO;
 import com.google.common.collect.ImmutableList;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
@@ -10,6 +9,7 @@ import org.bukkit.command.TabExecutor;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.List;
+import java.util.Locale;
 
 public class MmoshowdbCommand implements TabExecutor {
     @Override
@@ -22,7 +22,7 @@ public class MmoshowdbCommand implements TabExecutor {
                 return true;
             }
 
-            sender.sendMessage(LocaleLoader.getString("Commands.mmoshowdb", (mcMMO.p.getGeneralConfig().getUseMySQL() ? "sql" : "flatfile")));
+            sender.sendMessage(LocaleLoader.getString("Commands.mmoshowdb", DatabaseManagerFactory.getConfiguredDatabaseType().toString().toLowerCase(Locale.ENGLISH)));
             return true;
         }
         return false;
@@ -50,6 +50,11 @@ public class GeneralConfig extends BukkitConfig {
             }
         }
 
+        /* FlatFile Settings */
+        if (getFlatFileCompactionThreshold() <= 0) {
+            reason.add("FlatFile.Append_Only.Compaction_Threshold should be greater than 0!");
+        }
+
         /* Mob Healthbar */
         if (getMobHealthbarTime() == 0) {
             reason.add("Mob_Healthbar.Display_Time cannot be 0! Set to -1 to disable or set a valid value.");
@@ -369,6 +374,20 @@ public class GeneralConfig extends BukkitConfig {
         return config.getBoolean("Backups.Keep.Weekly_Past_Months", true);
     }
 
+    /* FlatFile */
+    public boolean getFlatFileAppendOnlyEnabled() {
+        return config.getBoolean("FlatFile.Append_Only.Enabled", false);
+    }
+
+    public int getFlatFileCompactionThreshold() {
+        return config.getInt("FlatFile.Append_Only.Compaction_Threshold", 1000);
+    }
+
+    /* H2 */
+    public boolean getUseH2() {
+        return config.getBoolean("H2.Enabled", false);
+    }
+
     /* mySQL */
     public boolean getUseMySQL() {
         return config.getBoolean("MySQL.Enabled", false);
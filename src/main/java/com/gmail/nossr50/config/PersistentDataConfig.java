@@ -1,6 +1,8 @@
 package com.gmail.nossr50.config;
 
 import com.gmail.nossr50.metadata.MobMetaFlagType;
+import com.gmail.nossr50.util.blockmeta.RegionCodec;
+import org.jetbrains.annotations.NotNull;
 
 public class PersistentDataConfig extends BukkitConfig {
     private static PersistentDataConfig instance;
@@ -38,5 +40,42 @@ public class PersistentDataConfig extends BukkitConfig {
         return config.getBoolean("mcMMO_Region_System.Enabled", true);
     }
 
+    /**
+     * @return bytes the placed block data held in memory may use, 0 for no limit
+     */
+    public long getBlockTrackerMemoryBudget() {
+        return Math.max(0, config.getLong("mcMMO_Region_System.Memory_Budget_MB", 64)) * 1024L * 1024L;
+    }
+
+    /**
+     * @return milliseconds after which unused placed block data is dropped from memory, 0 to keep it until the chunk unloads
+     */
+    public long getBlockTrackerIdleTime() {
+        return Math.max(0, config.getLong("mcMMO_Region_System.Idle_Eviction_Seconds", 300)) * 1000L;
+    }
+
+    /**
+     * @return seconds between background writes of changed placed block data, 0 to only write it when chunks unload
+     */
+    public int getBlockTrackerFlushInterval() {
+        return Math.max(0, config.getInt("mcMMO_Region_System.Flush_Interval_Seconds", 30));
+    }
+
+    public boolean useMemoryMappedRegionFiles() {
+        return config.getBoolean("mcMMO_Region_System.Memory_Mapped_Files", false);
+    }
+
+    public int getBlockTrackerFlushBatchSize() {
+        return Math.max(1, config.getInt("mcMMO_Region_System.Flush_Batch_Size", 256));
+    }
+
+    /**
+     * @return the codec new mcmmo_regions files are created with
+     */
+    public @NotNull RegionCodec getBlockTrackerRegionCodec() {
+        RegionCodec regionCodec = RegionCodec.fromName(config.getString("mcMMO_Region_System.Region_Codec", "ZLIB"));
+        return regionCodec == null ? RegionCodec.ZLIB : regionCodec;
+    }
+
 
 }
\ No newline at end of file
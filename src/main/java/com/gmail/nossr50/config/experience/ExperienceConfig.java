@@ -144,6 +144,10 @@ public class ExperienceConfig extends BukkitConfig {
         return config.getBoolean("EarlyGameBoost.Enabled", true);
     }
 
+    public boolean isExperienceBatchingEnabled() {
+        return config.getBoolean("Experience_Batching.Enabled", false);
+    }
+
     /*
      * FORMULA SETTINGS
      */
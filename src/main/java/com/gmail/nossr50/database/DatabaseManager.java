@@ -10,6 +10,7 @@ import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -28,6 +29,19 @@ public interface DatabaseManager {
      */
     void purgeOldUsers();
 
+    /**
+     * Purge users with 0 power level and optionally users who haven't logged on in over a certain time frame.
+     *
+     * @param purgeOldUsers true to also purge old users
+     */
+    default void purgeUsers(boolean purgeOldUsers) {
+        purgePowerlessUsers();
+
+        if (purgeOldUsers) {
+            purgeOldUsers();
+        }
+    }
+
     /**
      * Remove a user from the database.
      *
@@ -52,6 +66,24 @@ public interface DatabaseManager {
      */
     boolean saveUser(PlayerProfile profile);
 
+    /**
+     * Save several users to the database at once.
+     * Implementations should write the whole batch in as few operations as possible,
+     * by default the users are saved one at a time.
+     *
+     * @param profiles The profiles of the players to save
+     * @return true if every profile was saved, false if any of them failed
+     */
+    default boolean saveUsers(@NotNull Collection<PlayerProfile> profiles) {
+        boolean success = true;
+
+        for (PlayerProfile profile : profiles) {
+            success &= saveUser(profile);
+        }
+
+        return success;
+    }
+
     /**
     * Retrieve leaderboard info.
      * Will never be null but it may be empty
@@ -74,6 +106,19 @@ public interface DatabaseManager {
      */
     Map<PrimarySkillType, Integer> readRank(String playerName);
 
+    /**
+     * Retrieve the rank of a player on a single leaderboard.
+     * Implementations which can look up one rank cheaply should override this,
+     * by default every rank is read and the requested one is returned.
+     *
+     * @param playerName The name of the user to retrieve the rank for
+     * @param skill The skill to retrieve the rank for, null for the Power Level rank
+     * @return the rank of the user, or null if they are not on the leaderboard
+     */
+    default @Nullable Integer readRank(@NotNull String playerName, @Nullable PrimarySkillType skill) {
+        return readRank(playerName).get(skill);
+    }
+
     /**
      * Add a new user to the database.
      *  @param playerName The name of the player to be added to the database
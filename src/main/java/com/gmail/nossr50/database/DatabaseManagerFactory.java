@@ -24,10 +24,40 @@ public class DatabaseManagerFactory {
                 LogUtils.debug(mcMMO.p.getLogger(), "Failed to create custom database manager");
                 e.printStackTrace();
             }
-            LogUtils.debug(mcMMO.p.getLogger(), "Falling back on " + (mcMMO.p.getGeneralConfig().getUseMySQL() ? "SQL" : "Flatfile") + " database");
+            LogUtils.debug(mcMMO.p.getLogger(), "Falling back on " + getConfiguredDatabaseType() + " database");
         }
 
-        return mcMMO.p.getGeneralConfig().getUseMySQL() ? new SQLDatabaseManager() : new FlatFileDatabaseManager(userFilePath, logger, purgeTime, startingLevel);
+        switch (getConfiguredDatabaseType()) {
+            case SQL:
+                return new SQLDatabaseManager();
+
+            case H2:
+                return createH2DatabaseManager();
+
+            default:
+                return createFlatFileDatabaseManager(userFilePath, logger, purgeTime, startingLevel);
+        }
+    }
+
+    /**
+     * The built in database type selected in config.yml, MySQL takes priority over H2
+     */
+    public static @NotNull DatabaseType getConfiguredDatabaseType() {
+        if (mcMMO.p.getGeneralConfig().getUseMySQL()) {
+            return DatabaseType.SQL;
+        }
+
+        return mcMMO.p.getGeneralConfig().getUseH2() ? DatabaseType.H2 : DatabaseType.FLATFILE;
+    }
+
+    private static @NotNull SQLDatabaseManager createH2DatabaseManager() {
+        return new SQLDatabaseManager(mcMMO.getFlatFileDirectory() + "mcmmo");
+    }
+
+    private static @NotNull FlatFileDatabaseManager createFlatFileDatabaseManager(@NotNull String userFilePath, @NotNull Logger logger, long purgeTime, int startingLevel) {
+        return new FlatFileDatabaseManager(userFilePath, logger, purgeTime, startingLevel,
+                mcMMO.p.getGeneralConfig().getFlatFileAppendOnlyEnabled(),
+                mcMMO.p.getGeneralConfig().getFlatFileCompactionThreshold());
     }
 
     /**
@@ -64,12 +94,16 @@ public class DatabaseManagerFactory {
         switch (type) {
             case FLATFILE:
                 LogUtils.debug(mcMMO.p.getLogger(), "Using FlatFile Database");
-                return new FlatFileDatabaseManager(userFilePath, logger, purgeTime, startingLevel);
+                return createFlatFileDatabaseManager(userFilePath, logger, purgeTime, startingLevel);
 
             case SQL:
                 LogUtils.debug(mcMMO.p.getLogger(), "Using SQL Database");
                 return new SQLDatabaseManager();
 
+            case H2:
+                LogUtils.debug(mcMMO.p.getLogger(), "Using H2 Database");
+                return createH2DatabaseManager();
+
             case CUSTOM:
                 try {
                     LogUtils.debug(mcMMO.p.getLogger(), "Attempting to use Custom Database");
@@ -0,0 +1,151 @@
+package com.gmail.nossr50.database;
+
+import com.gmail.nossr50.mcMMO;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Hands connections to the H2 driver, which is only loaded once the embedded database is actually used
+ * Servers using FlatFile or MySQL never download H2, the others download it from Maven Central on first start
+ * and keep it in the libraries folder of mcMMO, a copy of the jar can also be put there by hand
+ * <p/>
+ * The connection pool creates this driver by name from the plugin's class loader, so the class loader of H2 stays hidden
+ */
+public class EmbeddedH2Driver implements Driver {
+    public static final String H2_VERSION = "2.2.224";
+    public static final String H2_JAR_NAME = "h2-" + H2_VERSION + ".jar";
+    private static final String H2_DRIVER_CLASS = "org.h2.Driver";
+    private static final String H2_JAR_URL = "https://repo1.maven.org/maven2/com/h2database/h2/" + H2_VERSION + "/" + H2_JAR_NAME;
+    private static final String H2_JAR_SHA256 = "b9d8f19358ada82a4f6eb5b174c6cfe320a375b5a9cb5a4fe456d623e6e55497";
+
+    private static volatile @Nullable Driver h2Driver;
+
+    /**
+     * Load the H2 driver, an H2 already on the class path is used as is
+     *
+     * @throws IOException if the jar is missing and can't be downloaded
+     * @throws ReflectiveOperationException if the jar doesn't contain the driver
+     */
+    public static synchronized void load() throws IOException, ReflectiveOperationException {
+        if (h2Driver != null) {
+            return;
+        }
+
+        ClassLoader classLoader = EmbeddedH2Driver.class.getClassLoader();
+
+        try {
+            Class.forName(H2_DRIVER_CLASS, false, classLoader);
+        } catch (ClassNotFoundException e) {
+            File jarFile = new File(new File(mcMMO.p.getDataFolder(), "libraries"), H2_JAR_NAME);
+
+            if (!jarFile.exists()) {
+                download(jarFile);
+            }
+
+            classLoader = new URLClassLoader(new URL[]{jarFile.toURI().toURL()}, classLoader);
+        }
+
+        h2Driver = (Driver) Class.forName(H2_DRIVER_CLASS, true, classLoader).getConstructor().newInstance();
+    }
+
+    private static void download(@NotNull File jarFile) throws IOException {
+        mcMMO.p.getLogger().info("Downloading " + H2_JAR_NAME + " for the embedded database from " + H2_JAR_URL);
+
+        if (!jarFile.getParentFile().exists() && !jarFile.getParentFile().mkdirs()) {
+            throw new IOException("Unable to create " + jarFile.getParentFile().getPath());
+        }
+
+        File tempFile = new File(jarFile.getPath() + ".tmp");
+
+        try (InputStream in = new URL(H2_JAR_URL).openStream()) {
+            Files.copy(in, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        String sha256;
+
+        try {
+            sha256 = String.format("%064x", new BigInteger(1, MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(tempFile.toPath()))));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        if (!H2_JAR_SHA256.equals(sha256)) {
+            Files.deleteIfExists(tempFile.toPath());
+            throw new IOException("The downloaded " + H2_JAR_NAME + " doesn't match its checksum");
+        }
+
+        Files.move(tempFile.toPath(), jarFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static @NotNull Driver getH2Driver() throws SQLException {
+        Driver driver = h2Driver;
+
+        if (driver == null) {
+            throw new SQLException("The H2 driver was not loaded");
+        }
+
+        return driver;
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) throws SQLException {
+        return getH2Driver().connect(url, info);
+    }
+
+    @Override
+    public boolean acceptsURL(String url) throws SQLException {
+        return getH2Driver().acceptsURL(url);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) throws SQLException {
+        return getH2Driver().getPropertyInfo(url, info);
+    }
+
+    @Override
+    public int getMajorVersion() {
+        Driver driver = h2Driver;
+        return driver == null ? 0 : driver.getMajorVersion();
+    }
+
+    @Override
+    public int getMinorVersion() {
+        Driver driver = h2Driver;
+        return driver == null ? 0 : driver.getMinorVersion();
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        Driver driver = h2Driver;
+        return driver != null && driver.jdbcCompliant();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        Driver driver = h2Driver;
+
+        if (driver == null) {
+            throw new SQLFeatureNotSupportedException();
+        }
+
+        return driver.getParentLogger();
+    }
+}
@@ -1,7 +1,7 @@
 package com.gmail.nossr50.database;
 
 import com.gmail.nossr50.api.exceptions.InvalidSkillException;
-import com.gmail.nossr50.database.flatfile.LeaderboardStatus;
+import com.gmail.nossr50.database.flatfile.*;
 import com.gmail.nossr50.datatypes.database.DatabaseType;
 import com.gmail.nossr50.datatypes.database.PlayerStat;
 import com.gmail.nossr50.datatypes.player.PlayerProfile;
@@ -9,6 +9,7 @@ import com.gmail.nossr50.datatypes.player.UniqueDataType;
 import com.gmail.nossr50.datatypes.skills.PrimarySkillType;
 import com.gmail.nossr50.datatypes.skills.SuperAbilityType;
 import com.gmail.nossr50.mcMMO;
+import com.gmail.nossr50.runnables.database.FlatFileCompactionTask;
 import com.gmail.nossr50.util.LogUtils;
 import com.gmail.nossr50.util.Misc;
 import com.gmail.nossr50.util.skills.SkillTools;
@@ -18,27 +19,52 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
 public final class FlatFileDatabaseManager implements DatabaseManager {
     public static final String IGNORED = "IGNORED";
     public static final String LEGACY_INVALID_OLD_USERNAME = "_INVALID_OLD_USERNAME_'";
-    private final @NotNull EnumMap<PrimarySkillType, List<PlayerStat>> playerStatHash = new EnumMap<>(PrimarySkillType.class);
-    private final @NotNull List<PlayerStat> powerLevels = new ArrayList<>();
-    private long lastUpdate = 0;
+    private final @NotNull FlatFileLeaderboard leaderboard = new FlatFileLeaderboard();
+    private volatile boolean leaderboardLoaded = false;
     private final @NotNull String usersFilePath;
     private final @NotNull Logger logger;
     private final long purgeTime;
     private final int startingLevel;
     private final boolean testing;
 
-    private final long UPDATE_WAIT_TIME = 600000L; // 10 minutes
     private final @NotNull File usersFile;
     private static final Object fileWritingLock = new Object();
 
+    public static final String LOG_FILE_SUFFIX = ".log";
+    public static final String TEMP_FILE_SUFFIX = ".tmp";
+    public static final String INDEX_FILE_SUFFIX = ".idx";
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 1000;
+    private static final String LINE_SEPARATOR = FlatFileRecordWriter.LINE_SEPARATOR;
+    //FileReader and FileWriter use the default charset, our byte offsets need to agree with them
+    private static final Charset CHARSET = Charset.defaultCharset();
+
+    /* Append-only storage */
+    private final @NotNull File logFile;
+    private final @NotNull File indexFile;
+    private final boolean appendOnly;
+    private final int compactionThreshold;
+    private final @NotNull AtomicBoolean compactionQueued = new AtomicBoolean(false);
+    private final @NotNull FlatFileUserIndex userIndex = new FlatFileUserIndex();
+    private boolean userIndexLoaded = false;
+    private long indexedUsersFileLength = -1;
+    private long indexedUsersFileModified = -1;
+    private int logRecordCount = 0;
+
     public static final int USERNAME_INDEX = 0;
     public static final int SKILLS_MINING = 1;
     public static final int EXP_MINING = 4;
@@ -84,17 +110,28 @@ public final class FlatFileDatabaseManager implements DatabaseManager {
     public static final int DATA_ENTRY_COUNT = OVERHAUL_LAST_LOGIN + 1; //Update this everytime new data is added
 
     protected FlatFileDatabaseManager(@NotNull File usersFile, @NotNull Logger logger, long purgeTime, int startingLevel, boolean testing) {
+        this(usersFile, logger, purgeTime, startingLevel, testing, false, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    protected FlatFileDatabaseManager(@NotNull File usersFile, @NotNull Logger logger, long purgeTime, int startingLevel, boolean testing, boolean appendOnly, int compactionThreshold) {
         this.usersFile = usersFile;
         this.usersFilePath = usersFile.getPath();
         this.logger = logger;
         this.purgeTime = purgeTime;
         this.startingLevel = startingLevel;
         this.testing = testing;
+        this.logFile = new File(usersFilePath + LOG_FILE_SUFFIX);
+        this.indexFile = new File(usersFilePath + INDEX_FILE_SUFFIX);
+        this.appendOnly = appendOnly;
+        this.compactionThreshold = Math.max(1, compactionThreshold);
 
         if(!usersFile.exists()) {
             initEmptyDB();
         }
 
+        //Merge records left over from a previous session, this also lets servers switch the append-only mode off safely
+        compactLog();
+
         if(!testing) {
             List<FlatFileDataFlag> flatFileDataFlags = checkFileHealthAndStructure();
 
@@ -112,94 +149,56 @@ public final class FlatFileDatabaseManager implements DatabaseManager {
         this(new File(usersFilePath), logger, purgeTime, startingLevel, false);
     }
 
+    protected FlatFileDatabaseManager(@NotNull String usersFilePath, @NotNull Logger logger, long purgeTime, int startingLevel, boolean appendOnly, int compactionThreshold) {
+        this(new File(usersFilePath), logger, purgeTime, startingLevel, false, appendOnly, compactionThreshold);
+    }
 
-    public int purgePowerlessUsers() {
-        int purgedUsers = 0;
 
+    public int purgePowerlessUsers() {
         LogUtils.debug(logger, "Purging powerless users...");
+        return purgeUsers(true, false);
+    }
 
-        BufferedReader in = null;
-        FileWriter out = null;
+    public void purgeOldUsers() {
+        LogUtils.debug(logger, "Purging old users...");
+        purgeUsers(false, true);
+    }
+
+    @Override
+    public void purgeUsers(boolean purgeOldUsers) {
+        LogUtils.debug(logger, "Purging users...");
+        purgeUsers(true, purgeOldUsers);
+    }
+
+    /**
+     * Apply the purge rules to every user in a single pass over the users file
+     *
+     * @param purgePowerlessUsers remove users without any skill levels
+     * @param purgeOldUsers remove users who haven't logged on within the purge time
+     * @return the number of purged users
+     */
+    private int purgeUsers(boolean purgePowerlessUsers, boolean purgeOldUsers) {
+        int[] purgedUsers = {0};
+        long currentTime = System.currentTimeMillis();
 
         synchronized (fileWritingLock) {
-            try {
-                in = new BufferedReader(new FileReader(usersFilePath));
-                StringBuilder writer = new StringBuilder();
-                String line;
+            compactLog();
 
-                while ((line = in.readLine()) != null) {
+            try {
+                rewriteUsersFile(line -> {
                     String[] character = line.split(":");
-                    Map<PrimarySkillType, Integer> skills = getSkillMapFromLine(character);
-
-                    boolean powerless = true;
-                    for (int skill : skills.values()) {
-                        if (skill != 0) {
-                            powerless = false;
-                            break;
-                        }
-                    }
 
-                    // If they're still around, rewrite them to the file.
-                    if (!powerless) {
-                        writer.append(line).append("\r\n");
+                    if (purgePowerlessUsers && isPowerless(character)) {
+                        purgedUsers[0]++;
+                        removeLeaderboardEntry(line);
+                        return null;
                     }
-                    else {
-                        purgedUsers++;
-                    }
-                }
 
-                // Write the new file
-                out = new FileWriter(usersFilePath);
-                out.write(writer.toString());
-            }
-            catch (IOException e) {
-                logger.severe("Exception while reading " + usersFilePath + " (Are you sure you formatted it correctly?)" + e);
-            }
-            finally {
-                if (in != null) {
-                    try {
-                        in.close();
-                    }
-                    catch (IOException e) {
-                        // Ignore
-                    }
-                }
-                if (out != null) {
-                    try {
-                        out.close();
+                    if (!purgeOldUsers) {
+                        return line;
                     }
-                    catch (IOException e) {
-                        // Ignore
-                    }
-                }
-            }
-        }
-
-        logger.info("Purged " + purgedUsers + " users from the database.");
-        return purgedUsers;
-    }
-
-    //TODO: Test this
-    public void purgeOldUsers() {
-        int removedPlayers = 0;
-        long currentTime = System.currentTimeMillis();
-
-        LogUtils.debug(logger, "Purging old users...");
-
-        BufferedReader in = null;
-        FileWriter out = null;
-
-        // This code is O(n) instead of O(n²)
-        synchronized (fileWritingLock) {
-            try {
-                in = new BufferedReader(new FileReader(usersFilePath));
-                StringBuilder writer = new StringBuilder();
-                String line;
 
-                while ((line = in.readLine()) != null) {
-                    String[] character = line.split(":");
-                    String uuidString = character[UUID_INDEX];
-                    UUID uuid = UUID.fromString(uuidString);
+                    UUID uuid = UUID.fromString(character[UUID_INDEX]);
                     long lastPlayed = 0;
                     boolean rewrite = false;
 
@@ -219,106 +218,67 @@ public final class FlatFileDatabaseManager implements DatabaseManager {
                     }
 
                     if (lastPlayed < 1 && (currentTime - lastPlayed > purgeTime)) {
-                        removedPlayers++;
-                    } else {
-                        if (rewrite) {
-                            // Rewrite their data with a valid time
-                            character[OVERHAUL_LAST_LOGIN] = Long.toString(lastPlayed);
-                            String newLine = org.apache.commons.lang.StringUtils.join(character, ":");
-                            writer.append(newLine).append("\r\n");
-                        } else {
-                            writer.append(line).append("\r\n");
-                        }
+                        purgedUsers[0]++;
+                        removeLeaderboardEntry(line);
+                        return null;
                     }
-                }
 
-                // Write the new file
-                out = new FileWriter(usersFilePath);
-                out.write(writer.toString());
+                    if (rewrite) {
+                        // Rewrite their data with a valid time
+                        character[OVERHAUL_LAST_LOGIN] = Long.toString(lastPlayed);
+                        return org.apache.commons.lang.StringUtils.join(character, ":");
+                    }
 
-                if(testing) {
-                    System.out.println(writer.toString());
-                }
+                    return line;
+                });
             }
             catch (IOException e) {
                 logger.severe("Exception while reading " + usersFilePath + " (Are you sure you formatted it correctly?)" + e);
             }
-            finally {
-                if (in != null) {
-                    try {
-                        in.close();
-                    }
-                    catch (IOException e) {
-                        // Ignore
-                    }
-                }
-                if (out != null) {
-                    try {
-                        out.close();
-                    }
-                    catch (IOException e) {
-                        // Ignore
-                    }
-                }
+        }
+
+        logger.info("Purged " + purgedUsers[0] + " users from the database.");
+        return purgedUsers[0];
+    }
+
+    private boolean isPowerless(@NotNull String[] character) {
+        for (int skill : getSkillMapFromLine(character).values()) {
+            if (skill != 0) {
+                return false;
             }
         }
 
-        logger.info("Purged " + removedPlayers + " users from the database.");
+        return true;
     }
 
     public boolean removeUser(String playerName, UUID uuid) {
         //NOTE: UUID is unused for FlatFile for this interface implementation
-        boolean worked = false;
-
-        BufferedReader in = null;
-        FileWriter out = null;
+        boolean[] worked = {false};
 
         synchronized (fileWritingLock) {
-            try {
-                in = new BufferedReader(new FileReader(usersFilePath));
-                StringBuilder writer = new StringBuilder();
-                String line;
+            compactLog();
 
-                while ((line = in.readLine()) != null) {
+            try {
+                rewriteUsersFile(line -> {
                     // Write out the same file but when we get to the player we want to remove, we skip his line.
-                    if (!worked && line.split(":")[USERNAME_INDEX].equalsIgnoreCase(playerName)) {
+                    if (!worked[0] && line.split(":")[USERNAME_INDEX].equalsIgnoreCase(playerName)) {
                         logger.info("User found, removing...");
-                        worked = true;
-                        continue; // Skip the player
+                        worked[0] = true;
+                        removeLeaderboardEntry(line);
+                        return null; // Skip the player
                     }
 
-                    writer.append(line).append("\r\n");
-                }
-
-                out = new FileWriter(usersFilePath); // Write out the new file
-                out.write(writer.toString());
+                    return line;
+                });
             }
             catch (Exception e) {
                 logger.severe("Exception while reading " + usersFilePath + " (Are you sure you formatted it correctly?)" + e);
             }
-            finally {
-                if (in != null) {
-                    try {
-                        in.close();
-                    }
-                    catch (IOException e) {
-                        // Ignore
-                    }
-                }
-                if (out != null) {
-                    try {
-                        out.close();
-                    }
-                    catch (IOException e) {
-                        // Ignore
-                    }
-                }
-            }
         }
 
         Misc.profileCleanup(playerName);
 
-        return worked;
+        return worked[0];
     }
 
     @Override
@@ -327,37 +287,62 @@ public final class FlatFileDatabaseManager implements DatabaseManager {
     }
 
     public boolean saveUser(@NotNull PlayerProfile profile) {
-        String playerName = profile.getPlayerName();
-        UUID uuid = profile.getUniqueId();
+        return saveUsers(Collections.singletonList(profile));
+    }
 
-        BufferedReader in = null;
-        FileWriter out = null;
-        boolean corruptDataFound = false;
+    /**
+     * Save several users with a single rewrite of the users file, or a single append to the log in append-only mode
+     * Outside of append-only mode the users file is rewritten to a synced temporary file which then replaces it, a crash leaves either the old or the new file
+     *
+     * @param profiles the profiles to save
+     * @return true if every profile was saved
+     */
+    @Override
+    public boolean saveUsers(@NotNull Collection<PlayerProfile> profiles) {
+        if (profiles.isEmpty()) {
+            return true;
+        }
+
+        if (appendOnly) {
+            return appendUsersToLog(profiles);
+        }
+
+        //Look up the profiles being saved the same way we look up the lines of the file
+        Map<UUID, PlayerProfile> profilesByUUID = new HashMap<>();
+        Map<String, PlayerProfile> profilesByName = new HashMap<>();
+
+        for (PlayerProfile profile : profiles) {
+            if (profile.getUniqueId() != null) {
+                profilesByUUID.put(profile.getUniqueId(), profile);
+            }
+
+            profilesByName.put(profile.getPlayerName().toLowerCase(Locale.ENGLISH), profile);
+        }
+
+        Set<PlayerProfile> unwrittenProfiles = Collections.newSetFromMap(new IdentityHashMap<>());
+        unwrittenProfiles.addAll(profiles);
+
+        boolean[] corruptDataFound = {false};
 
         synchronized (fileWritingLock) {
-            try {
-                // Open the file
-                in = new BufferedReader(new FileReader(usersFilePath));
-                StringBuilder writer = new StringBuilder();
-                String line;
+            //Records left in the log by append-only mode are newer than the users file, they have to be merged first
+            compactLog();
 
-                boolean wroteUser = false;
-                // While not at the end of the file
-                while ((line = in.readLine()) != null) {
+            try {
+                writeUsersFile(line -> {
                     if(line.startsWith("#")) {
-                        writer.append(line).append("\r\n");
-                        continue;
+                        return line;
                     }
 
                     //Check for incomplete or corrupted data
                     if(!line.contains(":")) {
 
-                        if(!corruptDataFound) {
+                        if(!corruptDataFound[0]) {
                             logger.severe("mcMMO found some unexpected or corrupted data in mcmmo.users and is removing it, it is possible some data has been lost.");
-                            corruptDataFound = true;
+                            corruptDataFound[0] = true;
                         }
 
-                        continue;
+                        return null;
                     }
 
                     String[] splitData = line.split(":");
@@ -365,60 +350,63 @@ public final class FlatFileDatabaseManager implements DatabaseManager {
                     //This would be rare, but check the splitData for having enough entries to contain a UUID
                     if(splitData.length < UUID_INDEX) { //UUID have been in mcMMO DB for a very long time so any user without
 
-                        if(!corruptDataFound) {
+                        if(!corruptDataFound[0]) {
                             logger.severe("mcMMO found some unexpected or corrupted data in mcmmo.users and is removing it, it is possible some data has been lost.");
-                            corruptDataFound = true;
+                            corruptDataFound[0] = true;
                         }
 
-                        continue;
+                        return null;
                     }
 
-                    if (!(uuid != null
-                                    && splitData[UUID_INDEX].equalsIgnoreCase(uuid.toString()))
-                                    && !splitData[USERNAME_INDEX].equalsIgnoreCase(playerName)) {
-                        writer.append(line).append("\r\n"); //Not the user so write it to file and move on
-                    } else {
-                        //User found
-                        writeUserToLine(profile, writer);
-                        wroteUser = true;
+                    PlayerProfile profile = findProfileForLine(splitData, profilesByUUID, profilesByName);
+
+                    if (profile == null) {
+                        return line; //Not a user we are saving so write it to file and move on
                     }
-                }
 
-                /*
-                 * If we couldn't find the user in the DB we need to add him
-                 */
-                if(!wroteUser) {
-                    writeUserToLine(profile, writer);
-                }
+                    //User found
+                    unwrittenProfiles.remove(profile);
+                    return toRecordLine(profile);
+                }, () -> {
+                    /*
+                     * If we couldn't find a user in the DB we need to add them
+                     */
+                    List<String> newUserLines = new ArrayList<>(unwrittenProfiles.size());
+
+                    for (PlayerProfile profile : profiles) {
+                        if (unwrittenProfiles.contains(profile)) {
+                            newUserLines.add(toRecordLine(profile));
+                        }
+                    }
+
+                    return newUserLines;
+                });
 
-                // Write the new file
-                out = new FileWriter(usersFilePath);
-                out.write(writer.toString());
+                updateLeaderboardEntries(profiles);
                 return true;
             }
             catch (Exception e) {
+                //The users file was not replaced so it still holds the previous save
                 e.printStackTrace();
                 return false;
             }
-            finally {
-                if (in != null) {
-                    try {
-                        in.close();
-                    }
-                    catch (IOException e) {
-                        // Ignore
-                    }
-                }
-                if (out != null) {
-                    try {
-                        out.close();
-                    }
-                    catch (IOException e) {
-                        // Ignore
-                    }
+        }
+    }
+
+    private @Nullable PlayerProfile findProfileForLine(@NotNull String[] splitData, @NotNull Map<UUID, PlayerProfile> profilesByUUID, @NotNull Map<String, PlayerProfile> profilesByName) {
+        if (!profilesByUUID.isEmpty() && splitData.length > UUID_INDEX) {
+            try {
+                PlayerProfile profile = profilesByUUID.get(UUID.fromString(splitData[UUID_INDEX]));
+
+                if (profile != null) {
+                    return profile;
                 }
+            } catch (IllegalArgumentException e) {
+                //Not a valid UUID, fall back to the name
             }
         }
+
+        return profilesByName.get(splitData[USERNAME_INDEX].toLowerCase(Locale.ENGLISH));
     }
 
     public void writeUserToLine(@NotNull PlayerProfile profile, @NotNull Appendable appendable) throws IOException {
@@ -478,10 +466,9 @@ public final class FlatFileDatabaseManager implements DatabaseManager {
         }
 
         updateLeaderboards();
-        List<PlayerStat> statsList = primarySkillType == null ? powerLevels : playerStatHash.get(primarySkillType);
         int fromIndex = (Math.max(pageNumber, 1) - 1) * statsPerPage;
 
-        return statsList.subList(Math.min(fromIndex, statsList.size()), Math.min(fromIndex + statsPerPage, statsList.size()));
+        return leaderboard.getPage(primarySkillType, fromIndex, statsPerPage);
     }
 
     public @NotNull HashMap<PrimarySkillType, Integer> readRank(String playerName) {
@@ -490,15 +477,25 @@ public final class FlatFileDatabaseManager implements DatabaseManager {
         HashMap<PrimarySkillType, Integer> skills = new HashMap<>();
 
         for (PrimarySkillType skill : SkillTools.NON_CHILD_SKILLS) {
-            skills.put(skill, getPlayerRank(playerName, playerStatHash.get(skill)));
+            skills.put(skill, leaderboard.getRank(skill, playerName));
         }
 
         //TODO: Gross
-        skills.put(null, getPlayerRank(playerName, powerLevels));
+        skills.put(null, leaderboard.getRank(null, playerName));
 
         return skills;
     }
 
+    @Override
+    public @Nullable Integer readRank(@NotNull String playerName, @Nullable PrimarySkillType primarySkillType) {
+        if (primarySkillType != null && SkillTools.isChildSkill(primarySkillType)) {
+            return null;
+        }
+
+        updateLeaderboards();
+        return leaderboard.getRank(primarySkillType, playerName);
+    }
+
     public @NotNull PlayerProfile newUser(@NotNull Player player) {
         return new PlayerProfile(player.getName(), player.getUniqueId(), true, startingLevel);
     }
@@ -506,26 +503,13 @@ public final class FlatFileDatabaseManager implements DatabaseManager {
     public @NotNull PlayerProfile newUser(@NotNull String playerName, @NotNull UUID uuid) {
         PlayerProfile playerProfile = new PlayerProfile(playerName, uuid, true, startingLevel);
 
-        synchronized (fileWritingLock) {
-            try(BufferedReader bufferedReader = new BufferedReader(new FileReader(usersFilePath))) {
-                StringBuilder stringBuilder = new StringBuilder();
-
-                String line;
-
-                //Build up the file
-                while((line = bufferedReader.readLine()) != null) {
-                    stringBuilder.append(line).append("\r\n");
-                }
+        if (appendOnly) {
+            appendUsersToLog(Collections.singletonList(playerProfile));
+            return playerProfile;
+        }
 
-                try (FileWriter fileWriter = new FileWriter(usersFile)) {
-                    writeUserToLine(playerProfile, stringBuilder);
-                    fileWriter.write(stringBuilder.toString());
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+        synchronized (fileWritingLock) {
+            appendUserToUsersFile(playerProfile);
         }
 
         return playerProfile;
@@ -560,362 +544,178 @@ public final class FlatFileDatabaseManager implements DatabaseManager {
     /**
      * Find and load a player by UUID/Name
      * If the name isn't null and doesn't match the name in the DB, the players name is then replaced/updated
+     * Players are found through the in-memory index, so this costs one positioned read instead of a scan of the users file
      *
      * @param userQuery the query
      * @return a profile with the targets data or an unloaded profile if no data was found
      */
     private @NotNull PlayerProfile processUserQuery(@NotNull UserQuery userQuery) throws RuntimeException {
-        switch(userQuery.getType()) {
+        synchronized (fileWritingLock) {
+            ensureUserIndex();
+            FlatFileRecordPointer pointer = findIndexedRecord(userQuery);
+            String[] rawSplitData = pointer == null ? null : readIndexedRecord(pointer);
+
+            if (pointer != null && rawSplitData == null) {
+                //The files were changed behind our back, rebuild the index and try once more
+                invalidateUserIndex();
+                ensureUserIndex();
+                pointer = findIndexedRecord(userQuery);
+                rawSplitData = pointer == null ? null : readIndexedRecord(pointer);
+            }
+
+            if (rawSplitData != null) {
+                if (userQuery.getType() == UserQueryType.UUID_AND_NAME) {
+                    String playerName = ((UserQueryFull) userQuery).getName();
+                    String dbPlayerName = rawSplitData[USERNAME_INDEX];
+
+                    if (!dbPlayerName.equalsIgnoreCase(playerName)) {
+                        logger.warning("When loading user: "+playerName +" with UUID of (" + ((UserQueryFull) userQuery).getUUID().toString()
+                                +") we found a mismatched name, the name in the DB will be replaced (DB name: "+dbPlayerName+")");
+                        rawSplitData[USERNAME_INDEX] = playerName;
+                    }
+                }
+
+                try {
+                    return loadFromLine(rawSplitData);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        switch (userQuery.getType()) {
             case UUID_AND_NAME:
-                return queryByUUIDAndName((UserQueryFull) userQuery);
+                return grabUnloadedProfile(((UserQueryFull) userQuery).getUUID(), ((UserQueryFull) userQuery).getName());
             case UUID:
-                return queryByUUID((UserQueryUUID) userQuery);
+                UUID uuid = ((UserQueryUUID) userQuery).getUUID();
+                return grabUnloadedProfile(uuid, "Player-Not-Found="+uuid.toString());
             case NAME:
-                return queryByName((UserQueryNameImpl) userQuery);
+                return new PlayerProfile(((UserQueryName) userQuery).getName(), new UUID(0, 0), startingLevel);
             default:
                 throw new RuntimeException("No case for this UserQueryType!");
         }
     }
 
-    private @NotNull PlayerProfile queryByName(@NotNull UserQueryName userQuery) {
-        String playerName = userQuery.getName();
+    private @NotNull PlayerProfile grabUnloadedProfile(@NotNull UUID uuid, @Nullable String playerName) {
+        if(playerName == null) {
+            playerName = ""; //No name for you boy!
+        }
+
+        return new PlayerProfile(playerName, uuid, 0);
+    }
+
+    public void convertUsers(DatabaseManager destination) {
         BufferedReader in = null;
+        int convertedUsers = 0;
+        long startMillis = System.currentTimeMillis();
 
         synchronized (fileWritingLock) {
+            compactLog();
+
             try {
                 // Open the user file
                 in = new BufferedReader(new FileReader(usersFilePath));
                 String line;
 
-
                 while ((line = in.readLine()) != null) {
                     if(line.startsWith("#")) {
                         continue;
                     }
 
+                    String[] character = line.split(":");
 
-                    // Find if the line contains the player we want.
-                    String[] rawSplitData = line.split(":");
-
-
-                    /* Don't read corrupt data */
-                    if(rawSplitData.length < (USERNAME_INDEX + 1)) {
-                        continue;
-                    }
-
-
-                    //If we couldn't find anyone
-                    if(playerName.equalsIgnoreCase(rawSplitData[USERNAME_INDEX])) {
-                        return loadFromLine(rawSplitData);
+                    try {
+                        destination.saveUser(loadFromLine(character));
+                    } catch (Exception e) {
+                        e.printStackTrace();
                     }
+                    convertedUsers++;
+                    Misc.printProgress(convertedUsers, progressInterval, startMillis);
                 }
-            } catch (Exception e) {
+            }
+            catch (Exception e) {
                 e.printStackTrace();
-            } finally {
-                // I have no idea why it's necessary to inline tryClose() here, but it removes
-                // a resource leak warning, and I'm trusting the compiler on this one.
+            }
+            finally {
                 if (in != null) {
                     try {
                         in.close();
-                    } catch (IOException e) {
+                    }
+                    catch (IOException e) {
                         // Ignore
                     }
                 }
             }
         }
-
-
-        //Return a new blank profile
-        return new PlayerProfile(playerName, new UUID(0, 0), startingLevel);
     }
 
-    private @NotNull PlayerProfile queryByUUID(@NotNull UserQueryUUID userQuery) {
-        BufferedReader in = null;
-        UUID uuid = userQuery.getUUID();
+    public boolean saveUserUUID(String userName, UUID uuid) {
+        boolean[] worked = {false};
+        int writtenLines = 0;
 
         synchronized (fileWritingLock) {
+            compactLog();
+
             try {
-                // Open the user file
-                in = new BufferedReader(new FileReader(usersFilePath));
-                String line;
+                writtenLines = rewriteUsersFile(line -> {
+                    String[] character = line.split(":");
+                    if (!worked[0] && character[USERNAME_INDEX].equalsIgnoreCase(userName)) {
+                        if (character.length < 42) {
+                            logger.severe("Could not update UUID for " + userName + "!");
+                            logger.severe("Database entry is invalid.");
+                            return null;
+                        }
 
-                while ((line = in.readLine()) != null) {
-                    if(line.startsWith("#")) {
-                        continue;
+                        worked[0] = true;
+                        return line.replace(character[UUID_INDEX], uuid.toString());
                     }
-                    // Find if the line contains the player we want.
-                    String[] rawSplitData = line.split(":");
 
-                    /* Don't read corrupt data */
-                    if(rawSplitData.length < (UUID_INDEX + 1)) {
-                        continue;
-                    }
+                    return line;
+                });
 
-                    try {
-                        UUID fromDataUUID = UUID.fromString(rawSplitData[UUID_INDEX]);
-                        if(fromDataUUID.equals(uuid)) {
-                            return loadFromLine(rawSplitData);
-                        }
-                    } catch (Exception e) {
-                        if(testing) {
-                            e.printStackTrace();
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            } finally {
-                // I have no idea why it's necessary to inline tryClose() here, but it removes
-                // a resource leak warning, and I'm trusting the compiler on this one.
-                if (in != null) {
-                    try {
-                        in.close();
-                    } catch (IOException e) {
-                        // Ignore
-                    }
-                }
-            }
-        }
-
-        /*
-         * No match was found in the file
-         */
-
-        return grabUnloadedProfile(uuid, "Player-Not-Found="+uuid.toString());
-    }
-
-    private @NotNull PlayerProfile queryByUUIDAndName(@NotNull UserQueryFull userQuery) {
-        BufferedReader in = null;
-        String playerName = userQuery.getName();
-        UUID uuid = userQuery.getUUID();
-
-        synchronized (fileWritingLock) {
-            try {
-                // Open the user file
-                in = new BufferedReader(new FileReader(usersFilePath));
-                String line;
-
-                while ((line = in.readLine()) != null) {
-                    if(line.startsWith("#")) {
-                        continue;
-                    }
-                    // Find if the line contains the player we want.
-                    String[] rawSplitData = line.split(":");
-
-                    /* Don't read corrupt data */
-                    if(rawSplitData.length < (UUID_INDEX + 1)) {
-                        continue;
-                    }
-
-                    try {
-                        UUID fromDataUUID = UUID.fromString(rawSplitData[UUID_INDEX]);
-                        if(fromDataUUID.equals(uuid)) {
-                            //Matched UUID, now check if name matches
-                            String dbPlayerName = rawSplitData[USERNAME_INDEX];
-
-                            boolean matchingName = dbPlayerName.equalsIgnoreCase(playerName);
-
-                            if (!matchingName) {
-                                logger.warning("When loading user: "+playerName +" with UUID of (" + uuid.toString()
-                                        +") we found a mismatched name, the name in the DB will be replaced (DB name: "+dbPlayerName+")");
-                                //logger.info("Name updated for player: " + rawSplitData[USERNAME_INDEX] + " => " + playerName);
-                                rawSplitData[USERNAME_INDEX] = playerName;
-                            }
-
-                            //TODO: Logic to replace name here
-                            return loadFromLine(rawSplitData);
-                        }
-                    } catch (Exception e) {
-                        if(testing) {
-                            e.printStackTrace();
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            } finally {
-                // I have no idea why it's necessary to inline tryClose() here, but it removes
-                // a resource leak warning, and I'm trusting the compiler on this one.
-                if (in != null) {
-                    try {
-                        in.close();
-                    } catch (IOException e) {
-                        // Ignore
-                    }
-                }
-            }
-        }
-
-        /*
-         * No match was found in the file
-         */
-
-        return grabUnloadedProfile(uuid, playerName); //Create an empty new profile and return
-    }
-
-    private @NotNull PlayerProfile grabUnloadedProfile(@NotNull UUID uuid, @Nullable String playerName) {
-        if(playerName == null) {
-            playerName = ""; //No name for you boy!
-        }
-
-        return new PlayerProfile(playerName, uuid, 0);
-    }
-
-    public void convertUsers(DatabaseManager destination) {
-        BufferedReader in = null;
-        int convertedUsers = 0;
-        long startMillis = System.currentTimeMillis();
-
-        synchronized (fileWritingLock) {
-            try {
-                // Open the user file
-                in = new BufferedReader(new FileReader(usersFilePath));
-                String line;
-
-                while ((line = in.readLine()) != null) {
-                    if(line.startsWith("#")) {
-                        continue;
-                    }
-
-                    String[] character = line.split(":");
-
-                    try {
-                        destination.saveUser(loadFromLine(character));
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                    convertedUsers++;
-                    Misc.printProgress(convertedUsers, progressInterval, startMillis);
-                }
-            }
-            catch (Exception e) {
-                e.printStackTrace();
-            }
-            finally {
-                if (in != null) {
-                    try {
-                        in.close();
-                    }
-                    catch (IOException e) {
-                        // Ignore
-                    }
-                }
-            }
-        }
-    }
-
-    public boolean saveUserUUID(String userName, UUID uuid) {
-        boolean worked = false;
-
-        int i = 0;
-        BufferedReader in = null;
-        FileWriter out = null;
-
-        synchronized (fileWritingLock) {
-            try {
-                in = new BufferedReader(new FileReader(usersFilePath));
-                StringBuilder writer = new StringBuilder();
-                String line;
-
-                while ((line = in.readLine()) != null) {
-                    String[] character = line.split(":");
-                    if (!worked && character[USERNAME_INDEX].equalsIgnoreCase(userName)) {
-                        if (character.length < 42) {
-                            logger.severe("Could not update UUID for " + userName + "!");
-                            logger.severe("Database entry is invalid.");
-                            continue;
-                        }
-
-                        line = line.replace(character[UUID_INDEX], uuid.toString());
-                        worked = true;
-                    }
-
-                    i++;
-                    writer.append(line).append("\r\n");
-                }
-
-                out = new FileWriter(usersFilePath); // Write out the new file
-                out.write(writer.toString());
+                invalidateLeaderboards();
             }
             catch (Exception e) {
                 logger.severe("Exception while reading " + usersFilePath + " (Are you sure you formatted it correctly?)" + e);
             }
             finally {
-                LogUtils.debug(logger, i + " entries written while saving UUID for " + userName);
-                if (in != null) {
-                    try {
-                        in.close();
-                    }
-                    catch (IOException e) {
-                        // Ignore
-                    }
-                }
-                if (out != null) {
-                    try {
-                        out.close();
-                    }
-                    catch (IOException e) {
-                        // Ignore
-                    }
-                }
+                LogUtils.debug(logger, writtenLines + " entries written while saving UUID for " + userName);
             }
         }
 
-        return worked;
+        return worked[0];
     }
 
     public boolean saveUserUUIDs(Map<String, UUID> fetchedUUIDs) {
-        BufferedReader in = null;
-        FileWriter out = null;
-        int i = 0;
+        int writtenLines = 0;
 
         synchronized (fileWritingLock) {
-            try {
-                in = new BufferedReader(new FileReader(usersFilePath));
-                StringBuilder writer = new StringBuilder();
-                String line;
+            compactLog();
 
-                while (((line = in.readLine()) != null)) {
+            try {
+                writtenLines = rewriteUsersFile(line -> {
                     String[] character = line.split(":");
                     if (!fetchedUUIDs.isEmpty() && fetchedUUIDs.containsKey(character[USERNAME_INDEX])) {
                         if (character.length < 42) {
                             logger.severe("Could not update UUID for " + character[USERNAME_INDEX] + "!");
                             logger.severe("Database entry is invalid.");
-                            continue;
+                            return null;
                         }
 
                         character[UUID_INDEX] = fetchedUUIDs.remove(character[USERNAME_INDEX]).toString();
-                        line = org.apache.commons.lang.StringUtils.join(character, ":") + ":";
+                        return org.apache.commons.lang.StringUtils.join(character, ":") + ":";
                     }
 
-                    i++;
-                    writer.append(line).append("\r\n");
-                }
+                    return line;
+                });
 
-                out = new FileWriter(usersFilePath); // Write out the new file
-                out.write(writer.toString());
+                invalidateLeaderboards();
             }
             catch (Exception e) {
                 logger.severe("Exception while reading " + usersFilePath + " (Are you sure you formatted it correctly?)" + e);
             }
             finally {
-                LogUtils.debug(logger, i + " entries written while saving UUID batch");
-                if (in != null) {
-                    try {
-                        in.close();
-                    }
-                    catch (IOException e) {
-                        // Ignore
-                    }
-                }
-                if (out != null) {
-                    try {
-                        out.close();
-                    }
-                    catch (IOException e) {
-                        // Ignore
-                    }
-                }
+                LogUtils.debug(logger, writtenLines + " entries written while saving UUID batch");
             }
         }
 
@@ -927,6 +727,8 @@ public final class FlatFileDatabaseManager implements DatabaseManager {
         BufferedReader in = null;
 
         synchronized (fileWritingLock) {
+            compactLog();
+
             try {
                 // Open the user file
                 in = new BufferedReader(new FileReader(usersFilePath));
@@ -955,118 +757,92 @@ public final class FlatFileDatabaseManager implements DatabaseManager {
     }
 
     /**
-     * Update the leader boards.
+     * Load the leader boards from the users file.
+     * After they are loaded the leader boards are kept up to date as users are saved, added and removed,
+     * so the file is only read again after something like a UUID update rewrote it.
      */
     public @NotNull LeaderboardStatus updateLeaderboards() {
-        // Only update FFS leaderboards every 10 minutes.. this puts a lot of strain on the server (depending on the size of the database) and should not be done frequently
-        if (System.currentTimeMillis() < lastUpdate + UPDATE_WAIT_TIME) {
-            return LeaderboardStatus.TOO_SOON_TO_UPDATE;
-        }
-
-        lastUpdate = System.currentTimeMillis(); // Log when the last update was run
-        powerLevels.clear(); // Clear old values from the power levels
-
-        // Initialize lists
-        List<PlayerStat> mining = new ArrayList<>();
-        List<PlayerStat> woodcutting = new ArrayList<>();
-        List<PlayerStat> herbalism = new ArrayList<>();
-        List<PlayerStat> excavation = new ArrayList<>();
-        List<PlayerStat> acrobatics = new ArrayList<>();
-        List<PlayerStat> repair = new ArrayList<>();
-        List<PlayerStat> swords = new ArrayList<>();
-        List<PlayerStat> axes = new ArrayList<>();
-        List<PlayerStat> archery = new ArrayList<>();
-        List<PlayerStat> unarmed = new ArrayList<>();
-        List<PlayerStat> taming = new ArrayList<>();
-        List<PlayerStat> fishing = new ArrayList<>();
-        List<PlayerStat> alchemy = new ArrayList<>();
+        if (leaderboardLoaded) {
+            return LeaderboardStatus.UP_TO_DATE;
+        }
 
-        BufferedReader in = null;
         String playerName = null;
-        // Read from the FlatFile database and fill our arrays with information
+        // Read from the FlatFile database and fill the leader boards with information
         synchronized (fileWritingLock) {
-            try {
-                in = new BufferedReader(new FileReader(usersFilePath));
+            if (leaderboardLoaded) {
+                return LeaderboardStatus.UP_TO_DATE;
+            }
+
+            compactLog();
+            leaderboard.clear();
+
+            try (BufferedReader in = new BufferedReader(new FileReader(usersFilePath))) {
                 String line;
 
                 while ((line = in.readLine()) != null) {
+                    FlatFileRecordPointer pointer = toRecordPointer(FlatFileSegment.USERS, line, 0, 0);
 
-                    if(line.startsWith("#"))
+                    if (pointer == null)
                         continue;
 
-                    String[] data = line.split(":");
-                    playerName = data[USERNAME_INDEX];
-                    int powerLevel = 0;
-
-                    Map<PrimarySkillType, Integer> skills = getSkillMapFromLine(data);
-
-                    powerLevel += putStat(acrobatics, playerName, skills.get(PrimarySkillType.ACROBATICS));
-                    powerLevel += putStat(alchemy, playerName, skills.get(PrimarySkillType.ALCHEMY));
-                    powerLevel += putStat(archery, playerName, skills.get(PrimarySkillType.ARCHERY));
-                    powerLevel += putStat(axes, playerName, skills.get(PrimarySkillType.AXES));
-                    powerLevel += putStat(excavation, playerName, skills.get(PrimarySkillType.EXCAVATION));
-                    powerLevel += putStat(fishing, playerName, skills.get(PrimarySkillType.FISHING));
-                    powerLevel += putStat(herbalism, playerName, skills.get(PrimarySkillType.HERBALISM));
-                    powerLevel += putStat(mining, playerName, skills.get(PrimarySkillType.MINING));
-                    powerLevel += putStat(repair, playerName, skills.get(PrimarySkillType.REPAIR));
-                    powerLevel += putStat(swords, playerName, skills.get(PrimarySkillType.SWORDS));
-                    powerLevel += putStat(taming, playerName, skills.get(PrimarySkillType.TAMING));
-                    powerLevel += putStat(unarmed, playerName, skills.get(PrimarySkillType.UNARMED));
-                    powerLevel += putStat(woodcutting, playerName, skills.get(PrimarySkillType.WOODCUTTING));
-
-                    putStat(powerLevels, playerName, powerLevel);
+                    playerName = pointer.getPlayerName();
+                    String key = getRecordKey(pointer);
+
+                    //The first entry for a player is the one lookups find
+                    if (!leaderboard.contains(key)) {
+                        leaderboard.update(key, playerName, getSkillMapFromLine(line.split(":")));
+                    }
                 }
             }
             catch (Exception e) {
                 logger.severe("Exception while reading " + usersFilePath + " during user " + playerName + " (Are you sure you formatted it correctly?) " + e);
+                leaderboard.clear();
                 return LeaderboardStatus.FAILED;
-            } finally {
-                if (in != null) {
-                    try {
-                        in.close();
-                    }
-                    catch (IOException e) {
-                        // Ignore
-                    }
-                }
             }
 
+            leaderboardLoaded = true;
         }
 
-        SkillComparator c = new SkillComparator();
-
-        mining.sort(c);
-        woodcutting.sort(c);
-        repair.sort(c);
-        unarmed.sort(c);
-        herbalism.sort(c);
-        excavation.sort(c);
-        archery.sort(c);
-        swords.sort(c);
-        axes.sort(c);
-        acrobatics.sort(c);
-        taming.sort(c);
-        fishing.sort(c);
-        alchemy.sort(c);
-        powerLevels.sort(c);
-
-        playerStatHash.put(PrimarySkillType.MINING, mining);
-        playerStatHash.put(PrimarySkillType.WOODCUTTING, woodcutting);
-        playerStatHash.put(PrimarySkillType.REPAIR, repair);
-        playerStatHash.put(PrimarySkillType.UNARMED, unarmed);
-        playerStatHash.put(PrimarySkillType.HERBALISM, herbalism);
-        playerStatHash.put(PrimarySkillType.EXCAVATION, excavation);
-        playerStatHash.put(PrimarySkillType.ARCHERY, archery);
-        playerStatHash.put(PrimarySkillType.SWORDS, swords);
-        playerStatHash.put(PrimarySkillType.AXES, axes);
-        playerStatHash.put(PrimarySkillType.ACROBATICS, acrobatics);
-        playerStatHash.put(PrimarySkillType.TAMING, taming);
-        playerStatHash.put(PrimarySkillType.FISHING, fishing);
-        playerStatHash.put(PrimarySkillType.ALCHEMY, alchemy);
-
         return LeaderboardStatus.UPDATED;
     }
 
+    /**
+     * Apply saved profiles to the leader boards, callers must hold the file writing lock
+     */
+    private void updateLeaderboardEntries(@NotNull Collection<PlayerProfile> profiles) {
+        if (!leaderboardLoaded) {
+            return;
+        }
+
+        for (PlayerProfile profile : profiles) {
+            Map<PrimarySkillType, Integer> skillLevels = new EnumMap<>(PrimarySkillType.class);
+
+            for (PrimarySkillType primarySkillType : SkillTools.NON_CHILD_SKILLS) {
+                skillLevels.put(primarySkillType, profile.getSkillLevel(primarySkillType));
+            }
+
+            leaderboard.update(getRecordKey(profile.getUniqueId(), profile.getPlayerName()), profile.getPlayerName(), skillLevels);
+        }
+    }
+
+    /**
+     * Take the player stored on a line of the users file off the leader boards
+     */
+    private void removeLeaderboardEntry(@NotNull String line) {
+        FlatFileRecordPointer pointer = toRecordPointer(FlatFileSegment.USERS, line, 0, 0);
+
+        if (pointer != null) {
+            leaderboard.remove(getRecordKey(pointer));
+        }
+    }
+
+    /**
+     * Read the leader boards from the users file again the next time they are needed
+     */
+    private void invalidateLeaderboards() {
+        leaderboardLoaded = false;
+    }
+
     private void initEmptyDB() {
         BufferedWriter bufferedWriter = null;
         synchronized (fileWritingLock) {
@@ -1098,9 +874,9 @@ public final class FlatFileDatabaseManager implements DatabaseManager {
 
         if (usersFile.exists()) {
             BufferedReader bufferedReader = null;
-            FileWriter fileWriter = null;
 
             synchronized (fileWritingLock) {
+                compactLog();
 
                 dataProcessor = new FlatFileDataProcessor(logger);
 
@@ -1129,17 +905,19 @@ public final class FlatFileDatabaseManager implements DatabaseManager {
                     if(dataProcessor.getFlatFileDataFlags().size() > 0) {
                         flagsFound = new ArrayList<>(dataProcessor.getFlatFileDataFlags());
                         logger.info("Updating FlatFile Database...");
-                        fileWriter = new FileWriter(usersFilePath);
+                        StringBuilder stringBuilder = new StringBuilder();
                         //Write data to file
                         if(dbCommentDate != null)
-                            fileWriter.write(dbCommentDate + "\r\n");
+                            stringBuilder.append(dbCommentDate).append("\r\n");
 
-                        fileWriter.write(dataProcessor.processDataForSave().toString());
+                        stringBuilder.append(dataProcessor.processDataForSave());
+                        writeUsersFile(stringBuilder);
+                        invalidateLeaderboards();
                     }
                 } catch (IOException e) {
                     e.printStackTrace();
                 } finally {
-                    closeResources(bufferedReader, fileWriter);
+                    closeResources(bufferedReader);
                 }
             }
         }
@@ -1151,7 +929,7 @@ public final class FlatFileDatabaseManager implements DatabaseManager {
         }
     }
 
-    private void closeResources(BufferedReader bufferedReader, FileWriter fileWriter) {
+    private void closeResources(BufferedReader bufferedReader) {
         if(bufferedReader != null) {
             try {
                 bufferedReader.close();
@@ -1160,45 +938,6 @@ public final class FlatFileDatabaseManager implements DatabaseManager {
                 e.printStackTrace();
             }
         }
-
-        if (fileWriter != null) {
-            try {
-                fileWriter.close();
-            }
-            catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-    }
-
-    private Integer getPlayerRank(String playerName, List<PlayerStat> statsList) {
-        if (statsList == null) {
-            return null;
-        }
-
-        int currentPos = 1;
-
-        for (PlayerStat stat : statsList) {
-            if (stat.name.equalsIgnoreCase(playerName)) {
-                return currentPos;
-            }
-
-            currentPos++;
-        }
-
-        return null;
-    }
-
-    private int putStat(List<PlayerStat> statList, String playerName, int statValue) {
-        statList.add(new PlayerStat(playerName, statValue));
-        return statValue;
-    }
-
-    private static class SkillComparator implements Comparator<PlayerStat> {
-        @Override
-        public int compare(PlayerStat o1, PlayerStat o2) {
-            return (o2.statVal - o1.statVal);
-        }
     }
 
     private PlayerProfile loadFromLine(@NotNull String[] character) {
@@ -1321,6 +1060,531 @@ public final class FlatFileDatabaseManager implements DatabaseManager {
         return skills;
     }
 
+    private @Nullable FlatFileRecordPointer findIndexedRecord(@NotNull UserQuery userQuery) {
+        return userQuery.getType() == UserQueryType.NAME
+                ? userIndex.get(((UserQueryName) userQuery).getName())
+                : userIndex.get(((UserQueryUUID) userQuery).getUUID());
+    }
+
+    /**
+     * Read the record a pointer refers to
+     *
+     * @param pointer the location of the record
+     * @return the split record data, or null if the record no longer matches the index
+     */
+    private @Nullable String[] readIndexedRecord(@NotNull FlatFileRecordPointer pointer) {
+        File segmentFile = pointer.getSegment() == FlatFileSegment.LOG ? logFile : usersFile;
+
+        try {
+            String[] rawSplitData = FlatFileRecordReader.readRecord(segmentFile, pointer, CHARSET).split(":");
+
+            if (rawSplitData.length > USERNAME_INDEX && rawSplitData[USERNAME_INDEX].equalsIgnoreCase(pointer.getPlayerName())) {
+                return rawSplitData;
+            }
+        } catch (IOException e) {
+            if (testing) {
+                e.printStackTrace();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Make sure the index reflects the files on disk, rebuilding it if needed
+     * Callers must hold the file writing lock
+     */
+    private void ensureUserIndex() {
+        if (userIndexLoaded
+                && indexedUsersFileLength == usersFile.length()
+                && indexedUsersFileModified == usersFile.lastModified()) {
+            return;
+        }
+
+        userIndex.clear();
+        userIndexLoaded = false;
+
+        try {
+            //The side-car index saves us a scan of the users file if nothing changed since it was written
+            if (!loadUserIndexFile()) {
+                userIndex.clear();
+
+                if (usersFile.exists()) {
+                    try (FlatFileRecordReader reader = new FlatFileRecordReader(usersFile, CHARSET)) {
+                        String line;
+
+                        while ((line = reader.readLine()) != null) {
+                            indexUsersRecord(line, reader.getLineOffset(), reader.getLineLength());
+                        }
+                    }
+
+                    saveUserIndexFile();
+                }
+            }
+
+            logRecordCount = 0;
+
+            if (logFile.exists()) {
+                long validLogLength = 0;
+
+                try (FlatFileRecordReader reader = new FlatFileRecordReader(logFile, CHARSET)) {
+                    String line;
+
+                    while ((line = reader.readLine()) != null && reader.isLineTerminated()) {
+                        validLogLength = reader.getLineOffset() + reader.getLineLength() + LINE_SEPARATOR.length();
+                        FlatFileRecordPointer pointer = toRecordPointer(FlatFileSegment.LOG, line, reader.getLineOffset(), reader.getLineLength());
+
+                        //Newer entries in the log replace older ones
+                        if (pointer != null) {
+                            userIndex.put(pointer);
+                            logRecordCount++;
+                        }
+                    }
+                }
+
+                //Drop a partially written record so the next append starts on a fresh line
+                if (validLogLength < logFile.length()) {
+                    logger.warning("Discarding an incomplete record at the end of " + logFile.getPath());
+
+                    try (RandomAccessFile randomAccessFile = new RandomAccessFile(logFile, "rw")) {
+                        randomAccessFile.setLength(validLogLength);
+                    }
+                }
+            }
+
+            markUserIndexCurrent();
+        } catch (IOException e) {
+            logger.severe("Exception while indexing " + usersFilePath + " " + e);
+            userIndex.clear();
+        }
+    }
+
+    /**
+     * Remember the state of the users file the index was built for
+     */
+    private void markUserIndexCurrent() {
+        indexedUsersFileLength = usersFile.length();
+        indexedUsersFileModified = usersFile.lastModified();
+        userIndexLoaded = true;
+    }
+
+    /**
+     * Add a record from the users file to the index
+     * The first entry for a player is the one a scan of the file would find
+     */
+    private void indexUsersRecord(@NotNull String line, long offset, int length) {
+        FlatFileRecordPointer pointer = toRecordPointer(FlatFileSegment.USERS, line, offset, length);
+
+        if (pointer != null) {
+            userIndex.putIfAbsent(pointer);
+        }
+    }
+
+    /**
+     * Load the side-car index file, it is only used if it was written for the current users file
+     *
+     * @return true if the index was loaded
+     */
+    private boolean loadUserIndexFile() {
+        if (!indexFile.exists() || !usersFile.exists()) {
+            return false;
+        }
+
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            return userIndex.read(inputStream, usersFile.length(), usersFile.lastModified(), CHARSET);
+        } catch (IOException e) {
+            LogUtils.debug(logger, "Could not read " + indexFile.getPath() + ", rebuilding it " + e);
+            return false;
+        }
+    }
+
+    /**
+     * Write the index of the users file to the side-car index file so the next startup can skip the scan
+     * Only call this while the index holds no records from the log
+     */
+    private void saveUserIndexFile() {
+        File tempFile = new File(indexFile.getPath() + TEMP_FILE_SUFFIX);
+
+        try {
+            try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                userIndex.write(outputStream, usersFile.length(), usersFile.lastModified(), CHARSET);
+            }
+
+            Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.warning("Could not write " + indexFile.getPath() + " " + e);
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Replace the contents of the users file and index the records as they are written
+     * The log must have been merged into the users file before calling this
+     *
+     * @param content the new contents of the users file, one record per line
+     * @throws IOException if the file could not be written
+     */
+    private void writeUsersFile(@NotNull CharSequence content) throws IOException {
+        String[] lines = content.length() > 0 ? content.toString().split(LINE_SEPARATOR) : new String[0];
+        writeUsersFile(null, () -> Arrays.asList(lines));
+    }
+
+    private int rewriteUsersFile(@NotNull UsersFileLineRewriter rewriter) throws IOException {
+        return writeUsersFile(rewriter, Collections::emptyList);
+    }
+
+    /**
+     * Stream the users file through a rewriter into a temporary file which then replaces the users file
+     * Only one record is held in memory at a time and the users file is never left half written
+     * The log must have been merged into the users file before calling this
+     *
+     * @param rewriter decides what happens to each existing line, null discards the existing lines
+     * @param appendedLines lines to add after the existing lines, called once every existing line was rewritten
+     * @return the number of lines written
+     * @throws IOException if the users file could not be read or replaced
+     */
+    private int writeUsersFile(@Nullable UsersFileLineRewriter rewriter, @NotNull UsersFileLineSupplier appendedLines) throws IOException {
+        File tempFile = new File(usersFilePath + TEMP_FILE_SUFFIX);
+        int writtenLines = 0;
+
+        userIndex.clear();
+        userIndexLoaded = false;
+
+        try {
+            try (FlatFileRecordWriter writer = new FlatFileRecordWriter(new FileOutputStream(tempFile), CHARSET)) {
+                if (rewriter != null && usersFile.exists()) {
+                    try (FlatFileRecordReader reader = new FlatFileRecordReader(usersFile, CHARSET)) {
+                        String line;
+
+                        while ((line = reader.readLine()) != null) {
+                            String newLine = rewriter.rewrite(line);
+
+                            if (newLine != null) {
+                                long offset = writer.getPosition();
+                                indexUsersRecord(newLine, offset, writer.writeLine(newLine));
+                                writtenLines++;
+                            }
+                        }
+                    }
+                }
+
+                for (String newLine : appendedLines.get()) {
+                    long offset = writer.getPosition();
+                    indexUsersRecord(newLine, offset, writer.writeLine(newLine));
+                    writtenLines++;
+                }
+
+                writer.sync();
+            }
+
+            replaceUsersFile(tempFile);
+        } catch (IOException e) {
+            userIndex.clear();
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            throw e;
+        }
+
+        markUserIndexCurrent();
+        return writtenLines;
+    }
+
+    /**
+     * Add a new user to the end of the users file without rewriting it
+     * Callers must hold the file writing lock
+     *
+     * @param profile target profile
+     */
+    private void appendUserToUsersFile(@NotNull PlayerProfile profile) {
+        ensureUserIndex();
+
+        String line;
+        long offset;
+        int length;
+
+        try (FileOutputStream outputStream = new FileOutputStream(usersFile, true);
+             FlatFileRecordWriter writer = new FlatFileRecordWriter(outputStream, CHARSET, outputStream.getChannel().size())) {
+            //Finish off the last line if whoever wrote the file left it unterminated
+            if (writer.getPosition() > 0 && !isUsersFileTerminated()) {
+                writer.writeLine("");
+            }
+
+            line = toRecordLine(profile);
+            offset = writer.getPosition();
+            length = writer.writeLine(line);
+        } catch (IOException e) {
+            e.printStackTrace();
+            invalidateUserIndex();
+            return;
+        }
+
+        if (userIndexLoaded) {
+            indexUsersRecord(line, offset, length);
+            markUserIndexCurrent();
+        }
+
+        updateLeaderboardEntries(Collections.singletonList(profile));
+    }
+
+    private boolean isUsersFileTerminated() throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(usersFile, "r")) {
+            if (randomAccessFile.length() == 0) {
+                return true;
+            }
+
+            randomAccessFile.seek(randomAccessFile.length() - 1);
+            return randomAccessFile.read() == '\n';
+        }
+    }
+
+    private @NotNull String toRecordLine(@NotNull PlayerProfile profile) throws IOException {
+        StringBuilder stringBuilder = new StringBuilder();
+        writeUserToLine(profile, stringBuilder);
+        return stringBuilder.substring(0, stringBuilder.length() - LINE_SEPARATOR.length());
+    }
+
+    /**
+     * Forget the index, it will be rebuilt from the users file the next time it is needed
+     */
+    private void invalidateUserIndex() {
+        userIndexLoaded = false;
+        userIndex.clear();
+
+        try {
+            Files.deleteIfExists(indexFile.toPath());
+        } catch (IOException e) {
+            logger.warning("Could not delete " + indexFile.getPath() + " " + e);
+        }
+    }
+
+    private @Nullable FlatFileRecordPointer toRecordPointer(@NotNull FlatFileSegment segment, @NotNull String line, long offset, int length) {
+        if (line.isEmpty() || line.startsWith("#")) {
+            return null;
+        }
+
+        String[] splitData = line.split(":");
+
+        /* Don't index corrupt data */
+        if (splitData.length < (USERNAME_INDEX + 1)) {
+            return null;
+        }
+
+        UUID uuid = null;
+
+        if (splitData.length > UUID_INDEX) {
+            try {
+                uuid = UUID.fromString(splitData[UUID_INDEX]);
+            } catch (IllegalArgumentException e) {
+                //Bad UUID data is handled by the health checks
+            }
+        }
+
+        return new FlatFileRecordPointer(segment, offset, length, splitData[USERNAME_INDEX], uuid);
+    }
+
+    /**
+     * Records are matched by UUID, or by name for legacy records which do not have one
+     */
+    private @NotNull String getRecordKey(@NotNull FlatFileRecordPointer pointer) {
+        return getRecordKey(pointer.getUUID(), pointer.getPlayerName());
+    }
+
+    private @NotNull String getRecordKey(@Nullable UUID uuid, @NotNull String playerName) {
+        return uuid != null ? uuid.toString() : "name:" + playerName.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Save users by appending their records to the log instead of rewriting the users file
+     *
+     * @param profiles target profiles
+     * @return true if the records were written
+     */
+    private boolean appendUsersToLog(@NotNull Collection<PlayerProfile> profiles) {
+        boolean needsCompaction;
+
+        synchronized (fileWritingLock) {
+            if (!writeUsersToLog(profiles)) {
+                return false;
+            }
+
+            updateLeaderboardEntries(profiles);
+            needsCompaction = logRecordCount >= compactionThreshold;
+        }
+
+        if (needsCompaction) {
+            scheduleCompaction();
+        }
+
+        return true;
+    }
+
+    /**
+     * Append profiles to the log and sync it once for the whole batch
+     * Callers must hold the file writing lock
+     *
+     * @param profiles the profiles to write
+     * @return true if every record reached the storage device
+     */
+    private boolean writeUsersToLog(@NotNull Collection<PlayerProfile> profiles) {
+        ensureUserIndex();
+
+        try (FileOutputStream outputStream = new FileOutputStream(logFile, true);
+             FlatFileRecordWriter writer = new FlatFileRecordWriter(outputStream, CHARSET, outputStream.getChannel().size())) {
+            for (PlayerProfile profile : profiles) {
+                long offset = writer.getPosition();
+                int length = writer.writeLine(toRecordLine(profile));
+
+                userIndex.put(new FlatFileRecordPointer(FlatFileSegment.LOG, offset, length, profile.getPlayerName(), profile.getUniqueId()));
+                logRecordCount++;
+            }
+
+            writer.sync();
+        } catch (IOException e) {
+            e.printStackTrace();
+            //Some of the records may not have made it to the log
+            invalidateUserIndex();
+            return false;
+        }
+
+        return true;
+    }
+
+    private void scheduleCompaction() {
+        if (!compactionQueued.compareAndSet(false, true)) {
+            return;
+        }
+
+        if (testing) {
+            compactLog();
+        } else {
+            mcMMO.p.getFoliaLib().getImpl().runAsync(new FlatFileCompactionTask(this));
+        }
+    }
+
+    /**
+     * Merge the append-only log back into the users file
+     * The result is written to a temporary file which then replaces the users file, so the users file is never left half written
+     */
+    public void compactLog() {
+        synchronized (fileWritingLock) {
+            compactionQueued.set(false);
+
+            if (!logFile.exists()) {
+                return;
+            }
+
+            //Collect the newest record for each player
+            Map<String, String> newestRecords = new LinkedHashMap<>();
+
+            try (FlatFileRecordReader reader = new FlatFileRecordReader(logFile, CHARSET)) {
+                String line;
+
+                while ((line = reader.readLine()) != null && reader.isLineTerminated()) {
+                    FlatFileRecordPointer pointer = toRecordPointer(FlatFileSegment.LOG, line, reader.getLineOffset(), reader.getLineLength());
+
+                    if (pointer != null) {
+                        newestRecords.put(getRecordKey(pointer), line);
+                    }
+                }
+            } catch (IOException e) {
+                logger.severe("Exception while reading " + logFile.getPath() + " " + e);
+                return;
+            }
+
+            if (newestRecords.isEmpty()) {
+                deleteLogFile();
+                return;
+            }
+
+            int mergedRecords = newestRecords.size();
+            File tempFile = new File(usersFilePath + TEMP_FILE_SUFFIX);
+            invalidateUserIndex();
+
+            try {
+                try (FlatFileRecordReader reader = new FlatFileRecordReader(usersFile, CHARSET);
+                     FlatFileRecordWriter writer = new FlatFileRecordWriter(new FileOutputStream(tempFile), CHARSET)) {
+                    String line;
+
+                    while ((line = reader.readLine()) != null) {
+                        FlatFileRecordPointer pointer = toRecordPointer(FlatFileSegment.USERS, line, 0, 0);
+
+                        if (pointer != null) {
+                            String newerRecord = newestRecords.remove(getRecordKey(pointer));
+
+                            if (newerRecord != null) {
+                                line = newerRecord;
+                            }
+                        }
+
+                        long offset = writer.getPosition();
+                        indexUsersRecord(line, offset, writer.writeLine(line));
+                    }
+
+                    //Anyone left over is a new user
+                    for (String newUserRecord : newestRecords.values()) {
+                        long offset = writer.getPosition();
+                        indexUsersRecord(newUserRecord, offset, writer.writeLine(newUserRecord));
+                    }
+
+                    writer.sync();
+                }
+
+                replaceUsersFile(tempFile);
+                deleteLogFile();
+                markUserIndexCurrent();
+                saveUserIndexFile();
+                LogUtils.debug(logger, "Merged " + mergedRecords + " records from " + logFile.getPath() + " into " + usersFilePath);
+            } catch (IOException e) {
+                logger.severe("Exception while compacting " + logFile.getPath() + " into " + usersFilePath + " " + e);
+                invalidateUserIndex();
+                //noinspection ResultOfMethodCallIgnored
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Move a fully written and synced file over the users file
+     * Readers either see the old or the new users file, never a partially written one
+     */
+    private void replaceUsersFile(@NotNull File replacement) throws IOException {
+        try {
+            Files.move(replacement.toPath(), usersFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(replacement.toPath(), usersFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        syncUsersDirectory();
+    }
+
+    /**
+     * Make the rename of the users file durable, not every platform allows syncing a directory
+     */
+    private void syncUsersDirectory() {
+        File directory = usersFile.getAbsoluteFile().getParentFile();
+
+        if (directory == null) {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Ignore, the rename itself is still atomic
+        }
+    }
+
+    private void deleteLogFile() {
+        try {
+            Files.deleteIfExists(logFile.toPath());
+        } catch (IOException e) {
+            logger.severe("Could not delete " + logFile.getPath() + " " + e);
+        }
+
+        logRecordCount = 0;
+    }
+
     public DatabaseType getDatabaseType() {
         return DatabaseType.FLATFILE;
     }
@@ -1329,6 +1593,40 @@ public final class FlatFileDatabaseManager implements DatabaseManager {
         return usersFile;
     }
 
+    public @NotNull File getLogFile() {
+        return logFile;
+    }
+
+    public @NotNull File getIndexFile() {
+        return indexFile;
+    }
+
     @Override
-    public void onDisable() { }
+    public void onDisable() {
+        //Leave a complete users file behind for backups and for servers switching storage modes
+        compactLog();
+
+        synchronized (fileWritingLock) {
+            ensureUserIndex();
+
+            if (userIndexLoaded && !logFile.exists()) {
+                saveUserIndexFile();
+            }
+        }
+    }
+
+    /**
+     * Decides what to write for one line of the users file while it is being rewritten
+     */
+    private interface UsersFileLineRewriter {
+        /**
+         * @param line the current line
+         * @return the line to write, or null to remove the line
+         */
+        @Nullable String rewrite(@NotNull String line) throws IOException;
+    }
+
+    private interface UsersFileLineSupplier {
+        @NotNull Collection<String> get() throws IOException;
+    }
 }
@@ -0,0 +1,323 @@
+package com.gmail.nossr50.database;
+
+import com.gmail.nossr50.datatypes.player.PlayerProfile;
+import com.gmail.nossr50.mcMMO;
+import com.gmail.nossr50.runnables.player.PlayerProfileSaveQueueTask;
+import com.gmail.nossr50.runnables.player.PlayerProfileSaveTask;
+import com.gmail.nossr50.util.LogUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Collects snapshots of changed profiles and writes them to the database in batches
+ * Only the newest snapshot of a player is kept, so a player queued several times between flushes is only written once
+ * Flushes never overlap, which keeps an older snapshot from being written after a newer one
+ */
+public class PlayerProfileSaveQueue {
+    public static final int MAX_SAVE_ATTEMPTS = 10;
+    private static final long RETRY_DELAY_TICKS = 20;
+
+    private final @NotNull Logger logger;
+    private final @NotNull Map<String, PendingSave> pendingSaves = new LinkedHashMap<>();
+    // Players in the batch being written by the current flush, guarded by pendingSaves
+    private final @NotNull Set<String> inFlightKeys = new HashSet<>();
+    private final @NotNull Object flushLock = new Object();
+    private final @NotNull AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    /* Metrics */
+    private final @NotNull AtomicLong flushCount = new AtomicLong();
+    private final @NotNull AtomicLong savedProfileCount = new AtomicLong();
+    private volatile long lastFlushLatencyNanos = 0;
+    private volatile long maxFlushLatencyNanos = 0;
+
+    public PlayerProfileSaveQueue(@NotNull Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Queue a snapshot of a profile, replacing any snapshot of the same player which has not been written yet
+     *
+     * @param profile the live profile, used to flag it as dirty again if the snapshot can't be saved
+     * @param snapshot an immutable copy of the profile to write
+     */
+    public void enqueue(@NotNull PlayerProfile profile, @NotNull PlayerProfile snapshot) {
+        synchronized (pendingSaves) {
+            PendingSave replacedSave = pendingSaves.put(getKey(snapshot), new PendingSave(profile, snapshot, 0));
+
+            //The replaced snapshot was never written, so its changes have to be written with this one
+            if (replacedSave != null) {
+                snapshot.mergeChangedFields(replacedSave.snapshot);
+            }
+        }
+    }
+
+    /**
+     * Flush the queue on an async thread, does nothing if a flush is already scheduled
+     */
+    public void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            mcMMO.p.getFoliaLib().getImpl().runAsync(new PlayerProfileSaveQueueTask(this));
+        }
+    }
+
+    private void scheduleRetry() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            mcMMO.p.getFoliaLib().getImpl().runLaterAsync(new PlayerProfileSaveQueueTask(this), RETRY_DELAY_TICKS);
+        }
+    }
+
+    /**
+     * Called by the scheduled task
+     */
+    public void runScheduledFlush() {
+        flushScheduled.set(false);
+        flush();
+    }
+
+    /**
+     * Write every queued snapshot to the database on the current thread
+     *
+     * @return true if everything was saved
+     */
+    public boolean flush() {
+        synchronized (flushLock) {
+            List<PendingSave> batch;
+
+            synchronized (pendingSaves) {
+                if (pendingSaves.isEmpty()) {
+                    return true;
+                }
+
+                batch = new ArrayList<>(pendingSaves.values());
+                pendingSaves.clear();
+
+                for (PendingSave pendingSave : batch) {
+                    inFlightKeys.add(getKey(pendingSave.snapshot));
+                }
+            }
+
+            List<PlayerProfile> snapshots = new ArrayList<>(batch.size());
+
+            for (PendingSave pendingSave : batch) {
+                snapshots.add(pendingSave.snapshot);
+            }
+
+            long startTime = System.nanoTime();
+            boolean success = writeSnapshots(snapshots);
+
+            long latency = System.nanoTime() - startTime;
+            lastFlushLatencyNanos = latency;
+            maxFlushLatencyNanos = Math.max(maxFlushLatencyNanos, latency);
+            flushCount.incrementAndGet();
+
+            LogUtils.debug(logger, "[User Data] Flushed " + batch.size() + " profiles in " + TimeUnit.NANOSECONDS.toMillis(latency) + "ms, "
+                    + getQueueDepth() + " profiles are waiting");
+
+            if (success) {
+                savedProfileCount.addAndGet(batch.size());
+            } else {
+                handleFailedSaves(batch, false);
+            }
+
+            //Only after failed snapshots went back into the queue, see saveNow
+            synchronized (pendingSaves) {
+                inFlightKeys.clear();
+            }
+
+            return success;
+        }
+    }
+
+    /**
+     * Write one player's profile on the current thread, without writing or waiting for the rest of the queue
+     * A snapshot of the player which is still queued is taken out of the queue and written along with it
+     * Only waits for a flush in progress when that flush is writing an older snapshot of the same player
+     *
+     * @param profile the live profile, used to flag it as dirty again if the save keeps failing
+     * @param snapshot a new snapshot of the profile, or null to only write a queued snapshot
+     * @param useSync true to retry a failed save on the main thread instead of the async save queue
+     * @return true if the profile was saved or there was nothing to save
+     */
+    public boolean saveNow(@NotNull PlayerProfile profile, @Nullable PlayerProfile snapshot, boolean useSync) {
+        String key = getKey(snapshot != null ? snapshot : profile);
+        boolean inFlight;
+
+        synchronized (pendingSaves) {
+            inFlight = inFlightKeys.contains(key);
+        }
+
+        if (inFlight) {
+            //Writing now could let the older snapshot of the flush land after this one
+            synchronized (flushLock) {
+                return saveNowUnordered(profile, snapshot, key, useSync);
+            }
+        }
+
+        return saveNowUnordered(profile, snapshot, key, useSync);
+    }
+
+    private boolean saveNowUnordered(@NotNull PlayerProfile profile, @Nullable PlayerProfile snapshot, @NotNull String key, boolean useSync) {
+        int attempts = 0;
+
+        synchronized (pendingSaves) {
+            PendingSave queuedSave = pendingSaves.remove(key);
+
+            if (queuedSave != null) {
+                attempts = queuedSave.attempts;
+
+                if (snapshot == null) {
+                    snapshot = queuedSave.snapshot;
+                } else {
+                    snapshot.mergeChangedFields(queuedSave.snapshot);
+                }
+            }
+        }
+
+        if (snapshot == null) {
+            return true;
+        }
+
+        boolean success = writeSnapshots(Collections.singletonList(snapshot));
+
+        if (success) {
+            savedProfileCount.incrementAndGet();
+        } else {
+            handleFailedSaves(Collections.singletonList(new PendingSave(profile, snapshot, attempts)), useSync);
+        }
+
+        return success;
+    }
+
+    private static boolean writeSnapshots(@NotNull List<PlayerProfile> snapshots) {
+        try {
+            return mcMMO.getDatabaseManager().saveUsers(snapshots);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Flush until the queue is empty or every remaining snapshot ran out of attempts
+     * Used on shutdown, when retries can no longer be scheduled
+     */
+    public void drain() {
+        int queued = getQueueDepth();
+
+        if (queued > 0) {
+            logger.info("Saving " + queued + " queued player profiles...");
+        }
+
+        while (getQueueDepth() > 0) {
+            flush();
+        }
+    }
+
+    /**
+     * @param retrySync true to retry the saves on the main thread, the snapshots wait in the queue until then
+     */
+    private void handleFailedSaves(@NotNull List<PendingSave> batch, boolean retrySync) {
+        boolean retry = false;
+
+        for (PendingSave pendingSave : batch) {
+            PlayerProfile snapshot = pendingSave.snapshot;
+            int attempts = pendingSave.attempts + 1;
+            logger.severe("PlayerProfile saving failed for player: " + snapshot.getPlayerName() + " " + snapshot.getUniqueId());
+
+            if (attempts > 1) {
+                logger.severe("Attempted to save profile for player " + snapshot.getPlayerName()
+                        + " resulted in failure. " + attempts + " have been made so far.");
+            }
+
+            if (attempts < MAX_SAVE_ATTEMPTS) {
+                //A newer snapshot takes the place of the one that failed, along with its changes
+                synchronized (pendingSaves) {
+                    PendingSave newerSave = pendingSaves.putIfAbsent(getKey(snapshot), new PendingSave(pendingSave.profile, snapshot, attempts));
+
+                    if (newerSave != null) {
+                        newerSave.snapshot.mergeChangedFields(snapshot);
+                    }
+                }
+
+                //Picks the queued snapshot back up through saveNow
+                if (retrySync && !mcMMO.isServerShutdownExecuted()) {
+                    mcMMO.p.getFoliaLib().getImpl().runNextTick(new PlayerProfileSaveTask(pendingSave.profile, true));
+                } else {
+                    retry = true;
+                }
+            } else {
+                logger.severe("mcMMO has failed to save the profile for "
+                        + snapshot.getPlayerName() + " numerous times." +
+                        " mcMMO will now stop attempting to save this profile." +
+                        " Check your console for errors and inspect your DB for issues.");
+                //Let the next save timer pick it up again
+                pendingSave.profile.markProfileDirty();
+            }
+        }
+
+        //During shutdown the queue is drained on the disabling thread instead
+        if (retry && !mcMMO.isServerShutdownExecuted()) {
+            scheduleRetry();
+        }
+    }
+
+    private static @NotNull String getKey(@NotNull PlayerProfile profile) {
+        return profile.getUniqueId() != null ? profile.getUniqueId().toString() : "name:" + profile.getPlayerName().toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * @return the amount of profiles waiting to be written
+     */
+    public int getQueueDepth() {
+        synchronized (pendingSaves) {
+            return pendingSaves.size();
+        }
+    }
+
+    /**
+     * @return how long the most recent flush took in milliseconds
+     */
+    public long getLastFlushLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastFlushLatencyNanos);
+    }
+
+    /**
+     * @return how long the slowest flush took in milliseconds
+     */
+    public long getMaxFlushLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxFlushLatencyNanos);
+    }
+
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    public long getSavedProfileCount() {
+        return savedProfileCount.get();
+    }
+
+    private static final class PendingSave {
+        private final @NotNull PlayerProfile profile;
+        private final @NotNull PlayerProfile snapshot;
+        private final int attempts;
+
+        private PendingSave(@NotNull PlayerProfile profile, @NotNull PlayerProfile snapshot, int attempts) {
+            this.profile = profile;
+            this.snapshot = snapshot;
+            this.attempts = attempts;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.gmail.nossr50.datatypes.MobHealthbarType;
 import com.gmail.nossr50.datatypes.database.DatabaseType;
 import com.gmail.nossr50.datatypes.database.PlayerStat;
 import com.gmail.nossr50.datatypes.database.UpgradeType;
+import com.gmail.nossr50.datatypes.player.DirtyProfileFields;
 import com.gmail.nossr50.datatypes.player.PlayerProfile;
 import com.gmail.nossr50.datatypes.player.UniqueDataType;
 import com.gmail.nossr50.datatypes.skills.PrimarySkillType;
@@ -21,17 +22,32 @@ import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
+import java.io.IOException;
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.locks.ReentrantLock;
 
 public final class SQLDatabaseManager implements DatabaseManager {
     private static final String ALL_QUERY_VERSION = "total";
+    private static final Map<SuperAbilityType, String> COOLDOWN_COLUMNS = new EnumMap<>(SuperAbilityType.class);
     public static final String MOBHEALTHBAR_VARCHAR = "VARCHAR(50)";
     public static final String UUID_VARCHAR = "VARCHAR(36)";
     public static final String USER_VARCHAR = "VARCHAR(40)";
     public static final int CHILD_SKILLS_SIZE = 2;
     public static final String LEGACY_DRIVER_PATH = "com.mysql.jdbc.Driver";
+
+    static {
+        COOLDOWN_COLUMNS.put(SuperAbilityType.SUPER_BREAKER, "mining");
+        COOLDOWN_COLUMNS.put(SuperAbilityType.TREE_FELLER, "woodcutting");
+        COOLDOWN_COLUMNS.put(SuperAbilityType.BERSERK, "unarmed");
+        COOLDOWN_COLUMNS.put(SuperAbilityType.GREEN_TERRA, "herbalism");
+        COOLDOWN_COLUMNS.put(SuperAbilityType.GIGA_DRILL_BREAKER, "excavation");
+        COOLDOWN_COLUMNS.put(SuperAbilityType.SERRATED_STRIKES, "swords");
+        COOLDOWN_COLUMNS.put(SuperAbilityType.SKULL_SPLITTER, "axes");
+        COOLDOWN_COLUMNS.put(SuperAbilityType.BLAST_MINING, "blast_mining");
+    }
+
     private final String tablePrefix = mcMMO.p.getGeneralConfig().getMySQLTablePrefix();
 
     private final Map<UUID, Integer> cachedUserIDs = new HashMap<>();
@@ -41,6 +57,7 @@ public final class SQLDatabaseManager implements DatabaseManager {
     private DataSource savePool;
 
     private boolean debug = false;
+    private final DatabaseType databaseType;
 
     private final ReentrantLock massUpdateLock = new ReentrantLock();
 
@@ -48,6 +65,8 @@ public final class SQLDatabaseManager implements DatabaseManager {
     private String driverPath = "com.mysql.cj.jdbc.Driver"; //modern driver
 
     protected SQLDatabaseManager() {
+        databaseType = DatabaseType.SQL;
+
         String connectionString = "jdbc:mysql://" + mcMMO.p.getGeneralConfig().getMySQLServerName()
                 + ":" + mcMMO.p.getGeneralConfig().getMySQLServerPort() + "/" + mcMMO.p.getGeneralConfig().getMySQLDatabaseName();
 
@@ -84,53 +103,67 @@ public final class SQLDatabaseManager implements DatabaseManager {
 
         debug = mcMMO.p.getGeneralConfig().getMySQLDebug();
 
+        createPools(connectionString, mcMMO.p.getGeneralConfig().getMySQLUserName(), mcMMO.p.getGeneralConfig().getMySQLUserPassword());
+        checkStructure();
+    }
+
+    /**
+     * Creates a manager backed by an embedded H2 database stored in a local file,
+     * H2 runs in MySQL mode so the same tables and queries are used as with MySQL
+     *
+     * @param databaseFilePath path of the database file, without the .mv.db extension
+     */
+    protected SQLDatabaseManager(@NotNull String databaseFilePath) {
+        databaseType = DatabaseType.H2;
+        driverPath = EmbeddedH2Driver.class.getName();
+
+        try {
+            EmbeddedH2Driver.load();
+        } catch (IOException | ReflectiveOperationException e) {
+            e.printStackTrace();
+            mcMMO.p.getLogger().severe("H2 driver not found, put " + EmbeddedH2Driver.H2_JAR_NAME + " in the libraries folder of mcMMO");
+            return;
+        }
+
+        debug = mcMMO.p.getGeneralConfig().getMySQLDebug();
+
+        String connectionString = "jdbc:h2:file:" + new File(databaseFilePath).getAbsolutePath()
+                + ";MODE=MySQL"
+                + ";DATABASE_TO_LOWER=TRUE"
+                + ";CASE_INSENSITIVE_IDENTIFIERS=TRUE"
+                + ";IGNORECASE=TRUE"
+                + ";NON_KEYWORDS=USER";
+
+        createPools(connectionString, "sa", "");
+        checkStructure();
+    }
+
+    private void createPools(@NotNull String connectionString, @NotNull String userName, @NotNull String password) {
+        miscPool = createPool(connectionString, userName, password, PoolIdentifier.MISC);
+        savePool = createPool(connectionString, userName, password, PoolIdentifier.SAVE);
+        loadPool = createPool(connectionString, userName, password, PoolIdentifier.LOAD);
+    }
+
+    private @NotNull DataSource createPool(@NotNull String connectionString, @NotNull String userName, @NotNull String password, @NotNull PoolIdentifier identifier) {
         PoolProperties poolProperties = new PoolProperties();
         poolProperties.setDriverClassName(driverPath);
         poolProperties.setUrl(connectionString);
-        poolProperties.setUsername(mcMMO.p.getGeneralConfig().getMySQLUserName());
-        poolProperties.setPassword(mcMMO.p.getGeneralConfig().getMySQLUserPassword());
-        poolProperties.setMaxIdle(mcMMO.p.getGeneralConfig().getMySQLMaxPoolSize(PoolIdentifier.MISC));
-        poolProperties.setMaxActive(mcMMO.p.getGeneralConfig().getMySQLMaxConnections(PoolIdentifier.MISC));
+        poolProperties.setUsername(userName);
+        poolProperties.setPassword(password);
         poolProperties.setInitialSize(0);
+        poolProperties.setMaxIdle(mcMMO.p.getGeneralConfig().getMySQLMaxPoolSize(identifier));
+        poolProperties.setMaxActive(mcMMO.p.getGeneralConfig().getMySQLMaxConnections(identifier));
         poolProperties.setMaxWait(-1);
         poolProperties.setRemoveAbandoned(true);
         poolProperties.setRemoveAbandonedTimeout(60);
         poolProperties.setTestOnBorrow(true);
         poolProperties.setValidationQuery("SELECT 1");
         poolProperties.setValidationInterval(30000);
-        miscPool = new DataSource(poolProperties);
-        poolProperties = new PoolProperties();
-        poolProperties.setDriverClassName(driverPath);
-        poolProperties.setUrl(connectionString);
-        poolProperties.setUsername(mcMMO.p.getGeneralConfig().getMySQLUserName());
-        poolProperties.setPassword(mcMMO.p.getGeneralConfig().getMySQLUserPassword());
-        poolProperties.setInitialSize(0);
-        poolProperties.setMaxIdle(mcMMO.p.getGeneralConfig().getMySQLMaxPoolSize(PoolIdentifier.SAVE));
-        poolProperties.setMaxActive(mcMMO.p.getGeneralConfig().getMySQLMaxConnections(PoolIdentifier.SAVE));
-        poolProperties.setMaxWait(-1);
-        poolProperties.setRemoveAbandoned(true);
-        poolProperties.setRemoveAbandonedTimeout(60);
-        poolProperties.setTestOnBorrow(true);
-        poolProperties.setValidationQuery("SELECT 1");
-        poolProperties.setValidationInterval(30000);
-        savePool = new DataSource(poolProperties);
-        poolProperties = new PoolProperties();
-        poolProperties.setDriverClassName(driverPath);
-        poolProperties.setUrl(connectionString);
-        poolProperties.setUsername(mcMMO.p.getGeneralConfig().getMySQLUserName());
-        poolProperties.setPassword(mcMMO.p.getGeneralConfig().getMySQLUserPassword());
-        poolProperties.setInitialSize(0);
-        poolProperties.setMaxIdle(mcMMO.p.getGeneralConfig().getMySQLMaxPoolSize(PoolIdentifier.LOAD));
-        poolProperties.setMaxActive(mcMMO.p.getGeneralConfig().getMySQLMaxConnections(PoolIdentifier.LOAD));
-        poolProperties.setMaxWait(-1);
-        poolProperties.setRemoveAbandoned(true);
-        poolProperties.setRemoveAbandonedTimeout(60);
-        poolProperties.setTestOnBorrow(true);
-        poolProperties.setValidationQuery("SELECT 1");
-        poolProperties.setValidationInterval(30000);
-        loadPool = new DataSource(poolProperties);
+        return new DataSource(poolProperties);
+    }
 
-        checkStructure();
+    private boolean isEmbedded() {
+        return databaseType == DatabaseType.H2;
     }
 
     public int purgePowerlessUsers() {
@@ -181,12 +214,19 @@ public final class SQLDatabaseManager implements DatabaseManager {
             connection = getConnection(PoolIdentifier.MISC);
             statement = connection.createStatement();
 
-            purged = statement.executeUpdate("DELETE FROM u, e, h, s, c USING " + tablePrefix + "users u " +
-                    "JOIN " + tablePrefix + "experience e ON (u.id = e.user_id) " +
-                    "JOIN " + tablePrefix + "huds h ON (u.id = h.user_id) " +
-                    "JOIN " + tablePrefix + "skills s ON (u.id = s.user_id) " +
-                    "JOIN " + tablePrefix + "cooldowns c ON (u.id = c.user_id) " +
-                    "WHERE ((UNIX_TIMESTAMP() - lastlogin) > " + mcMMO.p.getPurgeTime() + ")");
+            if (isEmbedded()) {
+                // H2 can't delete from several tables at once, the rows left behind are removed as orphans
+                purged = statement.executeUpdate("DELETE FROM " + tablePrefix + "users WHERE ((UNIX_TIMESTAMP() - lastlogin) > " + mcMMO.p.getPurgeTime() + ")");
+                deleteOrphanedRows(statement);
+            }
+            else {
+                purged = statement.executeUpdate("DELETE FROM u, e, h, s, c USING " + tablePrefix + "users u " +
+                        "JOIN " + tablePrefix + "experience e ON (u.id = e.user_id) " +
+                        "JOIN " + tablePrefix + "huds h ON (u.id = h.user_id) " +
+                        "JOIN " + tablePrefix + "skills s ON (u.id = s.user_id) " +
+                        "JOIN " + tablePrefix + "cooldowns c ON (u.id = c.user_id) " +
+                        "WHERE ((UNIX_TIMESTAMP() - lastlogin) > " + mcMMO.p.getPurgeTime() + ")");
+            }
         }
         catch (SQLException ex) {
             printErrors(ex);
@@ -206,17 +246,28 @@ public final class SQLDatabaseManager implements DatabaseManager {
 
         try {
             connection = getConnection(PoolIdentifier.MISC);
-            statement = connection.prepareStatement("DELETE FROM u, e, h, s, c " +
-                    "USING " + tablePrefix + "users u " +
-                    "JOIN " + tablePrefix + "experience e ON (u.id = e.user_id) " +
-                    "JOIN " + tablePrefix + "huds h ON (u.id = h.user_id) " +
-                    "JOIN " + tablePrefix + "skills s ON (u.id = s.user_id) " +
-                    "JOIN " + tablePrefix + "cooldowns c ON (u.id = c.user_id) " +
-                    "WHERE u.user = ?");
+            if (isEmbedded()) {
+                statement = connection.prepareStatement("DELETE FROM " + tablePrefix + "users WHERE `user` = ?");
+            }
+            else {
+                statement = connection.prepareStatement("DELETE FROM u, e, h, s, c " +
+                        "USING " + tablePrefix + "users u " +
+                        "JOIN " + tablePrefix + "experience e ON (u.id = e.user_id) " +
+                        "JOIN " + tablePrefix + "huds h ON (u.id = h.user_id) " +
+                        "JOIN " + tablePrefix + "skills s ON (u.id = s.user_id) " +
+                        "JOIN " + tablePrefix + "cooldowns c ON (u.id = c.user_id) " +
+                        "WHERE u.user = ?");
+            }
 
             statement.setString(1, playerName);
 
             success = statement.executeUpdate() != 0;
+
+            if (success && isEmbedded()) {
+                try (Statement orphanStatement = connection.createStatement()) {
+                    deleteOrphanedRows(orphanStatement);
+                }
+            }
         }
         catch (SQLException ex) {
             printErrors(ex);
@@ -241,131 +292,219 @@ public final class SQLDatabaseManager implements DatabaseManager {
     }
 
     public boolean saveUser(PlayerProfile profile) {
+        return saveUsers(Collections.singletonList(profile));
+    }
+
+    /**
+     * Save several users using one connection, every table is updated with JDBC batches
+     * Only the columns which changed since the last save of a player are written, tables without changes are skipped
+     * The updates are done in one transaction so a failed batch leaves the stored data untouched
+     *
+     * @param profiles the profiles to save
+     * @return true if every profile was saved
+     */
+    @Override
+    public boolean saveUsers(@NotNull Collection<PlayerProfile> profiles) {
+        if (profiles.isEmpty()) {
+            return true;
+        }
+
         boolean success = true;
-        PreparedStatement statement = null;
         Connection connection = null;
+        //Profiles which changed the same columns share a statement
+        Map<String, SaveBatch> saveBatches = new LinkedHashMap<>();
 
         try {
             connection = getConnection(PoolIdentifier.SAVE);
 
-            int id = getUserID(connection, profile.getPlayerName(), profile.getUniqueId());
+            //Accounts are created before the transaction starts, the ids are cached and must not be rolled back
+            List<PlayerProfile> batchedProfiles = new ArrayList<>(profiles.size());
+            List<Integer> batchedIds = new ArrayList<>(profiles.size());
+            List<DirtyProfileFields> batchedFields = new ArrayList<>(profiles.size());
+
+            for (PlayerProfile profile : profiles) {
+                DirtyProfileFields changedFields = profile.getChangedFields();
+                int id = getUserID(connection, profile.getPlayerName(), profile.getUniqueId());
 
-            if (id == -1) {
-                id = newUser(connection, profile.getPlayerName(), profile.getUniqueId());
                 if (id == -1) {
-                    mcMMO.p.getLogger().severe("Failed to create new account for " + profile.getPlayerName());
-                    return false;
+                    id = newUser(connection, profile.getPlayerName(), profile.getUniqueId());
+                    if (id == -1) {
+                        mcMMO.p.getLogger().severe("Failed to create new account for " + profile.getPlayerName());
+                        success = false;
+                        continue;
+                    }
+
+                    //A new account only holds the default values
+                    changedFields = null;
                 }
-            }
 
-            statement = connection.prepareStatement("UPDATE " + tablePrefix + "users SET lastlogin = UNIX_TIMESTAMP() WHERE id = ?");
-            statement.setInt(1, id);
-            success &= (statement.executeUpdate() != 0);
-            statement.close();
-            if (!success) {
-                mcMMO.p.getLogger().severe("Failed to update last login for " + profile.getPlayerName());
-                return false;
+                batchedProfiles.add(profile);
+                batchedIds.add(id);
+                batchedFields.add(changedFields == null ? DirtyProfileFields.all() : changedFields);
             }
 
-            statement = connection.prepareStatement("UPDATE " + tablePrefix + "skills SET "
-                    + " taming = ?, mining = ?, repair = ?, woodcutting = ?"
-                    + ", unarmed = ?, herbalism = ?, excavation = ?"
-                    + ", archery = ?, swords = ?, axes = ?, acrobatics = ?"
-                    + ", fishing = ?, alchemy = ?, total = ? WHERE user_id = ?");
-            statement.setInt(1, profile.getSkillLevel(PrimarySkillType.TAMING));
-            statement.setInt(2, profile.getSkillLevel(PrimarySkillType.MINING));
-            statement.setInt(3, profile.getSkillLevel(PrimarySkillType.REPAIR));
-            statement.setInt(4, profile.getSkillLevel(PrimarySkillType.WOODCUTTING));
-            statement.setInt(5, profile.getSkillLevel(PrimarySkillType.UNARMED));
-            statement.setInt(6, profile.getSkillLevel(PrimarySkillType.HERBALISM));
-            statement.setInt(7, profile.getSkillLevel(PrimarySkillType.EXCAVATION));
-            statement.setInt(8, profile.getSkillLevel(PrimarySkillType.ARCHERY));
-            statement.setInt(9, profile.getSkillLevel(PrimarySkillType.SWORDS));
-            statement.setInt(10, profile.getSkillLevel(PrimarySkillType.AXES));
-            statement.setInt(11, profile.getSkillLevel(PrimarySkillType.ACROBATICS));
-            statement.setInt(12, profile.getSkillLevel(PrimarySkillType.FISHING));
-            statement.setInt(13, profile.getSkillLevel(PrimarySkillType.ALCHEMY));
-            int total = 0;
-            for (PrimarySkillType primarySkillType : SkillTools.NON_CHILD_SKILLS)
-                total += profile.getSkillLevel(primarySkillType);
-            statement.setInt(14, total);
-            statement.setInt(15, id);
-            success &= (statement.executeUpdate() != 0);
-            statement.close();
-            if (!success) {
-                mcMMO.p.getLogger().severe("Failed to update skills for " + profile.getPlayerName());
+            if (batchedProfiles.isEmpty()) {
                 return false;
             }
 
-            statement = connection.prepareStatement("UPDATE " + tablePrefix + "experience SET "
-                    + " taming = ?, mining = ?, repair = ?, woodcutting = ?"
-                    + ", unarmed = ?, herbalism = ?, excavation = ?"
-                    + ", archery = ?, swords = ?, axes = ?, acrobatics = ?"
-                    + ", fishing = ?, alchemy = ? WHERE user_id = ?");
-            statement.setInt(1, profile.getSkillXpLevel(PrimarySkillType.TAMING));
-            statement.setInt(2, profile.getSkillXpLevel(PrimarySkillType.MINING));
-            statement.setInt(3, profile.getSkillXpLevel(PrimarySkillType.REPAIR));
-            statement.setInt(4, profile.getSkillXpLevel(PrimarySkillType.WOODCUTTING));
-            statement.setInt(5, profile.getSkillXpLevel(PrimarySkillType.UNARMED));
-            statement.setInt(6, profile.getSkillXpLevel(PrimarySkillType.HERBALISM));
-            statement.setInt(7, profile.getSkillXpLevel(PrimarySkillType.EXCAVATION));
-            statement.setInt(8, profile.getSkillXpLevel(PrimarySkillType.ARCHERY));
-            statement.setInt(9, profile.getSkillXpLevel(PrimarySkillType.SWORDS));
-            statement.setInt(10, profile.getSkillXpLevel(PrimarySkillType.AXES));
-            statement.setInt(11, profile.getSkillXpLevel(PrimarySkillType.ACROBATICS));
-            statement.setInt(12, profile.getSkillXpLevel(PrimarySkillType.FISHING));
-            statement.setInt(13, profile.getSkillXpLevel(PrimarySkillType.ALCHEMY));
-            statement.setInt(14, id);
-            success &= (statement.executeUpdate() != 0);
-            statement.close();
-            if (!success) {
-                mcMMO.p.getLogger().severe("Failed to update experience for " + profile.getPlayerName());
-                return false;
+            connection.setAutoCommit(false);
+
+            for (int i = 0; i < batchedProfiles.size(); i++) {
+                PlayerProfile profile = batchedProfiles.get(i);
+                int id = batchedIds.get(i);
+                DirtyProfileFields changedFields = batchedFields.get(i);
+
+                addToSaveBatch(connection, saveBatches, "last login", "UPDATE " + tablePrefix + "users SET lastlogin = UNIX_TIMESTAMP() WHERE id = ?",
+                        profile, Collections.singletonList(id));
+                addSkillsUpdate(connection, saveBatches, profile, id, changedFields);
+                addExperienceUpdate(connection, saveBatches, profile, id, changedFields);
+                addCooldownsUpdate(connection, saveBatches, profile, id, changedFields);
+
+                if (changedFields.isScoreboardTipsChanged()) {
+                    addToSaveBatch(connection, saveBatches, "hud settings", "UPDATE " + tablePrefix + "huds SET mobhealthbar = ?, scoreboardtips = ? WHERE user_id = ?",
+                            profile, List.of(MobHealthbarType.HEARTS.name(), profile.getScoreboardTipsShown(), id));
+                }
             }
 
-            statement = connection.prepareStatement("UPDATE " + tablePrefix + "cooldowns SET "
-                    + "  mining = ?, woodcutting = ?, unarmed = ?"
-                    + ", herbalism = ?, excavation = ?, swords = ?"
-                    + ", axes = ?, blast_mining = ?, chimaera_wing = ? WHERE user_id = ?");
-            statement.setLong(1, profile.getAbilityDATS(SuperAbilityType.SUPER_BREAKER));
-            statement.setLong(2, profile.getAbilityDATS(SuperAbilityType.TREE_FELLER));
-            statement.setLong(3, profile.getAbilityDATS(SuperAbilityType.BERSERK));
-            statement.setLong(4, profile.getAbilityDATS(SuperAbilityType.GREEN_TERRA));
-            statement.setLong(5, profile.getAbilityDATS(SuperAbilityType.GIGA_DRILL_BREAKER));
-            statement.setLong(6, profile.getAbilityDATS(SuperAbilityType.SERRATED_STRIKES));
-            statement.setLong(7, profile.getAbilityDATS(SuperAbilityType.SKULL_SPLITTER));
-            statement.setLong(8, profile.getAbilityDATS(SuperAbilityType.BLAST_MINING));
-            statement.setLong(9, profile.getUniqueData(UniqueDataType.CHIMAERA_WING_DATS));
-            statement.setInt(10, id);
-            success = (statement.executeUpdate() != 0);
-            statement.close();
-            if (!success) {
-                mcMMO.p.getLogger().severe("Failed to update cooldowns for " + profile.getPlayerName());
-                return false;
+            boolean batchSuccess = true;
+
+            for (SaveBatch saveBatch : saveBatches.values()) {
+                if (!checkBatchResults(saveBatch.statement.executeBatch(), saveBatch.profiles, saveBatch.tableDescription)) {
+                    batchSuccess = false;
+                    break;
+                }
             }
 
-            statement = connection.prepareStatement("UPDATE " + tablePrefix + "huds SET mobhealthbar = ?, scoreboardtips = ? WHERE user_id = ?");
-            statement.setString(1, MobHealthbarType.HEARTS.name());
-            statement.setInt(2, profile.getScoreboardTipsShown());
-            statement.setInt(3, id);
-            success = (statement.executeUpdate() != 0);
-            statement.close();
-            if (!success) {
-                mcMMO.p.getLogger().severe("Failed to update hud settings for " + profile.getPlayerName());
-                return false;
+            if (batchSuccess) {
+                connection.commit();
+            } else {
+                connection.rollback();
+                success = false;
             }
         }
         catch (SQLException ex) {
             printErrors(ex);
+            tryRollback(connection);
+            success = false;
         }
         finally {
-            tryClose(statement);
+            for (SaveBatch saveBatch : saveBatches.values()) {
+                tryClose(saveBatch.statement);
+            }
+
+            tryResetAutoCommit(connection);
             tryClose(connection);
         }
 
         return success;
     }
 
+    private void addSkillsUpdate(@NotNull Connection connection, @NotNull Map<String, SaveBatch> saveBatches, @NotNull PlayerProfile profile, int id, @NotNull DirtyProfileFields changedFields) throws SQLException {
+        Set<PrimarySkillType> changedSkills = changedFields.getSkillLevels();
+
+        if (changedSkills.isEmpty()) {
+            return;
+        }
+
+        StringBuilder sql = new StringBuilder("UPDATE " + tablePrefix + "skills SET ");
+        List<Object> values = new ArrayList<>();
+        int total = 0;
+
+        for (PrimarySkillType primarySkillType : SkillTools.NON_CHILD_SKILLS) {
+            total += profile.getSkillLevel(primarySkillType);
+
+            if (changedSkills.contains(primarySkillType)) {
+                sql.append(primarySkillType.name().toLowerCase(Locale.ENGLISH)).append(" = ?, ");
+                values.add(profile.getSkillLevel(primarySkillType));
+            }
+        }
+
+        sql.append("total = ? WHERE user_id = ?");
+        values.add(total);
+        values.add(id);
+        addToSaveBatch(connection, saveBatches, "skills", sql.toString(), profile, values);
+    }
+
+    private void addExperienceUpdate(@NotNull Connection connection, @NotNull Map<String, SaveBatch> saveBatches, @NotNull PlayerProfile profile, int id, @NotNull DirtyProfileFields changedFields) throws SQLException {
+        Set<PrimarySkillType> changedSkills = changedFields.getSkillsXp();
+        StringJoiner columns = new StringJoiner(", ");
+        List<Object> values = new ArrayList<>();
+
+        for (PrimarySkillType primarySkillType : SkillTools.NON_CHILD_SKILLS) {
+            if (changedSkills.contains(primarySkillType)) {
+                columns.add(primarySkillType.name().toLowerCase(Locale.ENGLISH) + " = ?");
+                values.add(profile.getSkillXpLevel(primarySkillType));
+            }
+        }
+
+        if (values.isEmpty()) {
+            return;
+        }
+
+        values.add(id);
+        addToSaveBatch(connection, saveBatches, "experience", "UPDATE " + tablePrefix + "experience SET " + columns + " WHERE user_id = ?", profile, values);
+    }
+
+    private void addCooldownsUpdate(@NotNull Connection connection, @NotNull Map<String, SaveBatch> saveBatches, @NotNull PlayerProfile profile, int id, @NotNull DirtyProfileFields changedFields) throws SQLException {
+        Set<SuperAbilityType> changedCooldowns = changedFields.getCooldowns();
+        StringJoiner columns = new StringJoiner(", ");
+        List<Object> values = new ArrayList<>();
+
+        for (Map.Entry<SuperAbilityType, String> cooldownColumn : COOLDOWN_COLUMNS.entrySet()) {
+            if (changedCooldowns.contains(cooldownColumn.getKey())) {
+                columns.add(cooldownColumn.getValue() + " = ?");
+                values.add(profile.getAbilityDATS(cooldownColumn.getKey()));
+            }
+        }
+
+        if (changedFields.getUniqueData().contains(UniqueDataType.CHIMAERA_WING_DATS)) {
+            columns.add("chimaera_wing = ?");
+            values.add(profile.getUniqueData(UniqueDataType.CHIMAERA_WING_DATS));
+        }
+
+        if (values.isEmpty()) {
+            return;
+        }
+
+        values.add(id);
+        addToSaveBatch(connection, saveBatches, "cooldowns", "UPDATE " + tablePrefix + "cooldowns SET " + columns + " WHERE user_id = ?", profile, values);
+    }
+
+    private void addToSaveBatch(@NotNull Connection connection, @NotNull Map<String, SaveBatch> saveBatches, @NotNull String tableDescription, @NotNull String sql,
+                                @NotNull PlayerProfile profile, @NotNull List<?> values) throws SQLException {
+        SaveBatch saveBatch = saveBatches.get(sql);
+
+        if (saveBatch == null) {
+            saveBatch = new SaveBatch(connection.prepareStatement(sql), tableDescription);
+            saveBatches.put(sql, saveBatch);
+        }
+
+        for (int i = 0; i < values.size(); i++) {
+            saveBatch.statement.setObject(i + 1, values.get(i));
+        }
+
+        saveBatch.statement.addBatch();
+        saveBatch.profiles.add(profile);
+    }
+
+    /**
+     * Check the update counts of a batch, every statement in the batch should have updated a row
+     *
+     * @return true if the whole batch succeeded
+     */
+    private boolean checkBatchResults(int[] results, List<PlayerProfile> batchedProfiles, String tableDescription) {
+        boolean success = true;
+
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == 0 || results[i] == Statement.EXECUTE_FAILED) {
+                mcMMO.p.getLogger().severe("Failed to update " + tableDescription + " for " + batchedProfiles.get(i).getPlayerName());
+                success = false;
+            }
+        }
+
+        return success;
+    }
+
     public @NotNull List<PlayerStat> readLeaderboard(@Nullable PrimarySkillType skill, int pageNumber, int statsPerPage) throws InvalidSkillException {
         List<PlayerStat> stats = new ArrayList<>();
 
@@ -383,7 +522,7 @@ public final class SQLDatabaseManager implements DatabaseManager {
 
         try {
             connection = getConnection(PoolIdentifier.MISC);
-            statement = connection.prepareStatement("SELECT " + query + ", user FROM " + tablePrefix + "users JOIN " + tablePrefix + "skills ON (user_id = id) WHERE " + query + " > 0 AND NOT user = '\\_INVALID\\_OLD\\_USERNAME\\_' ORDER BY " + query + " DESC, user LIMIT ?, ?");
+            statement = connection.prepareStatement("SELECT " + query + ", `user` FROM " + tablePrefix + "users JOIN " + tablePrefix + "skills ON (user_id = id) WHERE " + query + " > 0 AND NOT `user` = '\\_INVALID\\_OLD\\_USERNAME\\_' ORDER BY " + query + " DESC, `user` LIMIT ?, ?");
             statement.setInt(1, (pageNumber * statsPerPage) - statsPerPage);
             statement.setInt(2, statsPerPage);
             resultSet = statement.executeQuery();
@@ -419,80 +558,19 @@ public final class SQLDatabaseManager implements DatabaseManager {
 
         try {
             connection = getConnection(PoolIdentifier.MISC);
-            for (PrimarySkillType primarySkillType : SkillTools.NON_CHILD_SKILLS) {
-                String skillName = primarySkillType.name().toLowerCase(Locale.ENGLISH);
-                // Get count of all users with higher skill level than player
-                String sql = "SELECT COUNT(*) AS 'rank' FROM " + tablePrefix + "users JOIN " + tablePrefix + "skills ON user_id = id WHERE " + skillName + " > 0 " +
-                        "AND " + skillName + " > (SELECT " + skillName + " FROM " + tablePrefix + "users JOIN " + tablePrefix + "skills ON user_id = id " +
-                        "WHERE user = ?)";
-
-                statement = connection.prepareStatement(sql);
-                statement.setString(1, playerName);
-                resultSet = statement.executeQuery();
-
-                resultSet.next();
-
-                int rank = resultSet.getInt("rank");
-
-                // Ties are settled by alphabetical order
-                sql = "SELECT user, " + skillName + " FROM " + tablePrefix + "users JOIN " + tablePrefix + "skills ON user_id = id WHERE " + skillName + " > 0 " +
-                        "AND " + skillName + " = (SELECT " + skillName + " FROM " + tablePrefix + "users JOIN " + tablePrefix + "skills ON user_id = id " +
-                        "WHERE user = '" + playerName + "') ORDER BY user";
 
-                resultSet.close();
-                statement.close();
-
-                statement = connection.prepareStatement(sql);
-                resultSet = statement.executeQuery();
-
-                while (resultSet.next()) {
-                    if (resultSet.getString("user").equalsIgnoreCase(playerName)) {
-                        skills.put(primarySkillType, rank + resultSet.getRow());
-                        break;
-                    }
-                }
-
-                resultSet.close();
-                statement.close();
-            }
-
-            String sql = "SELECT COUNT(*) AS 'rank' FROM " + tablePrefix + "users JOIN " + tablePrefix + "skills ON user_id = id " +
-                    "WHERE " + ALL_QUERY_VERSION + " > 0 " +
-                    "AND " + ALL_QUERY_VERSION + " > " +
-                    "(SELECT " + ALL_QUERY_VERSION + " " +
-                    "FROM " + tablePrefix + "users JOIN " + tablePrefix + "skills ON user_id = id WHERE user = ?)";
-
-            statement = connection.prepareStatement(sql);
-            statement.setString(1, playerName);
-            resultSet = statement.executeQuery();
-
-            resultSet.next();
-
-            int rank = resultSet.getInt("rank");
-
-            resultSet.close();
-            statement.close();
-
-            sql = "SELECT user, " + ALL_QUERY_VERSION + " " +
-                    "FROM " + tablePrefix + "users JOIN " + tablePrefix + "skills ON user_id = id " +
-                    "WHERE " + ALL_QUERY_VERSION + " > 0 " +
-                    "AND " + ALL_QUERY_VERSION + " = " +
-                    "(SELECT " + ALL_QUERY_VERSION + " " +
-                    "FROM " + tablePrefix + "users JOIN " + tablePrefix + "skills ON user_id = id WHERE user = ?) ORDER BY user";
-
-            statement = connection.prepareStatement(sql);
+            // Every rank is read by a single statement, ties are settled by alphabetical order
+            statement = connection.prepareStatement(getRankSQLQuery());
             statement.setString(1, playerName);
             resultSet = statement.executeQuery();
 
-            while (resultSet.next()) {
-                if (resultSet.getString("user").equalsIgnoreCase(playerName)) {
-                    skills.put(null, rank + resultSet.getRow());
-                    break;
+            if (resultSet.next()) {
+                for (PrimarySkillType primarySkillType : SkillTools.NON_CHILD_SKILLS) {
+                    putRank(skills, primarySkillType, resultSet, primarySkillType.name().toLowerCase(Locale.ENGLISH) + "_rank");
                 }
-            }
 
-            resultSet.close();
-            statement.close();
+                putRank(skills, null, resultSet, ALL_QUERY_VERSION + "_rank");
+            }
         }
         catch (SQLException ex) {
             printErrors(ex);
@@ -506,6 +584,17 @@ public final class SQLDatabaseManager implements DatabaseManager {
         return skills;
     }
 
+    /**
+     * Players who have no levels in a skill are not ranked, their rank is read as NULL
+     */
+    private void putRank(Map<PrimarySkillType, Integer> skills, @Nullable PrimarySkillType primarySkillType, ResultSet resultSet, String column) throws SQLException {
+        int rank = resultSet.getInt(column);
+
+        if (!resultSet.wasNull() && rank > 0) {
+            skills.put(primarySkillType, rank);
+        }
+    }
+
     public @NotNull PlayerProfile newUser(String playerName, UUID uuid) {
         Connection connection = null;
 
@@ -546,13 +635,13 @@ public final class SQLDatabaseManager implements DatabaseManager {
         try {
             statement = connection.prepareStatement(
                     "UPDATE `" + tablePrefix + "users` "
-                            + "SET user = ? "
-                            + "WHERE user = ?");
+                            + "SET `user` = ? "
+                            + "WHERE `user` = ?");
             statement.setString(1, "_INVALID_OLD_USERNAME_");
             statement.setString(2, playerName);
             statement.executeUpdate();
             statement.close();
-            statement = connection.prepareStatement("INSERT INTO " + tablePrefix + "users (user, uuid, lastlogin) VALUES (?, ?, UNIX_TIMESTAMP())", Statement.RETURN_GENERATED_KEYS);
+            statement = connection.prepareStatement("INSERT INTO " + tablePrefix + "users (`user`, uuid, lastlogin) VALUES (?, ?, UNIX_TIMESTAMP())", Statement.RETURN_GENERATED_KEYS);
             statement.setString(1, playerName);
             statement.setString(2, uuid != null ? uuid.toString() : null);
             statement.executeUpdate();
@@ -650,15 +739,15 @@ public final class SQLDatabaseManager implements DatabaseManager {
                             && uuid != null) {
                         statement = connection.prepareStatement(
                                 "UPDATE `" + tablePrefix + "users` "
-                                        + "SET user = ? "
-                                        + "WHERE user = ?");
+                                        + "SET `user` = ? "
+                                        + "WHERE `user` = ?");
                         statement.setString(1, "_INVALID_OLD_USERNAME_");
                         statement.setString(2, name);
                         statement.executeUpdate();
                         statement.close();
                         statement = connection.prepareStatement(
                                 "UPDATE `" + tablePrefix + "users` "
-                                        + "SET user = ?, uuid = ? "
+                                        + "SET `user` = ?, uuid = ? "
                                         + "WHERE id = ?");
                         statement.setString(1, playerName);
                         statement.setString(2, uuid.toString());
@@ -745,7 +834,7 @@ public final class SQLDatabaseManager implements DatabaseManager {
             connection = getConnection(PoolIdentifier.MISC);
             statement = connection.prepareStatement(
                     "UPDATE `" + tablePrefix + "users` SET "
-                            + "  uuid = ? WHERE user = ?");
+                            + "  uuid = ? WHERE `user` = ?");
             statement.setString(1, uuid.toString());
             statement.setString(2, userName);
             statement.execute();
@@ -769,7 +858,7 @@ public final class SQLDatabaseManager implements DatabaseManager {
 
         try {
             connection = getConnection(PoolIdentifier.MISC);
-            statement = connection.prepareStatement("UPDATE " + tablePrefix + "users SET uuid = ? WHERE user = ?");
+            statement = connection.prepareStatement("UPDATE " + tablePrefix + "users SET uuid = ? WHERE `user` = ?");
 
             for (Map.Entry<String, UUID> entry : fetchedUUIDs.entrySet()) {
                 statement.setString(1, entry.getValue().toString());
@@ -811,7 +900,7 @@ public final class SQLDatabaseManager implements DatabaseManager {
         try {
             connection = getConnection(PoolIdentifier.MISC);
             statement = connection.createStatement();
-            resultSet = statement.executeQuery("SELECT user FROM " + tablePrefix + "users");
+            resultSet = statement.executeQuery("SELECT `user` FROM " + tablePrefix + "users");
             while (resultSet.next()) {
                 users.add(resultSet.getString("user"));
             }
@@ -843,7 +932,7 @@ public final class SQLDatabaseManager implements DatabaseManager {
             statement = connection.prepareStatement("SELECT table_name FROM INFORMATION_SCHEMA.TABLES"
                     + " WHERE table_schema = ?"
                     + " AND table_name = ?");
-            statement.setString(1, mcMMO.p.getGeneralConfig().getMySQLDatabaseName());
+            statement.setString(1, getSchemaName());
             statement.setString(2, tablePrefix + "users");
             resultSet = statement.executeQuery();
             if (!resultSet.next()) {
@@ -854,12 +943,12 @@ public final class SQLDatabaseManager implements DatabaseManager {
                     + "`uuid` varchar(36) NULL DEFAULT NULL,"
                     + "`lastlogin` int(32) unsigned NOT NULL,"
                     + "PRIMARY KEY (`id`),"
-                    + "INDEX(`user`(20) ASC),"
+                    + (isEmbedded() ? "INDEX(`user`)," : "INDEX(`user`(20) ASC),")
                     + "UNIQUE KEY `uuid` (`uuid`)) DEFAULT CHARSET=" + CHARSET_SQL + " AUTO_INCREMENT=1;");
                 tryClose(createStatement);
             }
             tryClose(resultSet);
-            statement.setString(1, mcMMO.p.getGeneralConfig().getMySQLDatabaseName());
+            statement.setString(1, getSchemaName());
             statement.setString(2, tablePrefix + "huds");
             resultSet = statement.executeQuery();
             if (!resultSet.next()) {
@@ -873,7 +962,7 @@ public final class SQLDatabaseManager implements DatabaseManager {
                 tryClose(createStatement);
             }
             tryClose(resultSet);
-            statement.setString(1, mcMMO.p.getGeneralConfig().getMySQLDatabaseName());
+            statement.setString(1, getSchemaName());
             statement.setString(2, tablePrefix + "cooldowns");
             resultSet = statement.executeQuery();
             if (!resultSet.next()) {
@@ -898,7 +987,7 @@ public final class SQLDatabaseManager implements DatabaseManager {
                 tryClose(createStatement);
             }
             tryClose(resultSet);
-            statement.setString(1, mcMMO.p.getGeneralConfig().getMySQLDatabaseName());
+            statement.setString(1, getSchemaName());
             statement.setString(2, tablePrefix + "skills");
             resultSet = statement.executeQuery();
             if (!resultSet.next()) {
@@ -926,7 +1015,7 @@ public final class SQLDatabaseManager implements DatabaseManager {
                 tryClose(createStatement);
             }
             tryClose(resultSet);
-            statement.setString(1, mcMMO.p.getGeneralConfig().getMySQLDatabaseName());
+            statement.setString(1, getSchemaName());
             statement.setString(2, tablePrefix + "experience");
             resultSet = statement.executeQuery();
             if (!resultSet.next()) {
@@ -953,8 +1042,14 @@ public final class SQLDatabaseManager implements DatabaseManager {
             tryClose(resultSet);
             tryClose(statement);
 
-            for (UpgradeType updateType : UpgradeType.values()) {
-                checkDatabaseStructure(connection, updateType);
+            if (isEmbedded()) {
+                // Embedded databases are always created with the current schema, they only need their indexes
+                createSkillIndexes(connection);
+            }
+            else {
+                for (UpgradeType updateType : UpgradeType.values()) {
+                    checkDatabaseStructure(connection, updateType);
+                }
             }
 
             if (mcMMO.p.getGeneralConfig().getTruncateSkills()) {
@@ -970,10 +1065,7 @@ public final class SQLDatabaseManager implements DatabaseManager {
 
             mcMMO.p.getLogger().info("Killing orphans");
             createStatement = connection.createStatement();
-            createStatement.executeUpdate("DELETE FROM `" + tablePrefix + "experience` WHERE NOT EXISTS (SELECT * FROM `" + tablePrefix + "users` `u` WHERE `" + tablePrefix + "experience`.`user_id` = `u`.`id`)");
-            createStatement.executeUpdate("DELETE FROM `" + tablePrefix + "huds` WHERE NOT EXISTS (SELECT * FROM `" + tablePrefix + "users` `u` WHERE `" + tablePrefix + "huds`.`user_id` = `u`.`id`)");
-            createStatement.executeUpdate("DELETE FROM `" + tablePrefix + "cooldowns` WHERE NOT EXISTS (SELECT * FROM `" + tablePrefix + "users` `u` WHERE `" + tablePrefix + "cooldowns`.`user_id` = `u`.`id`)");
-            createStatement.executeUpdate("DELETE FROM `" + tablePrefix + "skills` WHERE NOT EXISTS (SELECT * FROM `" + tablePrefix + "users` `u` WHERE `" + tablePrefix + "skills`.`user_id` = `u`.`id`)");
+            deleteOrphanedRows(createStatement);
         }
         catch (SQLException ex) {
             printErrors(ex);
@@ -987,6 +1079,36 @@ public final class SQLDatabaseManager implements DatabaseManager {
 
     }
 
+    private void deleteOrphanedRows(@NotNull Statement statement) throws SQLException {
+        statement.executeUpdate("DELETE FROM `" + tablePrefix + "experience` WHERE NOT EXISTS (SELECT * FROM `" + tablePrefix + "users` `u` WHERE `" + tablePrefix + "experience`.`user_id` = `u`.`id`)");
+        statement.executeUpdate("DELETE FROM `" + tablePrefix + "huds` WHERE NOT EXISTS (SELECT * FROM `" + tablePrefix + "users` `u` WHERE `" + tablePrefix + "huds`.`user_id` = `u`.`id`)");
+        statement.executeUpdate("DELETE FROM `" + tablePrefix + "cooldowns` WHERE NOT EXISTS (SELECT * FROM `" + tablePrefix + "users` `u` WHERE `" + tablePrefix + "cooldowns`.`user_id` = `u`.`id`)");
+        statement.executeUpdate("DELETE FROM `" + tablePrefix + "skills` WHERE NOT EXISTS (SELECT * FROM `" + tablePrefix + "users` `u` WHERE `" + tablePrefix + "skills`.`user_id` = `u`.`id`)");
+    }
+
+    /**
+     * Index every leaderboard column so rank and leaderboard queries don't scan the skills table
+     */
+    private void createSkillIndexes(@NotNull Connection connection) throws SQLException {
+        Statement statement = null;
+
+        try {
+            statement = connection.createStatement();
+
+            for (String column : getRankColumns()) {
+                statement.executeUpdate("CREATE INDEX IF NOT EXISTS `idx_" + column + "` ON `" + tablePrefix + "skills` (`" + column + "`)");
+            }
+        }
+        finally {
+            tryClose(statement);
+        }
+    }
+
+    private @NotNull String getSchemaName() {
+        // H2 keeps its tables in the default schema no matter what the database is called
+        return isEmbedded() ? "public" : mcMMO.p.getGeneralConfig().getMySQLDatabaseName();
+    }
+
     private Connection getConnection(PoolIdentifier identifier) throws SQLException {
         Connection connection = null;
         switch (identifier) {
@@ -1208,7 +1330,7 @@ public final class SQLDatabaseManager implements DatabaseManager {
     }
 
     public DatabaseType getDatabaseType() {
-        return DatabaseType.SQL;
+        return databaseType;
     }
 
     private void checkNameUniqueness(final Statement statement) {
@@ -1515,7 +1637,7 @@ public final class SQLDatabaseManager implements DatabaseManager {
         PreparedStatement statement = null;
 
         try {
-            statement = connection.prepareStatement("SELECT id, user FROM " + tablePrefix + "users WHERE uuid = ? OR (uuid IS NULL AND user = ?)");
+            statement = connection.prepareStatement("SELECT id, `user` FROM " + tablePrefix + "users WHERE uuid = ? OR (uuid IS NULL AND `user` = ?)");
             statement.setString(1, uuid.toString());
             statement.setString(2, playerName);
             resultSet = statement.executeQuery();
@@ -1544,7 +1666,7 @@ public final class SQLDatabaseManager implements DatabaseManager {
         PreparedStatement statement = null;
 
         try {
-            statement = connection.prepareStatement("SELECT id, user FROM " + tablePrefix + "users WHERE user = ?");
+            statement = connection.prepareStatement("SELECT id, `user` FROM " + tablePrefix + "users WHERE `user` = ?");
             statement.setString(1, playerName);
             resultSet = statement.executeQuery();
 
@@ -1575,6 +1697,28 @@ public final class SQLDatabaseManager implements DatabaseManager {
         }
     }
 
+    private void tryRollback(Connection connection) {
+        if (connection != null) {
+            try {
+                connection.rollback();
+            }
+            catch (SQLException e) {
+                // Ignore
+            }
+        }
+    }
+
+    private void tryResetAutoCommit(Connection connection) {
+        if (connection != null) {
+            try {
+                connection.setAutoCommit(true);
+            }
+            catch (SQLException e) {
+                // Ignore
+            }
+        }
+    }
+
     @Override
     public void onDisable() {
         LogUtils.debug(mcMMO.p.getLogger(), "Releasing connection pool resource...");
@@ -1583,6 +1727,17 @@ public final class SQLDatabaseManager implements DatabaseManager {
         savePool.close();
     }
 
+    private static final class SaveBatch {
+        private final @NotNull PreparedStatement statement;
+        private final @NotNull String tableDescription;
+        private final @NotNull List<PlayerProfile> profiles = new ArrayList<>();
+
+        private SaveBatch(@NotNull PreparedStatement statement, @NotNull String tableDescription) {
+            this.statement = statement;
+            this.tableDescription = tableDescription;
+        }
+    }
+
     public enum PoolIdentifier {
         MISC,
         LOAD,
@@ -1670,4 +1825,43 @@ public final class SQLDatabaseManager implements DatabaseManager {
                 "    CHARACTER SET utf8mb4\n" +
                 "    COLLATE utf8mb4_unicode_ci;";
     }
+
+    /**
+     * Ranks a player on every leaderboard at once, each rank is the amount of players ahead of them plus one
+     * The players ahead are counted by subqueries which only read the range of the skill's index above the player,
+     * and ties are settled by alphabetical order like on the leaderboards
+     */
+    @NotNull
+    private String getRankSQLQuery() {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        List<String> columns = getRankColumns();
+
+        for (int i = 0; i < columns.size(); i++) {
+            String column = columns.get(i);
+
+            if (i > 0) {
+                sql.append(", ");
+            }
+
+            sql.append("CASE WHEN p.").append(column).append(" > 0 THEN ")
+                    .append("(SELECT COUNT(*) FROM ").append(tablePrefix).append("skills o WHERE o.").append(column).append(" > p.").append(column).append(")")
+                    .append(" + (SELECT COUNT(*) FROM ").append(tablePrefix).append("users ou JOIN ").append(tablePrefix).append("skills o ON o.user_id = ou.id")
+                    .append(" WHERE o.").append(column).append(" = p.").append(column).append(" AND ou.`user` <= pu.`user`)")
+                    .append(" END AS ").append(column).append("_rank");
+        }
+
+        return sql.append(" FROM ").append(tablePrefix).append("users pu JOIN ").append(tablePrefix).append("skills p ON p.user_id = pu.id")
+                .append(" WHERE pu.`user` = ?").toString();
+    }
+
+    private @NotNull List<String> getRankColumns() {
+        List<String> columns = new ArrayList<>();
+
+        for (PrimarySkillType primarySkillType : SkillTools.NON_CHILD_SKILLS) {
+            columns.add(primarySkillType.name().toLowerCase(Locale.ENGLISH));
+        }
+
+        columns.add(ALL_QUERY_VERSION);
+        return columns;
+    }
 }
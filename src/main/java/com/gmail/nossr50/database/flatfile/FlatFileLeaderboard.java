@@ -0,0 +1,165 @@
+package com.gmail.nossr50.database.flatfile;
+
+import com.gmail.nossr50.datatypes.database.PlayerStat;
+import com.gmail.nossr50.datatypes.skills.PrimarySkillType;
+import com.gmail.nossr50.util.skills.SkillTools;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Keeps a {@link LeaderboardTree} for every skill and one for power level up to date as players are saved
+ * Players are identified by a key which stays the same when they change their name
+ */
+public class FlatFileLeaderboard {
+    private final @NotNull EnumMap<PrimarySkillType, LeaderboardTree> skillTrees = new EnumMap<>(PrimarySkillType.class);
+    private final @NotNull LeaderboardTree powerLevelTree = new LeaderboardTree();
+    private final @NotNull Map<String, Entry> entries = new HashMap<>();
+    private final @NotNull Map<String, Entry> entriesByName = new HashMap<>();
+
+    public FlatFileLeaderboard() {
+        for (PrimarySkillType primarySkillType : SkillTools.NON_CHILD_SKILLS) {
+            skillTrees.put(primarySkillType, new LeaderboardTree());
+        }
+    }
+
+    /**
+     * Add or replace the stats of a player
+     *
+     * @param key the key of the player
+     * @param playerName the current name of the player
+     * @param skillLevels the levels of the player
+     */
+    public synchronized void update(@NotNull String key, @NotNull String playerName, @NotNull Map<PrimarySkillType, Integer> skillLevels) {
+        remove(key);
+
+        Entry entry = new Entry(key, playerName);
+        int powerLevel = 0;
+
+        for (Map.Entry<PrimarySkillType, LeaderboardTree> skillTree : skillTrees.entrySet()) {
+            int level = skillLevels.getOrDefault(skillTree.getKey(), 0);
+            entry.levels.put(skillTree.getKey(), level);
+            skillTree.getValue().insert(playerName, level);
+            powerLevel += level;
+        }
+
+        entry.powerLevel = powerLevel;
+        powerLevelTree.insert(playerName, powerLevel);
+
+        entries.put(key, entry);
+        entriesByName.put(toNameKey(playerName), entry);
+    }
+
+    /**
+     * Remove a player from every leaderboard
+     *
+     * @param key the key of the player
+     */
+    public synchronized void remove(@NotNull String key) {
+        Entry entry = entries.remove(key);
+
+        if (entry == null) {
+            return;
+        }
+
+        for (Map.Entry<PrimarySkillType, Integer> level : entry.levels.entrySet()) {
+            skillTrees.get(level.getKey()).remove(entry.playerName, level.getValue());
+        }
+
+        powerLevelTree.remove(entry.playerName, entry.powerLevel);
+        entriesByName.remove(toNameKey(entry.playerName), entry);
+    }
+
+    public synchronized boolean contains(@NotNull String key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Remove a player from every leaderboard
+     *
+     * @param playerName the name of the player
+     */
+    public synchronized void removeByName(@NotNull String playerName) {
+        Entry entry = entriesByName.get(toNameKey(playerName));
+
+        if (entry != null) {
+            remove(entry.key);
+        }
+    }
+
+    /**
+     * Get a page of a leaderboard
+     *
+     * @param primarySkillType the skill, or null for power level
+     * @param fromIndex the index of the first entry, starting at 0
+     * @param count the maximum amount of entries
+     * @return the entries on the page
+     */
+    public synchronized @NotNull List<PlayerStat> getPage(@Nullable PrimarySkillType primarySkillType, int fromIndex, int count) {
+        return getTree(primarySkillType).getRange(fromIndex, count);
+    }
+
+    /**
+     * Get the rank of a player
+     *
+     * @param primarySkillType the skill, or null for power level
+     * @param playerName the name of the player
+     * @return the rank of the player, or null if they are not on the leaderboard
+     */
+    public synchronized @Nullable Integer getRank(@Nullable PrimarySkillType primarySkillType, @NotNull String playerName) {
+        Entry entry = entriesByName.get(toNameKey(playerName));
+
+        if (entry == null) {
+            return null;
+        }
+
+        int value = primarySkillType == null ? entry.powerLevel : entry.levels.getOrDefault(primarySkillType, 0);
+        return getTree(primarySkillType).getRank(entry.playerName, value);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        skillTrees.values().forEach(LeaderboardTree::clear);
+        powerLevelTree.clear();
+        entries.clear();
+        entriesByName.clear();
+    }
+
+    private @NotNull LeaderboardTree getTree(@Nullable PrimarySkillType primarySkillType) {
+        if (primarySkillType == null) {
+            return powerLevelTree;
+        }
+
+        LeaderboardTree tree = skillTrees.get(primarySkillType);
+
+        if (tree == null) {
+            throw new IllegalArgumentException("Child skills do not have leaderboards");
+        }
+
+        return tree;
+    }
+
+    private static @NotNull String toNameKey(@NotNull String playerName) {
+        return playerName.toLowerCase(Locale.ENGLISH);
+    }
+
+    private static final class Entry {
+        private final @NotNull String key;
+        private final @NotNull String playerName;
+        private final @NotNull EnumMap<PrimarySkillType, Integer> levels = new EnumMap<>(PrimarySkillType.class);
+        private int powerLevel;
+
+        private Entry(@NotNull String key, @NotNull String playerName) {
+            this.key = key;
+            this.playerName = playerName;
+        }
+    }
+}
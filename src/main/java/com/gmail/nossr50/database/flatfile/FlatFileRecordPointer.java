@@ -0,0 +1,62 @@
+package com.gmail.nossr50.database.flatfile;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+
+/**
+ * Points at the byte range of a single user record within one of the FlatFile segments
+ */
+public class FlatFileRecordPointer {
+    private final @NotNull FlatFileSegment segment;
+    private final long offset;
+    private final int length;
+    private final @NotNull String playerName;
+    private final @Nullable UUID uuid;
+
+    public FlatFileRecordPointer(@NotNull FlatFileSegment segment, long offset, int length, @NotNull String playerName, @Nullable UUID uuid) {
+        this.segment = segment;
+        this.offset = offset;
+        this.length = length;
+        this.playerName = playerName;
+        this.uuid = uuid;
+    }
+
+    public @NotNull FlatFileSegment getSegment() {
+        return segment;
+    }
+
+    /**
+     * @return the byte offset of the start of the record
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the length of the record in bytes, not including the line terminator
+     */
+    public int getLength() {
+        return length;
+    }
+
+    public @NotNull String getPlayerName() {
+        return playerName;
+    }
+
+    public @Nullable UUID getUUID() {
+        return uuid;
+    }
+
+    @Override
+    public String toString() {
+        return "FlatFileRecordPointer{" +
+                "segment=" + segment +
+                ", offset=" + offset +
+                ", length=" + length +
+                ", playerName='" + playerName + '\'' +
+                ", uuid=" + uuid +
+                '}';
+    }
+}
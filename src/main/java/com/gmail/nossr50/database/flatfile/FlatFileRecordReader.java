@@ -0,0 +1,111 @@
+package com.gmail.nossr50.database.flatfile;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Reads a FlatFile segment line by line while keeping track of the byte offset of each line
+ * The offsets can be stored in a {@link FlatFileRecordPointer} and read back later with a single positioned read
+ */
+public class FlatFileRecordReader implements Closeable {
+    private final @NotNull InputStream inputStream;
+    private final @NotNull Charset charset;
+    private byte[] lineBuffer = new byte[512];
+    private long position = 0;
+    private long lineOffset = -1;
+    private int lineLength = 0;
+    private boolean lineTerminated = true;
+
+    public FlatFileRecordReader(@NotNull File file, @NotNull Charset charset) throws FileNotFoundException {
+        this.inputStream = new BufferedInputStream(new FileInputStream(file), 65536);
+        this.charset = charset;
+    }
+
+    /**
+     * Read the next line, without its line terminator
+     *
+     * @return the next line or null if the end of the file was reached
+     * @throws IOException if the underlying file could not be read
+     */
+    public @Nullable String readLine() throws IOException {
+        int length = 0;
+        int read;
+
+        lineOffset = position;
+
+        while ((read = inputStream.read()) != -1) {
+            position++;
+
+            if (read == '\n') {
+                break;
+            }
+
+            if (length == lineBuffer.length) {
+                lineBuffer = Arrays.copyOf(lineBuffer, length * 2);
+            }
+
+            lineBuffer[length++] = (byte) read;
+        }
+
+        if (read == -1 && length == 0) {
+            return null;
+        }
+
+        lineTerminated = read != -1;
+
+        if (length > 0 && lineBuffer[length - 1] == '\r') {
+            length--;
+        }
+
+        lineLength = length;
+        return new String(lineBuffer, 0, length, charset);
+    }
+
+    /**
+     * @return the byte offset of the last line returned by {@link #readLine()}
+     */
+    public long getLineOffset() {
+        return lineOffset;
+    }
+
+    /**
+     * @return the length in bytes of the last line returned by {@link #readLine()}, not including the line terminator
+     */
+    public int getLineLength() {
+        return lineLength;
+    }
+
+    /**
+     * @return false if the last line returned by {@link #readLine()} was cut off by the end of the file
+     */
+    public boolean isLineTerminated() {
+        return lineTerminated;
+    }
+
+    /**
+     * Read a single record with a positioned read
+     *
+     * @param file the segment containing the record
+     * @param pointer the location of the record
+     * @param charset the charset the segment was written with
+     * @return the record without its line terminator
+     * @throws IOException if the record could not be read
+     */
+    public static @NotNull String readRecord(@NotNull File file, @NotNull FlatFileRecordPointer pointer, @NotNull Charset charset) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            byte[] data = new byte[pointer.getLength()];
+            randomAccessFile.seek(pointer.getOffset());
+            randomAccessFile.readFully(data);
+            return new String(data, charset);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+}
@@ -0,0 +1,82 @@
+package com.gmail.nossr50.database.flatfile;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.charset.Charset;
+
+/**
+ * Writes FlatFile records line by line while keeping track of the byte offset of each line
+ * Counterpart to {@link FlatFileRecordReader}
+ */
+public class FlatFileRecordWriter implements Closeable {
+    public static final String LINE_SEPARATOR = "\r\n";
+
+    private final @NotNull OutputStream outputStream;
+    private final @NotNull OutputStream targetStream;
+    private final @NotNull Charset charset;
+    private final byte[] lineSeparator;
+    private long position;
+
+    public FlatFileRecordWriter(@NotNull OutputStream outputStream, @NotNull Charset charset) {
+        this(outputStream, charset, 0);
+    }
+
+    /**
+     * @param outputStream the stream to write to
+     * @param charset the charset to encode records with
+     * @param position the offset the stream starts at, used when appending to an existing file
+     */
+    public FlatFileRecordWriter(@NotNull OutputStream outputStream, @NotNull Charset charset, long position) {
+        this.outputStream = new BufferedOutputStream(outputStream, 65536);
+        this.targetStream = outputStream;
+        this.charset = charset;
+        this.lineSeparator = LINE_SEPARATOR.getBytes(charset);
+        this.position = position;
+    }
+
+    /**
+     * Write a line followed by the line separator
+     *
+     * @param line the line to write, without a line terminator
+     * @return the length of the line in bytes, not including the line terminator
+     * @throws IOException if the line could not be written
+     */
+    public int writeLine(@NotNull String line) throws IOException {
+        byte[] data = line.getBytes(charset);
+        outputStream.write(data);
+        outputStream.write(lineSeparator);
+        position += data.length + lineSeparator.length;
+        return data.length;
+    }
+
+    /**
+     * @return the byte offset the next line will be written at
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    public void flush() throws IOException {
+        outputStream.flush();
+    }
+
+    /**
+     * Flush the written records and, when writing to a file, force them onto the storage device
+     * This is expensive so it should be called once per batch of records rather than per record
+     *
+     * @throws IOException if the records could not be flushed or synced
+     */
+    public void sync() throws IOException {
+        outputStream.flush();
+
+        if (targetStream instanceof FileOutputStream) {
+            ((FileOutputStream) targetStream).getFD().sync();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        outputStream.close();
+    }
+}
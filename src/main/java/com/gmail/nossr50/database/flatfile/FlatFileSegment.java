@@ -0,0 +1,15 @@
+package com.gmail.nossr50.database.flatfile;
+
+/**
+ * The files a FlatFile user record can live in
+ */
+public enum FlatFileSegment {
+    /**
+     * The main mcmmo.users file, this is always in a format the health checks can read
+     */
+    USERS,
+    /**
+     * The append-only log of records saved since the last compaction
+     */
+    LOG
+}
@@ -0,0 +1,183 @@
+package com.gmail.nossr50.database.flatfile;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * Maps player UUIDs and names to the location of their most recent record
+ * This class is not thread safe, callers are expected to hold the database lock
+ */
+public class FlatFileUserIndex {
+    private static final int INDEX_FILE_MAGIC = 0x6D634958; //mcIX
+    private static final int INDEX_FILE_VERSION = 1;
+    private static final int IN_UUID_INDEX = 1;
+    private static final int IN_NAME_INDEX = 2;
+
+    private final @NotNull Map<UUID, FlatFileRecordPointer> uuidIndex = new HashMap<>();
+    private final @NotNull Map<String, FlatFileRecordPointer> nameIndex = new HashMap<>();
+
+    /**
+     * Register the newest record for a player, replacing any older record with the same UUID or name
+     *
+     * @param pointer the location of the record
+     */
+    public void put(@NotNull FlatFileRecordPointer pointer) {
+        if (pointer.getUUID() != null) {
+            FlatFileRecordPointer previous = uuidIndex.put(pointer.getUUID(), pointer);
+
+            //Players can change their name, the old name should no longer resolve to this record
+            if (previous != null) {
+                nameIndex.remove(toKey(previous.getPlayerName()), previous);
+            }
+        }
+
+        nameIndex.put(toKey(pointer.getPlayerName()), pointer);
+    }
+
+    /**
+     * Register a record only if nothing is known about this player yet
+     * Used while scanning the users file, where the first entry for a player wins
+     *
+     * @param pointer the location of the record
+     */
+    public void putIfAbsent(@NotNull FlatFileRecordPointer pointer) {
+        if (pointer.getUUID() != null) {
+            uuidIndex.putIfAbsent(pointer.getUUID(), pointer);
+        }
+
+        nameIndex.putIfAbsent(toKey(pointer.getPlayerName()), pointer);
+    }
+
+    public @Nullable FlatFileRecordPointer get(@NotNull UUID uuid) {
+        return uuidIndex.get(uuid);
+    }
+
+    public @Nullable FlatFileRecordPointer get(@NotNull String playerName) {
+        return nameIndex.get(toKey(playerName));
+    }
+
+    public void remove(@NotNull FlatFileRecordPointer pointer) {
+        if (pointer.getUUID() != null) {
+            uuidIndex.remove(pointer.getUUID(), pointer);
+        }
+
+        nameIndex.remove(toKey(pointer.getPlayerName()), pointer);
+    }
+
+    public @NotNull Collection<FlatFileRecordPointer> getNamePointers() {
+        return nameIndex.values();
+    }
+
+    public int size() {
+        return nameIndex.size();
+    }
+
+    public void clear() {
+        uuidIndex.clear();
+        nameIndex.clear();
+    }
+
+    /**
+     * Write the index so it can be loaded again with {@link #read(DataInputStream, long, long, Charset)}
+     * Only records from the users file can be written, records in the log are replayed on top of the loaded index
+     *
+     * @param outputStream the stream to write to
+     * @param usersFileLength the length of the users file this index was built for
+     * @param usersFileModified the last modified time of the users file this index was built for
+     * @param charset the charset the record offsets were calculated with
+     * @throws IOException if the index could not be written
+     */
+    public void write(@NotNull DataOutputStream outputStream, long usersFileLength, long usersFileModified, @NotNull Charset charset) throws IOException {
+        //The same record can be in both maps, or in only one of them if it was shadowed by another record
+        Map<FlatFileRecordPointer, Integer> pointers = new IdentityHashMap<>();
+
+        for (FlatFileRecordPointer pointer : uuidIndex.values()) {
+            pointers.merge(pointer, IN_UUID_INDEX, (a, b) -> a | b);
+        }
+
+        for (FlatFileRecordPointer pointer : nameIndex.values()) {
+            pointers.merge(pointer, IN_NAME_INDEX, (a, b) -> a | b);
+        }
+
+        outputStream.writeInt(INDEX_FILE_MAGIC);
+        outputStream.writeInt(INDEX_FILE_VERSION);
+        outputStream.writeUTF(charset.name());
+        outputStream.writeLong(usersFileLength);
+        outputStream.writeLong(usersFileModified);
+        outputStream.writeInt(pointers.size());
+
+        for (Map.Entry<FlatFileRecordPointer, Integer> entry : pointers.entrySet()) {
+            FlatFileRecordPointer pointer = entry.getKey();
+
+            if (pointer.getSegment() != FlatFileSegment.USERS) {
+                throw new IllegalStateException("Records from the log cannot be written to the index file");
+            }
+
+            outputStream.writeLong(pointer.getOffset());
+            outputStream.writeInt(pointer.getLength());
+            outputStream.writeUTF(pointer.getPlayerName());
+            outputStream.writeBoolean(pointer.getUUID() != null);
+
+            if (pointer.getUUID() != null) {
+                outputStream.writeLong(pointer.getUUID().getMostSignificantBits());
+                outputStream.writeLong(pointer.getUUID().getLeastSignificantBits());
+            }
+
+            outputStream.writeByte(entry.getValue());
+        }
+    }
+
+    /**
+     * Replace the contents of this index with an index written by {@link #write(DataOutputStream, long, long, Charset)}
+     * Nothing is loaded if the index was written for a different version of the users file
+     *
+     * @param inputStream the stream to read from
+     * @param usersFileLength the current length of the users file
+     * @param usersFileModified the current last modified time of the users file
+     * @param charset the charset record offsets are calculated with
+     * @return true if the index was loaded
+     * @throws IOException if the index could not be read
+     */
+    public boolean read(@NotNull DataInputStream inputStream, long usersFileLength, long usersFileModified, @NotNull Charset charset) throws IOException {
+        if (inputStream.readInt() != INDEX_FILE_MAGIC
+                || inputStream.readInt() != INDEX_FILE_VERSION
+                || !inputStream.readUTF().equals(charset.name())
+                || inputStream.readLong() != usersFileLength
+                || inputStream.readLong() != usersFileModified) {
+            return false;
+        }
+
+        clear();
+        int count = inputStream.readInt();
+
+        for (int i = 0; i < count; i++) {
+            long offset = inputStream.readLong();
+            int length = inputStream.readInt();
+            String playerName = inputStream.readUTF();
+            UUID uuid = inputStream.readBoolean() ? new UUID(inputStream.readLong(), inputStream.readLong()) : null;
+            int flags = inputStream.readByte();
+
+            FlatFileRecordPointer pointer = new FlatFileRecordPointer(FlatFileSegment.USERS, offset, length, playerName, uuid);
+
+            if (uuid != null && (flags & IN_UUID_INDEX) != 0) {
+                uuidIndex.put(uuid, pointer);
+            }
+
+            if ((flags & IN_NAME_INDEX) != 0) {
+                nameIndex.put(toKey(playerName), pointer);
+            }
+        }
+
+        return true;
+    }
+
+    private static @NotNull String toKey(@NotNull String playerName) {
+        return playerName.toLowerCase(Locale.ENGLISH);
+    }
+}
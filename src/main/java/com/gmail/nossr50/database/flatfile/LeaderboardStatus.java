@@ -3,5 +3,6 @@ package com.gmail.nossr50.database.flatfile;
 public enum LeaderboardStatus {
     TOO_SOON_TO_UPDATE,
     UPDATED,
+    UP_TO_DATE,
     FAILED
 }
@@ -0,0 +1,198 @@
+package com.gmail.nossr50.database.flatfile;
+
+import com.gmail.nossr50.datatypes.database.PlayerStat;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An order statistic tree of player stats, sorted by value (highest first) and then by name
+ * Insertion, removal, rank lookups and page lookups all cost O(log n)
+ * This class is not thread safe
+ */
+public class LeaderboardTree {
+    private @Nullable Node root;
+
+    /**
+     * Add a stat to the tree, the same name and value should not be added twice
+     *
+     * @param name the name of the player
+     * @param value the value to rank the player by
+     */
+    public void insert(@NotNull String name, int value) {
+        Node node = new Node(name, value);
+        Node[] split = split(root, node.value, node.key);
+        root = merge(merge(split[0], node), split[1]);
+    }
+
+    /**
+     * Remove a stat from the tree
+     *
+     * @param name the name of the player
+     * @param value the value the player was added with
+     * @return true if the stat was found and removed
+     */
+    public boolean remove(@NotNull String name, int value) {
+        String key = toKey(name);
+        Node[] lower = split(root, value, key);
+        //Everything before the first node sorting after ours
+        Node[] upper = split(lower[1], value, key + '\0');
+        boolean removed = upper[0] != null;
+
+        if (upper[0] != null) {
+            //Drop one matching node and keep any others
+            upper[0] = merge(upper[0].left, upper[0].right);
+        }
+
+        root = merge(lower[0], merge(upper[0], upper[1]));
+        return removed;
+    }
+
+    /**
+     * Find the position of a stat, the first place is rank 1
+     *
+     * @param name the name of the player
+     * @param value the value the player was added with
+     * @return the rank of the player
+     */
+    public int getRank(@NotNull String name, int value) {
+        String key = toKey(name);
+        int before = 0;
+        Node node = root;
+
+        while (node != null) {
+            if (compare(value, key, node) <= 0) {
+                node = node.left;
+            } else {
+                before += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+
+        return before + 1;
+    }
+
+    /**
+     * Get a range of the leaderboard
+     *
+     * @param fromIndex the index of the first stat to get, starting at 0
+     * @param count the maximum amount of stats to get
+     * @return copies of the stats in the range
+     */
+    public @NotNull List<PlayerStat> getRange(int fromIndex, int count) {
+        List<PlayerStat> stats = new ArrayList<>(Math.max(0, Math.min(count, size() - fromIndex)));
+        collect(root, fromIndex, fromIndex + count, 0, stats);
+        return stats;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public void clear() {
+        root = null;
+    }
+
+    private static void collect(@Nullable Node node, int fromIndex, int toIndex, int offset, @NotNull List<PlayerStat> stats) {
+        if (node == null || fromIndex >= toIndex) {
+            return;
+        }
+
+        int nodeIndex = offset + size(node.left);
+
+        if (fromIndex < nodeIndex) {
+            collect(node.left, fromIndex, toIndex, offset, stats);
+        }
+
+        if (nodeIndex >= fromIndex && nodeIndex < toIndex) {
+            stats.add(new PlayerStat(node.name, node.value));
+        }
+
+        if (toIndex > nodeIndex + 1) {
+            collect(node.right, fromIndex, toIndex, nodeIndex + 1, stats);
+        }
+    }
+
+    /**
+     * Split a tree into the nodes sorting before the given position and the rest
+     */
+    private static Node[] split(@Nullable Node node, int value, @NotNull String key) {
+        if (node == null) {
+            return new Node[2];
+        }
+
+        if (compare(value, key, node) <= 0) {
+            Node[] result = split(node.left, value, key);
+            node.left = result[1];
+            result[1] = update(node);
+            return result;
+        } else {
+            Node[] result = split(node.right, value, key);
+            node.right = result[0];
+            result[0] = update(node);
+            return result;
+        }
+    }
+
+    private static @Nullable Node merge(@Nullable Node left, @Nullable Node right) {
+        if (left == null) {
+            return right;
+        }
+
+        if (right == null) {
+            return left;
+        }
+
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return update(left);
+        } else {
+            right.left = merge(left, right.left);
+            return update(right);
+        }
+    }
+
+    /**
+     * Compare a position in the leaderboard with a node, higher values come first
+     */
+    private static int compare(int value, @NotNull String key, @NotNull Node node) {
+        if (value != node.value) {
+            return value > node.value ? -1 : 1;
+        }
+
+        return key.compareTo(node.key);
+    }
+
+    private static @NotNull Node update(@NotNull Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        return node;
+    }
+
+    private static int size(@Nullable Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static @NotNull String toKey(@NotNull String name) {
+        return name.toLowerCase(Locale.ENGLISH);
+    }
+
+    private static final class Node {
+        private final @NotNull String name;
+        private final @NotNull String key;
+        private final int value;
+        private final int priority = ThreadLocalRandom.current().nextInt();
+        private int size = 1;
+        private @Nullable Node left;
+        private @Nullable Node right;
+
+        private Node(@NotNull String name, int value) {
+            this.name = name;
+            this.key = toKey(name);
+            this.value = value;
+        }
+    }
+}
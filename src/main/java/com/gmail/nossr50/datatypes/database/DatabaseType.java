@@ -3,6 +3,7 @@ package com.gmail.nossr50.datatypes.database;
 public enum DatabaseType {
     FLATFILE,
     SQL,
+    H2,
     CUSTOM;
 
     public static DatabaseType getDatabaseType(String typeName) {
@@ -18,6 +19,9 @@ public enum DatabaseType {
         else if (typeName.equalsIgnoreCase("mysql")) {
             return SQL;
         }
+        else if (typeName.equalsIgnoreCase("embedded")) {
+            return H2;
+        }
 
         return CUSTOM;
     }
@@ -0,0 +1,69 @@
+package com.gmail.nossr50.datatypes.experience;
+
+import java.util.Arrays;
+
+/**
+ * The experience gained in the last few minutes, used for diminished returns
+ * Gains are summed into one bucket per second of a ring buffer, so recording and reading are constant time and the memory used does not depend on how often experience is gained
+ */
+public class RollingXpWindow {
+    private static final long BUCKET_MILLIS = 1000;
+
+    private final float[] buckets;
+    // The bucket of the most recent gain, counted in seconds since the epoch
+    private long newestBucket = Long.MIN_VALUE;
+    // Kept as a double so adding and removing buckets for hours does not drift
+    private double total;
+
+    /**
+     * @param windowMillis how long gains are counted for, rounded up to whole seconds
+     */
+    public RollingXpWindow(long windowMillis) {
+        buckets = new float[(int) Math.max(1, (windowMillis + BUCKET_MILLIS - 1) / BUCKET_MILLIS)];
+    }
+
+    public void add(float xp) {
+        add(xp, System.currentTimeMillis());
+    }
+
+    /**
+     * @return the experience gained within the window
+     */
+    public float getTotal() {
+        return getTotal(System.currentTimeMillis());
+    }
+
+    void add(float xp, long now) {
+        advance(now);
+        buckets[(int) Math.floorMod(newestBucket, (long) buckets.length)] += xp;
+        total += xp;
+    }
+
+    float getTotal(long now) {
+        advance(now);
+        return total <= 0 ? 0F : (float) total;
+    }
+
+    /**
+     * Drops the buckets which have moved out of the window since the last call
+     */
+    private void advance(long now) {
+        long bucket = Math.floorDiv(now, BUCKET_MILLIS);
+        if (bucket <= newestBucket)
+            return;
+
+        if (newestBucket == Long.MIN_VALUE || bucket - newestBucket >= buckets.length) {
+            Arrays.fill(buckets, 0F);
+            total = 0;
+        }
+        else {
+            for (long expired = newestBucket + 1; expired <= bucket; expired++) {
+                int index = (int) Math.floorMod(expired, (long) buckets.length);
+                total -= buckets[index];
+                buckets[index] = 0F;
+            }
+        }
+
+        newestBucket = bucket;
+    }
+}
@@ -7,6 +7,10 @@ import org.jetbrains.annotations.NotNull;
 import java.util.concurrent.Delayed;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * @deprecated diminished returns are tracked with {@link RollingXpWindow}, this is no longer used by mcMMO
+ */
+@Deprecated
 public class SkillXpGain implements Delayed {
     private final long expiryTime;
     private final float xp;
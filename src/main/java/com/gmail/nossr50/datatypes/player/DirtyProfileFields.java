@@ -0,0 +1,128 @@
+package com.gmail.nossr50.datatypes.player;
+
+import com.gmail.nossr50.datatypes.skills.PrimarySkillType;
+import com.gmail.nossr50.datatypes.skills.SuperAbilityType;
+import com.gmail.nossr50.util.skills.SkillTools;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Tracks which parts of a {@link PlayerProfile} changed since it was last saved
+ * Databases which store each value separately use this to only write what changed
+ */
+public class DirtyProfileFields {
+    private final EnumSet<PrimarySkillType> skillLevels = EnumSet.noneOf(PrimarySkillType.class);
+    private final EnumSet<PrimarySkillType> skillsXp = EnumSet.noneOf(PrimarySkillType.class);
+    private final EnumSet<SuperAbilityType> cooldowns = EnumSet.noneOf(SuperAbilityType.class);
+    private final EnumSet<UniqueDataType> uniqueData = EnumSet.noneOf(UniqueDataType.class);
+    private boolean scoreboardTips;
+
+    /**
+     * @return fields with everything marked as changed
+     */
+    public static @NotNull DirtyProfileFields all() {
+        DirtyProfileFields dirtyProfileFields = new DirtyProfileFields();
+        dirtyProfileFields.markAll();
+        return dirtyProfileFields;
+    }
+
+    public synchronized void markSkillLevel(@NotNull PrimarySkillType primarySkillType) {
+        skillLevels.add(primarySkillType);
+    }
+
+    public synchronized void markSkillXp(@NotNull PrimarySkillType primarySkillType) {
+        skillsXp.add(primarySkillType);
+    }
+
+    public synchronized void markCooldown(@NotNull SuperAbilityType superAbilityType) {
+        cooldowns.add(superAbilityType);
+    }
+
+    public synchronized void markAllCooldowns() {
+        cooldowns.addAll(EnumSet.allOf(SuperAbilityType.class));
+    }
+
+    public synchronized void markUniqueData(@NotNull UniqueDataType uniqueDataType) {
+        uniqueData.add(uniqueDataType);
+    }
+
+    public synchronized void markScoreboardTips() {
+        scoreboardTips = true;
+    }
+
+    public synchronized void markAll() {
+        skillLevels.addAll(SkillTools.NON_CHILD_SKILLS);
+        skillsXp.addAll(SkillTools.NON_CHILD_SKILLS);
+        cooldowns.addAll(EnumSet.allOf(SuperAbilityType.class));
+        uniqueData.addAll(EnumSet.allOf(UniqueDataType.class));
+        scoreboardTips = true;
+    }
+
+    /**
+     * Add the changes of another set of fields to these
+     *
+     * @param other the fields to add
+     */
+    public void merge(@NotNull DirtyProfileFields other) {
+        DirtyProfileFields otherCopy = other.copy();
+
+        synchronized (this) {
+            skillLevels.addAll(otherCopy.skillLevels);
+            skillsXp.addAll(otherCopy.skillsXp);
+            cooldowns.addAll(otherCopy.cooldowns);
+            uniqueData.addAll(otherCopy.uniqueData);
+            scoreboardTips |= otherCopy.scoreboardTips;
+        }
+    }
+
+    public synchronized @NotNull DirtyProfileFields copy() {
+        DirtyProfileFields copy = new DirtyProfileFields();
+        copy.skillLevels.addAll(skillLevels);
+        copy.skillsXp.addAll(skillsXp);
+        copy.cooldowns.addAll(cooldowns);
+        copy.uniqueData.addAll(uniqueData);
+        copy.scoreboardTips = scoreboardTips;
+        return copy;
+    }
+
+    /**
+     * Copy these fields and start tracking changes from scratch, used when a profile is queued for saving
+     *
+     * @return the fields which were changed until now
+     */
+    public synchronized @NotNull DirtyProfileFields copyAndClear() {
+        DirtyProfileFields copy = copy();
+        skillLevels.clear();
+        skillsXp.clear();
+        cooldowns.clear();
+        uniqueData.clear();
+        scoreboardTips = false;
+        return copy;
+    }
+
+    public synchronized @NotNull Set<PrimarySkillType> getSkillLevels() {
+        return EnumSet.copyOf(skillLevels);
+    }
+
+    public synchronized @NotNull Set<PrimarySkillType> getSkillsXp() {
+        return EnumSet.copyOf(skillsXp);
+    }
+
+    public synchronized @NotNull Set<SuperAbilityType> getCooldowns() {
+        return EnumSet.copyOf(cooldowns);
+    }
+
+    public synchronized @NotNull Set<UniqueDataType> getUniqueData() {
+        return EnumSet.copyOf(uniqueData);
+    }
+
+    public synchronized boolean isScoreboardTipsChanged() {
+        return scoreboardTips;
+    }
+
+    public synchronized boolean isEmpty() {
+        return skillLevels.isEmpty() && skillsXp.isEmpty() && cooldowns.isEmpty() && uniqueData.isEmpty() && !scoreboardTips;
+    }
+}
@@ -65,7 +65,10 @@ import org.bukkit.plugin.Plugin;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -82,6 +85,11 @@ public class McMMOPlayer implements Identified {
     private final Map<PrimarySkillType, SkillManager> skillManagers = new EnumMap<>(PrimarySkillType.class);
     private final ExperienceBarManager experienceBarManager;
 
+    // XP gains of the current tick, only used when Experience_Batching is enabled
+    // Shared party XP is queued from the thread of the member who earned it, which on Folia may be another region, so access is synchronized on the list
+    private final List<PendingXpGain> pendingXpGains = new ArrayList<>();
+    private boolean xpGainFlushScheduled;
+
     private Party   party;
     private Party   invite;
     private Party   allianceInvite;
@@ -640,7 +648,11 @@ public class McMMOPlayer implements Identified {
         if(player.getGameMode() == GameMode.CREATIVE)
             return;
 
-        applyXpGain(skill, modifyXpGain(skill, xp), xpGainReason, xpGainSource);
+        if (shouldBatchXpGain(xpGainSource)) {
+            queueXpGain(skill, modifyXpGain(skill, xp), xpGainReason, xpGainSource);
+        } else {
+            applyXpGain(skill, modifyXpGain(skill, xp), xpGainReason, xpGainSource);
+        }
 
         if (party == null || party.hasReachedLevelCap()) {
             return;
@@ -658,11 +670,18 @@ public class McMMOPlayer implements Identified {
      * @param xp Experience amount to add
      */
     public void applyXpGain(PrimarySkillType primarySkillType, float xp, XPGainReason xpGainReason, XPGainSource xpGainSource) {
+        applyXpGain(primarySkillType, xp, xpGainReason, xpGainSource, 1);
+    }
+
+    /**
+     * @param gainCount how many gains were combined into this one, see {@link PendingXpGain}
+     */
+    private void applyXpGain(PrimarySkillType primarySkillType, float xp, XPGainReason xpGainReason, XPGainSource xpGainSource, int gainCount) {
         if (!mcMMO.p.getSkillTools().doesPlayerHaveSkillPermission(player, primarySkillType)) {
             return;
         }
 
-        final McMMOPlayerPreXpGainEvent mcMMOPlayerPreXpGainEvent = new McMMOPlayerPreXpGainEvent(player, primarySkillType, xp, xpGainReason);
+        final McMMOPlayerPreXpGainEvent mcMMOPlayerPreXpGainEvent = new McMMOPlayerPreXpGainEvent(player, primarySkillType, xp, xpGainReason, gainCount);
         Bukkit.getPluginManager().callEvent(mcMMOPlayerPreXpGainEvent);
         xp = mcMMOPlayerPreXpGainEvent.getXpGained();
 
@@ -670,13 +689,13 @@ public class McMMOPlayer implements Identified {
             Set<PrimarySkillType> parentSkills = FamilyTree.getParents(primarySkillType);
 
             for (PrimarySkillType parentSkill : parentSkills) {
-                applyXpGain(parentSkill, xp / parentSkills.size(), xpGainReason, xpGainSource);
+                applyXpGain(parentSkill, xp / parentSkills.size(), xpGainReason, xpGainSource, gainCount);
             }
 
             return;
         }
 
-        if (!EventUtils.handleXpGainEvent(player, primarySkillType, xp, xpGainReason)) {
+        if (!EventUtils.handleXpGainEvent(player, primarySkillType, xp, xpGainReason, gainCount)) {
             return;
         }
 
@@ -684,6 +703,79 @@ public class McMMOPlayer implements Identified {
         checkXp(primarySkillType, xpGainReason, xpGainSource);
     }
 
+    private static boolean shouldBatchXpGain(XPGainSource xpGainSource) {
+        // XP given by commands and other plugins is expected to be applied right away
+        return xpGainSource != XPGainSource.COMMAND && xpGainSource != XPGainSource.CUSTOM
+                && ExperienceConfig.getInstance().isExperienceBatchingEnabled();
+    }
+
+    private void queueXpGain(PrimarySkillType skill, float xp, XPGainReason xpGainReason, XPGainSource xpGainSource) {
+        synchronized (pendingXpGains) {
+            PendingXpGain pendingXpGain = null;
+
+            for (PendingXpGain pending : pendingXpGains) {
+                if (pending.matches(skill, xpGainReason, xpGainSource)) {
+                    pendingXpGain = pending;
+                    break;
+                }
+            }
+
+            if (pendingXpGain == null) {
+                pendingXpGain = new PendingXpGain(skill, xpGainReason, xpGainSource);
+                pendingXpGains.add(pendingXpGain);
+            }
+
+            pendingXpGain.add(xp);
+
+            if (xpGainFlushScheduled)
+                return;
+
+            xpGainFlushScheduled = true;
+        }
+
+        // Flushed on the thread which owns the player
+        mcMMO.p.getFoliaLib().getImpl().runAtEntity(player, t -> flushXpGains());
+    }
+
+    /**
+     * XP gains which were combined during this tick and have not been applied yet
+     * These are applied at the start of the next tick, each firing one {@link McMMOPlayerPreXpGainEvent} and {@link com.gmail.nossr50.events.experience.McMMOPlayerXpGainEvent}
+     *
+     * @return a copy of the pending gains, empty unless Experience_Batching is enabled in experience.yml
+     */
+    public @NotNull List<PendingXpGain> getPendingXpGains() {
+        synchronized (pendingXpGains) {
+            List<PendingXpGain> copy = new ArrayList<>(pendingXpGains.size());
+
+            for (PendingXpGain pendingXpGain : pendingXpGains) {
+                copy.add(new PendingXpGain(pendingXpGain));
+            }
+
+            return Collections.unmodifiableList(copy);
+        }
+    }
+
+    /**
+     * Applies the XP gains which were combined during this tick
+     */
+    public void flushXpGains() {
+        PendingXpGain[] flushing;
+
+        synchronized (pendingXpGains) {
+            xpGainFlushScheduled = false;
+
+            if (pendingXpGains.isEmpty())
+                return;
+
+            flushing = pendingXpGains.toArray(new PendingXpGain[0]);
+            pendingXpGains.clear();
+        }
+
+        for (PendingXpGain pendingXpGain : flushing) {
+            applyXpGain(pendingXpGain.getSkill(), pendingXpGain.getXp(), pendingXpGain.getXpGainReason(), pendingXpGain.getXpGainSource(), pendingXpGain.getGainCount());
+        }
+    }
+
     /**
      * Check the XP of a skill.
      *
@@ -1171,6 +1263,7 @@ public class McMMOPlayer implements Identified {
      * Etc...
      */
     public void cleanup() {
+        flushXpGains();
         resetAbilityMode();
         getTamingManager().cleanupAllSummons();
     }
@@ -0,0 +1,67 @@
+package com.gmail.nossr50.datatypes.player;
+
+import com.gmail.nossr50.datatypes.experience.XPGainReason;
+import com.gmail.nossr50.datatypes.experience.XPGainSource;
+import com.gmail.nossr50.datatypes.skills.PrimarySkillType;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * XP gains of one player for the same skill, reason and source which are combined until the end of the tick
+ * Only used when Experience_Batching is enabled in experience.yml, see {@link McMMOPlayer#getPendingXpGains()}
+ */
+public class PendingXpGain {
+    private final @NotNull PrimarySkillType skill;
+    private final @NotNull XPGainReason xpGainReason;
+    private final @NotNull XPGainSource xpGainSource;
+    private float xp;
+    private int gainCount;
+
+    PendingXpGain(@NotNull PrimarySkillType skill, @NotNull XPGainReason xpGainReason, @NotNull XPGainSource xpGainSource) {
+        this.skill = skill;
+        this.xpGainReason = xpGainReason;
+        this.xpGainSource = xpGainSource;
+    }
+
+    PendingXpGain(@NotNull PendingXpGain pendingXpGain) {
+        this.skill = pendingXpGain.skill;
+        this.xpGainReason = pendingXpGain.xpGainReason;
+        this.xpGainSource = pendingXpGain.xpGainSource;
+        this.xp = pendingXpGain.xp;
+        this.gainCount = pendingXpGain.gainCount;
+    }
+
+    boolean matches(@NotNull PrimarySkillType skill, @NotNull XPGainReason xpGainReason, @NotNull XPGainSource xpGainSource) {
+        return this.skill == skill && this.xpGainReason == xpGainReason && this.xpGainSource == xpGainSource;
+    }
+
+    void add(float xp) {
+        this.xp += xp;
+        gainCount++;
+    }
+
+    public @NotNull PrimarySkillType getSkill() {
+        return skill;
+    }
+
+    public @NotNull XPGainReason getXpGainReason() {
+        return xpGainReason;
+    }
+
+    public @NotNull XPGainSource getXpGainSource() {
+        return xpGainSource;
+    }
+
+    /**
+     * @return the combined experience, after skill modifiers and perks
+     */
+    public float getXp() {
+        return xp;
+    }
+
+    /**
+     * @return how many gains were combined
+     */
+    public int getGainCount() {
+        return gainCount;
+    }
+}
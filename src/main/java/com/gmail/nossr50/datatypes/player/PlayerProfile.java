@@ -2,7 +2,7 @@ package com.gmail.nossr50.datatypes.player;
 
 import com.gmail.nossr50.config.experience.ExperienceConfig;
 import com.gmail.nossr50.datatypes.experience.FormulaType;
-import com.gmail.nossr50.datatypes.experience.SkillXpGain;
+import com.gmail.nossr50.datatypes.experience.RollingXpWindow;
 import com.gmail.nossr50.datatypes.skills.PrimarySkillType;
 import com.gmail.nossr50.datatypes.skills.SuperAbilityType;
 import com.gmail.nossr50.mcMMO;
@@ -15,17 +15,19 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
-import java.util.concurrent.DelayQueue;
+import java.util.concurrent.TimeUnit;
 
 public class PlayerProfile {
     private final String playerName;
     private @Nullable UUID uuid;
     private boolean loaded;
     private volatile boolean changed;
+    private final DirtyProfileFields dirtyFields = new DirtyProfileFields();
+    /* Set on save snapshots, null means every field has to be written */
+    private @Nullable DirtyProfileFields changedFields;
 
     /* HUDs */
     private int scoreboardTipsShown;
-    private int saveAttempts = 0;
 
     private @Nullable Long lastLogin;
 
@@ -36,8 +38,7 @@ public class PlayerProfile {
     private final Map<UniqueDataType, Integer> uniquePlayerData = new EnumMap<>(UniqueDataType.class); //Misc data that doesn't fit into other categories (chimaera wing, etc..)
 
     // Store previous XP gains for diminished returns
-    private final DelayQueue<SkillXpGain> gainedSkillsXp = new DelayQueue<>();
-    private final Map<PrimarySkillType, Float> rollingSkillsXp = new EnumMap<>(PrimarySkillType.class);
+    private final Map<PrimarySkillType, RollingXpWindow> rollingSkillsXp = new EnumMap<>(PrimarySkillType.class);
 
     @Deprecated
     public PlayerProfile(String playerName) {
@@ -102,7 +103,9 @@ public class PlayerProfile {
     }
 
     public void scheduleAsyncSave() {
-        mcMMO.p.getFoliaLib().getImpl().runAsync(new PlayerProfileSaveTask(this, false));
+        if (queueSave()) {
+            mcMMO.getProfileSaveQueue().scheduleFlush();
+        }
     }
 
     public void scheduleAsyncSaveDelay() {
@@ -114,43 +117,78 @@ public class PlayerProfile {
         mcMMO.p.getFoliaLib().getImpl().runLater(new PlayerProfileSaveTask(this, true), 20);
     }
 
+    /**
+     * Save this profile on the current thread, including a snapshot of it which is still waiting in the save queue
+     * Other queued profiles are left to the async save queue
+     *
+     * The save always happens on the calling thread, so the profile is written when this returns unless the save failed
+     *
+     * @param useSync true to retry a failed save on the main thread like before, false to leave it to the async save queue
+     */
     public void save(boolean useSync) {
+        PlayerProfile snapshot = null;
+
+        if (changed && loaded) {
+            changed = false;
+            snapshot = createSaveSnapshot();
+        }
+
+        mcMMO.getProfileSaveQueue().saveNow(this, snapshot, useSync);
+    }
+
+    /**
+     * Queue a copy of this profile to be written by the next flush of the save queue
+     * Nothing is queued if the profile has no unsaved changes
+     *
+     * @return true if a copy was queued
+     */
+    public boolean queueSave() {
         if (!changed || !loaded) {
-            saveAttempts = 0;
-            return;
+            return false;
         }
 
+        //Clear the flag first, changes made while copying will be picked up by the next save
+        changed = false;
+
+        mcMMO.getProfileSaveQueue().enqueue(this, createSaveSnapshot());
+        return true;
+    }
+
+    /**
+     * Copy this profile for saving, the copy remembers which fields changed since the last snapshot
+     *
+     * @return an immutable copy of this profile
+     */
+    public @NotNull PlayerProfile createSaveSnapshot() {
         // TODO should this part be synchronized?
         PlayerProfile profileCopy = new PlayerProfile(playerName, uuid, ImmutableMap.copyOf(skills), ImmutableMap.copyOf(skillsXp), ImmutableMap.copyOf(abilityDATS), scoreboardTipsShown, ImmutableMap.copyOf(uniquePlayerData), lastLogin);
-        changed = !mcMMO.getDatabaseManager().saveUser(profileCopy);
-
-        if (changed) {
-            mcMMO.p.getLogger().severe("PlayerProfile saving failed for player: " + playerName + " " + uuid);
+        profileCopy.changedFields = dirtyFields.copyAndClear();
+        return profileCopy;
+    }
 
-            if(saveAttempts > 0) {
-                mcMMO.p.getLogger().severe("Attempted to save profile for player "+getPlayerName()
-                        + " resulted in failure. "+saveAttempts+" have been made so far.");
-            }
+    /**
+     * The fields which changed before this save snapshot was taken
+     *
+     * @return the changed fields, or null if every field should be saved
+     */
+    public @Nullable DirtyProfileFields getChangedFields() {
+        return changedFields;
+    }
 
-            if(saveAttempts < 10)
-            {
-                saveAttempts++;
-
-                //Back out of async saving if we detect a server shutdown, this is not always going to be caught
-                if(mcMMO.isServerShutdownExecuted() || useSync)
-                    mcMMO.p.getFoliaLib().getImpl().runNextTick(new PlayerProfileSaveTask(this, true));
-                else
-                    scheduleAsyncSave();
-
-            } else {
-                mcMMO.p.getLogger().severe("mcMMO has failed to save the profile for "
-                        +getPlayerName()+" numerous times." +
-                        " mcMMO will now stop attempting to save this profile." +
-                        " Check your console for errors and inspect your DB for issues.");
-            }
+    /**
+     * Add the changed fields of an older snapshot which was never saved to the ones of this snapshot
+     *
+     * @param olderSnapshot the snapshot this one replaces
+     */
+    public void mergeChangedFields(@NotNull PlayerProfile olderSnapshot) {
+        if (changedFields == null) {
+            return;
+        }
 
+        if (olderSnapshot.changedFields == null) {
+            changedFields = null;
         } else {
-            saveAttempts = 0;
+            changedFields.merge(olderSnapshot.changedFields);
         }
     }
 
@@ -176,7 +214,8 @@ public class PlayerProfile {
     }
 
     public void setUniqueId(UUID uuid) {
-        markProfileDirty();
+        //The UUID is written by every save, so no field has to be marked
+        changed = true;
 
         this.uuid = uuid;
     }
@@ -187,9 +226,20 @@ public class PlayerProfile {
 
     /**
      * Marks the profile as "dirty" which flags a profile to be saved in the next save operation
+     * Every field is written by that save
      */
     public void markProfileDirty() {
+        markDirty().markAll();
+    }
+
+    /**
+     * Flags the profile to be saved, the changed fields are marked on the returned fields
+     *
+     * @return the fields the next save has to write
+     */
+    private @NotNull DirtyProfileFields markDirty() {
         changed = true;
+        return dirtyFields;
     }
 
     public int getScoreboardTipsShown() {
@@ -197,7 +247,7 @@ public class PlayerProfile {
     }
 
     public void setScoreboardTipsShown(int scoreboardTipsShown) {
-        markProfileDirty();
+        markDirty().markScoreboardTips();
 
         this.scoreboardTipsShown = scoreboardTipsShown;
     }
@@ -213,12 +263,12 @@ public class PlayerProfile {
     public int getChimaerWingDATS() { return uniquePlayerData.get(UniqueDataType.CHIMAERA_WING_DATS);}
 
     protected void setChimaeraWingDATS(int DATS) {
-        markProfileDirty();
+        markDirty().markUniqueData(UniqueDataType.CHIMAERA_WING_DATS);
         uniquePlayerData.put(UniqueDataType.CHIMAERA_WING_DATS, DATS);
     }
 
     public void setUniqueData(UniqueDataType uniqueDataType, int newData) {
-        markProfileDirty();
+        markDirty().markUniqueData(uniqueDataType);
         uniquePlayerData.put(uniqueDataType, newData);
     }
 
@@ -241,7 +291,7 @@ public class PlayerProfile {
      * @param DATS the DATS of the ability
      */
     protected void setAbilityDATS(SuperAbilityType ability, long DATS) {
-        markProfileDirty();
+        markDirty().markCooldown(ability);
 
         abilityDATS.put(ability, (int) (DATS * .001D));
     }
@@ -250,7 +300,7 @@ public class PlayerProfile {
      * Reset all ability cooldowns.
      */
     protected void resetCooldowns() {
-        markProfileDirty();
+        markDirty().markAllCooldowns();
 
         abilityDATS.replaceAll((a, v) -> 0);
     }
@@ -280,7 +330,7 @@ public class PlayerProfile {
             return;
         }
 
-        markProfileDirty();
+        markDirty().markSkillXp(skill);
 
         skillsXp.put(skill, xpLevel);
     }
@@ -288,7 +338,9 @@ public class PlayerProfile {
     protected float levelUp(PrimarySkillType skill) {
         float xpRemoved = getXpToLevel(skill);
 
-        markProfileDirty();
+        DirtyProfileFields fields = markDirty();
+        fields.markSkillLevel(skill);
+        fields.markSkillXp(skill);
 
         skills.put(skill, skills.get(skill) + 1);
         skillsXp.put(skill, skillsXp.get(skill) - xpRemoved);
@@ -307,7 +359,7 @@ public class PlayerProfile {
             return;
         }
 
-        markProfileDirty();
+        markDirty().markSkillXp(skill);
 
         skillsXp.put(skill, skillsXp.get(skill) - xp);
     }
@@ -317,7 +369,7 @@ public class PlayerProfile {
             return;
         }
 
-        markProfileDirty();
+        markDirty().markSkillXp(skill);
 
         skillsXp.put(skill, skillsXp.get(skill) - xp);
     }
@@ -333,7 +385,9 @@ public class PlayerProfile {
             return;
         }
 
-        markProfileDirty();
+        DirtyProfileFields fields = markDirty();
+        fields.markSkillLevel(skill);
+        fields.markSkillXp(skill);
 
         //Don't allow levels to be negative
         if(level < 0)
@@ -360,17 +414,17 @@ public class PlayerProfile {
      * @param xp Number of experience to add
      */
     public void addXp(PrimarySkillType skill, float xp) {
-        markProfileDirty();
-
         if (SkillTools.isChildSkill(skill)) {
             Set<PrimarySkillType> parentSkills = FamilyTree.getParents(skill);
             float dividedXP = (xp / parentSkills.size());
 
             for (PrimarySkillType parentSkill : parentSkills) {
+                markDirty().markSkillXp(parentSkill);
                 skillsXp.put(parentSkill, skillsXp.get(parentSkill) + dividedXP);
             }
         }
         else {
+            markDirty().markSkillXp(skill);
             skillsXp.put(skill, skillsXp.get(skill) + xp);
         }
     }
@@ -382,13 +436,8 @@ public class PlayerProfile {
      * @return xp Experience amount registered
      */
     public float getRegisteredXpGain(PrimarySkillType primarySkillType) {
-        float xp = 0F;
-
-        if (rollingSkillsXp.get(primarySkillType) != null) {
-            xp = rollingSkillsXp.get(primarySkillType);
-        }
-
-        return xp;
+        RollingXpWindow window = rollingSkillsXp.get(primarySkillType);
+        return window == null ? 0F : window.getTotal();
     }
 
     /**
@@ -399,20 +448,18 @@ public class PlayerProfile {
      * @param xp Experience amount to add
      */
     public void registerXpGain(PrimarySkillType primarySkillType, float xp) {
-        gainedSkillsXp.add(new SkillXpGain(primarySkillType, xp));
-        rollingSkillsXp.put(primarySkillType, getRegisteredXpGain(primarySkillType) + xp);
+        rollingSkillsXp.computeIfAbsent(primarySkillType, skill -> new RollingXpWindow(
+                TimeUnit.MINUTES.toMillis(ExperienceConfig.getInstance().getDiminishedReturnsTimeInterval()))).add(xp);
     }
 
     /**
      * Remove experience gains older than a given time
      * This is used for diminished XP returns
+     *
+     * @deprecated expired gains are dropped whenever the registered experience is read or added to, this does nothing
      */
-    public void purgeExpiredXpGains() {
-        SkillXpGain gain;
-        while ((gain = gainedSkillsXp.poll()) != null) {
-            rollingSkillsXp.put(gain.getSkill(), getRegisteredXpGain(gain.getSkill()) - gain.getXp());
-        }
-    }
+    @Deprecated
+    public void purgeExpiredXpGains() {}
 
     /**
      * Get the amount of Xp remaining before the next level.
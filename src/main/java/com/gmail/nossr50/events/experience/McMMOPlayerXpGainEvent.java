@@ -11,16 +11,28 @@ import org.jetbrains.annotations.NotNull;
  */
 public class McMMOPlayerXpGainEvent extends McMMOPlayerExperienceEvent {
     private float xpGained;
+    private final int gainCount;
 
     @Deprecated
     public McMMOPlayerXpGainEvent(Player player, PrimarySkillType skill, float xpGained) {
-        super(player, skill, XPGainReason.UNKNOWN);
-        this.xpGained = xpGained;
+        this(player, skill, xpGained, XPGainReason.UNKNOWN);
     }
 
     public McMMOPlayerXpGainEvent(Player player, PrimarySkillType skill, float xpGained, XPGainReason xpGainReason) {
+        this(player, skill, xpGained, xpGainReason, 1);
+    }
+
+    public McMMOPlayerXpGainEvent(Player player, PrimarySkillType skill, float xpGained, XPGainReason xpGainReason, int gainCount) {
         super(player, skill, xpGainReason);
         this.xpGained = xpGained;
+        this.gainCount = gainCount;
+    }
+
+    /**
+     * @return how many XP gains of this tick were combined into this event, only more than 1 when Experience_Batching is enabled in experience.yml
+     */
+    public int getGainCount() {
+        return gainCount;
     }
 
     /**
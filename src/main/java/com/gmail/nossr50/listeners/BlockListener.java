@@ -37,7 +37,9 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.block.*;
 import org.bukkit.inventory.ItemStack;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 
 public class BlockListener implements Listener {
     private final mcMMO plugin;
@@ -135,16 +137,18 @@ public class BlockListener implements Listener {
         }
 
         final BlockFace direction = event.getDirection();
+        final List<Block> movedBlocks = new ArrayList<>(event.getBlocks().size());
 
         for (final Block block : event.getBlocks()) {
-            mcMMO.p.getFoliaLib().getImpl().runAtLocation(block.getLocation(), t -> {
-                final Block movedBlock = block.getRelative(direction);
+            final Block movedBlock = block.getRelative(direction);
 
-                if (BlockUtils.isWithinWorldBounds(movedBlock)) {
-                    BlockUtils.setUnnaturalBlock(movedBlock);
-                }
-            });
+            if (BlockUtils.isWithinWorldBounds(movedBlock)) {
+                movedBlocks.add(movedBlock);
+            }
         }
+
+        // One task for the whole push, the place store only needs the coordinates of the moved blocks
+        mcMMO.p.getFoliaLib().getImpl().runAtLocation(event.getBlock().getLocation(), t -> BlockUtils.setUnnaturalBlocks(movedBlocks));
     }
 
     /**
@@ -165,18 +169,20 @@ public class BlockListener implements Listener {
         // Get opposite direction so we get correct block
         BlockFace direction = event.getDirection();
         Block movedBlock = event.getBlock().getRelative(direction);
+        List<Block> movedBlocks = new ArrayList<>(event.getBlocks().size() + 1);
 
         //Spigot makes bad things happen in its API
         if(BlockUtils.isWithinWorldBounds(movedBlock)) {
-            BlockUtils.setUnnaturalBlock(movedBlock);
+            movedBlocks.add(movedBlock);
         }
 
         for (Block block : event.getBlocks()) {
             if(BlockUtils.isWithinWorldBounds(block) && BlockUtils.isWithinWorldBounds(block.getRelative(direction))) {
-                Block relativeBlock = block.getRelative(direction);
-                BlockUtils.setUnnaturalBlock(relativeBlock);
+                movedBlocks.add(block.getRelative(direction));
             }
         }
+
+        BlockUtils.setUnnaturalBlocks(movedBlocks);
     }
 
     /**
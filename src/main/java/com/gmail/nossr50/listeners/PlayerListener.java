@@ -176,7 +176,7 @@ public class PlayerListener implements Listener {
 
         Player killedPlayer = event.getEntity();
 
-        if (!killedPlayer.hasMetadata(MetadataConstants.METADATA_KEY_PLAYER_DATA) || Permissions.hardcoreBypass(killedPlayer)) {
+        if (!UserManager.hasPlayerDataKey(killedPlayer) || Permissions.hardcoreBypass(killedPlayer)) {
             return;
         }
 
@@ -214,7 +214,7 @@ public class PlayerListener implements Listener {
      * <p>
      * These events are monitored for the purpose of removing god mode or
      * player parties if they are not allowed on the world the player has
-     * changed to.
+     * changed to, and of moving their scoreboard to the new world.
      *
      * @param event The event to monitor
      */
@@ -222,6 +222,10 @@ public class PlayerListener implements Listener {
     public void onPlayerWorldChange(PlayerChangedWorldEvent event) {
         Player player = event.getPlayer();
 
+        if(mcMMO.p.getGeneralConfig().getScoreboardsEnabled()) {
+            ScoreboardManager.handleWorldChange(player);
+        }
+
         if (!UserManager.hasPlayerDataKey(player)) {
             return;
         }
@@ -122,10 +122,10 @@ public class SelfListener implements Listener {
 
             int earlyGameBonusXP = 0;
 
-            //Give some bonus XP for low levels
+            //Give some bonus XP for low levels, once for every gain combined into this event
             if(PlayerLevelUtils.qualifiesForEarlyGameBoost(mcMMOPlayer, primarySkillType))
             {
-                earlyGameBonusXP += (mcMMOPlayer.getXpToLevel(primarySkillType) * 0.05);
+                earlyGameBonusXP += (int) (mcMMOPlayer.getXpToLevel(primarySkillType) * 0.05) * event.getGainCount();
                 event.setRawXpGained(event.getRawXpGained() + earlyGameBonusXP);
             }
         }
@@ -150,35 +150,33 @@ public class SelfListener implements Listener {
         }
 
         final float rawXp = event.getRawXpGained();
-
-        float guaranteedMinimum = ExperienceConfig.getInstance().getDiminishedReturnsCap() * rawXp;
+        final int gainCount = event.getGainCount();
 
         float modifiedThreshold = (float) (threshold / ExperienceConfig.getInstance().getFormulaSkillModifier(primarySkillType) * ExperienceConfig.getInstance().getExperienceGainsGlobalMultiplier());
-        float difference = (mcMMOPlayer.getProfile().getRegisteredXpGain(primarySkillType) - modifiedThreshold) / modifiedThreshold;
-
-        if (difference > 0) {
-//            System.out.println("Total XP Earned: " + mcMMOPlayer.getProfile().getRegisteredXpGain(primarySkillType) + " / Threshold value: " + threshold);
-//            System.out.println(difference * 100 + "% over the threshold!");
-//            System.out.println("Previous: " + event.getRawXpGained());
-//            System.out.println("Adjusted XP " + (event.getRawXpGained() - (event.getRawXpGained() * difference)));
-            float newValue = rawXp - (rawXp * difference);
-
-            /*
-             * Make sure players get a guaranteed minimum of XP
-             */
-            //If there is no guaranteed minimum proceed, otherwise only proceed if newValue would be higher than our guaranteed minimum
-            if(guaranteedMinimum <= 0 || newValue > guaranteedMinimum)
-            {
-                if (newValue > 0) {
-                    event.setRawXpGained(newValue);
-                }
-                else {
-                    event.setCancelled(true);
-                }
-            } else {
-                event.setRawXpGained(guaranteedMinimum);
-            }
+        float registeredXp = mcMMOPlayer.getProfile().getRegisteredXpGain(primarySkillType);
+
+        /*
+         * Gains combined into one event are diminished one after another as if they came separately,
+         * each one registered before the next is diminished
+         */
+        float gainXp = rawXp / gainCount;
+        float newValue = 0;
+        boolean diminished = false;
+
+        for (int i = 0; i < gainCount; i++) {
+            float diminishedXp = getDiminishedXp(gainXp, registeredXp, modifiedThreshold);
+            diminished |= diminishedXp != gainXp;
+            newValue += diminishedXp;
+            registeredXp += diminishedXp;
+        }
 
+        if (diminished) {
+            if (newValue > 0) {
+                event.setRawXpGained(newValue);
+            }
+            else {
+                event.setCancelled(true);
+            }
         }
 
         if(mcMMOPlayer.isDebugMode()) {
@@ -186,5 +184,32 @@ public class SelfListener implements Listener {
         }
     }
 
+    /**
+     * @param rawXp the XP of a single gain
+     * @param registeredXp the XP registered for diminished returns before this gain
+     * @return the XP left of the gain after diminished returns, 0 if none is left
+     */
+    private static float getDiminishedXp(float rawXp, float registeredXp, float modifiedThreshold) {
+        float difference = (registeredXp - modifiedThreshold) / modifiedThreshold;
+
+        if (difference <= 0) {
+            return rawXp;
+        }
+
+        float guaranteedMinimum = ExperienceConfig.getInstance().getDiminishedReturnsCap() * rawXp;
+        float newValue = rawXp - (rawXp * difference);
+
+        /*
+         * Make sure players get a guaranteed minimum of XP
+         */
+        //If there is no guaranteed minimum proceed, otherwise only proceed if newValue would be higher than our guaranteed minimum
+        if(guaranteedMinimum <= 0 || newValue > guaranteedMinimum)
+        {
+            return Math.max(newValue, 0);
+        }
+
+        return guaranteedMinimum;
+    }
+
 
 }
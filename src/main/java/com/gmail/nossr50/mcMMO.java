@@ -3,7 +3,6 @@ package com.gmail.nossr50;
 import com.gmail.nossr50.chat.ChatManager;
 import com.gmail.nossr50.commands.CommandManager;
 import com.gmail.nossr50.config.*;
-import com.gmail.nossr50.config.experience.ExperienceConfig;
 import com.gmail.nossr50.config.mods.ArmorConfigManager;
 import com.gmail.nossr50.config.mods.BlockConfigManager;
 import com.gmail.nossr50.config.mods.EntityConfigManager;
@@ -15,18 +14,20 @@ import com.gmail.nossr50.config.treasure.FishingTreasureConfig;
 import com.gmail.nossr50.config.treasure.TreasureConfig;
 import com.gmail.nossr50.database.DatabaseManager;
 import com.gmail.nossr50.database.DatabaseManagerFactory;
+import com.gmail.nossr50.database.PlayerProfileSaveQueue;
 import com.gmail.nossr50.datatypes.skills.PrimarySkillType;
 import com.gmail.nossr50.datatypes.skills.subskills.acrobatics.Roll;
 import com.gmail.nossr50.listeners.*;
 import com.gmail.nossr50.metadata.MetadataService;
 import com.gmail.nossr50.party.PartyManager;
 import com.gmail.nossr50.placeholders.PapiExpansion;
+import com.gmail.nossr50.runnables.ChunkStoreEvictionTask;
+import com.gmail.nossr50.runnables.ChunkStoreFlushTask;
 import com.gmail.nossr50.runnables.SaveTimerTask;
 import com.gmail.nossr50.runnables.backups.CleanBackupsTask;
 import com.gmail.nossr50.runnables.commands.NotifySquelchReminderTask;
 import com.gmail.nossr50.runnables.database.UserPurgeTask;
 import com.gmail.nossr50.runnables.party.PartyAutoKickTask;
-import com.gmail.nossr50.runnables.player.ClearRegisteredXPGainTask;
 import com.gmail.nossr50.runnables.player.PlayerProfileLoadingTask;
 import com.gmail.nossr50.runnables.player.PowerLevelUpdatingTask;
 import com.gmail.nossr50.skills.alchemy.Alchemy;
@@ -88,6 +89,7 @@ public class mcMMO extends JavaPlugin {
     private static SalvageableManager salvageableManager;
     private static ModManager         modManager;
     private static DatabaseManager    databaseManager;
+    private static PlayerProfileSaveQueue profileSaveQueue;
     private static FormulaManager     formulaManager;
     private static UpgradeManager     upgradeManager;
     private static MaterialMapStore materialMapStore;
@@ -232,6 +234,7 @@ public class mcMMO extends JavaPlugin {
             this.purgeTime = 2630000000L * generalConfig.getOldUsersCutoff();
 
             databaseManager = DatabaseManagerFactory.getDatabaseManager(mcMMO.getUsersFilePath(), getLogger(), purgeTime, mcMMO.p.getAdvancedConfig().getStartingLevel());
+            profileSaveQueue = new PlayerProfileSaveQueue(getLogger());
 
             //Check for the newer API and tell them what to do if its missing
             checkForOutdatedAPI();
@@ -407,6 +410,8 @@ public class mcMMO extends JavaPlugin {
         LogUtils.debug(mcMMO.p.getLogger(), "Unregister all events...");
         HandlerList.unregisterAll(this); // Cancel event registrations
 
+        //Anything queued after the players were saved, or left over from a flush that was cancelled
+        profileSaveQueue.drain();
         databaseManager.onDisable();
         LogUtils.debug(mcMMO.p.getLogger(), "Was disabled."); // How informative!
     }
@@ -463,6 +468,10 @@ public class mcMMO extends JavaPlugin {
         return databaseManager;
     }
 
+    public static PlayerProfileSaveQueue getProfileSaveQueue() {
+        return profileSaveQueue;
+    }
+
     public static ModManager getModManager() {
         return modManager;
     }
@@ -672,14 +681,19 @@ public class mcMMO extends JavaPlugin {
             getFoliaLib().getImpl().runTimer(new PartyAutoKickTask(), kickIntervalTicks, kickIntervalTicks);
         }
 
-        // Update power level tag scoreboards
-        getFoliaLib().getImpl().runTimer(new PowerLevelUpdatingTask(), 2 * Misc.TICK_CONVERSION_FACTOR, 2 * Misc.TICK_CONVERSION_FACTOR);
+        // Drop placed block data which has not been used for a while
+        getFoliaLib().getImpl().runTimerAsync(new ChunkStoreEvictionTask(), minute, minute);
 
-        // Clear the registered XP data so players can earn XP again
-        if (ExperienceConfig.getInstance().getDiminishedReturnsEnabled()) {
-            getFoliaLib().getImpl().runTimer(new ClearRegisteredXPGainTask(), 60, 60);
+        // Save changed placed block data in the background instead of when chunks unload
+        long flushIntervalTicks = PersistentDataConfig.getInstance().getBlockTrackerFlushInterval() * second;
+
+        if (flushIntervalTicks > 0) {
+            getFoliaLib().getImpl().runTimerAsync(new ChunkStoreFlushTask(PersistentDataConfig.getInstance().getBlockTrackerFlushBatchSize()), flushIntervalTicks, flushIntervalTicks);
         }
 
+        // Update power level tag scoreboards
+        getFoliaLib().getImpl().runTimer(new PowerLevelUpdatingTask(), 2 * Misc.TICK_CONVERSION_FACTOR, 2 * Misc.TICK_CONVERSION_FACTOR);
+
         if(mcMMO.p.getAdvancedConfig().allowPlayerTips())
         {
             getFoliaLib().getImpl().runTimer(new NotifySquelchReminderTask(), 60, ((20 * 60) * 60));
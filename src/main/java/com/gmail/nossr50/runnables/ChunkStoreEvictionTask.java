@@ -0,0 +1,11 @@
+package com.gmail.nossr50.runnables;
+
+import com.gmail.nossr50.mcMMO;
+import com.gmail.nossr50.util.CancellableRunnable;
+
+public class ChunkStoreEvictionTask extends CancellableRunnable {
+    @Override
+    public void run() {
+        mcMMO.getPlaceStore().evictIdleChunks();
+    }
+}
@@ -0,0 +1,17 @@
+package com.gmail.nossr50.runnables;
+
+import com.gmail.nossr50.mcMMO;
+import com.gmail.nossr50.util.CancellableRunnable;
+
+public class ChunkStoreFlushTask extends CancellableRunnable {
+    private final int batchSize;
+
+    public ChunkStoreFlushTask(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run() {
+        mcMMO.getPlaceStore().flushDirtyChunks(batchSize);
+    }
+}
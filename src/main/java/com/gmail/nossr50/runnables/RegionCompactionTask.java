@@ -0,0 +1,85 @@
+package com.gmail.nossr50.runnables;
+
+import com.gmail.nossr50.locale.LocaleLoader;
+import com.gmail.nossr50.mcMMO;
+import com.gmail.nossr50.util.CancellableRunnable;
+import com.gmail.nossr50.util.blockmeta.RegionCodec;
+import com.gmail.nossr50.util.blockmeta.RegionCompactionResult;
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites the mcmmo_regions files of worlds one file at a time, run it asynchronously
+ */
+public class RegionCompactionTask extends CancellableRunnable {
+    private static final Pattern REGION_FILE_NAME = Pattern.compile("mcmmo_(-?\\d+)_(-?\\d+)_\\.mcm");
+    private static final AtomicBoolean running = new AtomicBoolean();
+
+    private final @NotNull List<World> worlds;
+    private final @NotNull CommandSender sender;
+    private final @Nullable RegionCodec codec;
+
+    /**
+     * @param codec the codec of the rewritten files, null to keep the codec of each file
+     */
+    public RegionCompactionTask(@NotNull List<World> worlds, @NotNull CommandSender sender, @Nullable RegionCodec codec) {
+        this.worlds = worlds;
+        this.sender = sender;
+        this.codec = codec;
+    }
+
+    /**
+     * @return false if another compaction is still running
+     */
+    public static boolean tryStart() {
+        return running.compareAndSet(false, true);
+    }
+
+    @Override
+    public void run() {
+        try {
+            RegionCompactionResult total = RegionCompactionResult.empty();
+            int skipped = 0;
+
+            for (World world : worlds) {
+                File[] regionFiles = new File(world.getWorldFolder(), "mcmmo_regions").listFiles();
+                if (regionFiles == null)
+                    continue;
+
+                for (File regionFile : regionFiles) {
+                    Matcher matcher = REGION_FILE_NAME.matcher(regionFile.getName());
+                    if (!matcher.matches())
+                        continue;
+
+                    try {
+                        RegionCompactionResult result = mcMMO.getPlaceStore().compactRegion(world, Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)), codec);
+                        if (result == null)
+                            skipped++;
+                        else
+                            total = total.add(result);
+                    }
+                    catch (IOException | RuntimeException e) {
+                        skipped++;
+                        mcMMO.p.getLogger().warning("Unable to compact " + regionFile + ": " + e.getMessage());
+                    }
+                }
+            }
+
+            String message = LocaleLoader.getString("Commands.mccompact.Finish", total.getRegionFiles(), total.getReclaimedBytes() / 1024,
+                    total.getKeptChunks(), total.getEmptyChunks(), total.getUnreadableChunks(), total.getUpgradedChunks(), skipped);
+            mcMMO.p.getFoliaLib().getImpl().runNextTick(t -> sender.sendMessage(message));
+        }
+        finally {
+            running.set(false);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.gmail.nossr50.runnables.database;
+
+import com.gmail.nossr50.database.FlatFileDatabaseManager;
+import com.gmail.nossr50.util.CancellableRunnable;
+import org.jetbrains.annotations.NotNull;
+
+public class FlatFileCompactionTask extends CancellableRunnable {
+    private final @NotNull FlatFileDatabaseManager flatFileDatabaseManager;
+
+    public FlatFileCompactionTask(@NotNull FlatFileDatabaseManager flatFileDatabaseManager) {
+        this.flatFileDatabaseManager = flatFileDatabaseManager;
+    }
+
+    @Override
+    public void run() {
+        flatFileDatabaseManager.compactLog();
+    }
+}
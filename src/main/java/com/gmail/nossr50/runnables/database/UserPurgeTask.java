@@ -10,11 +10,7 @@ public class UserPurgeTask extends CancellableRunnable {
     @Override
     public void run() {
         lock.lock();
-        mcMMO.getDatabaseManager().purgePowerlessUsers();
-
-        if (mcMMO.p.getGeneralConfig().getOldUsersCutoff() != -1) {
-            mcMMO.getDatabaseManager().purgeOldUsers();
-        }
+        mcMMO.getDatabaseManager().purgeUsers(mcMMO.p.getGeneralConfig().getOldUsersCutoff() != -1);
         lock.unlock();
     }
 }
@@ -1,14 +0,0 @@
-package com.gmail.nossr50.runnables.player;
-
-import com.gmail.nossr50.datatypes.player.McMMOPlayer;
-import com.gmail.nossr50.util.CancellableRunnable;
-import com.gmail.nossr50.util.player.UserManager;
-
-public class ClearRegisteredXPGainTask extends CancellableRunnable {
-    @Override
-    public void run() {
-        for (McMMOPlayer mcMMOPlayer : UserManager.getPlayers()) {
-            mcMMOPlayer.getProfile().purgeExpiredXpGains();
-        }
-    }
-}
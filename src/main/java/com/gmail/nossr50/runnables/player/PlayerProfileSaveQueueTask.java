@@ -0,0 +1,17 @@
+package com.gmail.nossr50.runnables.player;
+
+import com.gmail.nossr50.database.PlayerProfileSaveQueue;
+import com.gmail.nossr50.util.CancellableRunnable;
+
+public class PlayerProfileSaveQueueTask extends CancellableRunnable {
+    private final PlayerProfileSaveQueue saveQueue;
+
+    public PlayerProfileSaveQueueTask(PlayerProfileSaveQueue saveQueue) {
+        this.saveQueue = saveQueue;
+    }
+
+    @Override
+    public void run() {
+        saveQueue.runScheduledFlush();
+    }
+}
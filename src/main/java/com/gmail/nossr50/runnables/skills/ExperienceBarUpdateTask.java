@@ -0,0 +1,21 @@
+package com.gmail.nossr50.runnables.skills;
+
+import com.gmail.nossr50.util.CancellableRunnable;
+import com.gmail.nossr50.util.experience.ExperienceBarManager;
+
+/**
+ * Runs every tick while a player's experience bars have progress to send or are waiting to be hidden
+ */
+public class ExperienceBarUpdateTask extends CancellableRunnable {
+    private final ExperienceBarManager experienceBarManager;
+
+    public ExperienceBarUpdateTask(ExperienceBarManager experienceBarManager) {
+        this.experienceBarManager = experienceBarManager;
+    }
+
+    @Override
+    public void run() {
+        if(!experienceBarManager.tickExperienceBars())
+            cancel();
+    }
+}
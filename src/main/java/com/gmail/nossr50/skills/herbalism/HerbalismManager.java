@@ -328,12 +328,15 @@ public class HerbalismManager extends SkillManager {
             return;
         }
 
+        BitSet placedPlants = mcMMO.getPlaceStore().checkBlocks(brokenPlants);
+        int plantIndex = 0;
+
         for(Block brokenPlant : brokenPlants) {
             BlockState brokenPlantState = brokenPlant.getState();
             BlockData plantData = brokenPlantState.getBlockData();
 
             //Check for double drops
-            if(!mcMMO.getPlaceStore().isTrue(brokenPlant)) {
+            if(!placedPlants.get(plantIndex++)) {
 
                 /*
                  *
@@ -406,12 +409,15 @@ public class HerbalismManager extends SkillManager {
 
     public void awardXPForPlantBlocks(HashSet<Block> brokenPlants) {
         int xpToReward = 0;
+        BitSet placedPlants = mcMMO.getPlaceStore().checkBlocks(brokenPlants);
+        List<Block> placedPlantBlocks = new ArrayList<>(placedPlants.cardinality());
+        int plantIndex = 0;
 
         for(Block brokenPlantBlock : brokenPlants) {
             BlockState brokenBlockNewState = brokenPlantBlock.getState();
             BlockData plantData = brokenBlockNewState.getBlockData();
 
-            if(mcMMO.getPlaceStore().isTrue(brokenBlockNewState)) {
+            if(placedPlants.get(plantIndex++)) {
                 /*
                  *
                  * Unnatural Blocks
@@ -425,7 +431,7 @@ public class HerbalismManager extends SkillManager {
                 }
 
                 //Mark it as natural again as it is being broken
-                mcMMO.getPlaceStore().setFalse(brokenBlockNewState);
+                placedPlantBlocks.add(brokenPlantBlock);
             } else {
                 /*
                  *
@@ -447,6 +453,8 @@ public class HerbalismManager extends SkillManager {
             }
         }
 
+        mcMMO.getPlaceStore().setFalse(placedPlantBlocks);
+
         if(mmoPlayer.isDebugMode()) {
             mmoPlayer.getPlayer().sendMessage("Plants processed: "+brokenPlants.size());
         }
@@ -29,6 +29,7 @@ import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 public class MiningManager extends SkillManager {
@@ -148,12 +149,15 @@ public class MiningManager extends SkillManager {
         List<BlockState> ores = new ArrayList<>();
 
         List<BlockState> notOres = new ArrayList<>();
-        for (Block targetBlock : event.blockList()) {
+        List<Block> blockList = event.blockList();
+        BitSet placedBlocks = mcMMO.getPlaceStore().checkBlocks(blockList);
+        for (int i = 0; i < blockList.size(); i++) {
+            Block targetBlock = blockList.get(i);
             BlockState blockState = targetBlock.getState();
             //Containers usually have 0 XP unless someone edited their config in a very strange way
             if (ExperienceConfig.getInstance().getXp(PrimarySkillType.MINING, targetBlock) != 0
                     && !(targetBlock instanceof Container)
-                    && !mcMMO.getPlaceStore().isTrue(targetBlock)) {
+                    && !placedBlocks.get(i)) {
                 if(BlockUtils.isOre(blockState)) {
                     ores.add(blockState);
                 } else {
@@ -188,7 +192,8 @@ public class MiningManager extends SkillManager {
 
                 Misc.spawnItem(getPlayer(), Misc.getBlockCenter(blockState), new ItemStack(blockState.getType()), ItemSpawnReason.BLAST_MINING_ORES); // Initial block that would have been dropped
 
-                if (mcMMO.p.getAdvancedConfig().isBlastMiningBonusDropsEnabled() && !mcMMO.getPlaceStore().isTrue(blockState)) {
+                // Placed blocks were already filtered out above
+                if (mcMMO.p.getAdvancedConfig().isBlastMiningBonusDropsEnabled()) {
                     for (int i = 1; i < dropMultiplier; i++) {
 //                        Bukkit.broadcastMessage("Bonus Drop on Ore: "+blockState.getType().toString());
                         Misc.spawnItem(getPlayer(), Misc.getBlockCenter(blockState), new ItemStack(blockState.getType()), ItemSpawnReason.BLAST_MINING_ORES_BONUS_DROP); // Initial block that would have been dropped
@@ -32,6 +32,7 @@ import org.bukkit.inventory.meta.ItemMeta;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -152,14 +153,26 @@ public class WoodcuttingManager extends SkillManager {
      * milliseconds on regular trees and 10-15 milliseconds on jungle trees
      * once the JIT has optimized the function (use the ability about 4 times
      * before taking measurements).
+     *
+     * The place store is asked about each searched layer in one lookup, so
+     * every chunk it touches is resolved once per layer instead of once per
+     * block. Placed blocks are skipped before they count towards the
+     * threshold, like they were with one lookup per block.
      */
     private void processTree(BlockState blockState, Set<BlockState> treeFellerBlocks) {
         List<BlockState> futureCenterBlocks = new ArrayList<>();
+        Block block = blockState.getBlock();
+
+        // The block up followed by the flat cylinder
+        List<BlockState> flatSearch = new ArrayList<>(directions.length + 1);
+        flatSearch.add(block.getRelative(BlockFace.UP).getState());
+        addCylinder(block, 0, flatSearch);
+        BitSet flatPlaced = mcMMO.getPlaceStore().checkBlockStates(flatSearch);
 
         // Check the block up and take different behavior (smaller search) if it's a log
-        if (processTreeFellerTargetBlock(blockState.getBlock().getRelative(BlockFace.UP).getState(), futureCenterBlocks, treeFellerBlocks)) {
-            for (int[] dir : directions) {
-                processTreeFellerTargetBlock(blockState.getBlock().getRelative(dir[0], 0, dir[1]).getState(), futureCenterBlocks, treeFellerBlocks);
+        if (processTreeFellerTargetBlock(flatSearch.get(0), flatPlaced.get(0), futureCenterBlocks, treeFellerBlocks)) {
+            for (int i = 1; i < flatSearch.size(); i++) {
+                processTreeFellerTargetBlock(flatSearch.get(i), flatPlaced.get(i), futureCenterBlocks, treeFellerBlocks);
 
                 if (treeFellerReachedThreshold) {
                     return;
@@ -167,12 +180,25 @@ public class WoodcuttingManager extends SkillManager {
             }
         }
         else {
+            // The block down followed by the cylinders below and above, the flat cylinder was already looked up
+            List<BlockState> cubeSearch = new ArrayList<>(2 * directions.length + 1);
+            cubeSearch.add(block.getRelative(BlockFace.DOWN).getState());
+            addCylinder(block, -1, cubeSearch);
+            addCylinder(block, 1, cubeSearch);
+            BitSet cubePlaced = mcMMO.getPlaceStore().checkBlockStates(cubeSearch);
+
             // Cover DOWN
-            processTreeFellerTargetBlock(blockState.getBlock().getRelative(BlockFace.DOWN).getState(), futureCenterBlocks, treeFellerBlocks);
+            processTreeFellerTargetBlock(cubeSearch.get(0), cubePlaced.get(0), futureCenterBlocks, treeFellerBlocks);
             // Search in a cube
             for (int y = -1; y <= 1; y++) {
-                for (int[] dir : directions) {
-                    processTreeFellerTargetBlock(blockState.getBlock().getRelative(dir[0], y, dir[1]).getState(), futureCenterBlocks, treeFellerBlocks);
+                for (int i = 0; i < directions.length; i++) {
+                    if (y == 0) {
+                        processTreeFellerTargetBlock(flatSearch.get(i + 1), flatPlaced.get(i + 1), futureCenterBlocks, treeFellerBlocks);
+                    }
+                    else {
+                        int index = (y < 0 ? 1 : directions.length + 1) + i;
+                        processTreeFellerTargetBlock(cubeSearch.get(index), cubePlaced.get(index), futureCenterBlocks, treeFellerBlocks);
+                    }
 
                     if (treeFellerReachedThreshold) {
                         return;
@@ -191,6 +217,12 @@ public class WoodcuttingManager extends SkillManager {
         }
     }
 
+    private static void addCylinder(@NotNull Block center, int y, @NotNull List<BlockState> blockStates) {
+        for (int[] dir : directions) {
+            blockStates.add(center.getRelative(dir[0], y, dir[1]).getState());
+        }
+    }
+
     /**
      * Handles the durability loss
      *
@@ -236,14 +268,15 @@ public class WoodcuttingManager extends SkillManager {
      * 'processTree()'
      *
      * @param blockState Block to be added
+     * @param placed true if the block was placed by a player
      * @param futureCenterBlocks List of blocks that will be used to call
      *     'processTree()'
      * @param treeFellerBlocks List of blocks to be removed
      * @return true if and only if the given blockState was a Log not already
      *     in treeFellerBlocks.
      */
-    private boolean processTreeFellerTargetBlock(@NotNull BlockState blockState, @NotNull List<BlockState> futureCenterBlocks, @NotNull Set<BlockState> treeFellerBlocks) {
-        if (treeFellerBlocks.contains(blockState) || mcMMO.getPlaceStore().isTrue(blockState)) {
+    private boolean processTreeFellerTargetBlock(@NotNull BlockState blockState, boolean placed, @NotNull List<BlockState> futureCenterBlocks, @NotNull Set<BlockState> treeFellerBlocks) {
+        if (treeFellerBlocks.contains(blockState) || placed) {
             return false;
         }
 
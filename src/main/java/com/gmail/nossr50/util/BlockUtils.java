@@ -18,6 +18,7 @@ import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collection;
 import java.util.HashSet;
 
 public final class BlockUtils {
@@ -68,6 +69,23 @@ public final class BlockUtils {
             block.removeMetadata(MetadataConstants.METADATA_KEY_BONUS_DROPS, mcMMO.p);
     }
 
+    /**
+     * Set up the state for several blocks to be seen as unnatural, marking them in the place store in one batch
+     * @param blocks target blocks
+     */
+    public static void setUnnaturalBlocks(@NotNull Collection<Block> blocks) {
+        if(blocks.isEmpty())
+            return;
+
+        mcMMO.getPlaceStore().setTrue(blocks);
+
+        // Failsafe against lingering metadata
+        for(Block block : blocks) {
+            if(block.hasMetadata(MetadataConstants.METADATA_KEY_BONUS_DROPS))
+                block.removeMetadata(MetadataConstants.METADATA_KEY_BONUS_DROPS, mcMMO.p);
+        }
+    }
+
     /**
      * Cleans up some block metadata when a block breaks and the metadata is no longer needed
      * This also sets the blocks coords to false in our chunk store
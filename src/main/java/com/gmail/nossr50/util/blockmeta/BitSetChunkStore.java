@@ -6,12 +6,21 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.UUID;
 
+/**
+ * Most chunks only hold a handful of placed blocks, so the store starts out as a sorted array of block indices
+ * and is promoted to a dense bitset once it holds more than {@link #SPARSE_LIMIT} blocks
+ */
 public class BitSetChunkStore implements ChunkStore {
-    private static final int CURRENT_VERSION = 9;
+    private static final int CURRENT_VERSION = 10;
     private static final int MAGIC_NUMBER = 0xEA5EDEBB;
+    static final int SPARSE_LIMIT = 256; // 1 KB of indices, the dense bitset of an overworld chunk is 12 KB
+    private static final byte FORMAT_SPARSE = 0;
+    private static final byte FORMAT_DENSE = 1;
+    private static final int[] NO_INDICES = new int[0];
 
     private final int cx;
     private final int cz;
@@ -19,7 +28,11 @@ public class BitSetChunkStore implements ChunkStore {
     private final int worldMax;
     private final @NotNull UUID worldUid;
     // Bitset store conforms to a "bottom-up" bit ordering consisting of a stack of {worldHeight} Y planes, each Y plane consists of 16 Z rows of 16 X bits.
-    private final @NotNull BitSet store;
+    // Null while the store is sparse
+    private @Nullable BitSet store = null;
+    // Sorted indices of the set bits while the store is sparse, using the same ordering as the bitset
+    private int[] sparseIndices = NO_INDICES;
+    private int sparseSize = 0;
 
     private transient boolean dirty = false;
 
@@ -33,7 +46,6 @@ public class BitSetChunkStore implements ChunkStore {
         this.worldUid = worldUid;
         this.worldMin = worldMin;
         this.worldMax = worldMax;
-        this.store = new BitSet(16 * 16 * (worldMax - worldMin));
     }
 
     @Override
@@ -73,7 +85,12 @@ public class BitSetChunkStore implements ChunkStore {
 
     @Override
     public boolean isTrue(int x, int y, int z) {
-        return store.get(coordToIndex(x, y, z));
+        int index = coordToIndex(x, y, z);
+
+        if (store != null)
+            return store.get(index);
+
+        return Arrays.binarySearch(sparseIndices, 0, sparseSize, index) >= 0;
     }
 
     @Override
@@ -88,13 +105,98 @@ public class BitSetChunkStore implements ChunkStore {
 
     @Override
     public void set(int x, int y, int z, boolean value) {
-        store.set(coordToIndex(x, y, z), value);
+        setIndex(coordToIndex(x, y, z), value);
         dirty = true;
     }
 
+    private void setIndex(int index, boolean value) {
+        if (store != null) {
+            store.set(index, value);
+            return;
+        }
+
+        int position = Arrays.binarySearch(sparseIndices, 0, sparseSize, index);
+
+        if (value) {
+            if (position >= 0)
+                return;
+            if (sparseSize == SPARSE_LIMIT) {
+                promote();
+                store.set(index);
+                return;
+            }
+            position = -position - 1;
+            if (sparseSize == sparseIndices.length)
+                sparseIndices = Arrays.copyOf(sparseIndices, Math.min(SPARSE_LIMIT, Math.max(8, sparseSize * 2)));
+            System.arraycopy(sparseIndices, position, sparseIndices, position + 1, sparseSize - position);
+            sparseIndices[position] = index;
+            sparseSize++;
+        }
+        else if (position >= 0) {
+            System.arraycopy(sparseIndices, position + 1, sparseIndices, position, sparseSize - position - 1);
+            sparseSize--;
+        }
+    }
+
+    /**
+     * @return a copy of this store which can be serialized without holding on to this one
+     */
+    @NotNull BitSetChunkStore copy() {
+        BitSetChunkStore copy = new BitSetChunkStore(worldUid, worldMin, worldMax, cx, cz);
+        copy.store = store == null ? null : (BitSet) store.clone();
+        copy.sparseIndices = sparseSize == 0 ? NO_INDICES : Arrays.copyOf(sparseIndices, sparseSize);
+        copy.sparseSize = sparseSize;
+        return copy;
+    }
+
+    /**
+     * Switch to the dense bitset, used once the sparse array would grow past {@link #SPARSE_LIMIT}
+     */
+    private void promote() {
+        store = new BitSet(16 * 16 * (worldMax - worldMin));
+        for (int i = 0; i < sparseSize; i++)
+            store.set(sparseIndices[i]);
+        sparseIndices = NO_INDICES;
+        sparseSize = 0;
+    }
+
+    /**
+     * @return true if the store has been promoted to a dense bitset
+     */
+    boolean isDense() {
+        return store != null;
+    }
+
+    /**
+     * Replace the contents of this store, picking the sparse or dense form depending on how many bits are set
+     */
+    private void load(@NotNull BitSet bits) {
+        if (bits.cardinality() > SPARSE_LIMIT) {
+            store = new BitSet(16 * 16 * (worldMax - worldMin));
+            store.or(bits);
+            sparseIndices = NO_INDICES;
+            sparseSize = 0;
+            return;
+        }
+
+        store = null;
+        sparseIndices = bits.stream().toArray();
+        sparseSize = sparseIndices.length;
+    }
+
+    /**
+     * @return a rough estimate of the memory used by this store, in bytes
+     */
+    long getMemoryUsage() {
+        if (store != null)
+            return 64 + store.size() / 8;
+
+        return 64 + 4L * sparseIndices.length;
+    }
+
     @Override
     public boolean isEmpty() {
-        return store.isEmpty();
+        return store != null ? store.isEmpty() : sparseSize == 0;
     }
 
     private int coordToIndex(int x, int y, int z) {
@@ -140,10 +242,19 @@ public class BitSetChunkStore implements ChunkStore {
         out.writeInt(worldMin);
         out.writeInt(worldMax);
 
-        // Store the byte array directly so we don't have the object type info overhead
-        byte[] storeData = store.toByteArray();
-        out.writeInt(storeData.length);
-        out.write(storeData);
+        if (store == null) {
+            out.writeByte(FORMAT_SPARSE);
+            out.writeInt(sparseSize);
+            for (int i = 0; i < sparseSize; i++)
+                out.writeInt(sparseIndices[i]);
+        }
+        else {
+            out.writeByte(FORMAT_DENSE);
+            // Store the byte array directly so we don't have the object type info overhead
+            byte[] storeData = store.toByteArray();
+            out.writeInt(storeData.length);
+            out.write(storeData);
+        }
 
         dirty = false;
     }
@@ -166,9 +277,20 @@ public class BitSetChunkStore implements ChunkStore {
         if (fileVersionNumber >= 9)
             worldMin = in.readInt();
         int worldMax = in.readInt();
-        byte[] temp = new byte[in.readInt()];
-        in.readFully(temp);
-        BitSet stored = BitSet.valueOf(temp);
+        BitSet stored;
+
+        // Version 10 added the sparse format, older versions always store the whole bitset
+        if (fileVersionNumber >= 10 && in.readByte() == FORMAT_SPARSE) {
+            int count = in.readInt();
+            stored = new BitSet();
+            for (int i = 0; i < count; i++)
+                stored.set(in.readInt());
+        }
+        else {
+            byte[] temp = new byte[in.readInt()];
+            in.readFully(temp);
+            stored = BitSet.valueOf(temp);
+        }
 
         int currentWorldMin = getWorldMin(worldUid);
         int currentWorldMax = getWorldMax(worldUid);
@@ -192,8 +314,9 @@ public class BitSetChunkStore implements ChunkStore {
         }
 
         BitSetChunkStore chunkStore = new BitSetChunkStore(worldUid, currentWorldMin, currentWorldMax, cx, cz);
-        chunkStore.store.or(stored);
-        chunkStore.dirty = currentWorldMin != worldMin || currentWorldMax != worldMax;
+        chunkStore.load(stored);
+        // Rewrite stores from older versions in the current format
+        chunkStore.dirty = currentWorldMin != worldMin || currentWorldMax != worldMax || fileVersionNumber < CURRENT_VERSION;
 
         return chunkStore;
     }
@@ -281,7 +404,7 @@ public class BitSetChunkStore implements ChunkStore {
                     for (int x = 0; x < 16; x++) {
                         for (int z = 0; z < 16; z++) {
                             for (int y = 0; y < worldMax && y < currentWorldMax; y++) {
-                                converted.store.set(converted.coordToIndex(x, y, z), store[x][z][y]);
+                                converted.setIndex(converted.coordToIndex(x, y, z), store[x][z][y]);
                             }
                         }
                     }
@@ -2,9 +2,37 @@ package com.gmail.nossr50.util.blockmeta;
 
 import org.bukkit.World;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
 
 public interface ChunkManager extends UserBlockTracker {
     void closeAll();
+    void chunkLoaded(int cx, int cz, @NotNull World world);
     void chunkUnloaded(int cx, int cz, @NotNull World world);
     void unloadWorld(@NotNull World world);
+
+    /**
+     * Writes back and drops chunk stores which have not been used for a while, or which exceed the memory budget
+     */
+    void evictIdleChunks();
+
+    /**
+     * Writes dirty chunk stores ahead of their chunks unloading
+     *
+     * @param maxChunks the most chunk stores to write
+     * @return the number of chunk stores written
+     */
+    int flushDirtyChunks(int maxChunks);
+
+    /**
+     * Rewrites a region file without the space left behind by relocated chunks, dropping empty chunk stores and upgrading ones in older formats
+     * This reads and writes the whole file, it should not be called on the main thread
+     *
+     * @param rx region x coordinate
+     * @param rz region z coordinate
+     * @param codec the codec of the rewritten file, null to keep the codec of the file
+     * @return what was done, or null if there is no such region file or it was written to while it was being rewritten
+     */
+    @Nullable RegionCompactionResult compactRegion(@NotNull World world, int rx, int rz, @Nullable RegionCodec codec) throws IOException;
 }
@@ -1,13 +1,25 @@
 package com.gmail.nossr50.util.blockmeta;
 
 import com.gmail.nossr50.config.PersistentDataConfig;
+import com.gmail.nossr50.mcMMO;
 import org.jetbrains.annotations.NotNull;
 
 public class ChunkManagerFactory {
     public static @NotNull ChunkManager getChunkManager() {
 
-        if (PersistentDataConfig.getInstance().useBlockTracker()) {
-            return new HashChunkManager();
+        PersistentDataConfig persistentDataConfig = PersistentDataConfig.getInstance();
+
+        if (persistentDataConfig.useBlockTracker()) {
+            long memoryBudget = persistentDataConfig.getBlockTrackerMemoryBudget();
+            long idleMillis = persistentDataConfig.getBlockTrackerIdleTime();
+            boolean memoryMappedRegions = persistentDataConfig.useMemoryMappedRegionFiles();
+            RegionCodec regionCodec = persistentDataConfig.getBlockTrackerRegionCodec();
+
+            // Folia ticks regions on several threads, they should not all wait on one lock
+            if (mcMMO.p.getFoliaLib().isFolia())
+                return new ConcurrentChunkManager(ConcurrentChunkManager.DEFAULT_STRIPES, memoryBudget, idleMillis, memoryMappedRegions, regionCodec);
+
+            return new HashChunkManager(memoryBudget, idleMillis, memoryMappedRegions, regionCodec);
         }
 
         return new NullChunkManager();
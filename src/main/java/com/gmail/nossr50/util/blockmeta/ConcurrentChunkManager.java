@@ -0,0 +1,368 @@
+package com.gmail.nossr50.util.blockmeta;
+
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ChunkManager} for servers which tick regions of a world on several threads (Folia)
+ * Regions (32x32 chunks) are spread over independent {@link HashChunkManager} stripes, each with its own lock and region files,
+ * so blocks in different regions can be checked and set in parallel
+ */
+public class ConcurrentChunkManager implements ChunkManager {
+    public static final int DEFAULT_STRIPES = 64;
+
+    private final @NotNull HashChunkManager[] stripes;
+    private final int stripeMask;
+    private int nextFlushStripe = 0;
+    private int nextEvictStripe = 0;
+
+    public ConcurrentChunkManager() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param stripes the number of stripes, rounded up to a power of two
+     */
+    public ConcurrentChunkManager(int stripes) {
+        this(stripes, 0, 0, false, RegionCodec.ZLIB);
+    }
+
+    /**
+     * @param stripes the number of stripes, rounded up to a power of two
+     * @param memoryBudget bytes the resident chunk stores of all stripes may use together, 0 for no limit
+     * @param idleMillis how long a chunk store may go unused before it is evicted, 0 to keep idle stores
+     * @param memoryMappedRegions true to access region files through {@link MappedRegionFile}
+     * @param regionCodec the codec new region files are created with
+     */
+    public ConcurrentChunkManager(int stripes, long memoryBudget, long idleMillis, boolean memoryMappedRegions, @NotNull RegionCodec regionCodec) {
+        this(stripes, memoryBudget, idleMillis, memoryMappedRegions, regionCodec, null);
+    }
+
+    ConcurrentChunkManager(int stripes, long memoryBudget, long idleMillis, boolean memoryMappedRegions, @NotNull RegionCodec regionCodec, @Nullable Executor prefetchExecutor) {
+        int stripeCount = 1;
+        while (stripeCount < stripes)
+            stripeCount <<= 1;
+
+        this.stripes = new HashChunkManager[stripeCount];
+        this.stripeMask = stripeCount - 1;
+
+        // The stripes count against one budget, so a busy region can use memory which quiet ones do not need
+        // A stripe over the budget only evicts its own chunks, the least recently used order is kept per stripe and not across all of them
+        AtomicLong residentBytes = new AtomicLong();
+        Executor executor = prefetchExecutor == null ? HashChunkManager.asyncExecutor() : prefetchExecutor;
+
+        for (int i = 0; i < stripeCount; i++)
+            this.stripes[i] = new HashChunkManager(executor, memoryBudget, residentBytes, idleMillis, memoryMappedRegions, regionCodec);
+    }
+
+    private @NotNull HashChunkManager getStripe(@NotNull World world, int cx, int cz) {
+        // Every chunk of a region shares a stripe, so a region file is only ever opened by one stripe
+        int rx = cx >> 5;
+        int rz = cz >> 5;
+        int hash = world.getUID().hashCode();
+        hash = 31 * hash + rx;
+        hash = 31 * hash + rz;
+        hash ^= hash >>> 16;
+        return stripes[hash & stripeMask];
+    }
+
+    private @NotNull HashChunkManager getStripe(@NotNull Block block) {
+        return getStripe(block.getWorld(), block.getX() >> 4, block.getZ() >> 4);
+    }
+
+    private @NotNull HashChunkManager getStripe(@NotNull BlockState blockState) {
+        return getStripe(blockState.getWorld(), blockState.getX() >> 4, blockState.getZ() >> 4);
+    }
+
+    @Override
+    public void closeAll() {
+        for (HashChunkManager stripe : stripes)
+            stripe.closeAll();
+    }
+
+    @Override
+    public void chunkLoaded(int cx, int cz, @NotNull World world) {
+        getStripe(world, cx, cz).chunkLoaded(cx, cz, world);
+    }
+
+    @Override
+    public void chunkUnloaded(int cx, int cz, @NotNull World world) {
+        getStripe(world, cx, cz).chunkUnloaded(cx, cz, world);
+    }
+
+    @Override
+    public void unloadWorld(@NotNull World world) {
+        for (HashChunkManager stripe : stripes)
+            stripe.unloadWorld(world);
+    }
+
+    @Override
+    public void evictIdleChunks() {
+        int start;
+
+        synchronized (this) {
+            // The first stripes to run evict the most when the shared budget is exceeded, so every stripe takes its turn
+            start = nextEvictStripe;
+            nextEvictStripe = (nextEvictStripe + 1) & stripeMask;
+        }
+
+        for (int i = 0; i < stripes.length; i++)
+            stripes[(start + i) & stripeMask].evictIdleChunks();
+    }
+
+    @Override
+    public int flushDirtyChunks(int maxChunks) {
+        int written = 0;
+        int start;
+
+        synchronized (this) {
+            // Start where the last flush stopped so every stripe gets its turn
+            start = nextFlushStripe;
+            nextFlushStripe = (nextFlushStripe + 1) & stripeMask;
+        }
+
+        for (int i = 0; i < stripes.length && written < maxChunks; i++)
+            written += stripes[(start + i) & stripeMask].flushDirtyChunks(maxChunks - written);
+
+        return written;
+    }
+
+    @Override
+    public @Nullable RegionCompactionResult compactRegion(@NotNull World world, int rx, int rz, @Nullable RegionCodec codec) throws IOException {
+        return getStripe(world, rx << 5, rz << 5).compactRegion(world, rx, rz, codec);
+    }
+
+    @Override
+    public boolean isTrue(@NotNull Block block) {
+        return getStripe(block).isTrue(block);
+    }
+
+    @Override
+    public boolean isTrue(@NotNull BlockState blockState) {
+        return getStripe(blockState).isTrue(blockState);
+    }
+
+    @Override
+    public void setTrue(@NotNull Block block) {
+        getStripe(block).setTrue(block);
+    }
+
+    @Override
+    public void setTrue(@NotNull BlockState blockState) {
+        getStripe(blockState).setTrue(blockState);
+    }
+
+    @Override
+    public void setFalse(@NotNull Block block) {
+        getStripe(block).setFalse(block);
+    }
+
+    @Override
+    public void setFalse(@NotNull BlockState blockState) {
+        getStripe(blockState).setFalse(blockState);
+    }
+
+    @Override
+    public @NotNull BitSet checkBlocks(@NotNull Collection<Block> blocks) {
+        BitSet result = new BitSet(blocks.size());
+        List<Block> run = new ArrayList<>();
+        HashChunkManager runStripe = null;
+        int runStart = 0;
+        int i = 0;
+
+        // Consecutive blocks are usually in the same region, so they are checked by their stripe in one call
+        for (Block block : blocks) {
+            HashChunkManager stripe = getStripe(block);
+            if (stripe != runStripe) {
+                checkRun(runStripe, run, runStart, result);
+                runStripe = stripe;
+                runStart = i;
+            }
+            run.add(block);
+            i++;
+        }
+        checkRun(runStripe, run, runStart, result);
+        return result;
+    }
+
+    private static void checkRun(@Nullable HashChunkManager stripe, @NotNull List<Block> run, int runStart, @NotNull BitSet result) {
+        if (stripe == null || run.isEmpty())
+            return;
+
+        BitSet runResult = stripe.checkBlocks(run);
+        for (int bit = runResult.nextSetBit(0); bit >= 0; bit = runResult.nextSetBit(bit + 1))
+            result.set(runStart + bit);
+        run.clear();
+    }
+
+    @Override
+    public @NotNull BitSet checkBlockStates(@NotNull Collection<BlockState> blockStates) {
+        BitSet result = new BitSet(blockStates.size());
+        List<BlockState> run = new ArrayList<>();
+        HashChunkManager runStripe = null;
+        int runStart = 0;
+        int i = 0;
+
+        for (BlockState blockState : blockStates) {
+            HashChunkManager stripe = getStripe(blockState);
+            if (stripe != runStripe) {
+                checkStateRun(runStripe, run, runStart, result);
+                runStripe = stripe;
+                runStart = i;
+            }
+            run.add(blockState);
+            i++;
+        }
+        checkStateRun(runStripe, run, runStart, result);
+        return result;
+    }
+
+    private static void checkStateRun(@Nullable HashChunkManager stripe, @NotNull List<BlockState> run, int runStart, @NotNull BitSet result) {
+        if (stripe == null || run.isEmpty())
+            return;
+
+        BitSet runResult = stripe.checkBlockStates(run);
+        for (int bit = runResult.nextSetBit(0); bit >= 0; bit = runResult.nextSetBit(bit + 1))
+            result.set(runStart + bit);
+        run.clear();
+    }
+
+    @Override
+    public @NotNull BitSet checkRegion(@NotNull World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        if (minX > maxX || minY > maxY || minZ > maxZ)
+            throw new IllegalArgumentException("The minimum corner of the box must not be above the maximum corner");
+
+        int sizeX = maxX - minX + 1;
+        int sizeZ = maxZ - minZ + 1;
+        BitSet result = new BitSet();
+
+        // Split the box along region borders so each part belongs to a single stripe
+        for (int partMinZ = minZ; partMinZ <= maxZ; ) {
+            int partMaxZ = Math.min(maxZ, ((partMinZ >> 9) << 9) + 511);
+            for (int partMinX = minX; partMinX <= maxX; ) {
+                int partMaxX = Math.min(maxX, ((partMinX >> 9) << 9) + 511);
+                BitSet part = getStripe(world, partMinX >> 4, partMinZ >> 4).checkRegion(world, partMinX, minY, partMinZ, partMaxX, maxY, partMaxZ);
+
+                int partSizeX = partMaxX - partMinX + 1;
+                int partSizeZ = partMaxZ - partMinZ + 1;
+                for (int bit = part.nextSetBit(0); bit >= 0; bit = part.nextSetBit(bit + 1)) {
+                    int x = bit % partSizeX;
+                    int z = (bit / partSizeX) % partSizeZ;
+                    int y = bit / partSizeX / partSizeZ;
+                    result.set((y * sizeZ + (z + partMinZ - minZ)) * sizeX + (x + partMinX - minX));
+                }
+
+                partMinX = partMaxX + 1;
+            }
+            partMinZ = partMaxZ + 1;
+        }
+        return result;
+    }
+
+    @Override
+    public void setTrue(@NotNull Collection<Block> blocks) {
+        set(blocks, true);
+    }
+
+    @Override
+    public void setFalse(@NotNull Collection<Block> blocks) {
+        set(blocks, false);
+    }
+
+    private void set(@NotNull Collection<Block> blocks, boolean value) {
+        List<Block> run = new ArrayList<>();
+        HashChunkManager runStripe = null;
+
+        for (Block block : blocks) {
+            HashChunkManager stripe = getStripe(block);
+            if (stripe != runStripe) {
+                setRun(runStripe, run, value);
+                runStripe = stripe;
+            }
+            run.add(block);
+        }
+        setRun(runStripe, run, value);
+    }
+
+    private static void setRun(@Nullable HashChunkManager stripe, @NotNull List<Block> run, boolean value) {
+        if (stripe == null || run.isEmpty())
+            return;
+
+        if (value)
+            stripe.setTrue(run);
+        else
+            stripe.setFalse(run);
+        run.clear();
+    }
+
+    /**
+     * @return the number of chunk stores which were read in the background before they were needed
+     */
+    public long getPrefetchedChunks() {
+        long prefetchedChunks = 0;
+        for (HashChunkManager stripe : stripes)
+            prefetchedChunks += stripe.getPrefetchedChunks();
+        return prefetchedChunks;
+    }
+
+    /**
+     * @return the number of lookups which had to read a region file because the chunk was not prefetched in time
+     */
+    public long getBlockingLoads() {
+        long blockingLoads = 0;
+        for (HashChunkManager stripe : stripes)
+            blockingLoads += stripe.getBlockingLoads();
+        return blockingLoads;
+    }
+
+    /**
+     * @return the number of chunk stores held in memory
+     */
+    public int getResidentChunks() {
+        int residentChunks = 0;
+        for (HashChunkManager stripe : stripes)
+            residentChunks += stripe.getResidentChunks();
+        return residentChunks;
+    }
+
+    /**
+     * @return a rough estimate of the memory used by the chunk stores held in memory, in bytes
+     */
+    public long getResidentBytes() {
+        long residentBytes = 0;
+        for (HashChunkManager stripe : stripes)
+            residentBytes += stripe.getResidentBytes();
+        return residentBytes;
+    }
+
+    /**
+     * @return the number of chunk stores which were dropped from memory because they were idle or over the memory budget
+     */
+    public long getEvictions() {
+        long evictions = 0;
+        for (HashChunkManager stripe : stripes)
+            evictions += stripe.getEvictions();
+        return evictions;
+    }
+
+    /**
+     * @return the number of chunk stores written ahead of their chunks unloading
+     */
+    public long getFlushedChunks() {
+        long flushedChunks = 0;
+        for (HashChunkManager stripe : stripes)
+            flushedChunks += stripe.getFlushedChunks();
+        return flushedChunks;
+    }
+}
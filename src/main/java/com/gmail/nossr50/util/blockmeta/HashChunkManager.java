@@ -1,5 +1,6 @@
 package com.gmail.nossr50.util.blockmeta;
 
+import com.gmail.nossr50.mcMMO;
 import org.bukkit.Bukkit;
 import org.bukkit.World;
 import org.bukkit.block.Block;
@@ -7,40 +8,115 @@ import org.bukkit.block.BlockState;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class HashChunkManager implements ChunkManager {
-    private final HashMap<CoordinateKey, McMMOSimpleRegionFile> regionMap = new HashMap<>(); // Tracks active regions
-    private final HashMap<CoordinateKey, HashSet<CoordinateKey>> chunkUsageMap = new HashMap<>(); // Tracks active chunks by region
-    private final HashMap<CoordinateKey, ChunkStore> chunkMap = new HashMap<>(); // Tracks active chunks
+    private static final long RESIDENT_OVERHEAD = 96; // Rough size of a resident entry and its map slots, on top of the chunk store itself
+
+    private final HashMap<UUID, WorldChunks> worldMap = new HashMap<>(); // Tracks active chunks and regions by world
+    private final @NotNull Executor backgroundExecutor;
+    private final long memoryBudget;
+    private final @Nullable AtomicLong sharedResidentBytes; // Bytes of every manager sharing the memory budget, including this one
+    private final long idleNanos;
+    private final boolean memoryMappedRegions;
+    private final @NotNull RegionCodec regionCodec;
+    private long prefetchedChunks = 0;
+    private long blockingLoads = 0;
+    private long evictions = 0;
+    private long flushedChunks = 0;
+
+    // Resident chunks from least to most recently used, across all worlds
+    private @Nullable ResidentChunk lruTail;
+    private @Nullable ResidentChunk lruHead;
+    private int residentChunks = 0;
+    private long residentBytes = 0;
+    private int batchDepth = 0;
+    private boolean budgetFlushScheduled = false;
+
+    // Most lookups are for the same chunk as the lookup before them
+    private @Nullable UUID lastWorldId;
+    private @Nullable ResidentChunk lastChunk;
+
+    public HashChunkManager() {
+        this(0, 0, false, RegionCodec.ZLIB);
+    }
+
+    /**
+     * @param memoryBudget bytes the resident chunk stores may use before the least recently used ones are evicted, 0 for no limit
+     * @param idleMillis how long a chunk store may go unused before {@link #evictIdleChunks()} evicts it, 0 to keep idle stores
+     * @param memoryMappedRegions true to access region files through {@link MappedRegionFile}
+     * @param regionCodec the codec new region files are created with
+     */
+    public HashChunkManager(long memoryBudget, long idleMillis, boolean memoryMappedRegions, @NotNull RegionCodec regionCodec) {
+        this(asyncExecutor(), memoryBudget, idleMillis, memoryMappedRegions, regionCodec);
+    }
+
+    /**
+     * @param backgroundExecutor runs the background reads started by {@link #chunkLoaded(int, int, World)}
+     *     and the background writes which bring the resident stores back under the memory budget
+     */
+    HashChunkManager(@NotNull Executor backgroundExecutor) {
+        this(backgroundExecutor, 0, 0, false, RegionCodec.ZLIB);
+    }
+
+    HashChunkManager(@NotNull Executor backgroundExecutor, long memoryBudget, long idleMillis, boolean memoryMappedRegions, @NotNull RegionCodec regionCodec) {
+        this(backgroundExecutor, memoryBudget, null, idleMillis, memoryMappedRegions, regionCodec);
+    }
+
+    /**
+     * @param memoryBudget bytes the resident chunk stores of every manager sharing the counter may use, 0 for no limit
+     * @param sharedResidentBytes counts the resident bytes of several managers against one budget, null to only count this one
+     */
+    HashChunkManager(@NotNull Executor backgroundExecutor, long memoryBudget, @Nullable AtomicLong sharedResidentBytes, long idleMillis, boolean memoryMappedRegions, @NotNull RegionCodec regionCodec) {
+        this.backgroundExecutor = backgroundExecutor;
+        this.memoryBudget = memoryBudget;
+        this.sharedResidentBytes = sharedResidentBytes;
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        this.memoryMappedRegions = memoryMappedRegions;
+        this.regionCodec = regionCodec;
+    }
 
     @Override
     public synchronized void closeAll() {
-        // Save all dirty chunkstores
-        for (ChunkStore chunkStore : chunkMap.values())
-        {
-            if (!chunkStore.isDirty())
-                continue;
-            World world = Bukkit.getWorld(chunkStore.getWorldId());
-            if (world == null)
-                continue; // Oh well
-            writeChunkStore(world, chunkStore);
+        for (WorldChunks worldChunks : worldMap.values()) {
+            // Save all dirty chunkstores
+            for (ResidentChunk residentChunk : worldChunks.chunkMap.values())
+            {
+                cancelPendingFlush(residentChunk);
+                ChunkStore chunkStore = residentChunk.chunkStore;
+                if (!chunkStore.isDirty())
+                    continue;
+                World world = Bukkit.getWorld(chunkStore.getWorldId());
+                if (world == null)
+                    continue; // Oh well
+                writeChunkStore(world, chunkStore);
+            }
+            // Close all region files
+            for (RegionFile rf : worldChunks.regionMap.values())
+                rf.close();
         }
         // Clear in memory chunks
-        chunkMap.clear();
-        chunkUsageMap.clear();
-        // Close all region files
-        for (McMMOSimpleRegionFile rf : regionMap.values())
-            rf.close();
-        regionMap.clear();
+        worldMap.clear();
+        clearLastChunk();
+        lruTail = null;
+        lruHead = null;
+        residentChunks = 0;
+        addResidentBytes(-residentBytes);
+    }
+
+    static @NotNull Executor asyncExecutor() {
+        return runnable -> mcMMO.p.getFoliaLib().getImpl().runAsync(task -> runnable.run());
     }
 
     private synchronized @Nullable ChunkStore readChunkStore(@NotNull World world, int cx, int cz) throws IOException {
-        McMMOSimpleRegionFile rf = getReadableSimpleRegionFile(world, cx, cz);
+        RegionFile rf = getReadableSimpleRegionFile(world, cx, cz);
         if (rf == null)
             return null; // If there is no region file, there can't be a chunk
         try (DataInputStream in = rf.getInputStream(cx, cz)) { // Get input stream for chunk
@@ -54,7 +130,15 @@ public class HashChunkManager implements ChunkManager {
         if (!data.isDirty())
             return; // Don't save unchanged data
         try {
-            McMMOSimpleRegionFile rf = getWriteableSimpleRegionFile(world, data.getChunkX(), data.getChunkZ());
+            if (data.isEmpty()) {
+                // An empty store takes no space, it reads back the same as a chunk which never had any data
+                if (getReadableSimpleRegionFile(world, data.getChunkX(), data.getChunkZ()) != null)
+                    getWriteableSimpleRegionFile(world, data.getChunkX(), data.getChunkZ()).writeCompressed(data.getChunkX(), data.getChunkZ(), new byte[0]);
+                data.setDirty(false);
+                return;
+            }
+
+            RegionFile rf = getWriteableSimpleRegionFile(world, data.getChunkX(), data.getChunkZ());
             try (DataOutputStream out = rf.getOutputStream(data.getChunkX(), data.getChunkZ())) {
                 BitSetChunkStore.Serialization.writeChunkStore(out, data);
             }
@@ -65,31 +149,50 @@ public class HashChunkManager implements ChunkManager {
         }
     }
 
-    private synchronized @NotNull McMMOSimpleRegionFile getWriteableSimpleRegionFile(@NotNull World world, int cx, int cz) {
-        CoordinateKey regionKey = toRegionKey(world.getUID(), cx, cz);
+    private synchronized @NotNull RegionFile getWriteableSimpleRegionFile(@NotNull World world, int cx, int cz) {
+        WorldChunks worldChunks = getWorldChunks(world);
+        long regionKey = toRegionKey(cx, cz);
+        RegionFile rf = worldChunks.regionMap.get(regionKey);
+
+        // The region is being rewritten, the rewritten file would miss this write
+        if (!worldChunks.compactingRegions.isEmpty() && worldChunks.compactingRegions.containsKey(regionKey))
+            worldChunks.compactingRegions.put(regionKey, Boolean.FALSE);
 
-        return regionMap.computeIfAbsent(regionKey, k -> {
+        if (rf == null) {
             File regionFile = getRegionFile(world, regionKey);
             regionFile.getParentFile().mkdirs();
-            return new McMMOSimpleRegionFile(regionFile, regionKey.x, regionKey.z);
-        });
+            rf = openRegionFile(regionFile, regionKey);
+            worldChunks.regionMap.put(regionKey, rf);
+        }
+
+        return rf;
     }
 
-    private synchronized @Nullable McMMOSimpleRegionFile getReadableSimpleRegionFile(@NotNull World world, int cx, int cz) {
-        CoordinateKey regionKey = toRegionKey(world.getUID(), cx, cz);
+    private synchronized @Nullable RegionFile getReadableSimpleRegionFile(@NotNull World world, int cx, int cz) {
+        WorldChunks worldChunks = getWorldChunks(world);
+        long regionKey = toRegionKey(cx, cz);
+        RegionFile rf = worldChunks.regionMap.get(regionKey);
 
-        return regionMap.computeIfAbsent(regionKey, k -> {
+        if (rf == null) {
             File regionFile = getRegionFile(world, regionKey);
             if (!regionFile.exists())
                 return null; // Don't create the file on read-only operations
-            return new McMMOSimpleRegionFile(regionFile, regionKey.x, regionKey.z);
-        });
+            rf = openRegionFile(regionFile, regionKey);
+            worldChunks.regionMap.put(regionKey, rf);
+        }
+
+        return rf;
     }
 
-    private @NotNull File getRegionFile(@NotNull World world, @NotNull CoordinateKey regionKey) {
-        if (world.getUID() != regionKey.worldID)
-            throw new IllegalArgumentException();
-        return new File(new File(world.getWorldFolder(), "mcmmo_regions"), "mcmmo_" + regionKey.x + "_" + regionKey.z + "_.mcm");
+    private @NotNull RegionFile openRegionFile(@NotNull File regionFile, long regionKey) {
+        if (memoryMappedRegions)
+            return new MappedRegionFile(regionFile, unpackX(regionKey), unpackZ(regionKey), regionCodec);
+
+        return new McMMOSimpleRegionFile(regionFile, unpackX(regionKey), unpackZ(regionKey), regionCodec);
+    }
+
+    private @NotNull File getRegionFile(@NotNull World world, long regionKey) {
+        return new File(new File(world.getWorldFolder(), "mcmmo_regions"), "mcmmo_" + unpackX(regionKey) + "_" + unpackZ(regionKey) + "_.mcm");
     }
 
     private @Nullable ChunkStore loadChunk(int cx, int cz, @NotNull World world) {
@@ -101,23 +204,478 @@ public class HashChunkManager implements ChunkManager {
         return null;
     }
 
+    /**
+     * Reads a chunk store without holding the lock of this manager while the region file is read and inflated
+     */
+    private @Nullable ChunkStore prefetchChunkStore(@NotNull World world, int cx, int cz) throws IOException {
+        RegionFile rf = getReadableSimpleRegionFile(world, cx, cz);
+        if (rf == null)
+            return null; // If there is no region file, there can't be a chunk
+        try (DataInputStream in = rf.getInputStream(cx, cz)) {
+            if (in == null)
+                return null; // No chunk
+            return BitSetChunkStore.Serialization.readChunkStore(in);
+        }
+    }
+
     private void unloadChunk(int cx, int cz, @NotNull World world) {
-        CoordinateKey chunkKey = toChunkKey(world.getUID(), cx, cz);
-        ChunkStore chunkStore = chunkMap.remove(chunkKey); // Remove from chunk map
-        if (chunkStore == null)
+        WorldChunks worldChunks = worldMap.get(world.getUID());
+        if (worldChunks == null)
+            return;
+
+        long chunkKey = toChunkKey(cx, cz);
+        clearLastChunk();
+        worldChunks.emptyChunks.remove(chunkKey);
+
+        // Drop a background read which has not finished yet, it will discard its result
+        if (worldChunks.pendingLoads.remove(chunkKey) != null)
+            releaseChunk(worldChunks, chunkKey);
+
+        ResidentChunk residentChunk = worldChunks.chunkMap.remove(chunkKey); // Remove from chunk map
+        if (residentChunk == null)
             return;
 
-        if (chunkStore.isDirty())
-            writeChunkStore(world, chunkStore);
+        removeResident(residentChunk);
+        cancelPendingFlush(residentChunk);
+        if (residentChunk.chunkStore.isDirty())
+            writeChunkStore(world, residentChunk.chunkStore);
+
+        releaseChunk(worldChunks, chunkKey);
+    }
+
+    /**
+     * @param chunkLoaded true if the chunk is loaded in the world, its store is then kept until the chunk unloads instead of going idle
+     */
+    private @NotNull ResidentChunk addResident(@NotNull World world, @NotNull WorldChunks worldChunks, long chunkKey, @NotNull ChunkStore chunkStore, boolean chunkLoaded) {
+        ResidentChunk residentChunk = new ResidentChunk(world, worldChunks, chunkKey, chunkStore);
+        residentChunk.chunkLoaded = chunkLoaded;
+        worldChunks.chunkMap.put(chunkKey, residentChunk);
+        residentChunk.bytes = estimateMemoryUsage(chunkStore);
+        residentChunks++;
+        addResidentBytes(residentChunk.bytes);
+        touch(residentChunk);
+        enforceMemoryBudget(residentChunk);
+        return residentChunk;
+    }
+
+    private void removeResident(@NotNull ResidentChunk residentChunk) {
+        unlink(residentChunk);
+        residentChunks--;
+        addResidentBytes(-residentChunk.bytes);
+        if (lastChunk == residentChunk)
+            clearLastChunk();
+    }
+
+    /**
+     * Marks a resident chunk as the most recently used one
+     */
+    private void touch(@NotNull ResidentChunk residentChunk) {
+        residentChunk.lastAccess = System.nanoTime();
+        if (lruHead == residentChunk)
+            return;
+
+        unlink(residentChunk);
+        residentChunk.older = lruHead;
+        if (lruHead != null)
+            lruHead.newer = residentChunk;
+        lruHead = residentChunk;
+        if (lruTail == null)
+            lruTail = residentChunk;
+    }
+
+    private void unlink(@NotNull ResidentChunk residentChunk) {
+        if (residentChunk.older != null)
+            residentChunk.older.newer = residentChunk.newer;
+        else if (lruTail == residentChunk)
+            lruTail = residentChunk.newer;
+
+        if (residentChunk.newer != null)
+            residentChunk.newer.older = residentChunk.older;
+        else if (lruHead == residentChunk)
+            lruHead = residentChunk.older;
+
+        residentChunk.older = null;
+        residentChunk.newer = null;
+    }
+
+    private void addResidentBytes(long bytes) {
+        residentBytes += bytes;
+        if (sharedResidentBytes != null)
+            sharedResidentBytes.addAndGet(bytes);
+    }
+
+    /**
+     * @return whether the resident chunk stores counted against the memory budget exceed it
+     */
+    private boolean isOverMemoryBudget() {
+        return (sharedResidentBytes != null ? sharedResidentBytes.get() : residentBytes) > memoryBudget;
+    }
+
+    private static long estimateMemoryUsage(@NotNull ChunkStore chunkStore) {
+        if (chunkStore instanceof BitSetChunkStore)
+            return RESIDENT_OVERHEAD + ((BitSetChunkStore) chunkStore).getMemoryUsage();
+
+        return RESIDENT_OVERHEAD + 16L * 16 * (chunkStore.getChunkMax() - chunkStore.getChunkMin()) / 8;
+    }
+
+    /**
+     * Drops the least recently used clean chunks until the resident stores fit in the memory budget
+     * Dirty chunks are not written on the calling thread, a background flush writes and drops them if the budget is still exceeded
+     *
+     * @param keep a chunk which is in use right now and must stay resident
+     */
+    private void enforceMemoryBudget(@Nullable ResidentChunk keep) {
+        if (memoryBudget <= 0 || batchDepth > 0)
+            return;
+
+        ResidentChunk candidate = lruTail;
+        while (isOverMemoryBudget() && candidate != null && candidate != keep) {
+            ResidentChunk newer = candidate.newer;
+            evictIfClean(candidate);
+            candidate = newer;
+        }
+
+        if (isOverMemoryBudget() && !budgetFlushScheduled) {
+            budgetFlushScheduled = true;
+            backgroundExecutor.execute(this::flushOverMemoryBudget);
+        }
+    }
+
+    private void flushOverMemoryBudget() {
+        synchronized (this) {
+            budgetFlushScheduled = false;
+        }
+        evictIdleChunks();
+    }
+
+    /**
+     * Writes dirty chunk stores so that unloading their chunks later does not have to
+     * Only copying the stores holds the lock of this manager, serializing, compressing and writing them does not
+     *
+     * @param maxChunks the most chunk stores to write
+     * @return the number of chunk stores written
+     */
+    @Override
+    public int flushDirtyChunks(int maxChunks) {
+        List<FlushSnapshot> snapshots = snapshotDirtyChunks(maxChunks);
+        if (snapshots.isEmpty())
+            return 0;
+
+        for (FlushSnapshot snapshot : snapshots)
+            writeSnapshot(snapshot);
+
+        return finishFlush(snapshots);
+    }
+
+    private synchronized @NotNull List<FlushSnapshot> snapshotDirtyChunks(int maxChunks) {
+        List<FlushSnapshot> snapshots = new ArrayList<>();
+
+        // Oldest first, recently used chunks are likely to change again soon
+        for (ResidentChunk residentChunk = lruTail; residentChunk != null && snapshots.size() < maxChunks; residentChunk = residentChunk.newer) {
+            if (!residentChunk.chunkStore.isDirty() || residentChunk.pendingFlush != null || !(residentChunk.chunkStore instanceof BitSetChunkStore))
+                continue;
+
+            BitSetChunkStore chunkStore = (BitSetChunkStore) residentChunk.chunkStore;
+            RegionFile rf;
+            try {
+                // Nothing to clear for an empty store if its region was never written
+                if (chunkStore.isEmpty() && getReadableSimpleRegionFile(residentChunk.world, chunkStore.getChunkX(), chunkStore.getChunkZ()) == null) {
+                    chunkStore.setDirty(false);
+                    continue;
+                }
+                rf = getWriteableSimpleRegionFile(residentChunk.world, chunkStore.getChunkX(), chunkStore.getChunkZ());
+            }
+            catch (RuntimeException e) {
+                continue; // The region file could not be opened, the chunk is written when it unloads instead
+            }
+
+            FlushSnapshot snapshot = new FlushSnapshot(residentChunk, rf, chunkStore.isEmpty() ? null : chunkStore.copy());
+            chunkStore.setDirty(false);
+            residentChunk.pendingFlush = snapshot;
+            snapshots.add(snapshot);
+        }
+
+        return snapshots;
+    }
+
+    /**
+     * Serializes, compresses and writes a snapshot while only holding the lock of its region file
+     * Writing a chunk directly cancels its snapshot before it waits for that lock, so an older snapshot never lands after newer data
+     */
+    private static void writeSnapshot(@NotNull FlushSnapshot snapshot) {
+        ResidentChunk residentChunk = snapshot.residentChunk;
+        try {
+            byte[] compressed = new byte[0];
+            if (snapshot.chunkStore != null) {
+                ByteArrayOutputStream data = new ByteArrayOutputStream();
+                BitSetChunkStore.Serialization.writeChunkStore(new DataOutputStream(data), snapshot.chunkStore);
+                compressed = snapshot.regionFile.getCodec().encode(data.toByteArray(), data.size());
+            }
+
+            synchronized (snapshot.regionFile) {
+                if (residentChunk.pendingFlush != snapshot)
+                    return;
+                snapshot.regionFile.writeCompressed(unpackX(residentChunk.chunkKey), unpackZ(residentChunk.chunkKey), compressed);
+                snapshot.written = true;
+            }
+        }
+        catch (IOException | RuntimeException ignored) {
+            // The store is marked dirty again by finishFlush
+        }
+    }
+
+    private synchronized int finishFlush(@NotNull List<FlushSnapshot> snapshots) {
+        int written = 0;
+
+        for (FlushSnapshot snapshot : snapshots) {
+            if (snapshot.written)
+                written++;
+
+            ResidentChunk residentChunk = snapshot.residentChunk;
+            // The chunk was written directly in the meantime, that also marked it dirty again
+            if (residentChunk.pendingFlush != snapshot)
+                continue;
+
+            residentChunk.pendingFlush = null;
+            if (!snapshot.written)
+                residentChunk.chunkStore.setDirty(true);
+        }
+
+        flushedChunks += written;
+        return written;
+    }
+
+    /**
+     * A background write of this chunk has not finished, so the chunk is written directly instead
+     * This way an older snapshot can never end up on disk after newer data
+     */
+    private static void cancelPendingFlush(@NotNull ResidentChunk residentChunk) {
+        if (residentChunk.pendingFlush != null) {
+            residentChunk.pendingFlush = null;
+            residentChunk.chunkStore.setDirty(true);
+        }
+    }
+
+    /**
+     * Only clean chunk stores are dropped while holding the lock of this manager
+     * Dirty ones are written the way {@link #flushDirtyChunks(int)} writes them and dropped afterwards
+     * Stores of loaded chunks never go idle, dropping them would only make the next lookup in the chunk read them again
+     */
+    @Override
+    public void evictIdleChunks() {
+        int dirtyChunks = evictCleanChunks();
+        if (dirtyChunks > 0 && flushDirtyChunks(dirtyChunks) > 0)
+            evictCleanChunks();
+    }
 
-        CoordinateKey regionKey = toRegionKey(world.getUID(), cx, cz);
-        HashSet<CoordinateKey> chunkKeys = chunkUsageMap.get(regionKey);
+    /**
+     * Drops the clean chunk stores which are idle or over the memory budget, the most recently used store is always kept
+     *
+     * @return the number of chunk stores which would have been dropped but have to be written first
+     */
+    private synchronized int evictCleanChunks() {
+        // Both passes start at the least recently used chunk, so the dirty chunks they skip are the oldest ones
+        int idleDirtyChunks = 0;
+        if (idleNanos > 0) {
+            long now = System.nanoTime();
+            ResidentChunk candidate = lruTail;
+            while (candidate != null && now - candidate.lastAccess >= idleNanos) {
+                ResidentChunk newer = candidate.newer;
+                if (!candidate.chunkLoaded && !evictIfClean(candidate) && candidate.pendingFlush == null)
+                    idleDirtyChunks++;
+                candidate = newer;
+            }
+        }
+
+        int budgetDirtyChunks = 0;
+        if (memoryBudget > 0 && batchDepth == 0) {
+            ResidentChunk candidate = lruTail;
+            while (isOverMemoryBudget() && candidate != null && candidate != lruHead) {
+                ResidentChunk newer = candidate.newer;
+                if (!evictIfClean(candidate) && candidate.pendingFlush == null)
+                    budgetDirtyChunks++;
+                candidate = newer;
+            }
+        }
+
+        return Math.max(idleDirtyChunks, budgetDirtyChunks);
+    }
+
+    /**
+     * @return false if the store still has to be written, it stays resident so the change is not lost
+     */
+    private boolean evictIfClean(@NotNull ResidentChunk residentChunk) {
+        if (residentChunk.chunkStore.isDirty() || residentChunk.pendingFlush != null)
+            return false;
+
+        residentChunk.worldChunks.chunkMap.remove(residentChunk.chunkKey);
+        removeResident(residentChunk);
+        releaseChunk(residentChunk.worldChunks, residentChunk.chunkKey);
+        evictions++;
+        return true;
+    }
+
+    private void markChunkInUse(@NotNull WorldChunks worldChunks, long chunkKey) {
+        long regionKey = toRegionKey(unpackX(chunkKey), unpackZ(chunkKey));
+        LongObjectHashMap<Boolean> chunkKeys = worldChunks.chunkUsageMap.get(regionKey);
+
+        if (chunkKeys == null) {
+            chunkKeys = new LongObjectHashMap<>();
+            worldChunks.chunkUsageMap.put(regionKey, chunkKeys);
+        }
+
+        chunkKeys.put(chunkKey, Boolean.TRUE);
+    }
+
+    private void releaseChunk(@NotNull WorldChunks worldChunks, long chunkKey) {
+        long regionKey = toRegionKey(unpackX(chunkKey), unpackZ(chunkKey));
+        LongObjectHashMap<Boolean> chunkKeys = worldChunks.chunkUsageMap.get(regionKey);
+        if (chunkKeys == null)
+            return;
         chunkKeys.remove(chunkKey); // remove from region file in-use set
         if (chunkKeys.isEmpty()) // If it was last chunk in region, close the region file and remove it from memory
         {
-            chunkUsageMap.remove(regionKey);
-            regionMap.remove(regionKey).close();
+            worldChunks.chunkUsageMap.remove(regionKey);
+            RegionFile rf = worldChunks.regionMap.remove(regionKey);
+            if (rf != null)
+                rf.close();
+        }
+    }
+
+    @Override
+    public synchronized void chunkLoaded(int cx, int cz, @NotNull World world) {
+        WorldChunks worldChunks = getWorldChunks(world);
+        long chunkKey = toChunkKey(cx, cz);
+        ResidentChunk residentChunk = worldChunks.chunkMap.get(chunkKey);
+        if (residentChunk != null) {
+            // Read by a lookup before the chunk loaded, it is no longer left to idle eviction
+            residentChunk.chunkLoaded = true;
+            return;
+        }
+        if (worldChunks.pendingLoads.containsKey(chunkKey) || worldChunks.emptyChunks.containsKey(chunkKey))
+            return;
+
+        CompletableFuture<ChunkStore> pendingLoad = new CompletableFuture<>();
+        worldChunks.pendingLoads.put(chunkKey, pendingLoad);
+        markChunkInUse(worldChunks, chunkKey); // Keeps the region file open while it is being read
+
+        backgroundExecutor.execute(() -> {
+            try {
+                pendingLoad.complete(prefetchChunkStore(world, cx, cz));
+            }
+            catch (Exception e) {
+                pendingLoad.completeExceptionally(e);
+            }
+            finishPrefetch(world, chunkKey, pendingLoad);
+        });
+    }
+
+    private synchronized void finishPrefetch(@NotNull World world, long chunkKey, @NotNull CompletableFuture<ChunkStore> pendingLoad) {
+        WorldChunks worldChunks = worldMap.get(world.getUID());
+
+        // The chunk was unloaded or already looked up in the meantime
+        if (worldChunks == null || !worldChunks.pendingLoads.remove(chunkKey, pendingLoad)) {
+            if (worldChunks == null)
+                return;
+            // Don't leave behind a region file which was opened for nothing
+            long regionKey = toRegionKey(unpackX(chunkKey), unpackZ(chunkKey));
+            if (!worldChunks.chunkUsageMap.containsKey(regionKey)) {
+                RegionFile rf = worldChunks.regionMap.remove(regionKey);
+                if (rf != null)
+                    rf.close();
+            }
+            return;
+        }
+
+        prefetchedChunks++;
+        installPrefetchedChunk(world, worldChunks, chunkKey, pendingLoad);
+    }
+
+    /**
+     * Moves the result of a finished background read into the chunk map
+     *
+     * @return false if the read failed, the chunk has to be loaded the slow way
+     */
+    private boolean installPrefetchedChunk(@NotNull World world, @NotNull WorldChunks worldChunks, long chunkKey, @NotNull CompletableFuture<ChunkStore> pendingLoad) {
+        if (pendingLoad.isCompletedExceptionally()) {
+            releaseChunk(worldChunks, chunkKey);
+            return false;
+        }
+
+        ChunkStore loaded = pendingLoad.join();
+        if (loaded == null) {
+            releaseChunk(worldChunks, chunkKey);
+            worldChunks.emptyChunks.put(chunkKey, Boolean.TRUE);
+        }
+        else
+            addResident(world, worldChunks, chunkKey, loaded, true); // Already marked in-use when the read started
+
+        return true;
+    }
+
+    /**
+     * Finds the store of a chunk, loading it from its region file if it was not prefetched or has been evicted
+     *
+     * @return the resident chunk or null if nothing is stored for this chunk
+     */
+    private @Nullable ResidentChunk getResidentChunk(@NotNull World world, int cx, int cz) {
+        UUID worldId = world.getUID();
+        long chunkKey = toChunkKey(cx, cz);
+
+        if (lastChunk != null && lastChunk.chunkKey == chunkKey && worldId.equals(lastWorldId)) {
+            touch(lastChunk);
+            return lastChunk;
+        }
+
+        WorldChunks worldChunks = getWorldChunks(world);
+        ResidentChunk residentChunk = worldChunks.chunkMap.get(chunkKey);
+        if (residentChunk != null) {
+            touch(residentChunk);
+            return rememberLastChunk(worldId, residentChunk);
+        }
+        if (worldChunks.emptyChunks.containsKey(chunkKey))
+            return null;
+
+        CompletableFuture<ChunkStore> pendingLoad = worldChunks.pendingLoads.remove(chunkKey);
+        if (pendingLoad != null) {
+            if (pendingLoad.isDone() && installPrefetchedChunk(world, worldChunks, chunkKey, pendingLoad))
+                return rememberLastChunk(worldId, worldChunks.chunkMap.get(chunkKey));
+
+            // Waiting on the background read could deadlock, read it here instead and let the background read discard its result
+            if (!pendingLoad.isDone())
+                releaseChunk(worldChunks, chunkKey);
+        }
+
+        blockingLoads++;
+        // Load from file
+        ChunkStore loaded = loadChunk(cx, cz, world);
+        boolean chunkLoaded = world.isChunkLoaded(cx, cz);
+        if (loaded == null) {
+            // Remember that there is nothing stored, unloading the chunk forgets it again so only loaded chunks are recorded
+            if (chunkLoaded)
+                worldChunks.emptyChunks.put(chunkKey, Boolean.TRUE);
+            return null;
+        }
+        // Mark chunk in-use for region tracking
+        markChunkInUse(worldChunks, chunkKey);
+        return rememberLastChunk(worldId, addResident(world, worldChunks, chunkKey, loaded, chunkLoaded));
+    }
+
+    private @Nullable ResidentChunk rememberLastChunk(@NotNull UUID worldId, @Nullable ResidentChunk residentChunk) {
+        if (residentChunk != null) {
+            lastWorldId = worldId;
+            lastChunk = residentChunk;
         }
+        return residentChunk;
+    }
+
+    private void clearLastChunk() {
+        lastWorldId = null;
+        lastChunk = null;
+    }
+
+    private @NotNull WorldChunks getWorldChunks(@NotNull World world) {
+        return worldMap.computeIfAbsent(world.getUID(), worldId -> new WorldChunks());
     }
 
     @Override
@@ -125,47 +683,206 @@ public class HashChunkManager implements ChunkManager {
         unloadChunk(cx, cz, world);
     }
 
+    /**
+     * @return the number of chunk stores which were read in the background before they were needed
+     */
+    public synchronized long getPrefetchedChunks() {
+        return prefetchedChunks;
+    }
+
+    /**
+     * @return the number of lookups which had to read a region file because the chunk was not prefetched in time
+     */
+    public synchronized long getBlockingLoads() {
+        return blockingLoads;
+    }
+
+    /**
+     * @return the number of chunk stores held in memory
+     */
+    public synchronized int getResidentChunks() {
+        return residentChunks;
+    }
+
+    /**
+     * @return a rough estimate of the memory used by the chunk stores held in memory, in bytes
+     */
+    public synchronized long getResidentBytes() {
+        return residentBytes;
+    }
+
+    /**
+     * @return the number of chunk stores which were dropped from memory because they were idle or over the memory budget
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the number of chunk stores written by {@link #flushDirtyChunks(int)}
+     */
+    public synchronized long getFlushedChunks() {
+        return flushedChunks;
+    }
+
     @Override
     public synchronized void unloadWorld(@NotNull World world) {
-        UUID wID = world.getUID();
+        WorldChunks worldChunks = worldMap.get(world.getUID());
+        if (worldChunks == null)
+            return;
+
+        clearLastChunk();
 
         // Save and remove all the chunks
-        List<CoordinateKey> chunkKeys = new ArrayList<>(chunkMap.keySet());
-        for (CoordinateKey chunkKey : chunkKeys) {
-            if (!wID.equals(chunkKey.worldID))
-                continue;
-            ChunkStore chunkStore = chunkMap.remove(chunkKey);
-            if (!chunkStore.isDirty())
+        for (ResidentChunk residentChunk : worldChunks.chunkMap.values()) {
+            removeResident(residentChunk);
+            cancelPendingFlush(residentChunk);
+            if (!residentChunk.chunkStore.isDirty())
                 continue;
             try {
-                writeChunkStore(world, chunkStore);
+                writeChunkStore(world, residentChunk.chunkStore);
             }
             catch (Exception ignore) { }
         }
         // Clear all the region files
-        List<CoordinateKey> regionKeys = new ArrayList<>(regionMap.keySet());
-        for (CoordinateKey regionKey : regionKeys) {
-            if (!wID.equals(regionKey.worldID))
-                continue;
-            regionMap.remove(regionKey).close();
-            chunkUsageMap.remove(regionKey);
+        for (RegionFile rf : worldChunks.regionMap.values())
+            rf.close();
+        // Forget chunks which were never read into memory along with the rest of the world
+        worldMap.remove(world.getUID());
+    }
+
+    /**
+     * Only preparing and swapping in the rewritten file holds the lock of this manager, reading and writing the chunks does not
+     * If a chunk of the region is written in the meantime the rewritten file is thrown away and the region is left as it was
+     */
+    @Override
+    public @Nullable RegionCompactionResult compactRegion(@NotNull World world, int rx, int rz, @Nullable RegionCodec codec) throws IOException {
+        long regionKey = toChunkKey(rx, rz);
+        File regionFile = startCompaction(world, regionKey);
+        if (regionFile == null)
+            return null;
+
+        File compactedFile = null;
+        boolean finished = false;
+        try {
+            compactedFile = File.createTempFile(regionFile.getName(), ".compact", regionFile.getParentFile());
+            long bytesBefore = regionFile.length();
+            int keptChunks = 0;
+            int emptyChunks = 0;
+            int upgradedChunks = 0;
+            int unreadableChunks = 0;
+
+            RegionFile source = new McMMOSimpleRegionFile(regionFile, rx, rz);
+            RegionFile target = new McMMOSimpleRegionFile(compactedFile, rx, rz, codec == null ? source.getCodec() : codec);
+            try {
+                for (int cx = rx << 5; cx < (rx + 1) << 5; cx++) {
+                    for (int cz = rz << 5; cz < (rz + 1) << 5; cz++) {
+                        ChunkStore chunkStore;
+                        try (DataInputStream in = source.getInputStream(cx, cz)) {
+                            if (in == null)
+                                continue;
+                            chunkStore = BitSetChunkStore.Serialization.readChunkStore(in);
+                        }
+                        catch (IOException | RuntimeException e) {
+                            unreadableChunks++;
+                            continue;
+                        }
+
+                        if (chunkStore.isEmpty()) {
+                            emptyChunks++;
+                            continue;
+                        }
+                        // Stores in older formats are read in as dirty
+                        if (chunkStore.isDirty())
+                            upgradedChunks++;
+
+                        try (DataOutputStream out = target.getOutputStream(cx, cz)) {
+                            BitSetChunkStore.Serialization.writeChunkStore(out, chunkStore);
+                        }
+                        keptChunks++;
+                    }
+                }
+            }
+            finally {
+                source.close();
+                target.close();
+            }
+
+            long bytesAfter = compactedFile.length();
+            finished = true;
+            if (!finishCompaction(world, regionKey, regionFile, compactedFile))
+                return null;
+
+            return new RegionCompactionResult(1, bytesBefore, bytesAfter, keptChunks, emptyChunks, upgradedChunks, unreadableChunks);
+        }
+        finally {
+            if (!finished)
+                abortCompaction(world, regionKey);
+            if (compactedFile != null)
+                Files.deleteIfExists(compactedFile.toPath());
         }
     }
 
-    private synchronized boolean isTrue(int x, int y, int z, @NotNull World world) {
-        CoordinateKey chunkKey = blockCoordinateToChunkKey(world.getUID(), x, y, z);
+    /**
+     * Writes what is only held in memory for the region and closes its file, so the file on disk is complete and not in use
+     *
+     * @return the region file, or null if there is none or it is already being compacted
+     */
+    private synchronized @Nullable File startCompaction(@NotNull World world, long regionKey) {
+        File regionFile = getRegionFile(world, regionKey);
+        if (!regionFile.exists())
+            return null;
+
+        WorldChunks worldChunks = getWorldChunks(world);
+        if (worldChunks.compactingRegions.containsKey(regionKey))
+            return null;
+
+        int rx = unpackX(regionKey);
+        int rz = unpackZ(regionKey);
+        for (int cx = rx << 5; cx < (rx + 1) << 5; cx++) {
+            for (int cz = rz << 5; cz < (rz + 1) << 5; cz++) {
+                ResidentChunk residentChunk = worldChunks.chunkMap.get(toChunkKey(cx, cz));
+                if (residentChunk == null)
+                    continue;
+                cancelPendingFlush(residentChunk);
+                writeChunkStore(world, residentChunk.chunkStore);
+            }
+        }
+
+        RegionFile rf = worldChunks.regionMap.remove(regionKey);
+        if (rf != null)
+            rf.close();
+
+        worldChunks.compactingRegions.put(regionKey, Boolean.TRUE);
+        return regionFile;
+    }
+
+    /**
+     * @return false if the region was written to since the compaction started, the compacted file is outdated
+     */
+    private synchronized boolean finishCompaction(@NotNull World world, long regionKey, @NotNull File regionFile, @NotNull File compactedFile) throws IOException {
+        WorldChunks worldChunks = worldMap.get(world.getUID());
+        if (worldChunks == null || worldChunks.compactingRegions.remove(regionKey) != Boolean.TRUE)
+            return false;
+
+        // Reads may have opened the file again, it is reopened on the next access
+        RegionFile rf = worldChunks.regionMap.remove(regionKey);
+        if (rf != null)
+            rf.close();
+
+        Files.move(compactedFile.toPath(), regionFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+
+    private synchronized void abortCompaction(@NotNull World world, long regionKey) {
+        WorldChunks worldChunks = worldMap.get(world.getUID());
+        if (worldChunks != null)
+            worldChunks.compactingRegions.remove(regionKey);
+    }
 
+    private synchronized boolean isTrue(int x, int y, int z, @NotNull World world) {
         // Get chunk, load from file if necessary
-        // Get/Load/Create chunkstore
-        ChunkStore check = chunkMap.computeIfAbsent(chunkKey, k -> {
-            // Load from file
-            ChunkStore loaded = loadChunk(chunkKey.x, chunkKey.z, world);
-            if (loaded == null)
-                return null;
-            // Mark chunk in-use for region tracking
-            chunkUsageMap.computeIfAbsent(toRegionKey(chunkKey.worldID, chunkKey.x, chunkKey.z), j -> new HashSet<>()).add(chunkKey);
-            return loaded;
-        });
+        ResidentChunk check = getResidentChunk(world, x >> 4, z >> 4);
 
         // No chunk, return false
         if (check == null)
@@ -174,7 +891,7 @@ public class HashChunkManager implements ChunkManager {
         int ix = Math.abs(x) % 16;
         int iz = Math.abs(z) % 16;
 
-        return check.isTrue(ix, y, iz);
+        return check.chunkStore.isTrue(ix, y, iz);
     }
 
     @Override
@@ -208,77 +925,260 @@ public class HashChunkManager implements ChunkManager {
     }
 
     private synchronized void set(int x, int y, int z, @NotNull World world, boolean value){
-        CoordinateKey chunkKey = blockCoordinateToChunkKey(world.getUID(), x, y, z);
-
-        // Get/Load/Create chunkstore
-        ChunkStore cStore = chunkMap.computeIfAbsent(chunkKey, k -> {
-            // Load from file
-            ChunkStore loaded = loadChunk(chunkKey.x, chunkKey.z, world);
-            if (loaded != null)
-            {
-                chunkUsageMap.computeIfAbsent(toRegionKey(chunkKey.worldID, chunkKey.x, chunkKey.z), j -> new HashSet<>()).add(chunkKey);
-                return loaded;
-            }
-            // If setting to false, no need to create an empty chunkstore
-            if (!value)
-                return null;
-            // Mark chunk in-use for region tracking
-            chunkUsageMap.computeIfAbsent(toRegionKey(chunkKey.worldID, chunkKey.x, chunkKey.z), j -> new HashSet<>()).add(chunkKey);
-            // Create a new chunkstore
-            return new BitSetChunkStore(world, chunkKey.x, chunkKey.z);
-        });
+        // Get/Load/Create chunkstore, if setting to false there is no need to create an empty chunkstore
+        ResidentChunk residentChunk = value ? getOrCreateResidentChunk(world, x >> 4, z >> 4) : getResidentChunk(world, x >> 4, z >> 4);
 
-        // Indicates setting false on empty chunkstore
-        if (cStore == null)
-            return;
+        if (residentChunk != null)
+            set(residentChunk, x, y, z, value);
+    }
 
+    private void set(@NotNull ResidentChunk residentChunk, int x, int y, int z, boolean value) {
         // Get block offset (offset from chunk corner)
         int ix = Math.abs(x) % 16;
         int iz = Math.abs(z) % 16;
 
         // Set chunk store value
-        cStore.set(ix, y, iz, value);
+        residentChunk.chunkStore.set(ix, y, iz, value);
+
+        // Sparse stores grow as blocks are added
+        long bytes = estimateMemoryUsage(residentChunk.chunkStore);
+        if (bytes != residentChunk.bytes) {
+            addResidentBytes(bytes - residentChunk.bytes);
+            residentChunk.bytes = bytes;
+            enforceMemoryBudget(residentChunk);
+        }
     }
 
-    private @NotNull CoordinateKey blockCoordinateToChunkKey(@NotNull UUID worldUid, int x, int y, int z) {
-        return toChunkKey(worldUid, x >> 4, z >> 4);
+    private @NotNull ResidentChunk getOrCreateResidentChunk(@NotNull World world, int cx, int cz) {
+        ResidentChunk residentChunk = getResidentChunk(world, cx, cz);
+        if (residentChunk != null)
+            return residentChunk;
+
+        // Create a new chunkstore
+        WorldChunks worldChunks = getWorldChunks(world);
+        long chunkKey = toChunkKey(cx, cz);
+        worldChunks.emptyChunks.remove(chunkKey);
+        // Mark chunk in-use for region tracking
+        markChunkInUse(worldChunks, chunkKey);
+        return rememberLastChunk(world.getUID(), addResident(world, worldChunks, chunkKey, new BitSetChunkStore(world, cx, cz), world.isChunkLoaded(cx, cz)));
     }
 
-    private @NotNull CoordinateKey toChunkKey(@NotNull UUID worldUid, int cx, int cz){
-        return new CoordinateKey(worldUid, cx, cz);
+    /**
+     * Looks up a chunk once per batch, later blocks in the same chunk reuse the result
+     */
+    private @Nullable ResidentChunk getBatchChunk(@NotNull ChunkBatch batch, @NotNull World world, int cx, int cz, boolean create) {
+        if (!world.equals(batch.world)) {
+            batch.world = world;
+            batch.chunks.clear();
+        }
+
+        long chunkKey = toChunkKey(cx, cz);
+        Object cached = batch.chunks.get(chunkKey);
+        if (cached instanceof ResidentChunk)
+            return (ResidentChunk) cached;
+        if (cached != null && !create)
+            return null; // Known to have no store
+
+        ResidentChunk residentChunk = create ? getOrCreateResidentChunk(world, cx, cz) : getResidentChunk(world, cx, cz);
+        batch.chunks.put(chunkKey, residentChunk == null ? ChunkBatch.NO_CHUNK : residentChunk);
+        return residentChunk;
     }
 
-    private @NotNull CoordinateKey toRegionKey(@NotNull UUID worldUid, int cx, int cz) {
-        // Compute region index (32x32 chunk regions)
-        int rx = cx >> 5;
-        int rz = cz >> 5;
-        return new CoordinateKey(worldUid, rx, rz);
+    private boolean isTrue(@NotNull ChunkBatch batch, @NotNull World world, int x, int y, int z) {
+        ResidentChunk residentChunk = getBatchChunk(batch, world, x >> 4, z >> 4, false);
+        return residentChunk != null && residentChunk.chunkStore.isTrue(Math.abs(x) % 16, y, Math.abs(z) % 16);
+    }
+
+    /**
+     * Chunks looked up by a batch are not evicted until it is done, so the batch never writes to a store which was already dropped
+     */
+    private void startBatch() {
+        batchDepth++;
     }
 
-    private static final class CoordinateKey {
-        public final @NotNull UUID worldID;
-        public final int x;
-        public final int z;
+    private void endBatch() {
+        if (--batchDepth == 0)
+            enforceMemoryBudget(null);
+    }
+
+    @Override
+    public synchronized @NotNull BitSet checkBlocks(@NotNull Collection<Block> blocks) {
+        BitSet result = new BitSet(blocks.size());
+        ChunkBatch batch = new ChunkBatch();
+        int i = 0;
 
-        private CoordinateKey(@NotNull UUID worldID, int x, int z) {
-            this.worldID = worldID;
-            this.x = x;
-            this.z = z;
+        startBatch();
+        try {
+            for (Block block : blocks) {
+                if (isTrue(batch, block.getWorld(), block.getX(), block.getY(), block.getZ()))
+                    result.set(i);
+                i++;
+            }
         }
+        finally {
+            endBatch();
+        }
+
+        return result;
+    }
+
+    @Override
+    public synchronized @NotNull BitSet checkBlockStates(@NotNull Collection<BlockState> blockStates) {
+        BitSet result = new BitSet(blockStates.size());
+        ChunkBatch batch = new ChunkBatch();
+        int i = 0;
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            CoordinateKey coordinateKey = (CoordinateKey) o;
-            return x == coordinateKey.x &&
-                    z == coordinateKey.z &&
-                    worldID.equals(coordinateKey.worldID);
+        startBatch();
+        try {
+            for (BlockState blockState : blockStates) {
+                if (isTrue(batch, blockState.getWorld(), blockState.getX(), blockState.getY(), blockState.getZ()))
+                    result.set(i);
+                i++;
+            }
+        }
+        finally {
+            endBatch();
         }
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(worldID, x, z);
+        return result;
+    }
+
+    @Override
+    public synchronized @NotNull BitSet checkRegion(@NotNull World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        if (minX > maxX || minY > maxY || minZ > maxZ)
+            throw new IllegalArgumentException("The minimum corner of the box must not be above the maximum corner");
+
+        int sizeX = maxX - minX + 1;
+        int sizeZ = maxZ - minZ + 1;
+        int fromY = Math.max(minY, world.getMinHeight());
+        int toY = Math.min(maxY, world.getMaxHeight() - 1);
+        BitSet result = new BitSet();
+
+        // Walk the box one chunk column at a time
+        for (int cx = minX >> 4; cx <= maxX >> 4; cx++) {
+            for (int cz = minZ >> 4; cz <= maxZ >> 4; cz++) {
+                ResidentChunk residentChunk = getResidentChunk(world, cx, cz);
+                if (residentChunk == null)
+                    continue;
+
+                for (int x = Math.max(minX, cx << 4); x <= Math.min(maxX, (cx << 4) + 15); x++) {
+                    for (int z = Math.max(minZ, cz << 4); z <= Math.min(maxZ, (cz << 4) + 15); z++) {
+                        for (int y = fromY; y <= toY; y++) {
+                            if (residentChunk.chunkStore.isTrue(Math.abs(x) % 16, y, Math.abs(z) % 16))
+                                result.set(((y - minY) * sizeZ + (z - minZ)) * sizeX + (x - minX));
+                        }
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public synchronized void setTrue(@NotNull Collection<Block> blocks) {
+        set(blocks, true);
+    }
+
+    @Override
+    public synchronized void setFalse(@NotNull Collection<Block> blocks) {
+        set(blocks, false);
+    }
+
+    private void set(@NotNull Collection<Block> blocks, boolean value) {
+        ChunkBatch batch = new ChunkBatch();
+
+        startBatch();
+        try {
+            for (Block block : blocks) {
+                ResidentChunk residentChunk = getBatchChunk(batch, block.getWorld(), block.getX() >> 4, block.getZ() >> 4, value);
+                if (residentChunk != null)
+                    set(residentChunk, block.getX(), block.getY(), block.getZ(), value);
+            }
+        }
+        finally {
+            endBatch();
+        }
+    }
+
+    /**
+     * Packs chunk coordinates into one long, x in the upper 32 bits and z in the lower 32 bits
+     */
+    static long toChunkKey(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+
+    static long toRegionKey(int cx, int cz) {
+        // Compute region index (32x32 chunk regions)
+        return toChunkKey(cx >> 5, cz >> 5);
+    }
+
+    static int unpackX(long key) {
+        return (int) (key >> 32);
+    }
+
+    static int unpackZ(long key) {
+        return (int) key;
+    }
+
+    /**
+     * The chunks and region files of one world, keyed by packed coordinates
+     */
+    private static final class WorldChunks {
+        private final LongObjectHashMap<RegionFile> regionMap = new LongObjectHashMap<>(); // Tracks active regions
+        private final LongObjectHashMap<LongObjectHashMap<Boolean>> chunkUsageMap = new LongObjectHashMap<>(); // Tracks active chunks by region
+        private final LongObjectHashMap<ResidentChunk> chunkMap = new LongObjectHashMap<>(); // Tracks active chunks
+        private final LongObjectHashMap<CompletableFuture<ChunkStore>> pendingLoads = new LongObjectHashMap<>(); // Tracks chunks being read in the background
+        private final LongObjectHashMap<Boolean> emptyChunks = new LongObjectHashMap<>(); // Tracks loaded chunks which have no stored data
+        private final LongObjectHashMap<Boolean> compactingRegions = new LongObjectHashMap<>(); // Regions being rewritten, false once written to in the meantime
+    }
+
+    /**
+     * A chunk store held in memory, linked into the least recently used list of the manager
+     */
+    private static final class ResidentChunk {
+        private final @NotNull World world;
+        private final @NotNull WorldChunks worldChunks;
+        private final long chunkKey;
+        private final @NotNull ChunkStore chunkStore;
+        private long bytes;
+        private long lastAccess;
+        private volatile @Nullable FlushSnapshot pendingFlush; // The snapshot being written in the background, read by that write under the region file lock
+        private boolean chunkLoaded; // The chunk is loaded in the world, not just looked up
+        private @Nullable ResidentChunk older;
+        private @Nullable ResidentChunk newer;
+
+        private ResidentChunk(@NotNull World world, @NotNull WorldChunks worldChunks, long chunkKey, @NotNull ChunkStore chunkStore) {
+            this.world = world;
+            this.worldChunks = worldChunks;
+            this.chunkKey = chunkKey;
+            this.chunkStore = chunkStore;
+        }
+    }
+
+    /**
+     * The chunks looked up so far by one bulk operation
+     */
+    private static final class ChunkBatch {
+        private static final Object NO_CHUNK = new Object();
+
+        private @Nullable World world;
+        private final LongObjectHashMap<Object> chunks = new LongObjectHashMap<>(); // A ResidentChunk, or NO_CHUNK if the chunk has no store
+    }
+
+    /**
+     * A copy of a dirty chunk store, serialized and written after the lock of the manager is released
+     */
+    private static final class FlushSnapshot {
+        private final @NotNull ResidentChunk residentChunk;
+        private final @NotNull RegionFile regionFile;
+        private final @Nullable BitSetChunkStore chunkStore; // Null to clear the chunk in the region file
+        private boolean written;
+
+        private FlushSnapshot(@NotNull ResidentChunk residentChunk, @NotNull RegionFile regionFile, @Nullable BitSetChunkStore chunkStore) {
+            this.residentChunk = residentChunk;
+            this.regionFile = regionFile;
+            this.chunkStore = chunkStore;
         }
     }
 }
@@ -0,0 +1,189 @@
+package com.gmail.nossr50.util.blockmeta;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An open addressing hash map keyed by primitive longs, lookups do not allocate
+ * Null values are not supported, a null result always means the key is absent
+ *
+ * @param <V> the value type
+ */
+class LongObjectHashMap<V> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    LongObjectHashMap() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int mix(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private int indexOf(long key) {
+        int index = mix(key) & mask;
+
+        while (values[index] != null) {
+            if (keys[index] == key)
+                return index;
+            index = (index + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public @Nullable V get(long key) {
+        int index = indexOf(key);
+        return index == -1 ? null : (V) values[index];
+    }
+
+    public boolean containsKey(long key) {
+        return indexOf(key) != -1;
+    }
+
+    /**
+     * @return the previous value for the key, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public @Nullable V put(long key, @NotNull V value) {
+        int index = mix(key) & mask;
+
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                V previous = (V) values[index];
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+
+        keys[index] = key;
+        values[index] = value;
+
+        if (++size > resizeThreshold)
+            resize(keys.length << 1);
+
+        return null;
+    }
+
+    /**
+     * @return the removed value, or null if the key was absent
+     */
+    @SuppressWarnings("unchecked")
+    public @Nullable V remove(long key) {
+        int index = indexOf(key);
+        if (index == -1)
+            return null;
+
+        V removed = (V) values[index];
+        removeAt(index);
+        return removed;
+    }
+
+    /**
+     * Removes the key only if it is mapped to the given value
+     *
+     * @return true if the key was removed
+     */
+    public boolean remove(long key, @NotNull Object value) {
+        int index = indexOf(key);
+        if (index == -1 || values[index] != value)
+            return false;
+
+        removeAt(index);
+        return true;
+    }
+
+    private void removeAt(int index) {
+        values[index] = null;
+        size--;
+
+        // Shift the following entries back so no probe sequence is broken
+        int next = (index + 1) & mask;
+        while (values[next] != null) {
+            int ideal = mix(keys[next]) & mask;
+            if (((next - ideal) & mask) >= ((next - index) & mask)) {
+                keys[index] = keys[next];
+                values[index] = values[next];
+                values[next] = null;
+                index = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == null)
+                continue;
+            int index = mix(oldKeys[i]) & mask;
+            while (values[index] != null)
+                index = (index + 1) & mask;
+            keys[index] = oldKeys[i];
+            values[index] = oldValues[i];
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * @return a copy of the keys, safe to iterate while modifying the map
+     */
+    public long[] keys() {
+        long[] copy = new long[size];
+        int i = 0;
+        for (int index = 0; index < values.length; index++) {
+            if (values[index] != null)
+                copy[i++] = keys[index];
+        }
+        return copy;
+    }
+
+    /**
+     * @return a copy of the values, safe to iterate while modifying the map
+     */
+    @SuppressWarnings("unchecked")
+    public @NotNull List<V> values() {
+        List<V> copy = new ArrayList<>(size);
+        for (Object value : values) {
+            if (value != null)
+                copy.add((V) value);
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,281 @@
+package com.gmail.nossr50.util.blockmeta;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+import static com.gmail.nossr50.util.blockmeta.McMMOSimpleRegionFile.DEFAULT_SEGMENT_EXPONENT;
+import static com.gmail.nossr50.util.blockmeta.McMMOSimpleRegionFile.NUM_CHUNKS;
+import static com.gmail.nossr50.util.blockmeta.McMMOSimpleRegionFile.RESERVED_HEADER_BYTES;
+import static com.gmail.nossr50.util.blockmeta.McMMOSimpleRegionFile.SEEK_CHUNK_BYTE_LENGTHS;
+import static com.gmail.nossr50.util.blockmeta.McMMOSimpleRegionFile.SEEK_CHUNK_SEGMENT_INDICES;
+import static com.gmail.nossr50.util.blockmeta.McMMOSimpleRegionFile.SEEK_CODEC;
+import static com.gmail.nossr50.util.blockmeta.McMMOSimpleRegionFile.SEEK_FILE_INFO;
+
+/**
+ * A {@link RegionFile} which maps the header into memory instead of seeking and copying through a {@link RandomAccessFile}
+ * The header stays mapped while the file is open, chunk data is read and written at its position through one reused direct buffer
+ * Only the fixed size header is mapped, so growing the file never maps it again and closing the file releases the mapping
+ * The file format is the same as {@link McMMOSimpleRegionFile}
+ */
+public class MappedRegionFile implements RegionFile {
+    // Chunk info
+    private final int[] chunkSegmentIndex = new int[NUM_CHUNKS];
+    private final int[] chunkNumBytes = new int[NUM_CHUNKS];
+    private final int[] chunkNumSegments = new int[NUM_CHUNKS];
+
+    // Segments
+    private final BitSet segments = new BitSet(); // Used to denote which segments are in use or not
+
+    // Segment size/mask
+    private final int segmentExponent;
+    private final int segmentMask;
+
+    private final @NotNull RegionCodec codec;
+
+    // File access
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private ByteBuffer chunkBuffer = ByteBuffer.allocateDirect(1 << DEFAULT_SEGMENT_EXPONENT); // Grown to fit the largest chunk
+
+    // Region index
+    private final int rx;
+    private final int rz;
+
+    public MappedRegionFile(@NotNull File file, int rx, int rz) {
+        this(file, rx, rz, RegionCodec.ZLIB);
+    }
+
+    /**
+     * @param newFileCodec the codec used if the file is created, existing files keep the codec they were created with
+     */
+    public MappedRegionFile(@NotNull File file, int rx, int rz, @NotNull RegionCodec newFileCodec) {
+        this.rx = rx;
+        this.rz = rz;
+
+        try {
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean newFile = channel.size() < RESERVED_HEADER_BYTES;
+            this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, RESERVED_HEADER_BYTES);
+
+            // New file, write out header bytes
+            if (newFile) {
+                header.put(0, new byte[RESERVED_HEADER_BYTES]);
+                header.putInt(SEEK_FILE_INFO, DEFAULT_SEGMENT_EXPONENT);
+                header.putInt(SEEK_CODEC, newFileCodec.getId());
+            }
+
+            this.segmentExponent = header.getInt(SEEK_FILE_INFO);
+            this.segmentMask = (1 << segmentExponent) - 1;
+            this.codec = RegionCodec.fromId(header.getInt(SEEK_CODEC));
+
+            // Mark reserved segments reserved
+            segments.set(0, bytesToSegments(RESERVED_HEADER_BYTES), true);
+
+            // Read chunk header data
+            for (int i = 0; i < NUM_CHUNKS; i++) {
+                chunkSegmentIndex[i] = header.getInt(SEEK_CHUNK_SEGMENT_INDICES + 4 * i);
+                chunkNumBytes[i] = header.getInt(SEEK_CHUNK_BYTE_LENGTHS + 4 * i);
+                chunkNumSegments[i] = bytesToSegments(chunkNumBytes[i]);
+                markChunkSegments(i, true);
+            }
+
+            fixFileLength(channel.size());
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public synchronized @NotNull DataOutputStream getOutputStream(int x, int z) {
+        return new DataOutputStream(new MappedChunkBuffer(this, getChunkIndex(x, z)));
+    }
+
+    @Override
+    public @NotNull RegionCodec getCodec() {
+        return codec;
+    }
+
+    private static class MappedChunkBuffer extends ByteArrayOutputStream {
+        final MappedRegionFile rf;
+        final int index;
+
+        MappedChunkBuffer(MappedRegionFile rf, int index) {
+            super(1 << DEFAULT_SEGMENT_EXPONENT);
+            this.rf = rf;
+            this.index = index;
+        }
+
+        @Override
+        public void close() throws IOException {
+            rf.write(index, rf.codec.encode(buf, count));
+        }
+    }
+
+    @Override
+    public synchronized void writeCompressed(int x, int z, byte[] compressed) throws IOException {
+        write(getChunkIndex(x, z), compressed);
+    }
+
+    private synchronized void write(int index, byte[] compressed) throws IOException {
+        int size = compressed.length;
+        markChunkSegments(index, false); // Clear our old segments
+        int newSegmentIndex = findContiguousSegments(chunkSegmentIndex[index], size); // Find contiguous segments to save to
+        long position = (long) newSegmentIndex << segmentExponent;
+
+        ByteBuffer buffer = getChunkBuffer(size);
+        buffer.put(compressed).flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer, position + buffer.position());
+        fixFileLength(position + size);
+
+        // update in memory info
+        chunkSegmentIndex[index] = newSegmentIndex;
+        chunkNumBytes[index] = size;
+        chunkNumSegments[index] = bytesToSegments(size);
+        // Mark segments in use
+        markChunkSegments(index, true);
+        // Update header info
+        header.putInt(SEEK_CHUNK_SEGMENT_INDICES + 4 * index, newSegmentIndex);
+        header.putInt(SEEK_CHUNK_BYTE_LENGTHS + 4 * index, size);
+    }
+
+    @Override
+    public synchronized @Nullable DataInputStream getInputStream(int x, int z) throws IOException {
+        int index = getChunkIndex(x, z); // Get chunk index
+        int byteLength = chunkNumBytes[index]; // Get byte length of data
+
+        // No bytes
+        if (byteLength == 0)
+            return null;
+
+        long position = (long) chunkSegmentIndex[index] << segmentExponent;
+
+        ByteBuffer encoded = getChunkBuffer(byteLength);
+        encoded.limit(byteLength);
+        while (encoded.hasRemaining()) {
+            if (channel.read(encoded, position + encoded.position()) < 0)
+                throw new EOFException("Chunk data past the end of the region file");
+        }
+        encoded.flip();
+        return new DataInputStream(new ByteArrayInputStream(codec.decode(encoded)));
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            header.force();
+            channel.close();
+            segments.clear();
+        }
+        catch (IOException ioe) {
+            throw new RuntimeException("Unable to close file", ioe);
+        }
+        finally {
+            // Windows refuses to move or delete a file while it is mapped, compaction replaces the file right after closing it
+            unmap(header);
+        }
+    }
+
+    private @NotNull ByteBuffer getChunkBuffer(int size) {
+        if (chunkBuffer.capacity() < size)
+            chunkBuffer = ByteBuffer.allocateDirect(Integer.highestOneBit(size - 1) << 1);
+
+        return chunkBuffer.clear();
+    }
+
+    /**
+     * Extends the file to end on a segment boundary like {@link McMMOSimpleRegionFile}, writing the last byte leaves zeros before it
+     */
+    private void fixFileLength(long length) throws IOException {
+        long alignedLength = alignToSegment(length);
+        if (channel.size() < alignedLength)
+            channel.write(ByteBuffer.allocate(1), alignedLength - 1);
+    }
+
+    /**
+     * Releases a mapping now instead of once it is garbage collected, the buffer must not be used afterwards
+     */
+    private static void unmap(@NotNull MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        }
+        catch (ReflectiveOperationException | RuntimeException ignored) {
+            // Not available on this JVM, the mapping is released once the buffer is garbage collected
+        }
+    }
+
+    private long alignToSegment(long length) {
+        return (length + segmentMask) & ~(long) segmentMask;
+    }
+
+    private void markChunkSegments(int index, boolean inUse) {
+        // No bytes used
+        if (chunkNumBytes[index] == 0)
+            return;
+
+        int start = chunkSegmentIndex[index];
+        int end = start + chunkNumSegments[index];
+
+        // If we are writing, assert we don't write over any in-use segments
+        if (inUse) {
+            int nextSetBit = segments.nextSetBit(start);
+            if (nextSetBit != -1 && nextSetBit < end)
+                throw new IllegalStateException("Attempting to overwrite an in-use segment");
+        }
+
+        segments.set(start, end, inUse);
+    }
+
+    private int findContiguousSegments(int hint, int size) {
+        if (size == 0)
+            return 0; // Zero byte data will not claim any chunks anyways
+
+        int segments = bytesToSegments(size); // Number of segments we need
+
+        // Check the hinted location (previous location of chunk) most of the time we can fit where we were.
+        int nextInUse = this.segments.nextSetBit(hint);
+        if (nextInUse == -1 || nextInUse >= hint + segments)
+            return hint;
+
+        // Find somewhere to put us
+        int start = this.segments.nextClearBit(0);
+        while (true) {
+            int end = this.segments.nextSetBit(start);
+            // Past the last segment in use, the file grows to fit
+            if (end == -1 || end - start >= segments)
+                return start;
+            start = this.segments.nextClearBit(end);
+        }
+    }
+
+    private int bytesToSegments(int bytes) {
+        if (bytes <= 0)
+            return 1;
+
+        return ((bytes - 1) >> segmentExponent) + 1; // ((bytes - 1) / segmentSize) + 1
+    }
+
+    private int getChunkIndex(int x, int z) {
+        if (rx != (x >> 5) || rz != (z >> 5))
+            throw new IndexOutOfBoundsException();
+
+        x = x & 0x1F; // 5 bits (mod 32)
+        z = z & 0x1F; // 5 bits (mod 32)
+
+        return (x << 5) + z; // x in the upper 5 bits, z in the lower 5 bits
+    }
+}
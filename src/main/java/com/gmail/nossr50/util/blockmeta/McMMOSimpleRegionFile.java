@@ -23,27 +23,28 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.BitSet;
-import java.util.zip.DeflaterOutputStream;
-import java.util.zip.InflaterInputStream;
 
 /**
  * File format:
  * bytes 0-4096 contain 1024 integer values representing the segment index of each chunk
  * bytes 4096-8192 contain 1024 integer values representing the byte length of each chunk
  * bytes 8192-8196 is the integer value of the segment exponent
- * bytes 8196-12288 are reserved for future use
+ * bytes 8196-8200 is the integer id of the {@link RegionCodec} the chunk data is compressed with, 0 (zlib) for older files
+ * bytes 8200-12288 are reserved for future use
  * bytes 12288+ contain the data segments, by default 1024 byte segments.
  * Chunk data is compressed and stored in 1 or more segments as needed.
  */
-public class McMMOSimpleRegionFile {
-    private static final int DEFAULT_SEGMENT_EXPONENT = 10; // TODO, analyze real world usage and determine if a smaller segment(512) is worth it or not. (need to know average chunkstore bytesize)
+public class McMMOSimpleRegionFile implements RegionFile {
+    static final int DEFAULT_SEGMENT_EXPONENT = 10; // TODO, analyze real world usage and determine if a smaller segment(512) is worth it or not. (need to know average chunkstore bytesize)
     private static final int DEFAULT_SEGMENT_SIZE = (int)Math.pow(2, DEFAULT_SEGMENT_EXPONENT); // 1024
-    private static final int RESERVED_HEADER_BYTES = 12288; // This needs to be divisible by segment size
-    private static final int NUM_CHUNKS = 1024; // 32x32
-    private static final int SEEK_CHUNK_SEGMENT_INDICES = 0;
-    private static final int SEEK_CHUNK_BYTE_LENGTHS = 4096;
-    private static final int SEEK_FILE_INFO = 8192;
+    static final int RESERVED_HEADER_BYTES = 12288; // This needs to be divisible by segment size
+    static final int NUM_CHUNKS = 1024; // 32x32
+    static final int SEEK_CHUNK_SEGMENT_INDICES = 0;
+    static final int SEEK_CHUNK_BYTE_LENGTHS = 4096;
+    static final int SEEK_FILE_INFO = 8192;
+    static final int SEEK_CODEC = 8196;
     // Chunk info
     private final int[] chunkSegmentIndex = new int[NUM_CHUNKS];
     private final int[] chunkNumBytes = new int[NUM_CHUNKS];
@@ -56,6 +57,8 @@ public class McMMOSimpleRegionFile {
     private final int segmentExponent;
     private final int segmentMask;
 
+    private final @NotNull RegionCodec codec;
+
     // File location
     private final @NotNull File parent;
     // File access
@@ -66,6 +69,13 @@ public class McMMOSimpleRegionFile {
     private final int rz;
 
     public McMMOSimpleRegionFile(@NotNull File f, int rx, int rz) {
+        this(f, rx, rz, RegionCodec.ZLIB);
+    }
+
+    /**
+     * @param newFileCodec the codec used if the file is created, existing files keep the codec they were created with
+     */
+    public McMMOSimpleRegionFile(@NotNull File f, int rx, int rz, @NotNull RegionCodec newFileCodec) {
         this.rx = rx;
         this.rz = rz;
         this.parent = f;
@@ -78,11 +88,13 @@ public class McMMOSimpleRegionFile {
                 file.write(new byte[RESERVED_HEADER_BYTES]);
                 file.seek(SEEK_FILE_INFO);
                 file.writeInt(DEFAULT_SEGMENT_EXPONENT);
+                file.writeInt(newFileCodec.getId());
             }
 
             file.seek(SEEK_FILE_INFO);
             this.segmentExponent = file.readInt();
             this.segmentMask = (1 << segmentExponent) - 1;
+            this.codec = RegionCodec.fromId(file.readInt());
 
             // Mark reserved segments reserved
             int reservedSegments = this.bytesToSegments(RESERVED_HEADER_BYTES);
@@ -107,9 +119,20 @@ public class McMMOSimpleRegionFile {
         }
     }
 
+    @Override
     public synchronized @NotNull DataOutputStream getOutputStream(int x, int z) {
         int index = getChunkIndex(x, z); // Get chunk index
-        return new DataOutputStream(new DeflaterOutputStream(new McMMOSimpleChunkBuffer(this, index)));
+        return new DataOutputStream(new McMMOSimpleChunkBuffer(this, index));
+    }
+
+    @Override
+    public @NotNull RegionCodec getCodec() {
+        return codec;
+    }
+
+    @Override
+    public synchronized void writeCompressed(int x, int z, byte[] compressed) throws IOException {
+        write(getChunkIndex(x, z), compressed, compressed.length);
     }
 
     private static class McMMOSimpleChunkBuffer extends ByteArrayOutputStream {
@@ -124,7 +147,8 @@ public class McMMOSimpleRegionFile {
 
         @Override
         public void close() throws IOException {
-            rf.write(index, buf, count);
+            byte[] encoded = rf.codec.encode(buf, count);
+            rf.write(index, encoded, encoded.length);
         }
     }
 
@@ -147,6 +171,7 @@ public class McMMOSimpleRegionFile {
         file.writeInt(chunkNumBytes[index]);
     }
 
+    @Override
     public synchronized @Nullable DataInputStream getInputStream(int x, int z) throws IOException {
         int index = getChunkIndex(x, z); // Get chunk index
         int byteLength = chunkNumBytes[index]; // Get byte length of data
@@ -159,9 +184,10 @@ public class McMMOSimpleRegionFile {
 
         file.seek((long) chunkSegmentIndex[index] << segmentExponent); // Seek to file location
         file.readFully(data); // Read in the data
-        return new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data)));
+        return new DataInputStream(new ByteArrayInputStream(codec.decode(ByteBuffer.wrap(data))));
     }
 
+    @Override
     public synchronized void close() {
         try {
             file.close();
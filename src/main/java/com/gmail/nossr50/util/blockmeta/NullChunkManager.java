@@ -4,18 +4,33 @@ import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockState;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.BitSet;
+import java.util.Collection;
 
 public class NullChunkManager implements ChunkManager {
 
     @Override
     public void closeAll() {}
 
+    @Override
+    public void chunkLoaded(int cx, int cz, @NotNull World world) {}
+
     @Override
     public void chunkUnloaded(int cx, int cz, @NotNull World world) {}
 
     @Override
     public void unloadWorld(@NotNull World world) {}
 
+    @Override
+    public void evictIdleChunks() {}
+
+    @Override
+    public int flushDirtyChunks(int maxChunks) {
+        return 0;
+    }
+
     @Override
     public boolean isTrue(@NotNull Block block) {
         return false;
@@ -37,4 +52,30 @@ public class NullChunkManager implements ChunkManager {
 
     @Override
     public void setFalse(@NotNull BlockState blockState) {}
+
+    @Override
+    public @Nullable RegionCompactionResult compactRegion(@NotNull World world, int rx, int rz, @Nullable RegionCodec codec) {
+        return null;
+    }
+
+    @Override
+    public @NotNull BitSet checkBlocks(@NotNull Collection<Block> blocks) {
+        return new BitSet();
+    }
+
+    @Override
+    public @NotNull BitSet checkBlockStates(@NotNull Collection<BlockState> blockStates) {
+        return new BitSet();
+    }
+
+    @Override
+    public @NotNull BitSet checkRegion(@NotNull World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        return new BitSet();
+    }
+
+    @Override
+    public void setTrue(@NotNull Collection<Block> blocks) {}
+
+    @Override
+    public void setFalse(@NotNull Collection<Block> blocks) {}
 }
@@ -0,0 +1,83 @@
+package com.gmail.nossr50.util.blockmeta;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * How the chunk data in a region file is compressed, chosen when the file is created and stored in its header
+ */
+public enum RegionCodec {
+    /**
+     * zlib, the format every version of mcMMO reads
+     */
+    ZLIB(0) {
+        @Override
+        byte[] encode(byte[] data, int length) {
+            return ZlibCodecs.deflate(data, length);
+        }
+
+        @Override
+        byte[] decode(@NotNull ByteBuffer encoded) throws IOException {
+            return ZlibCodecs.inflate(encoded);
+        }
+    },
+    /**
+     * {@link ZeroRunCodec}, faster to read and write but only understood by versions of mcMMO which have it
+     */
+    ZERO_RUN(1) {
+        @Override
+        byte[] encode(byte[] data, int length) {
+            return ZeroRunCodec.encode(data, length);
+        }
+
+        @Override
+        byte[] decode(@NotNull ByteBuffer encoded) throws IOException {
+            return ZeroRunCodec.decode(encoded);
+        }
+    };
+
+    private final int id;
+
+    RegionCodec(int id) {
+        this.id = id;
+    }
+
+    /**
+     * @return the value stored in the region file header for this codec
+     */
+    int getId() {
+        return id;
+    }
+
+    abstract byte[] encode(byte[] data, int length);
+
+    /**
+     * @param encoded the encoded data, read without copying it first
+     */
+    abstract byte[] decode(@NotNull ByteBuffer encoded) throws IOException;
+
+    static @NotNull RegionCodec fromId(int id) throws IOException {
+        for (RegionCodec codec : values()) {
+            if (codec.id == id)
+                return codec;
+        }
+
+        throw new IOException("Unknown region file codec " + id + ", the file was written by a newer version of mcMMO");
+    }
+
+    /**
+     * @return the codec with the given name ignoring case, or null if there is none
+     */
+    public static @Nullable RegionCodec fromName(@NotNull String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+        }
+        catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
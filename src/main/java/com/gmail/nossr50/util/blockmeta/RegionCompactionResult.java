@@ -0,0 +1,82 @@
+package com.gmail.nossr50.util.blockmeta;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * What rewriting one or more region files did, see {@link ChunkManager#compactRegion(org.bukkit.World, int, int, RegionCodec)}
+ */
+public class RegionCompactionResult {
+    private final int regionFiles;
+    private final long bytesBefore;
+    private final long bytesAfter;
+    private final int keptChunks;
+    private final int emptyChunks;
+    private final int upgradedChunks;
+    private final int unreadableChunks;
+
+    public RegionCompactionResult(int regionFiles, long bytesBefore, long bytesAfter, int keptChunks, int emptyChunks, int upgradedChunks, int unreadableChunks) {
+        this.regionFiles = regionFiles;
+        this.bytesBefore = bytesBefore;
+        this.bytesAfter = bytesAfter;
+        this.keptChunks = keptChunks;
+        this.emptyChunks = emptyChunks;
+        this.upgradedChunks = upgradedChunks;
+        this.unreadableChunks = unreadableChunks;
+    }
+
+    public static @NotNull RegionCompactionResult empty() {
+        return new RegionCompactionResult(0, 0, 0, 0, 0, 0, 0);
+    }
+
+    public @NotNull RegionCompactionResult add(@NotNull RegionCompactionResult other) {
+        return new RegionCompactionResult(regionFiles + other.regionFiles, bytesBefore + other.bytesBefore, bytesAfter + other.bytesAfter,
+                keptChunks + other.keptChunks, emptyChunks + other.emptyChunks, upgradedChunks + other.upgradedChunks, unreadableChunks + other.unreadableChunks);
+    }
+
+    /**
+     * @return the number of region files which were rewritten
+     */
+    public int getRegionFiles() {
+        return regionFiles;
+    }
+
+    public long getBytesBefore() {
+        return bytesBefore;
+    }
+
+    public long getBytesAfter() {
+        return bytesAfter;
+    }
+
+    public long getReclaimedBytes() {
+        return bytesBefore - bytesAfter;
+    }
+
+    /**
+     * @return the number of chunk stores which were written to the new files
+     */
+    public int getKeptChunks() {
+        return keptChunks;
+    }
+
+    /**
+     * @return the number of chunk stores which were dropped because no block in them is tracked
+     */
+    public int getEmptyChunks() {
+        return emptyChunks;
+    }
+
+    /**
+     * @return the number of kept chunk stores which were stored in an older format
+     */
+    public int getUpgradedChunks() {
+        return upgradedChunks;
+    }
+
+    /**
+     * @return the number of chunk stores which were dropped because they could not be read, mcMMO discards these when loading them anyway
+     */
+    public int getUnreadableChunks() {
+        return unreadableChunks;
+    }
+}
@@ -0,0 +1,36 @@
+package com.gmail.nossr50.util.blockmeta;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Stores the compressed data of the 32x32 chunks of one region, see {@link McMMOSimpleRegionFile} for the file format
+ * Every implementation reads and writes the same format, so they can be swapped freely
+ */
+public interface RegionFile {
+    /**
+     * @return a stream which compresses the chunk data and stores it when closed
+     */
+    @NotNull DataOutputStream getOutputStream(int x, int z);
+
+    /**
+     * @return a stream of the decompressed chunk data, or null if nothing is stored for the chunk
+     */
+    @Nullable DataInputStream getInputStream(int x, int z) throws IOException;
+
+    /**
+     * @return the codec chunk data in this file is compressed with
+     */
+    @NotNull RegionCodec getCodec();
+
+    /**
+     * Stores chunk data which was already compressed with {@link #getCodec()}
+     */
+    void writeCompressed(int x, int z, byte[] compressed) throws IOException;
+
+    void close();
+}
@@ -1,10 +1,14 @@
 package com.gmail.nossr50.util.blockmeta;
 
 import com.gmail.nossr50.mcMMO;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockState;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.BitSet;
+import java.util.Collection;
+
 /**
  * Contains blockstore methods that are safe for external plugins to access.
  * An instance can be retrieved via {@link mcMMO#getPlaceStore() mcMMO.getPlaceStore()}
@@ -53,4 +57,89 @@ public interface UserBlockTracker {
      * @param blockState BlockState location to set
      */
     void setFalse(@NotNull BlockState blockState);
+
+    /**
+     * Check many block locations at once, each chunk is only looked up once per call
+     *
+     * @param blocks Block locations to check
+     * @return a bitmask with bit i set if the i-th block in iteration order is set to true
+     */
+    default @NotNull BitSet checkBlocks(@NotNull Collection<Block> blocks) {
+        BitSet result = new BitSet(blocks.size());
+        int i = 0;
+        for (Block block : blocks) {
+            if (isTrue(block))
+                result.set(i);
+            i++;
+        }
+        return result;
+    }
+
+    /**
+     * Check many BlockState locations at once, each chunk is only looked up once per call
+     *
+     * @param blockStates BlockState locations to check
+     * @return a bitmask with bit i set if the i-th BlockState in iteration order is set to true
+     */
+    default @NotNull BitSet checkBlockStates(@NotNull Collection<BlockState> blockStates) {
+        BitSet result = new BitSet(blockStates.size());
+        int i = 0;
+        for (BlockState blockState : blockStates) {
+            if (isTrue(blockState))
+                result.set(i);
+            i++;
+        }
+        return result;
+    }
+
+    /**
+     * Check every block location in a box, each chunk is only looked up once per call
+     * Locations outside the height of the world are never set
+     *
+     * @param world World the box is in
+     * @param minX lowest x coordinate, inclusive
+     * @param minY lowest y coordinate, inclusive
+     * @param minZ lowest z coordinate, inclusive
+     * @param maxX highest x coordinate, inclusive
+     * @param maxY highest y coordinate, inclusive
+     * @param maxZ highest z coordinate, inclusive
+     * @return a bitmask with bit {@code ((y - minY) * sizeZ + (z - minZ)) * sizeX + (x - minX)} set if that location is set to true
+     */
+    default @NotNull BitSet checkRegion(@NotNull World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        if (minX > maxX || minY > maxY || minZ > maxZ)
+            throw new IllegalArgumentException("The minimum corner of the box must not be above the maximum corner");
+
+        int sizeX = maxX - minX + 1;
+        int sizeZ = maxZ - minZ + 1;
+        BitSet result = new BitSet();
+        for (int y = Math.max(minY, world.getMinHeight()); y <= maxY && y < world.getMaxHeight(); y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int x = minX; x <= maxX; x++) {
+                    if (isTrue(world.getBlockAt(x, y, z)))
+                        result.set(((y - minY) * sizeZ + (z - minZ)) * sizeX + (x - minX));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Set many block locations to true at once, each chunk is only looked up once per call
+     *
+     * @param blocks Block locations to set
+     */
+    default void setTrue(@NotNull Collection<Block> blocks) {
+        for (Block block : blocks)
+            setTrue(block);
+    }
+
+    /**
+     * Set many block locations to false at once, each chunk is only looked up once per call
+     *
+     * @param blocks Block locations to set
+     */
+    default void setFalse(@NotNull Collection<Block> blocks) {
+        for (Block block : blocks)
+            setFalse(block);
+    }
 }
@@ -0,0 +1,113 @@
+package com.gmail.nossr50.util.blockmeta;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A run length encoding for chunk data made of long runs of zero bytes, which is what dense chunk stores mostly are
+ * The data is a sequence of [varint zero count][varint literal count][literal bytes] until the end of the input
+ * It needs no native state and is much cheaper than zlib, at the cost of larger output for data without zero runs
+ */
+final class ZeroRunCodec {
+    // A literal run only ends for at least this many zeros, shorter gaps cost less to copy than to encode
+    private static final int MIN_ZERO_RUN = 3;
+    // Far larger than any chunk store, protects against corrupt data claiming huge runs
+    private static final int MAX_DECODED_BYTES = 1 << 22;
+
+    private ZeroRunCodec() {}
+
+    static byte[] encode(byte[] data, int length) {
+        byte[] output = new byte[Math.max(16, length / 8)];
+        int size = 0;
+        int position = 0;
+
+        while (position < length) {
+            int zeroStart = position;
+            while (position < length && data[position] == 0)
+                position++;
+            int zeros = position - zeroStart;
+
+            int literalStart = position;
+            while (position < length && !isZeroRun(data, position, length))
+                position++;
+            int literals = position - literalStart;
+
+            // Two varints of at most 5 bytes each, plus the literal bytes
+            if (size + 10 + literals > output.length)
+                output = Arrays.copyOf(output, Math.max(output.length * 2, size + 10 + literals));
+            size = writeVarInt(output, size, zeros);
+            size = writeVarInt(output, size, literals);
+            System.arraycopy(data, literalStart, output, size, literals);
+            size += literals;
+        }
+
+        return Arrays.copyOf(output, size);
+    }
+
+    private static boolean isZeroRun(byte[] data, int position, int length) {
+        if (data[position] != 0)
+            return false;
+
+        int end = Math.min(length, position + MIN_ZERO_RUN);
+        for (int i = position + 1; i < end; i++) {
+            if (data[i] != 0)
+                return false;
+        }
+        return true;
+    }
+
+    private static int writeVarInt(byte[] output, int size, int value) {
+        while ((value & ~0x7F) != 0) {
+            output[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output[size++] = (byte) value;
+        return size;
+    }
+
+    /**
+     * @param encoded the encoded data, read without copying it first
+     */
+    static byte[] decode(@NotNull ByteBuffer encoded) throws IOException {
+        byte[] output = new byte[Math.max(256, encoded.remaining() * 8)];
+        int size = 0;
+
+        while (encoded.hasRemaining()) {
+            int zeros = readVarInt(encoded);
+            int literals = readVarInt(encoded);
+            if (literals > encoded.remaining())
+                throw new IOException("Truncated chunk data");
+
+            long decodedSize = (long) size + zeros + literals;
+            if (decodedSize > MAX_DECODED_BYTES)
+                throw new IOException("Chunk data decodes to more than " + MAX_DECODED_BYTES + " bytes");
+            if (decodedSize > output.length)
+                output = Arrays.copyOf(output, (int) Math.min(MAX_DECODED_BYTES, Math.max(output.length * 2L, decodedSize)));
+
+            size += zeros; // The output starts out zeroed
+            encoded.get(output, size, literals);
+            size += literals;
+        }
+
+        return size == output.length ? output : Arrays.copyOf(output, size);
+    }
+
+    private static int readVarInt(@NotNull ByteBuffer encoded) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (!encoded.hasRemaining())
+                throw new IOException("Truncated chunk data");
+            byte b = encoded.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0)
+                    throw new IOException("Corrupt chunk data");
+                return value;
+            }
+        }
+        throw new IOException("Corrupt chunk data");
+    }
+}
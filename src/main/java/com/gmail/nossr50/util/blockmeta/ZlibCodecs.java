@@ -0,0 +1,65 @@
+package com.gmail.nossr50.util.blockmeta;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses chunk data with one {@link Deflater} and {@link Inflater} per thread instead of new native zlib state for every chunk
+ * The output is the same zlib format {@link java.util.zip.DeflaterOutputStream} writes
+ */
+final class ZlibCodecs {
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(Deflater::new);
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    private ZlibCodecs() {}
+
+    static byte[] deflate(byte[] data, int length) {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+
+        byte[] output = new byte[Math.max(64, length / 2)];
+        int size = 0;
+        while (!deflater.finished()) {
+            if (size == output.length)
+                output = Arrays.copyOf(output, output.length * 2);
+            size += deflater.deflate(output, size, output.length - size);
+        }
+
+        return size == output.length ? output : Arrays.copyOf(output, size);
+    }
+
+    /**
+     * @param compressed the compressed data, read without copying it first
+     */
+    static byte[] inflate(@NotNull ByteBuffer compressed) throws IOException {
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(compressed);
+
+        byte[] output = new byte[Math.max(256, compressed.remaining() * 4)];
+        int size = 0;
+        try {
+            while (!inflater.finished()) {
+                if (size == output.length)
+                    output = Arrays.copyOf(output, output.length * 2);
+                int inflated = inflater.inflate(output, size, output.length - size);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new IOException("Truncated chunk data");
+                size += inflated;
+            }
+        }
+        catch (DataFormatException e) {
+            throw new IOException(e);
+        }
+
+        return size == output.length ? output : Arrays.copyOf(output, size);
+    }
+}
@@ -5,6 +5,7 @@ import com.gmail.nossr50.commands.admin.CompatibilityCommand;
 import com.gmail.nossr50.commands.admin.McmmoReloadLocaleCommand;
 import com.gmail.nossr50.commands.admin.PlayerDebugCommand;
 import com.gmail.nossr50.commands.chat.McChatSpy;
+import com.gmail.nossr50.commands.database.MccompactCommand;
 import com.gmail.nossr50.commands.database.McpurgeCommand;
 import com.gmail.nossr50.commands.database.McremoveCommand;
 import com.gmail.nossr50.commands.database.MmoshowdbCommand;
@@ -289,6 +290,15 @@ public final class CommandRegistrationManager {
         command.setExecutor(new McpurgeCommand());
     }
 
+    private static void registerMccompactCommand() {
+        PluginCommand command = mcMMO.p.getCommand("mccompact");
+        command.setDescription(LocaleLoader.getString("Commands.Description.mccompact"));
+        command.setPermission("mcmmo.commands.mccompact");
+        command.setPermissionMessage(permissionsMessage);
+        command.setUsage(LocaleLoader.getString("Commands.Usage.2", "mccompact", "<world|*>", "[zlib|zero_run]"));
+        command.setExecutor(new MccompactCommand());
+    }
+
     private static void registerMcremoveCommand() {
         PluginCommand command = mcMMO.p.getCommand("mcremove");
         command.setDescription(LocaleLoader.getString("Commands.Description.mcremove"));
@@ -449,6 +459,7 @@ public final class CommandRegistrationManager {
 
         // Database Commands
         registerMcpurgeCommand();
+        registerMccompactCommand();
         registerMcremoveCommand();
         registerMmoshowdbCommand();
         registerMcconvertCommand();
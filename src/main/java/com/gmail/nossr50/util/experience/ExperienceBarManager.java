@@ -4,13 +4,13 @@ import com.gmail.nossr50.config.experience.ExperienceConfig;
 import com.gmail.nossr50.datatypes.player.McMMOPlayer;
 import com.gmail.nossr50.datatypes.skills.PrimarySkillType;
 import com.gmail.nossr50.mcMMO;
-import com.gmail.nossr50.runnables.skills.ExperienceBarHideTask;
-import com.gmail.nossr50.util.Misc;
+import com.gmail.nossr50.runnables.skills.ExperienceBarUpdateTask;
 import com.gmail.nossr50.util.player.NotificationManager;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 
@@ -19,11 +19,17 @@ import java.util.HashSet;
  * Each ExperienceBarManager only manages a single player
  */
 public class ExperienceBarManager {
+    private static final PrimarySkillType[] SKILLS = PrimarySkillType.values();
+
     private final McMMOPlayer mcMMOPlayer;
     int delaySeconds = 3;
 
     private HashMap<PrimarySkillType, ExperienceBarWrapper> experienceBars;
-    private HashMap<PrimarySkillType, ExperienceBarHideTask> experienceBarHideTaskHashMap;
+    // When each bar is hidden again in milliseconds since the epoch by skill ordinal, 0 if it stays as it is
+    private long[] hideAt;
+    // Bars which gained XP since the last tick, their progress is only sent once per tick
+    private EnumSet<PrimarySkillType> pendingUpdates;
+    private @Nullable ExperienceBarUpdateTask updateTask;
 
     private HashSet<PrimarySkillType> alwaysVisible;
     private HashSet<PrimarySkillType> disabledBars;
@@ -37,7 +43,8 @@ public class ExperienceBarManager {
     public void init() {
         //Init maps
         experienceBars = new HashMap<>();
-        experienceBarHideTaskHashMap = new HashMap<>();
+        hideAt = new long[SKILLS.length];
+        pendingUpdates = EnumSet.noneOf(PrimarySkillType.class);
 
         //Init sets
         alwaysVisible = new HashSet<>();
@@ -55,31 +62,66 @@ public class ExperienceBarManager {
         if(experienceBars.get(primarySkillType) == null)
             experienceBars.put(primarySkillType, new ExperienceBarWrapper(primarySkillType, mcMMOPlayer));
 
-        //Get Bar
-        ExperienceBarWrapper experienceBarWrapper = experienceBars.get(primarySkillType);
+        //Progress and visibility are applied by the update task on the next tick
+        pendingUpdates.add(primarySkillType);
 
-        //Update Progress
-        experienceBarWrapper.setProgress(mcMMOPlayer.getProgressInCurrentSkillLevel(primarySkillType));
+        //Push back when the bar is hidden
+        if(!alwaysVisible.contains(primarySkillType))
+            hideAt[primarySkillType.ordinal()] = System.currentTimeMillis() + delaySeconds * 1000L;
 
-        //Show Bar
-        experienceBarWrapper.showExperienceBar();
+        startUpdateTask();
+    }
 
-        //Setup Hide Bar Task
-        if(experienceBarHideTaskHashMap.get(primarySkillType) != null)
-        {
-            experienceBarHideTaskHashMap.get(primarySkillType).cancel();
-        }
+    private void startUpdateTask() {
+        if(updateTask != null)
+            return;
 
-        scheduleHideTask(primarySkillType, plugin);
+        updateTask = new ExperienceBarUpdateTask(this);
+        mcMMO.p.getFoliaLib().getImpl().runAtEntityTimer(mcMMOPlayer.getPlayer(), updateTask, 1, 1);
     }
 
-    private void scheduleHideTask(PrimarySkillType primarySkillType, Plugin plugin) {
-        if(alwaysVisible.contains(primarySkillType))
-            return;
+    /**
+     * Sends the progress of bars which gained XP and hides bars which have been shown long enough
+     * This is run every tick by {@link ExperienceBarUpdateTask} while any bar is waiting for either
+     *
+     * @return false once no bar is waiting for an update or to be hidden, the task stops then
+     */
+    public boolean tickExperienceBars() {
+        if(!mcMMOPlayer.getPlayer().isOnline()) {
+            updateTask = null;
+            return false;
+        }
+
+        for(PrimarySkillType primarySkillType : pendingUpdates) {
+            ExperienceBarWrapper experienceBarWrapper = experienceBars.get(primarySkillType);
+
+            if(experienceBarWrapper != null) {
+                experienceBarWrapper.setProgress(mcMMOPlayer.getProgressInCurrentSkillLevel(primarySkillType));
+                experienceBarWrapper.showExperienceBar();
+            }
+        }
 
-        ExperienceBarHideTask experienceBarHideTask = new ExperienceBarHideTask(this, mcMMOPlayer, primarySkillType);
-        mcMMO.p.getFoliaLib().getImpl().runAtEntityLater(mcMMOPlayer.getPlayer(), experienceBarHideTask, (long) delaySeconds * Misc.TICK_CONVERSION_FACTOR);
-        experienceBarHideTaskHashMap.put(primarySkillType, experienceBarHideTask);
+        pendingUpdates.clear();
+
+        long now = System.currentTimeMillis();
+        boolean waiting = false;
+
+        for(int i = 0; i < hideAt.length; i++) {
+            if(hideAt[i] == 0)
+                continue;
+
+            if(hideAt[i] <= now) {
+                hideAt[i] = 0;
+                hideExperienceBar(SKILLS[i]);
+            } else {
+                waiting = true;
+            }
+        }
+
+        if(!waiting)
+            updateTask = null;
+
+        return waiting;
     }
 
     public void hideExperienceBar(PrimarySkillType primarySkillType)
@@ -88,11 +130,6 @@ public class ExperienceBarManager {
             experienceBars.get(primarySkillType).hideExperienceBar();
     }
 
-    public void clearTask(PrimarySkillType primarySkillType)
-    {
-        experienceBarHideTaskHashMap.remove(primarySkillType);
-    }
-
     public void disableAllBars() {
         for(PrimarySkillType primarySkillType : PrimarySkillType.values()) {
             xpBarSettingToggle(XPBarSettingTarget.HIDE, primarySkillType);
@@ -107,10 +144,8 @@ public class ExperienceBarManager {
                 disabledBars.remove(skillType);
                 alwaysVisible.add(skillType);
 
-                //Remove lingering tasks
-                if(experienceBarHideTaskHashMap.containsKey(skillType)) {
-                    experienceBarHideTaskHashMap.get(skillType).cancel();
-                }
+                //Keep the bar visible
+                hideAt[skillType.ordinal()] = 0;
 
                 updateExperienceBar(skillType, mcMMO.p);
                 break;
@@ -118,10 +153,9 @@ public class ExperienceBarManager {
                 alwaysVisible.remove(skillType);
                 disabledBars.add(skillType);
 
-                //Remove lingering tasks
-                if(experienceBarHideTaskHashMap.containsKey(skillType)) {
-                    experienceBarHideTaskHashMap.get(skillType).cancel();
-                }
+                //Drop lingering updates
+                hideAt[skillType.ordinal()] = 0;
+                pendingUpdates.remove(skillType);
 
                 hideExperienceBar(skillType);
                 break;
@@ -17,11 +17,14 @@ import java.util.List;
  * A visual representation of a player's skill level progress for a PrimarySkillType
  */
 public class ExperienceBarWrapper {
+    // Progress is only sent when it moves by at least one step, boss bars are too narrow to show smaller changes
+    private static final int PROGRESS_STEPS = 200;
 
     private final PrimarySkillType primarySkillType; //Primary Skill
     private BossBar bossBar;
     protected final McMMOPlayer mcMMOPlayer;
     private int lastLevelUpdated;
+    private int lastProgressStep = -1;
 
     /*
      * This is stored to help optimize updating the title
@@ -99,21 +102,26 @@ public class ExperienceBarWrapper {
 
     public void setProgress(double v) {
         //Clamp Values
-        if(v < 0)
-            bossBar.setProgress(0.0D);
+        double progress = Math.max(0.0D, Math.min(1.0D, v));
 
-        else if(v > 1)
-            bossBar.setProgress(1.0D);
-        else
-            bossBar.setProgress(v);
+        //Skip the packet if the bar would look the same
+        int progressStep = (int) Math.round(progress * PROGRESS_STEPS);
+        if(progressStep != lastProgressStep) {
+            bossBar.setProgress(progress);
+            lastProgressStep = progressStep;
+        }
 
         //Check player level
+        BarColor barColor;
         if(ExperienceConfig.getInstance().isEarlyGameBoostEnabled() && PlayerLevelUtils.qualifiesForEarlyGameBoost(mcMMOPlayer, primarySkillType)) {
-           setColor(BarColor.YELLOW);
+            barColor = BarColor.YELLOW;
         } else {
-            setColor(ExperienceConfig.getInstance().getExperienceBarColor(primarySkillType));
+            barColor = ExperienceConfig.getInstance().getExperienceBarColor(primarySkillType);
         }
 
+        if(bossBar.getColor() != barColor)
+            setColor(barColor);
+
         //Every time progress updates we need to check for a title update
         if(getLevel() != lastLevelUpdated || ExperienceConfig.getInstance().getDoExperienceBarsAlwaysUpdateTitle())
         {
@@ -12,14 +12,20 @@ import org.bukkit.metadata.FixedMetadataValue;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class UserManager {
 
     private static HashSet<McMMOPlayer> playerDataSet; //Used to track players for sync saves on shutdown
 
+    // Loaded players by UUID, read on every event so lookups must not lock
+    private static final ConcurrentHashMap<UUID, McMMOPlayer> players = new ConcurrentHashMap<>();
+    // Rebuilt whenever a player is tracked or removed, which is far less often than it is iterated
+    private static volatile @NotNull ImmutableList<McMMOPlayer> playerSnapshot = ImmutableList.of();
+
     private UserManager() {}
 
     /**
@@ -28,7 +34,10 @@ public final class UserManager {
      * @param mcMMOPlayer the player profile to start tracking
      */
     public static void track(@NotNull McMMOPlayer mcMMOPlayer) {
+        // The metadata is only kept for other plugins which read it, mcMMO looks players up in its registry
         mcMMOPlayer.getPlayer().setMetadata(MetadataConstants.METADATA_KEY_PLAYER_DATA, new FixedMetadataValue(mcMMO.p, mcMMOPlayer));
+        players.put(mcMMOPlayer.getPlayer().getUniqueId(), mcMMOPlayer);
+        updateSnapshot();
 
         if(playerDataSet == null)
             playerDataSet = new HashSet<>();
@@ -54,6 +63,8 @@ public final class UserManager {
 
         mcMMOPlayer.cleanup();
         player.removeMetadata(MetadataConstants.METADATA_KEY_PLAYER_DATA, mcMMO.p);
+        if (players.remove(player.getUniqueId(), mcMMOPlayer))
+            updateSnapshot();
 
         if(playerDataSet != null) {
             playerDataSet.remove(mcMMOPlayer); //Clear sync save tracking
@@ -68,6 +79,10 @@ public final class UserManager {
             remove(player);
         }
 
+        // Players who left without being removed
+        players.clear();
+        updateSnapshot();
+
         if(playerDataSet != null)
             playerDataSet.clear(); //Clear sync save tracking
     }
@@ -87,7 +102,7 @@ public final class UserManager {
             try
             {
                 LogUtils.debug(mcMMO.p.getLogger(), "Saving data for player: "+playerData.getPlayerName());
-                playerData.getProfile().save(true);
+                playerData.getProfile().queueSave();
             }
             catch (Exception e)
             {
@@ -95,19 +110,21 @@ public final class UserManager {
             }
         }
 
+        //Write everyone in one batch
+        mcMMO.getProfileSaveQueue().drain();
+
         mcMMO.p.getLogger().info("Finished save operation for "+trackedSyncData.size()+" players!");
     }
 
+    /**
+     * @return an immutable snapshot of every loaded player, iterating it does not copy anything
+     */
     public static @NotNull Collection<McMMOPlayer> getPlayers() {
-        Collection<McMMOPlayer> playerCollection = new ArrayList<>();
-
-        for (Player player : mcMMO.p.getServer().getOnlinePlayers()) {
-            if (hasPlayerDataKey(player)) {
-                playerCollection.add(getPlayer(player));
-            }
-        }
+        return playerSnapshot;
+    }
 
-        return playerCollection;
+    private static synchronized void updateSnapshot() {
+        playerSnapshot = ImmutableList.copyOf(players.values());
     }
 
     /**
@@ -138,11 +155,10 @@ public final class UserManager {
      * @return McMMOPlayer object for this player, null if Player has not been loaded
      */
     public static @Nullable McMMOPlayer getPlayer(@Nullable Player player) {
-        //Avoid Array Index out of bounds
-        if(player != null && player.hasMetadata(MetadataConstants.METADATA_KEY_PLAYER_DATA))
-            return (McMMOPlayer) player.getMetadata(MetadataConstants.METADATA_KEY_PLAYER_DATA).get(0).value();
-        else
+        if(player == null)
             return null;
+
+        return players.get(player.getUniqueId());
     }
 
     private static @Nullable McMMOPlayer retrieveMcMMOPlayer(@Nullable String playerName, boolean offlineValid) {
@@ -163,6 +179,6 @@ public final class UserManager {
     }
 
     public static boolean hasPlayerDataKey(@Nullable Entity entity) {
-        return entity != null && entity.hasMetadata(MetadataConstants.METADATA_KEY_PLAYER_DATA);
+        return entity instanceof Player && players.containsKey(entity.getUniqueId());
     }
 }
@@ -31,6 +31,8 @@ import java.util.*;
  */
 public class ScoreboardManager {
     static final Map<String, ScoreboardWrapper> PLAYER_SCOREBOARDS = new HashMap<>();
+    // Power level tags are only written to boards which are shown, hidden boards catch up when they are shown
+    static final ShownScoreboards<ScoreboardWrapper> SHOWN_SCOREBOARDS = new ShownScoreboards<>();
 
     // do not localize; these are internal identifiers
     static final String SIDEBAR_OBJECTIVE = "mcmmo_sidebar";
@@ -137,7 +139,7 @@ public class ScoreboardManager {
         abilityLabelsSkill = abilityLabelSkillBuilder.build();
     }
 
-    private static final List<String> dirtyPowerLevels = new ArrayList<>();
+    private static final Set<UUID> dirtyPowerLevels = new LinkedHashSet<>();
 
     public enum SidebarType {
         NONE,
@@ -179,8 +181,10 @@ public class ScoreboardManager {
     public static void setupPlayer(Player player) {
         teardownPlayer(player);
 
-        PLAYER_SCOREBOARDS.put(player.getName(), makeNewScoreboard(player));
-        dirtyPowerLevels.add(player.getName());
+        ScoreboardWrapper wrapper = makeNewScoreboard(player);
+        PLAYER_SCOREBOARDS.put(player.getName(), wrapper);
+
+        dirtyPowerLevels.add(player.getUniqueId());
     }
 
     // Called by PlayerQuitEvent listener and OnPlayerTeleport under certain circumstances
@@ -196,6 +200,7 @@ public class ScoreboardManager {
 
         if(getWrapper(player) != null) {
             ScoreboardWrapper wrapper = PLAYER_SCOREBOARDS.remove(player.getName());
+            SHOWN_SCOREBOARDS.hide(wrapper);
             if(wrapper.revertTask != null) {
                 wrapper.revertTask.cancel();
             }
@@ -214,12 +219,39 @@ public class ScoreboardManager {
     // Called by ScoreboardWrapper when its Player logs off and an action tries to be performed
     public static void cleanup(ScoreboardWrapper wrapper) {
         PLAYER_SCOREBOARDS.remove(wrapper.playerName);
+        SHOWN_SCOREBOARDS.hide(wrapper);
 
         if (wrapper.revertTask != null) {
             wrapper.revertTask.cancel();
         }
     }
 
+    // Called by PlayerChangedWorldEvent listener
+    public static void handleWorldChange(Player player) {
+        ScoreboardWrapper wrapper = PLAYER_SCOREBOARDS.get(player.getName());
+
+        // A shown board moves along, its scores of players in the new world were not updated while it was in the old one
+        if(wrapper != null && SHOWN_SCOREBOARDS.isShown(wrapper)) {
+            showPowerLevels(wrapper);
+        }
+
+        // Boards in the new world may have missed updates while this player was elsewhere
+        if (mcMMO.p.getGeneralConfig().getPowerLevelTagsEnabled()) {
+            dirtyPowerLevels.add(player.getUniqueId());
+        }
+    }
+
+    // Called by ScoreboardWrapper when its board is shown to its player
+    static void showPowerLevels(@NotNull ScoreboardWrapper wrapper) {
+        if(SHOWN_SCOREBOARDS.show(wrapper, wrapper.player.getWorld().getUID()))
+            wrapper.refreshPowerLevels();
+    }
+
+    // Called by ScoreboardWrapper when its player stops looking at its board
+    static void hidePowerLevels(@NotNull ScoreboardWrapper wrapper) {
+        SHOWN_SCOREBOARDS.hide(wrapper);
+    }
+
     // Called by internal level-up event listener
     public static void handleLevelUp(Player player, PrimarySkillType skill) {
         // Selfboards
@@ -244,8 +276,8 @@ public class ScoreboardManager {
                 }
             }
 
-            if (mcMMO.p.getGeneralConfig().getPowerLevelTagsEnabled() && !dirtyPowerLevels.contains(playerName)) {
-                dirtyPowerLevels.add(playerName);
+            if (mcMMO.p.getGeneralConfig().getPowerLevelTagsEnabled()) {
+                dirtyPowerLevels.add(player.getUniqueId());
             }
 
             if (mcMMO.p.getGeneralConfig().getSkillLevelUpBoard()) {
@@ -487,19 +519,25 @@ public class ScoreboardManager {
             return false; // indicates
         }
 
-        for (String playerName : dirtyPowerLevels) {
-            McMMOPlayer mcMMOPlayer = UserManager.getPlayer(playerName);
+        for (UUID uuid : dirtyPowerLevels) {
+            Player player = mcMMO.p.getServer().getPlayer(uuid);
+
+            if (player == null) {
+                continue;
+            }
+
+            McMMOPlayer mcMMOPlayer = UserManager.getPlayer(player);
 
             if (mcMMOPlayer == null) {
                 continue;
             }
 
-            Player player = mcMMOPlayer.getPlayer();
             int power = mcMMOPlayer.getPowerLevel();
 
-            mainObjective.getScore(playerName).setScore(power);
+            mainObjective.getScore(player.getName()).setScore(power);
 
-            for (ScoreboardWrapper wrapper : PLAYER_SCOREBOARDS.values()) {
+            // Players looking at the main scoreboard see the score above, only shown boards in the same world need their own copy
+            for (ScoreboardWrapper wrapper : SHOWN_SCOREBOARDS.getBoards(player.getWorld().getUID())) {
                 wrapper.updatePowerLevel(player, power);
             }
         }
@@ -198,6 +198,7 @@ public class ScoreboardWrapper {
         }
 
         player.setScoreboard(scoreboard);
+        ScoreboardManager.showPowerLevels(this);
         revertTask = null;
     }
 
@@ -214,6 +215,7 @@ public class ScoreboardWrapper {
         }
 
         player.setScoreboard(scoreboard);
+        ScoreboardManager.showPowerLevels(this);
         revertTask = mcMMO.p.getFoliaLib().getImpl().runAtEntityLater(player, new ScoreboardChangeTask(), ticks);
 
         // TODO is there any way to do the time that looks acceptable?
@@ -263,6 +265,10 @@ public class ScoreboardWrapper {
             }
         }
 
+        if (player.getScoreboard() != scoreboard) {
+            ScoreboardManager.hidePowerLevels(this);
+        }
+
         cancelRevert();
 
         sidebarType = SidebarType.NONE;
@@ -640,4 +646,21 @@ public class ScoreboardWrapper {
     public void updatePowerLevel(Player player, int newPowerLevel) {
         powerObjective.getScore(player.getName()).setScore(newPowerLevel);
     }
+
+    /**
+     * Sets the power level of every player in this board's world, scores stop being updated while the board is hidden or they are in another world
+     */
+    void refreshPowerLevels() {
+        if (!mcMMO.p.getGeneralConfig().getPowerLevelTagsEnabled()) {
+            return;
+        }
+
+        for (Player worldPlayer : player.getWorld().getPlayers()) {
+            McMMOPlayer mcMMOPlayer = UserManager.getPlayer(worldPlayer);
+
+            if (mcMMOPlayer != null) {
+                updatePowerLevel(worldPlayer, mcMMOPlayer.getPowerLevel());
+            }
+        }
+    }
 }
@@ -0,0 +1,65 @@
+package com.gmail.nossr50.util.scoreboards;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The boards which are currently shown to their players, by the UID of the world their player is in
+ * Power level tags are only seen by players in the same world, and only written to boards in here
+ * A hidden board is not looked at, its player sees the main scoreboard which holds every power level once
+ *
+ * @param <B> the board type
+ */
+final class ShownScoreboards<B> {
+    private final Map<UUID, Set<B>> worldBoards = new HashMap<>();
+    private final Map<B, UUID> boardWorlds = new HashMap<>();
+
+    /**
+     * @return true if the board was not shown in that world before and has to catch up on the power levels there
+     */
+    boolean show(@NotNull B board, @NotNull UUID worldId) {
+        UUID previousWorldId = boardWorlds.put(board, worldId);
+
+        if (worldId.equals(previousWorldId))
+            return false;
+
+        if (previousWorldId != null)
+            removeFromWorld(board, previousWorldId);
+
+        worldBoards.computeIfAbsent(worldId, id -> new HashSet<>()).add(board);
+        return true;
+    }
+
+    void hide(@NotNull B board) {
+        UUID worldId = boardWorlds.remove(board);
+
+        if (worldId != null)
+            removeFromWorld(board, worldId);
+    }
+
+    boolean isShown(@NotNull B board) {
+        return boardWorlds.containsKey(board);
+    }
+
+    @NotNull Set<B> getBoards(@NotNull UUID worldId) {
+        Set<B> boards = worldBoards.get(worldId);
+        return boards == null ? Collections.emptySet() : boards;
+    }
+
+    private void removeFromWorld(@NotNull B board, @NotNull UUID worldId) {
+        Set<B> boards = worldBoards.get(worldId);
+
+        if (boards != null) {
+            boards.remove(board);
+
+            if (boards.isEmpty())
+                worldBoards.remove(worldId);
+        }
+    }
+}
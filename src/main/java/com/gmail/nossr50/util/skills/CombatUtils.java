@@ -940,7 +940,7 @@ public final class CombatUtils {
             return;
         }
 
-        if (!player.hasMetadata(MetadataConstants.METADATA_KEY_PLAYER_DATA)) {
+        if (!UserManager.hasPlayerDataKey(player)) {
             return;
         }
 
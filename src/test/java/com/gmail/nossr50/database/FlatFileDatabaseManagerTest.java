@@ -2,6 +2,7 @@ package com.gmail.nossr50.database;
 
 import com.gmail.nossr50.database.flatfile.LeaderboardStatus;
 import com.gmail.nossr50.datatypes.database.DatabaseType;
+import com.gmail.nossr50.datatypes.database.PlayerStat;
 import com.gmail.nossr50.datatypes.player.PlayerProfile;
 import com.gmail.nossr50.datatypes.player.UniqueDataType;
 import com.gmail.nossr50.datatypes.skills.PrimarySkillType;
@@ -315,6 +316,120 @@ class FlatFileDatabaseManagerTest {
         assertEquals(6, getSplitDataFromFile(db.getUsersFile()).size());
     }
 
+    @Test
+    void testAppendOnlySaveAndCompaction() {
+        File file = prepareDatabaseTestResource(DB_HEALTHY);
+        db = new FlatFileDatabaseManager(file, logger, PURGE_TIME, 0, true, true, 10);
+        UUID uuid = UUID.fromString(HEALTHY_DB_LINE_ONE_UUID_STR);
+
+        PlayerProfile profile = db.loadPlayerProfile(uuid);
+        assertTrue(profile.isLoaded());
+        profile.modifySkill(PrimarySkillType.MINING, 500);
+        assertTrue(db.saveUser(profile));
+
+        UUID newUserUUID = new UUID(5, 5);
+        db.newUser("appendOnlyUser", newUserUUID);
+
+        //Saves are appended to the log, the users file is only touched by compaction
+        assertTrue(db.getLogFile().exists());
+        assertEquals(3, getSplitDataFromFile(db.getUsersFile()).size());
+        assertEquals(500, db.loadPlayerProfile(uuid).getSkillLevel(PrimarySkillType.MINING));
+        assertEquals(500, db.loadPlayerProfile("nossr50").getSkillLevel(PrimarySkillType.MINING));
+        assertTrue(db.loadPlayerProfile(newUserUUID).isLoaded());
+
+        db.compactLog();
+        assertFalse(db.getLogFile().exists());
+
+        ArrayList<String[]> splitDataLines = getSplitDataFromFile(db.getUsersFile());
+        assertEquals(4, splitDataLines.size());
+        assertEquals("500", splitDataLines.get(0)[FlatFileDatabaseManager.SKILLS_MINING]);
+        assertEquals("appendOnlyUser", splitDataLines.get(3)[FlatFileDatabaseManager.USERNAME_INDEX]);
+        assertNull(db.checkFileHealthAndStructure());
+
+        //A log left behind by a previous session is merged when the database is opened again
+        PlayerProfile newUserProfile = db.loadPlayerProfile(newUserUUID);
+        newUserProfile.modifySkill(PrimarySkillType.WOODCUTTING, 42);
+        assertTrue(db.saveUser(newUserProfile));
+        assertTrue(db.getLogFile().exists());
+
+        db = new FlatFileDatabaseManager(file, logger, PURGE_TIME, 0, true);
+        assertFalse(db.getLogFile().exists());
+        assertEquals(42, db.loadPlayerProfile(newUserUUID).getSkillLevel(PrimarySkillType.WOODCUTTING));
+        assertEquals(4, getSplitDataFromFile(db.getUsersFile()).size());
+    }
+
+    @Test
+    void testSaveUsers() {
+        File file = prepareDatabaseTestResource(DB_HEALTHY);
+        db = new FlatFileDatabaseManager(file, logger, PURGE_TIME, 0, true);
+
+        PlayerProfile existingProfile = db.loadPlayerProfile(UUID.fromString(HEALTHY_DB_LINE_ONE_UUID_STR));
+        existingProfile.modifySkill(PrimarySkillType.MINING, 77);
+        UUID newUserUUID = new UUID(7, 7);
+        PlayerProfile newProfile = new PlayerProfile("batchUser", newUserUUID, true, 0);
+
+        //Both profiles are written with one rewrite of the file, new users end up at the end
+        assertTrue(db.saveUsers(List.of(existingProfile, newProfile)));
+
+        ArrayList<String[]> splitDataLines = getSplitDataFromFile(db.getUsersFile());
+        assertEquals(4, splitDataLines.size());
+        assertEquals("77", splitDataLines.get(0)[FlatFileDatabaseManager.SKILLS_MINING]);
+        assertEquals("batchUser", splitDataLines.get(3)[FlatFileDatabaseManager.USERNAME_INDEX]);
+        assertTrue(db.loadPlayerProfile(newUserUUID).isLoaded());
+        assertTrue(db.saveUsers(List.of()));
+
+        //Nothing is left in the log or the temporary file once the users file was replaced
+        assertFalse(db.getLogFile().exists());
+        assertFalse(new File(file.getPath() + FlatFileDatabaseManager.TEMP_FILE_SUFFIX).exists());
+    }
+
+    @Test
+    void testLogReplayedAfterCrash() throws IOException {
+        File file = prepareDatabaseTestResource(DB_HEALTHY);
+        db = new FlatFileDatabaseManager(file, logger, PURGE_TIME, 0, true);
+        UUID uuid = UUID.fromString(HEALTHY_DB_LINE_ONE_UUID_STR);
+
+        //Simulate a crash in append-only mode before the log was compacted, the last record was torn
+        String[] loggedRecord = getSplitDataFromFile(db.getUsersFile()).get(0);
+        loggedRecord[FlatFileDatabaseManager.SKILLS_MINING] = "321";
+
+        try (FileWriter fileWriter = new FileWriter(db.getLogFile())) {
+            fileWriter.write(String.join(":", loggedRecord) + ":\r\n");
+            fileWriter.write("tornRecord:1:2");
+        }
+
+        db = new FlatFileDatabaseManager(file, logger, PURGE_TIME, 0, true);
+        assertFalse(db.getLogFile().exists());
+        assertEquals(321, db.loadPlayerProfile(uuid).getSkillLevel(PrimarySkillType.MINING));
+        assertEquals(3, getSplitDataFromFile(db.getUsersFile()).size());
+        assertNull(db.checkFileHealthAndStructure());
+    }
+
+    @Test
+    void testUserIndexFile() {
+        File file = prepareDatabaseTestResource(DB_HEALTHY);
+        db = new FlatFileDatabaseManager(file, logger, PURGE_TIME, 0, true);
+        UUID uuid = UUID.fromString(HEALTHY_DB_LINE_ONE_UUID_STR);
+        assertTrue(db.loadPlayerProfile(uuid).isLoaded());
+
+        //New users are appended and indexed without a rescan, the index is written out on shutdown
+        UUID newUserUUID = new UUID(6, 6);
+        db.newUser("indexedUser", newUserUUID);
+        assertTrue(db.loadPlayerProfile("indexedUser").isLoaded());
+        db.onDisable();
+        assertTrue(db.getIndexFile().exists());
+
+        db = new FlatFileDatabaseManager(file, logger, PURGE_TIME, 0, true);
+        assertTrue(db.loadPlayerProfile(newUserUUID).isLoaded());
+        testHealthyDataProfileValues("nossr50", uuid, db.loadPlayerProfile("nossr50"));
+
+        //An index file which does not match the users file is ignored
+        replaceDataInFile(db, new String[]{HEALTHY_DB_LINE_1});
+        db = new FlatFileDatabaseManager(file, logger, PURGE_TIME, 0, true);
+        assertFalse(db.loadPlayerProfile(newUserUUID).isLoaded());
+        testHealthyDataProfileValues("nossr50", uuid, db.loadPlayerProfile(uuid));
+    }
+
     private void checkNewUserValues(@NotNull PlayerProfile playerProfile, int startingLevel) {
         //Checking a new user for being zero initialized
         for(PrimarySkillType primarySkillType : PrimarySkillType.values()) {
@@ -591,6 +706,11 @@ class FlatFileDatabaseManagerTest {
         replaceDataInFile(db, normalDatabaseData);
         int purgeCount = db.purgePowerlessUsers();
         assertEquals(purgeCount, 1); //1 User should have been purged
+
+        //The file is rewritten through a temporary file which replaces it
+        assertFalse(new File(db.getUsersFile().getPath() + FlatFileDatabaseManager.TEMP_FILE_SUFFIX).exists());
+        assertEquals(normalDatabaseData.length - 1, db.getStoredUsers().size());
+        assertEquals(0, db.purgePowerlessUsers());
     }
 
     @Test
@@ -671,6 +791,48 @@ class FlatFileDatabaseManagerTest {
 
         assertEquals(1, db.readRank(rankGirlName).get(null)); //Girl should be position 1
         assertEquals(2, db.readRank(rankBoyName).get(null)); //Boy should be position 2
+
+        //Single leaderboard lookups agree with the full rank map
+        assertEquals(1, db.readRank(rankGirlName, PrimarySkillType.MINING));
+        assertEquals(2, db.readRank(rankBoyName, null));
+        assertNull(db.readRank(rankBoyName, PrimarySkillType.SALVAGE));
+        assertNull(db.readRank("rankNobody", null));
+    }
+
+    @Test
+    void testIncrementalLeaderboards() {
+        //This is an empty DB
+        assertNotNull(db);
+        String rankBoyName = "rankBoy";
+        UUID rankBoyUUID = new UUID(1337, 1337);
+        String rankGirlName = "rankGirl";
+        UUID rankGirlUUID = new UUID(7331, 7331);
+
+        assertEquals(LeaderboardStatus.UPDATED, db.updateLeaderboards());
+        assertEquals(LeaderboardStatus.UP_TO_DATE, db.updateLeaderboards());
+
+        //Saves after the leader boards are loaded show up without reading the file again
+        addPlayerProfileWithLevelsAndSave(rankGirlName, rankGirlUUID, 100);
+        PlayerProfile rankBoyProfile = addPlayerProfileWithLevelsAndSave(rankBoyName, rankBoyUUID, 10);
+        assertEquals(1, db.readRank(rankGirlName).get(PrimarySkillType.MINING));
+        assertEquals(2, db.readRank(rankBoyName).get(null));
+
+        rankBoyProfile.modifySkill(PrimarySkillType.MINING, 200);
+        assertTrue(db.saveUser(rankBoyProfile));
+        assertEquals(1, db.readRank(rankBoyName).get(PrimarySkillType.MINING));
+        assertEquals(2, db.readRank(rankGirlName).get(PrimarySkillType.MINING));
+        assertEquals(1, db.readRank(rankGirlName).get(PrimarySkillType.WOODCUTTING));
+
+        List<PlayerStat> miningPage = db.readLeaderboard(PrimarySkillType.MINING, 1, 10);
+        assertEquals(2, miningPage.size());
+        assertEquals(rankBoyName, miningPage.get(0).name);
+        assertEquals(200, miningPage.get(0).statVal);
+        assertEquals(rankGirlName, db.readLeaderboard(PrimarySkillType.MINING, 2, 1).get(0).name);
+
+        assertTrue(db.removeUser(rankGirlName, rankGirlUUID));
+        assertNull(db.readRank(rankGirlName).get(null));
+        assertEquals(1, db.readLeaderboard(null, 1, 10).size());
+        assertEquals(LeaderboardStatus.UP_TO_DATE, db.updateLeaderboards());
     }
 
     @Test
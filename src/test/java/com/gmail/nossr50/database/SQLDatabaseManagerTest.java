@@ -0,0 +1,194 @@
+package com.gmail.nossr50.database;
+
+import com.gmail.nossr50.config.AdvancedConfig;
+import com.gmail.nossr50.config.GeneralConfig;
+import com.gmail.nossr50.datatypes.MobHealthbarType;
+import com.gmail.nossr50.datatypes.database.DatabaseType;
+import com.gmail.nossr50.datatypes.database.PlayerStat;
+import com.gmail.nossr50.datatypes.player.PlayerProfile;
+import com.gmail.nossr50.datatypes.skills.PrimarySkillType;
+import com.gmail.nossr50.mcMMO;
+import com.google.common.io.Files;
+import org.bukkit.Server;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the SQL code path against an embedded H2 database
+ */
+class SQLDatabaseManagerTest {
+    private final static @NotNull Logger logger = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+    private static File tempDir;
+    private @Nullable SQLDatabaseManager db;
+
+    @BeforeEach
+    void init() {
+        //noinspection UnstableApiUsage
+        tempDir = Files.createTempDir();
+
+        mcMMO plugin = mock(mcMMO.class);
+        GeneralConfig generalConfig = mock(GeneralConfig.class);
+        AdvancedConfig advancedConfig = mock(AdvancedConfig.class);
+        Mockito.when(plugin.getLogger()).thenReturn(logger);
+        Mockito.when(plugin.getServer()).thenReturn(mock(Server.class));
+        Mockito.when(plugin.getGeneralConfig()).thenReturn(generalConfig);
+        Mockito.when(plugin.getAdvancedConfig()).thenReturn(advancedConfig);
+        Mockito.when(generalConfig.getMySQLTablePrefix()).thenReturn("mcmmo_");
+        Mockito.when(generalConfig.getMySQLMaxConnections(any())).thenReturn(30);
+        Mockito.when(generalConfig.getMySQLMaxPoolSize(any())).thenReturn(10);
+        Mockito.when(generalConfig.getMobHealthbarDefault()).thenReturn(MobHealthbarType.HEARTS);
+        Mockito.when(advancedConfig.getStartingLevel()).thenReturn(0);
+        mcMMO.p = plugin;
+
+        db = new SQLDatabaseManager(tempDir.getPath() + File.separator + "mcmmo");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (db != null) {
+            db.onDisable();
+        }
+
+        db = null;
+        mcMMO.p = null;
+        FlatFileDatabaseManagerTest.recursiveDelete(tempDir);
+    }
+
+    @Test
+    void testSaveAndLoadUser() {
+        assertNotNull(db);
+        assertEquals(DatabaseType.H2, db.getDatabaseType());
+
+        UUID uuid = new UUID(1, 1);
+        PlayerProfile profile = db.newUser("nossr50", uuid);
+        profile.modifySkill(PrimarySkillType.MINING, 50);
+        profile.modifySkill(PrimarySkillType.ALCHEMY, 7);
+        assertTrue(db.saveUser(profile));
+
+        PlayerProfile loadedProfile = db.loadPlayerProfile(uuid);
+        assertTrue(loadedProfile.isLoaded());
+        assertEquals(50, loadedProfile.getSkillLevel(PrimarySkillType.MINING));
+        assertEquals(7, loadedProfile.getSkillLevel(PrimarySkillType.ALCHEMY));
+
+        //Names are matched without case like they are on MySQL
+        assertTrue(db.loadPlayerProfile("NOSSR50").isLoaded());
+        assertEquals(List.of("nossr50"), db.getStoredUsers());
+    }
+
+    @Test
+    void testLeaderboardsAndRanks() {
+        assertNotNull(db);
+        saveUserWithMiningLevel("rankGirl", new UUID(2, 2), 100);
+        saveUserWithMiningLevel("rankBoy", new UUID(3, 3), 10);
+        saveUserWithMiningLevel("anotherBoy", new UUID(4, 4), 10);
+        saveUserWithMiningLevel("noMining", new UUID(5, 5), 0);
+
+        List<PlayerStat> miningPage = db.readLeaderboard(PrimarySkillType.MINING, 1, 10);
+        assertEquals(3, miningPage.size());
+        assertEquals("rankGirl", miningPage.get(0).name);
+        assertEquals(100, miningPage.get(0).statVal);
+        assertEquals("anotherBoy", db.readLeaderboard(PrimarySkillType.MINING, 2, 1).get(0).name);
+
+        //Ties are settled by alphabetical order
+        Map<PrimarySkillType, Integer> ranks = db.readRank("rankBoy");
+        assertEquals(3, ranks.get(PrimarySkillType.MINING));
+        assertEquals(3, ranks.get(null));
+        assertNull(ranks.get(PrimarySkillType.WOODCUTTING));
+        assertEquals(1, db.readRank("rankGirl", PrimarySkillType.MINING));
+        assertNull(db.readRank("noMining", PrimarySkillType.MINING));
+        assertTrue(db.readRank("nobody").isEmpty());
+    }
+
+    @Test
+    void testRanksMatchLeaderboards() {
+        assertNotNull(db);
+        String[] names = {"alpha", "bravo", "charlie", "delta", "echo", "foxtrot"};
+        int[][] levels = {{40, 5, 0}, {40, 0, 9}, {12, 5, 9}, {0, 30, 1}, {12, 0, 0}, {7, 5, 9}};
+        PrimarySkillType[] skills = {PrimarySkillType.MINING, PrimarySkillType.FISHING, PrimarySkillType.TAMING};
+
+        for (int i = 0; i < names.length; i++) {
+            PlayerProfile profile = db.newUser(names[i], new UUID(10, i));
+
+            for (int j = 0; j < skills.length; j++) {
+                profile.modifySkill(skills[j], levels[i][j]);
+            }
+
+            assertTrue(db.saveUser(profile));
+        }
+
+        //Every rank has to be the position of the player on the leaderboard of that skill
+        for (String name : names) {
+            Map<PrimarySkillType, Integer> ranks = db.readRank(name);
+
+            for (PrimarySkillType skill : new PrimarySkillType[]{skills[0], skills[1], skills[2], null}) {
+                List<PlayerStat> leaderboard = db.readLeaderboard(skill, 1, names.length);
+                Integer expectedRank = null;
+
+                for (int i = 0; i < leaderboard.size(); i++) {
+                    if (leaderboard.get(i).name.equals(name)) {
+                        expectedRank = i + 1;
+                    }
+                }
+
+                assertEquals(expectedRank, ranks.get(skill), name + " " + skill);
+            }
+        }
+    }
+
+    @Test
+    void testRemoveUser() {
+        assertNotNull(db);
+        UUID uuid = new UUID(6, 6);
+        saveUserWithMiningLevel("removedUser", uuid, 20);
+
+        assertTrue(db.removeUser("removedUser", uuid));
+        assertFalse(db.loadPlayerProfile(uuid).isLoaded());
+        assertTrue(db.getStoredUsers().isEmpty());
+        assertFalse(db.removeUser("removedUser", uuid));
+    }
+
+    @Test
+    void testSaveOnlyChangedFields() {
+        assertNotNull(db);
+        UUID uuid = new UUID(7, 7);
+        saveUserWithMiningLevel("twoSessions", uuid, 5);
+
+        //Two copies of the same player which changed different skills must not overwrite each other
+        PlayerProfile miningProfile = db.loadPlayerProfile(uuid);
+        PlayerProfile fishingProfile = db.loadPlayerProfile(uuid);
+        miningProfile.modifySkill(PrimarySkillType.MINING, 30);
+        fishingProfile.modifySkill(PrimarySkillType.FISHING, 12);
+        assertTrue(db.saveUsers(List.of(miningProfile.createSaveSnapshot())));
+        assertTrue(db.saveUsers(List.of(fishingProfile.createSaveSnapshot())));
+
+        PlayerProfile loadedProfile = db.loadPlayerProfile(uuid);
+        assertEquals(30, loadedProfile.getSkillLevel(PrimarySkillType.MINING));
+        assertEquals(12, loadedProfile.getSkillLevel(PrimarySkillType.FISHING));
+
+        //Nothing changed since the last snapshot so only the login time is written
+        assertTrue(miningProfile.createSaveSnapshot().getChangedFields().isEmpty());
+        assertTrue(db.saveUsers(List.of(miningProfile.createSaveSnapshot())));
+        assertEquals(12, db.loadPlayerProfile(uuid).getSkillLevel(PrimarySkillType.FISHING));
+    }
+
+    private void saveUserWithMiningLevel(@NotNull String playerName, @NotNull UUID uuid, int level) {
+        assertNotNull(db);
+        PlayerProfile profile = db.newUser(playerName, uuid);
+        profile.modifySkill(PrimarySkillType.MINING, level);
+        assertTrue(db.saveUser(profile));
+    }
+}
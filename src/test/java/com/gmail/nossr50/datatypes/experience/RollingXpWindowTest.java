@@ -0,0 +1,49 @@
+package com.gmail.nossr50.datatypes.experience;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RollingXpWindowTest {
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    void testGainsExpireAfterWindow() {
+        RollingXpWindow window = new RollingXpWindow(10_000);
+
+        window.add(100F, START);
+        window.add(50F, START + 500);
+        window.add(25F, START + 4_000);
+        assertEquals(175F, window.getTotal(START + 4_000));
+
+        // The first second drops out once the window has moved past it
+        assertEquals(175F, window.getTotal(START + 9_999));
+        assertEquals(25F, window.getTotal(START + 10_000));
+        assertEquals(0F, window.getTotal(START + 14_000));
+    }
+
+    @Test
+    void testLongIdleClearsWindow() {
+        RollingXpWindow window = new RollingXpWindow(60_000);
+
+        for (int i = 0; i < 100_000; i++) {
+            window.add(1.5F, START + i * 7L);
+        }
+        // Only the gains of the last 60 seconds are left
+        long last = START + 99_999 * 7L;
+        assertEquals(60_000 / 7 * 1.5F, window.getTotal(last), 0.01F);
+
+        assertEquals(0F, window.getTotal(last + 3_600_000));
+        window.add(10F, last + 3_600_000);
+        assertEquals(10F, window.getTotal(last + 3_600_000));
+    }
+
+    @Test
+    void testTimeGoingBackwardsKeepsGains() {
+        RollingXpWindow window = new RollingXpWindow(10_000);
+
+        window.add(10F, START + 5_000);
+        window.add(10F, START);
+        assertEquals(20F, window.getTotal(START + 5_000));
+    }
+}
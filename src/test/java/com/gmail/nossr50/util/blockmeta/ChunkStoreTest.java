@@ -13,6 +13,16 @@ import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 
 import java.io.*;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -152,6 +162,60 @@ class ChunkStoreTest {
         assertEqual(original, deserialized);
     }
 
+    @Test
+    void testSparsePromotion() throws IOException {
+        BitSetChunkStore original = new BitSetChunkStore(mockWorld, 1, 2);
+        for (int i = 0; i < BitSetChunkStore.SPARSE_LIMIT; i++)
+            original.setTrue(i & 15, i >> 4, 3);
+        Assertions.assertFalse(original.isDense());
+
+        byte[] serializedBytes = serializeChunkstore(original);
+        ChunkStore deserialized = BitSetChunkStore.Serialization.readChunkStore(new DataInputStream(new ByteArrayInputStream(serializedBytes)));
+        assertEqual(original, deserialized);
+
+        original.setTrue(15, 200, 15);
+        Assertions.assertTrue(original.isDense());
+        original.setFalse(0, 0, 3);
+        Assertions.assertFalse(original.isTrue(0, 0, 3));
+
+        serializedBytes = serializeChunkstore(original);
+        deserialized = BitSetChunkStore.Serialization.readChunkStore(new DataInputStream(new ByteArrayInputStream(serializedBytes)));
+        assert deserialized != null;
+        assertEqual(original, deserialized);
+        // Back under the limit after the removal, so it loads sparse again
+        Assertions.assertFalse(((BitSetChunkStore) deserialized).isDense());
+    }
+
+    @Test
+    void testReadDenseVersion9() throws IOException {
+        BitSet bits = new BitSet();
+        bits.set(12 * 256 + 3 * 16 + 14); // x 14, y 12, z 3
+        bits.set(255 * 256);
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(byteArrayOutputStream);
+        out.writeShort(0xACDC);
+        out.writeInt(0xEA5EDEBB);
+        out.writeInt(9);
+        out.writeLong(mockWorld.getUID().getLeastSignificantBits());
+        out.writeLong(mockWorld.getUID().getMostSignificantBits());
+        out.writeInt(1);
+        out.writeInt(2);
+        out.writeInt(LEGACY_WORLD_HEIGHT_MIN);
+        out.writeInt(LEGACY_WORLD_HEIGHT_MAX);
+        byte[] storeData = bits.toByteArray();
+        out.writeInt(storeData.length);
+        out.write(storeData);
+
+        ChunkStore deserialized = BitSetChunkStore.Serialization.readChunkStore(new DataInputStream(new ByteArrayInputStream(byteArrayOutputStream.toByteArray())));
+        assert deserialized != null;
+        Assertions.assertTrue(deserialized.isTrue(14, 12, 3));
+        Assertions.assertTrue(deserialized.isTrue(0, 255, 0));
+        Assertions.assertFalse(deserialized.isTrue(14, 12, 4));
+        // Old versions are rewritten in the current format on the next save
+        Assertions.assertTrue(deserialized.isDirty());
+    }
+
     @Test
     void testNegativeWorldMinUpgrade() throws IOException {
         BitSetChunkStore original = new BitSetChunkStore(mockWorld, 1, 2);
@@ -210,6 +274,138 @@ class ChunkStoreTest {
         file.delete();
     }
 
+    @Test
+    void testMappedRegionMatchesSimpleRegion() throws IOException {
+        File file = new File(tempDir, "MappedRegionRoundTrip.region");
+        byte[] small = new byte[100];
+        byte[] large = new byte[8192];
+        new Random(42).nextBytes(large); // Doesn't compress, takes several segments
+
+        RegionFile mapped = new MappedRegionFile(file, 0, 0);
+        try (DataOutputStream outputStream = mapped.getOutputStream(1, 2)) {
+            outputStream.write(small);
+        }
+        try (DataOutputStream outputStream = mapped.getOutputStream(3, 4)) {
+            outputStream.write(large);
+        }
+        mapped.close();
+
+        // Written by one backend, read and overwritten by the other
+        RegionFile simple = new McMMOSimpleRegionFile(file, 0, 0);
+        assertChunkData(small, simple.getInputStream(1, 2));
+        assertChunkData(large, simple.getInputStream(3, 4));
+        Assertions.assertNull(simple.getInputStream(5, 6));
+        try (DataOutputStream outputStream = simple.getOutputStream(1, 2)) {
+            outputStream.write(large);
+        }
+        simple.close();
+
+        mapped = new MappedRegionFile(file, 0, 0);
+        assertChunkData(large, mapped.getInputStream(1, 2));
+        assertChunkData(large, mapped.getInputStream(3, 4));
+        mapped.close();
+        file.delete();
+    }
+
+    @Test
+    void testMappedRegionGrowth() throws IOException {
+        File file = new File(tempDir, "MappedRegionGrowth.region");
+        Random random = new Random(42);
+        byte[][] chunks = new byte[32][];
+
+        RegionFile mapped = new MappedRegionFile(file, 0, 0);
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = new byte[1000 + 500 * i];
+            random.nextBytes(chunks[i]); // Doesn't compress, every write appends past the end
+            try (DataOutputStream outputStream = mapped.getOutputStream(i, 31 - i)) {
+                outputStream.write(chunks[i]);
+            }
+            Assertions.assertEquals(0, file.length() % (1 << McMMOSimpleRegionFile.DEFAULT_SEGMENT_EXPONENT));
+        }
+        for (int i = 0; i < chunks.length; i++)
+            assertChunkData(chunks[i], mapped.getInputStream(i, 31 - i));
+        mapped.close();
+
+        RegionFile simple = new McMMOSimpleRegionFile(file, 0, 0);
+        for (int i = 0; i < chunks.length; i++)
+            assertChunkData(chunks[i], simple.getInputStream(i, 31 - i));
+        simple.close();
+
+        // Nothing stays mapped once closed, so the file can be replaced like compaction does
+        Files.move(file, new File(tempDir, "MappedRegionGrowth.moved"));
+        Assertions.assertTrue(new File(tempDir, "MappedRegionGrowth.moved").delete());
+    }
+
+    @Test
+    void testZeroRunRegionRoundTrip() throws IOException {
+        File file = new File(tempDir, "ZeroRunRegionRoundTrip.region");
+        byte[] small = new byte[100];
+        byte[] large = new byte[8192];
+        new Random(42).nextBytes(large);
+        byte[] chunkData = serializeChunkstore(buildDenseChunkStore());
+
+        RegionFile simple = new McMMOSimpleRegionFile(file, 0, 0, RegionCodec.ZERO_RUN);
+        Assertions.assertEquals(RegionCodec.ZERO_RUN, simple.getCodec());
+        try (DataOutputStream outputStream = simple.getOutputStream(1, 2)) {
+            outputStream.write(small);
+        }
+        try (DataOutputStream outputStream = simple.getOutputStream(3, 4)) {
+            outputStream.write(large);
+        }
+        simple.writeCompressed(5, 6, RegionCodec.ZERO_RUN.encode(chunkData, chunkData.length));
+        simple.close();
+
+        // The codec comes from the header of an existing file, not from what new files would use
+        RegionFile mapped = new MappedRegionFile(file, 0, 0, RegionCodec.ZLIB);
+        Assertions.assertEquals(RegionCodec.ZERO_RUN, mapped.getCodec());
+        assertChunkData(small, mapped.getInputStream(1, 2));
+        assertChunkData(large, mapped.getInputStream(3, 4));
+        assertChunkData(chunkData, mapped.getInputStream(5, 6));
+        mapped.close();
+        file.delete();
+    }
+
+    @Test
+    void testRegionCodecsOnChunkData() throws IOException {
+        byte[] chunkData = serializeChunkstore(buildDenseChunkStore());
+
+        for (RegionCodec codec : RegionCodec.values()) {
+            byte[] encoded = codec.encode(chunkData, chunkData.length);
+            // A dense store is mostly zero bytes, both codecs should shrink it by far
+            Assertions.assertTrue(encoded.length < chunkData.length / 4, codec + " encoded to " + encoded.length + " bytes");
+            Assertions.assertArrayEquals(chunkData, codec.decode(ByteBuffer.wrap(encoded)));
+        }
+
+        byte[] encoded = RegionCodec.ZERO_RUN.encode(chunkData, chunkData.length);
+        Assertions.assertThrows(IOException.class, () -> RegionCodec.ZERO_RUN.decode(ByteBuffer.wrap(encoded, 0, encoded.length - 1)));
+        Assertions.assertThrows(IOException.class, () -> RegionCodec.ZERO_RUN.decode(ByteBuffer.wrap(new byte[] {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 0})));
+        Assertions.assertEquals(0, RegionCodec.ZERO_RUN.decode(ByteBuffer.wrap(RegionCodec.ZERO_RUN.encode(new byte[0], 0))).length);
+    }
+
+    /**
+     * @return a chunk store with a floor and a few walls placed, too many blocks for the sparse representation
+     */
+    private BitSetChunkStore buildDenseChunkStore() {
+        BitSetChunkStore chunkStore = new BitSetChunkStore(mockWorld, 1, 2);
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++)
+                chunkStore.setTrue(x, 64, z);
+            for (int y = 65; y < 72; y++) {
+                chunkStore.setTrue(x, y, 0);
+                chunkStore.setTrue(x, y, 15);
+            }
+        }
+        Assertions.assertTrue(chunkStore.isDense());
+        return chunkStore;
+    }
+
+    private static void assertChunkData(byte[] expected, DataInputStream inputStream) throws IOException {
+        Assertions.assertNotNull(inputStream);
+        try (inputStream) {
+            Assertions.assertArrayEquals(expected, inputStream.readAllBytes());
+        }
+    }
+
     @Test
     void testSimpleRegionRejectsOutOfBounds() {
         File file = new File(tempDir, "SimpleRegionRoundTrip.region");
@@ -251,6 +447,351 @@ class ChunkStoreTest {
         Assertions.assertTrue(chunkManager.isTrue(mockBlockA));
     }
 
+    @Test
+    void testChunkPrefetch() {
+        HashChunkManager hashChunkManager = new HashChunkManager(Runnable::run);
+        Block trackedBlock = initMockBlock(20000, 64, 20000);
+        Block untrackedBlock = initMockBlock(20100, 64, 20000);
+        int trackedChunkX = trackedBlock.getX() >> 4;
+        int untrackedChunkX = untrackedBlock.getX() >> 4;
+        int chunkZ = trackedBlock.getZ() >> 4;
+
+        hashChunkManager.setTrue(trackedBlock);
+        hashChunkManager.chunkUnloaded(trackedChunkX, chunkZ, mockWorld);
+        long blockingLoads = hashChunkManager.getBlockingLoads();
+
+        // Chunks read in the background are answered without touching the region file
+        hashChunkManager.chunkLoaded(trackedChunkX, chunkZ, mockWorld);
+        hashChunkManager.chunkLoaded(untrackedChunkX, chunkZ, mockWorld);
+        Assertions.assertEquals(2, hashChunkManager.getPrefetchedChunks());
+        Assertions.assertTrue(hashChunkManager.isTrue(trackedBlock));
+        Assertions.assertFalse(hashChunkManager.isTrue(untrackedBlock));
+        hashChunkManager.setTrue(untrackedBlock);
+        Assertions.assertTrue(hashChunkManager.isTrue(untrackedBlock));
+        Assertions.assertEquals(blockingLoads, hashChunkManager.getBlockingLoads());
+
+        // Unloading forgets the prefetched state
+        hashChunkManager.chunkUnloaded(trackedChunkX, chunkZ, mockWorld);
+        Assertions.assertTrue(hashChunkManager.isTrue(trackedBlock));
+        Assertions.assertEquals(blockingLoads + 1, hashChunkManager.getBlockingLoads());
+    }
+
+    @Test
+    void testEmptyChunkRemembered() {
+        HashChunkManager hashChunkManager = new HashChunkManager(Runnable::run);
+        Block block = initMockBlock(30000, 64, 30000);
+        int chunkX = block.getX() >> 4;
+        int chunkZ = block.getZ() >> 4;
+
+        // Chunks which are not loaded are read every time, there is no unload to forget them again
+        Assertions.assertFalse(hashChunkManager.isTrue(block));
+        Assertions.assertFalse(hashChunkManager.isTrue(block));
+        Assertions.assertEquals(2, hashChunkManager.getBlockingLoads());
+
+        // A loaded chunk without data is only read once
+        Mockito.when(mockWorld.isChunkLoaded(chunkX, chunkZ)).thenReturn(true);
+        Assertions.assertFalse(hashChunkManager.isTrue(block));
+        Assertions.assertFalse(hashChunkManager.isTrue(block));
+        Assertions.assertEquals(3, hashChunkManager.getBlockingLoads());
+
+        hashChunkManager.chunkUnloaded(chunkX, chunkZ, mockWorld);
+        Assertions.assertFalse(hashChunkManager.isTrue(block));
+        Assertions.assertEquals(4, hashChunkManager.getBlockingLoads());
+
+        // Storing a value replaces the remembered empty chunk
+        hashChunkManager.setTrue(block);
+        Assertions.assertTrue(hashChunkManager.isTrue(block));
+    }
+
+    @Test
+    void testChunkEviction() {
+        // Room for two chunk stores holding a single block each, the background writes run right away
+        HashChunkManager hashChunkManager = new HashChunkManager(Runnable::run, 400, 0, false, RegionCodec.ZLIB);
+        Block first = initMockBlock(40000, 64, 40000);
+        Block second = initMockBlock(40016, 64, 40000);
+        Block third = initMockBlock(40032, 64, 40000);
+
+        hashChunkManager.setTrue(first);
+        hashChunkManager.setTrue(second);
+        Assertions.assertEquals(2, hashChunkManager.getResidentChunks());
+        Assertions.assertEquals(0, hashChunkManager.getEvictions());
+
+        // Over the budget, the dirty chunks are written by a background flush and the least recently used one is dropped
+        long flushedChunks = hashChunkManager.getFlushedChunks();
+        hashChunkManager.setTrue(third);
+        Assertions.assertEquals(2, hashChunkManager.getResidentChunks());
+        Assertions.assertEquals(1, hashChunkManager.getEvictions());
+        Assertions.assertEquals(flushedChunks + 2, hashChunkManager.getFlushedChunks());
+        Assertions.assertTrue(hashChunkManager.getResidentBytes() <= 400);
+
+        // A clean chunk is dropped right away to make room
+        Assertions.assertTrue(hashChunkManager.isTrue(first));
+        Assertions.assertEquals(2, hashChunkManager.getEvictions());
+        Assertions.assertTrue(hashChunkManager.isTrue(second));
+        Assertions.assertTrue(hashChunkManager.isTrue(third));
+        hashChunkManager.closeAll();
+    }
+
+    @Test
+    void testIdleChunkEviction() throws InterruptedException {
+        HashChunkManager hashChunkManager = new HashChunkManager(Runnable::run, 0, 1, false, RegionCodec.ZLIB);
+        Block first = initMockBlock(45000, 64, 45000);
+        Block second = initMockBlock(45016, 64, 45000);
+        hashChunkManager.setTrue(first);
+        hashChunkManager.setTrue(second);
+        hashChunkManager.flushDirtyChunks(1);
+
+        // Idle chunks are dropped even when they fit in the budget, the dirty one is written by a flush first
+        Thread.sleep(5);
+        long flushedChunks = hashChunkManager.getFlushedChunks();
+        hashChunkManager.evictIdleChunks();
+        Assertions.assertEquals(0, hashChunkManager.getResidentChunks());
+        Assertions.assertEquals(0, hashChunkManager.getResidentBytes());
+        Assertions.assertEquals(flushedChunks + 1, hashChunkManager.getFlushedChunks());
+        Assertions.assertTrue(hashChunkManager.isTrue(first));
+        Assertions.assertTrue(hashChunkManager.isTrue(second));
+
+        // Only chunks which are not loaded in the world go idle, a lookup in a loaded chunk must not have to read it again
+        Mockito.when(mockWorld.isChunkLoaded(45016 >> 4, 45000 >> 4)).thenReturn(true);
+        hashChunkManager.chunkLoaded(45016 >> 4, 45000 >> 4, mockWorld);
+        Thread.sleep(5);
+        hashChunkManager.evictIdleChunks();
+        Assertions.assertEquals(1, hashChunkManager.getResidentChunks());
+        long blockingLoads = hashChunkManager.getBlockingLoads();
+        Assertions.assertTrue(hashChunkManager.isTrue(second));
+        Assertions.assertEquals(blockingLoads, hashChunkManager.getBlockingLoads());
+        hashChunkManager.closeAll();
+    }
+
+    @Test
+    void testLookupsDoNotAllocate() {
+        HashChunkManager hashChunkManager = new HashChunkManager(Runnable::run);
+        // Mockito records every call made on a mock, these proxies answer without allocating anything
+        World world = initProxy(World.class, Map.of("getUID", UUID.randomUUID(), "getWorldFolder", tempDir,
+                "getMinHeight", 0, "getMaxHeight", 256, "isChunkLoaded", true));
+        List<Block> blocks = new ArrayList<>();
+
+        for (int x = -120; x < 120; x += 5) {
+            for (int z = -120; z < 120; z += 7)
+                blocks.add(initProxy(Block.class, Map.of("getX", x, "getY", 64, "getZ", z, "getWorld", world)));
+        }
+
+        for (int i = 0; i < blocks.size(); i += 3)
+            hashChunkManager.setTrue(blocks.get(i));
+
+        // Every chunk is read or remembered as empty before counting
+        int expected = countPlacedBlocks(hashChunkManager, blocks);
+        int[] found = new int[1];
+        long allocated = LongObjectHashMapTest.measureAllocatedBytes(() -> {
+            for (int i = 0; i < 20; i++)
+                found[0] += countPlacedBlocks(hashChunkManager, blocks);
+        });
+
+        Assertions.assertTrue(expected >= blocks.size() / 3);
+        Assertions.assertEquals(expected * 20, found[0]);
+        // Boxing the chunk key alone would take over half a megabyte here
+        Assertions.assertTrue(allocated < 4096, "Lookups allocated " + allocated + " bytes");
+        hashChunkManager.closeAll();
+    }
+
+    private static int countPlacedBlocks(@NotNull HashChunkManager hashChunkManager, @NotNull List<Block> blocks) {
+        int found = 0;
+        for (Block block : blocks) {
+            if (hashChunkManager.isTrue(block))
+                found++;
+        }
+        return found;
+    }
+
+    @Test
+    void testFlushDirtyChunks() {
+        HashChunkManager hashChunkManager = new HashChunkManager(Runnable::run);
+        Block first = initMockBlock(50000, 64, 50000);
+        Block second = initMockBlock(50016, 64, 50000);
+
+        hashChunkManager.setTrue(first);
+        hashChunkManager.setTrue(second);
+        Assertions.assertEquals(1, hashChunkManager.flushDirtyChunks(1));
+        Assertions.assertEquals(1, hashChunkManager.flushDirtyChunks(8));
+        Assertions.assertEquals(0, hashChunkManager.flushDirtyChunks(8));
+        Assertions.assertEquals(2, hashChunkManager.getFlushedChunks());
+
+        // Changes after a flush are picked up by the next one
+        hashChunkManager.setFalse(first);
+        Assertions.assertEquals(1, hashChunkManager.flushDirtyChunks(8));
+
+        // The flushed data is on disk without closing or unloading anything
+        HashChunkManager reader = new HashChunkManager(Runnable::run);
+        Assertions.assertFalse(reader.isTrue(first));
+        Assertions.assertTrue(reader.isTrue(second));
+        reader.closeAll();
+        hashChunkManager.closeAll();
+    }
+
+    @Test
+    void testConcurrentChunkManager() throws InterruptedException {
+        ConcurrentChunkManager chunkManager = new ConcurrentChunkManager(8, 0, 0, false, RegionCodec.ZLIB, Runnable::run);
+        int threadCount = 4;
+        int regionSize = 16 * 32;
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+
+        // Each thread works in its own region like Folia's region threads would
+        for (int i = 0; i < threadCount; i++) {
+            int originX = 30000 + i * regionSize;
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int x = originX; x < originX + 64; x++) {
+                        Block block = initMockBlock(x, 70, -30000);
+                        chunkManager.setTrue(block);
+                        Assertions.assertTrue(chunkManager.isTrue(block));
+                    }
+                } catch (Throwable throwable) {
+                    failures.add(throwable);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads)
+            thread.join();
+
+        Assertions.assertTrue(failures.isEmpty(), failures.toString());
+
+        for (int i = 0; i < threadCount; i++) {
+            int originX = 30000 + i * regionSize;
+            Assertions.assertTrue(chunkManager.isTrue(initMockBlock(originX + 63, 70, -30000)));
+            Assertions.assertFalse(chunkManager.isTrue(initMockBlock(originX + 64, 70, -30000)));
+        }
+    }
+
+    @Test
+    void testConcurrentChunkManagerSharedBudget() {
+        // Room for two chunk stores holding a single block each, shared by every stripe
+        ConcurrentChunkManager chunkManager = new ConcurrentChunkManager(8, 400, 0, false, RegionCodec.ZLIB, Runnable::run);
+        Block first = initMockBlock(40000, 64, 40000);
+        Block second = initMockBlock(40016, 64, 40000);
+        Block otherRegion = initMockBlock(40000 + 16 * 32 * 3, 64, 40000);
+
+        // A single stripe may use the whole budget
+        chunkManager.setTrue(first);
+        chunkManager.setTrue(second);
+        Assertions.assertEquals(2, chunkManager.getResidentChunks());
+        Assertions.assertEquals(0, chunkManager.getEvictions());
+
+        chunkManager.setTrue(otherRegion);
+        chunkManager.evictIdleChunks();
+        Assertions.assertTrue(chunkManager.getResidentBytes() <= 400);
+        Assertions.assertTrue(chunkManager.getEvictions() > 0);
+        Assertions.assertTrue(chunkManager.isTrue(first));
+        Assertions.assertTrue(chunkManager.isTrue(second));
+        Assertions.assertTrue(chunkManager.isTrue(otherRegion));
+        chunkManager.closeAll();
+    }
+
+    @Test
+    void testBulkOperations() {
+        HashChunkManager hashChunkManager = new HashChunkManager(Runnable::run);
+        // Straddles a region border so the concurrent manager has to split the work between stripes
+        ConcurrentChunkManager concurrentChunkManager = new ConcurrentChunkManager(8, 0, 0, false, RegionCodec.ZLIB, Runnable::run);
+        List<Block> blocks = new ArrayList<>();
+        Set<Integer> usedOffsets = new HashSet<>();
+        Random random = new Random(60000);
+
+        // Every block has its own position, the expected values below are decided per block
+        while (blocks.size() < 200) {
+            int x = random.nextInt(8);
+            int y = random.nextInt(8);
+            int z = random.nextInt(40);
+            if (usedOffsets.add((y * 40 + z) * 8 + x))
+                blocks.add(initMockBlock(61436 + x, 60 + y, 60000 + z));
+        }
+
+        List<Block> placed = blocks.subList(0, 120);
+        List<Block> broken = blocks.subList(80, 100);
+        for (UserBlockTracker tracker : List.of(hashChunkManager, concurrentChunkManager)) {
+            tracker.setTrue(placed);
+            tracker.setFalse(broken);
+
+            BitSet checked = tracker.checkBlocks(blocks);
+            for (int i = 0; i < blocks.size(); i++) {
+                Block block = blocks.get(i);
+                boolean expected = placed.contains(block) && !broken.contains(block);
+                Assertions.assertEquals(expected, tracker.isTrue(block));
+                Assertions.assertEquals(tracker.isTrue(block), checked.get(i));
+            }
+
+            BitSet region = tracker.checkRegion(mockWorld, 61436, 60, 60000, 61443, 67, 60039);
+            for (int y = 60; y < 68; y++) {
+                for (int z = 60000; z < 60040; z++) {
+                    for (int x = 61436; x < 61444; x++) {
+                        int bit = ((y - 60) * 40 + (z - 60000)) * 8 + (x - 61436);
+                        Assertions.assertEquals(tracker.isTrue(initMockBlock(x, y, z)), region.get(bit));
+                    }
+                }
+            }
+        }
+
+        // Parts of the box outside the world height are never set
+        Assertions.assertTrue(hashChunkManager.checkRegion(mockWorld, 61436, 256, 60000, 61443, 300, 60039).isEmpty());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> hashChunkManager.checkRegion(mockWorld, 1, 0, 0, 0, 0, 0));
+        hashChunkManager.closeAll();
+        concurrentChunkManager.closeAll();
+    }
+
+    @Test
+    void testCompactRegion() throws IOException {
+        HashChunkManager hashChunkManager = new HashChunkManager(Runnable::run);
+        // Chunks 4375 to 4378 on both axes, all in region 136, 136
+        Block grown = initMockBlock(70000, 64, 70000);
+        Block neighbour = initMockBlock(70016, 64, 70000);
+        hashChunkManager.setTrue(grown);
+        hashChunkManager.setTrue(neighbour);
+        hashChunkManager.closeAll();
+
+        // Outgrows its segment, so it moves to the end of the file and leaves a hole behind
+        Random random = new Random(70000);
+        List<Block> placed = new ArrayList<>();
+        for (int i = 0; i < 3000; i++)
+            placed.add(initMockBlock(70000 + random.nextInt(16), random.nextInt(256), 70000 + random.nextInt(16)));
+        hashChunkManager.setTrue(placed);
+        hashChunkManager.closeAll();
+
+        File regionFile = new File(new File(tempDir, "mcmmo_regions"), "mcmmo_136_136_.mcm");
+        McMMOSimpleRegionFile region = new McMMOSimpleRegionFile(regionFile, 136, 136);
+        try (DataOutputStream outputStream = region.getOutputStream(4377, 4375)) {
+            BitSetChunkStore.Serialization.writeChunkStore(outputStream, new BitSetChunkStore(mockWorld, 4377, 4375));
+        }
+        LegacyChunkStore legacy = new LegacyChunkStore(mockWorld, 4378, 4375);
+        legacy.setTrue(1, 2, 3);
+        try (DataOutputStream outputStream = region.getOutputStream(4378, 4375)) {
+            outputStream.write(serializeChunkstore(legacy));
+        }
+        region.close();
+
+        long lengthBefore = regionFile.length();
+        RegionCompactionResult result = hashChunkManager.compactRegion(mockWorld, 136, 136, null);
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals(3, result.getKeptChunks());
+        Assertions.assertEquals(1, result.getEmptyChunks());
+        Assertions.assertEquals(1, result.getUpgradedChunks());
+        Assertions.assertEquals(0, result.getUnreadableChunks());
+        Assertions.assertEquals(lengthBefore, result.getBytesBefore());
+        Assertions.assertEquals(regionFile.length(), result.getBytesAfter());
+        Assertions.assertTrue(result.getReclaimedBytes() > 0);
+        Assertions.assertNull(hashChunkManager.compactRegion(mockWorld, 0, 0, null));
+
+        HashChunkManager reader = new HashChunkManager(Runnable::run);
+        Assertions.assertTrue(reader.isTrue(grown));
+        Assertions.assertTrue(reader.isTrue(neighbour));
+        for (Block block : placed)
+            Assertions.assertTrue(reader.isTrue(block));
+        Assertions.assertTrue(reader.isTrue(initMockBlock(4378 * 16 + 1, 2, 4375 * 16 + 3)));
+        reader.closeAll();
+        hashChunkManager.closeAll();
+    }
+
     private void assertEqual(ChunkStore expected, ChunkStore actual) {
         Assertions.assertEquals(expected.getChunkMin(), actual.getChunkMin());
         Assertions.assertEquals(expected.getChunkMax(), actual.getChunkMax());
@@ -421,6 +962,19 @@ class ChunkStoreTest {
         return mockBlock;
     }
 
+    @NotNull
+    private static <T> T initProxy(@NotNull Class<T> type, @NotNull Map<String, Object> values) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class)
+                return method.getName().equals("equals") ? proxy == args[0] : method.getName().equals("hashCode") ? System.identityHashCode(proxy) : type.getSimpleName();
+
+            Object value = values.get(method.getName());
+            if (value == null)
+                throw new UnsupportedOperationException(method.getName());
+            return value;
+        }));
+    }
+
     public static void recursiveDelete(@NotNull File directoryToBeDeleted) {
         if (directoryToBeDeleted.isDirectory()) {
             for (File file : directoryToBeDeleted.listFiles()) {
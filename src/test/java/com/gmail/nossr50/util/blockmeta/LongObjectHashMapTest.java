@@ -0,0 +1,102 @@
+package com.gmail.nossr50.util.blockmeta;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+class LongObjectHashMapTest {
+
+    @Test
+    void testMatchesHashMap() {
+        LongObjectHashMap<String> map = new LongObjectHashMap<>();
+        Map<Long, String> expected = new HashMap<>();
+        Random random = new Random(1337);
+
+        // Small key range so puts, overwrites and removals collide often
+        for (int i = 0; i < 100000; i++) {
+            long key = HashChunkManager.toChunkKey(random.nextInt(64) - 32, random.nextInt(64) - 32);
+            if (random.nextInt(3) == 0) {
+                Assertions.assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                String value = Integer.toString(i);
+                Assertions.assertEquals(expected.put(key, value), map.put(key, value));
+            }
+            Assertions.assertEquals(expected.size(), map.size());
+        }
+
+        for (Map.Entry<Long, String> entry : expected.entrySet())
+            Assertions.assertEquals(entry.getValue(), map.get(entry.getKey()));
+        Assertions.assertEquals(expected.size(), map.keys().length);
+        Assertions.assertEquals(expected.size(), map.values().size());
+
+        map.clear();
+        Assertions.assertTrue(map.isEmpty());
+        Assertions.assertNull(map.get(HashChunkManager.toChunkKey(0, 0)));
+    }
+
+    @Test
+    void testConditionalRemove() {
+        LongObjectHashMap<Object> map = new LongObjectHashMap<>();
+        Object value = new Object();
+        map.put(1L, value);
+        Assertions.assertFalse(map.remove(1L, new Object()));
+        Assertions.assertTrue(map.remove(1L, value));
+        Assertions.assertFalse(map.containsKey(1L));
+    }
+
+    @Test
+    void testChunkKeys() {
+        long key = HashChunkManager.toChunkKey(-1, 1);
+        Assertions.assertEquals(-1, HashChunkManager.unpackX(key));
+        Assertions.assertEquals(1, HashChunkManager.unpackZ(key));
+        Assertions.assertNotEquals(key, HashChunkManager.toChunkKey(1, -1));
+
+        long regionKey = HashChunkManager.toRegionKey(-33, 31);
+        Assertions.assertEquals(-2, HashChunkManager.unpackX(regionKey));
+        Assertions.assertEquals(0, HashChunkManager.unpackZ(regionKey));
+    }
+
+    @Test
+    void testLookupsDoNotAllocate() {
+        LongObjectHashMap<Object> map = new LongObjectHashMap<>();
+        for (int x = -16; x < 16; x++) {
+            for (int z = -16; z < 16; z++)
+                map.put(HashChunkManager.toChunkKey(x, z), Boolean.TRUE);
+        }
+
+        int[] found = new int[1];
+        long allocated = measureAllocatedBytes(() -> {
+            for (int i = 0; i < 100000; i++) {
+                if (map.get(HashChunkManager.toChunkKey(i % 40 - 20, i % 24 - 12)) != null)
+                    found[0]++;
+            }
+        });
+
+        Assertions.assertTrue(found[0] > 0);
+        // A boxed key per lookup would be well over a megabyte
+        Assertions.assertTrue(allocated < 4096, "Lookups allocated " + allocated + " bytes");
+    }
+
+    /**
+     * Counts the bytes allocated by the current thread while running the given code
+     * Skips the test on JVMs which can't count allocations per thread
+     */
+    static long measureAllocatedBytes(@NotNull Runnable runnable) {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported(), "Allocations per thread can't be counted on this JVM");
+
+        com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = allocationMXBean.getThreadAllocatedBytes(threadId);
+        runnable.run();
+        return allocationMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+    }
+}
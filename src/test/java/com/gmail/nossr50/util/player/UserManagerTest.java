@@ -0,0 +1,90 @@
+package com.gmail.nossr50.util.player;
+
+import com.gmail.nossr50.datatypes.player.McMMOPlayer;
+import com.gmail.nossr50.mcMMO;
+import org.bukkit.Server;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.Collection;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class UserManagerTest {
+
+    @BeforeEach
+    void setUp() {
+        mcMMO plugin = mock(mcMMO.class);
+        Mockito.when(plugin.getServer()).thenReturn(mock(Server.class));
+        mcMMO.p = plugin;
+    }
+
+    @AfterEach
+    void tearDown() {
+        UserManager.clearAll();
+        mcMMO.p = null;
+    }
+
+    @Test
+    void testTrackAndRemove() {
+        Player player = mockPlayer();
+        McMMOPlayer mcMMOPlayer = mockMcMMOPlayer(player);
+
+        assertNull(UserManager.getPlayer(player));
+        assertFalse(UserManager.hasPlayerDataKey(player));
+
+        UserManager.track(mcMMOPlayer);
+        assertSame(mcMMOPlayer, UserManager.getPlayer(player));
+        assertTrue(UserManager.hasPlayerDataKey(player));
+        assertEquals(1, UserManager.getPlayers().size());
+
+        // Other entities with the same UUID are never players
+        Entity entity = mock(Entity.class);
+        Mockito.when(entity.getUniqueId()).thenReturn(player.getUniqueId());
+        assertFalse(UserManager.hasPlayerDataKey(entity));
+
+        UserManager.remove(player);
+        assertNull(UserManager.getPlayer(player));
+        assertFalse(UserManager.hasPlayerDataKey(player));
+        assertTrue(UserManager.getPlayers().isEmpty());
+        Mockito.verify(mcMMOPlayer).cleanup();
+    }
+
+    @Test
+    void testPlayersSnapshot() {
+        Player first = mockPlayer();
+        Player second = mockPlayer();
+        UserManager.track(mockMcMMOPlayer(first));
+
+        Collection<McMMOPlayer> snapshot = UserManager.getPlayers();
+        assertThrows(UnsupportedOperationException.class, snapshot::clear);
+
+        // Tracking a player does not change snapshots which were already handed out
+        UserManager.track(mockMcMMOPlayer(second));
+        assertEquals(1, snapshot.size());
+        assertEquals(2, UserManager.getPlayers().size());
+
+        UserManager.clearAll();
+        assertTrue(UserManager.getPlayers().isEmpty());
+        assertNull(UserManager.getPlayer(first));
+        assertNull(UserManager.getPlayer(second));
+    }
+
+    private static Player mockPlayer() {
+        Player player = mock(Player.class);
+        Mockito.when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        return player;
+    }
+
+    private static McMMOPlayer mockMcMMOPlayer(Player player) {
+        McMMOPlayer mcMMOPlayer = mock(McMMOPlayer.class);
+        Mockito.when(mcMMOPlayer.getPlayer()).thenReturn(player);
+        return mcMMOPlayer;
+    }
+}
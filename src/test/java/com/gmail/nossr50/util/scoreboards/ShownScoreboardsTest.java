@@ -0,0 +1,85 @@
+package com.gmail.nossr50.util.scoreboards;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShownScoreboardsTest {
+    private static final UUID OVERWORLD = new UUID(0, 1);
+    private static final UUID NETHER = new UUID(0, 2);
+
+    private static class SimulatedBoard {
+        final UUID worldId;
+        int powerLevelWrites;
+
+        SimulatedBoard(UUID worldId) {
+            this.worldId = worldId;
+        }
+    }
+
+    @Test
+    void testShowMovesAndHides() {
+        ShownScoreboards<SimulatedBoard> shownScoreboards = new ShownScoreboards<>();
+        SimulatedBoard board = new SimulatedBoard(OVERWORLD);
+
+        assertTrue(shownScoreboards.show(board, OVERWORLD));
+        // Already up to date, no need to catch up again
+        assertFalse(shownScoreboards.show(board, OVERWORLD));
+        assertTrue(shownScoreboards.getBoards(OVERWORLD).contains(board));
+
+        assertTrue(shownScoreboards.show(board, NETHER));
+        assertTrue(shownScoreboards.getBoards(OVERWORLD).isEmpty());
+        assertTrue(shownScoreboards.getBoards(NETHER).contains(board));
+
+        shownScoreboards.hide(board);
+        assertFalse(shownScoreboards.isShown(board));
+        assertTrue(shownScoreboards.getBoards(NETHER).isEmpty());
+        // Shown again after being hidden, it missed updates in the meantime
+        assertTrue(shownScoreboards.show(board, NETHER));
+    }
+
+    /**
+     * 500 players all gain power levels in the same heartbeat, like during an event
+     * Only the boards that are shown get written to, not every board on the server
+     */
+    @Test
+    void testHeartbeatWritesOnlyShownBoards() {
+        ShownScoreboards<SimulatedBoard> shownScoreboards = new ShownScoreboards<>();
+        List<SimulatedBoard> boards = new ArrayList<>();
+
+        for (int i = 0; i < 500; i++) {
+            SimulatedBoard board = new SimulatedBoard(i % 5 == 0 ? NETHER : OVERWORLD);
+            boards.add(board);
+
+            // Every 10th player is looking at a sidebar, the others see the main scoreboard
+            if (i % 10 == 0) {
+                shownScoreboards.show(board, board.worldId);
+            }
+        }
+
+        // Every player is dirty, one write to the shared main objective each plus one per shown board in their world
+        int writes = 0;
+
+        for (SimulatedBoard dirtyPlayer : boards) {
+            writes++;
+
+            for (SimulatedBoard shownBoard : shownScoreboards.getBoards(dirtyPlayer.worldId)) {
+                shownBoard.powerLevelWrites++;
+                writes++;
+            }
+        }
+
+        // 50 shown boards, all 50 of the i % 10 == 0 players are in the nether (i % 5 == 0), which has 100 players
+        assertEquals(500 + 50 * 100, writes);
+
+        for (int i = 0; i < boards.size(); i++) {
+            assertEquals(i % 10 == 0 ? 100 : 0, boards.get(i).powerLevelWrites);
+        }
+    }
+}